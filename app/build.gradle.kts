@@ -16,6 +16,11 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Where the offline media pack manifest is published, e.g. -PmediaPackManifestUrl=https://...
+        // Left empty, the app doesn't sync a media pack
+        val mediaPackManifestUrl = project.findProperty("mediaPackManifestUrl") as String? ?: ""
+        buildConfigField("String", "MEDIA_PACK_MANIFEST_URL", "\"$mediaPackManifestUrl\"")
     }
 
     buildTypes {
@@ -35,6 +40,7 @@ android {
     
     buildFeatures {
         viewBinding = true
+        buildConfig = true
     }
 }
 
@@ -69,6 +75,11 @@ dependencies {
     
     // Image loading and caching
     implementation("com.github.bumptech.glide:glide:4.16.0")
+    annotationProcessor("com.github.bumptech.glide:compiler:4.16.0")
+    implementation("com.github.bumptech.glide:recyclerview-integration:4.16.0") {
+        // Use the app's RecyclerView version
+        isTransitive = false
+    }
     implementation("jp.wasabeef:glide-transformations:4.3.0")
     
     // Animation and Vector Drawables
@@ -0,0 +1,91 @@
+package com.s23010285.desk.model;
+
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures how long WorkoutSearchIndex takes to answer a keystroke on a large catalog, by typing a few
+ * queries one letter at a time, and reports it as instrumentation status, e.g.
+ * adb shell am instrument -w -e class com.s23010285.desk.model.WorkoutSearchBenchmark ...
+ * A keystroke should be answered well within a frame; the time is reported rather than checked,
+ * since it depends on the device and on what else it is doing
+ */
+@RunWith(AndroidJUnit4.class)
+public class WorkoutSearchBenchmark {
+
+    private static final String TAG = "WorkoutSearch";
+    // As many workouts as the search is built for
+    private static final int LARGE_CATALOG = 10_000;
+    // Rounds typed before and while timing
+    private static final int WARM_UP_ROUNDS = 20;
+    private static final int TIMED_ROUNDS = 10;
+
+    @Test
+    public void keystrokesOnLargeCatalog() {
+        String[] verbs = {"Power", "Gentle", "Quick", "Desk", "Morning", "Evening", "Office", "Core"};
+        String[] focus = {"Stretch", "Squats", "Yoga", "Cardio", "Mobility", "Balance", "Posture", "Strength"};
+        String[] areas = {"Legs", "Back", "Neck", "Shoulders", "Core", "Full body", "Arms", "Hips"};
+        WorkoutSearchIndex.Builder builder = new WorkoutSearchIndex.Builder();
+        for (int i = 0; i < LARGE_CATALOG; i++) {
+            WorkoutSchedule schedule = new WorkoutSchedule("w" + i,
+                    verbs[i % verbs.length] + " " + focus[(i / 8) % focus.length] + " " + i,
+                    "Session " + i + " for your " + areas[(i / 3) % areas.length].toLowerCase(),
+                    focus[(i / 8) % focus.length], "Routine " + (i % 97), "Daily", 10, "Easy",
+                    areas[(i / 5) % areas.length]);
+            builder.add(schedule, Arrays.asList(focus[i % focus.length] + " drill", "Breathing"),
+                    Arrays.asList(i % 2 == 0 ? "Chair" : "Mat"));
+        }
+        long buildStart = System.nanoTime();
+        WorkoutSearchIndex large = builder.build();
+        double buildMs = (System.nanoTime() - buildStart) / 1e6;
+        assertEquals(LARGE_CATALOG, large.size());
+
+        String[] queries = {"morning stretch", "chair squats", "core balance", "desk yoga neck", "routine 42"};
+        // Warm up so the search is compiled before it is timed
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            typeAll(large, queries);
+        }
+        int keystrokes = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < TIMED_ROUNDS; round++) {
+            keystrokes += typeAll(large, queries);
+        }
+        double msPerKeystroke = (System.nanoTime() - start) / 1e6 / keystrokes;
+        assertFalse(large.search("morning stretch").isEmpty());
+
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Bundle status = new Bundle();
+        status.putInt("workouts", LARGE_CATALOG);
+        status.putInt("words", large.getTermCount());
+        status.putDouble("build_ms", buildMs);
+        status.putDouble("ms_per_keystroke", msPerKeystroke);
+        instrumentation.sendStatus(0, status);
+        Log.i(TAG, LARGE_CATALOG + " workouts, " + large.getTermCount() + " words, built in "
+                + String.format("%.1f", buildMs) + " ms, " + String.format("%.4f", msPerKeystroke) + " ms per keystroke");
+    }
+
+    /**
+     * Search every prefix of every query, as if each were typed one letter at a time
+     */
+    private static int typeAll(WorkoutSearchIndex large, String[] queries) {
+        int keystrokes = 0;
+        for (String query : queries) {
+            for (int length = 1; length <= query.length(); length++) {
+                large.searchPositions(query.substring(0, length));
+                keystrokes++;
+            }
+        }
+        return keystrokes;
+    }
+}
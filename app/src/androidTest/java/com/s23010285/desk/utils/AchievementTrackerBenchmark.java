@@ -0,0 +1,119 @@
+package com.s23010285.desk.utils;
+
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.s23010285.desk.utils.AchievementManager.Achievement;
+import com.s23010285.desk.utils.AchievementManager.AchievementLevel;
+import com.s23010285.desk.utils.AchievementManager.AchievementType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Measures how much AchievementTracker progress events cost, a counter event and a report of today's
+ * steps, and reports them as instrumentation status, e.g.
+ * adb shell am instrument -w -e class com.s23010285.desk.utils.AchievementTrackerBenchmark ...
+ * A progress event runs on every detected step, so it should stay far below a millisecond; the time
+ * is reported rather than checked, since it depends on the device and on what else it is doing
+ */
+@RunWith(AndroidJUnit4.class)
+public class AchievementTrackerBenchmark {
+
+    private static final String TAG = "AchievementTracker";
+    private static final int EVENTS = 2_000_000;
+
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void costPerCounterEvent() {
+        // Requirements out of reach, so every counter event does the full work of adding progress and marking it
+        List<Achievement> achievements = outOfReachAchievements();
+        AchievementTracker tracker = new AchievementTracker(achievements, 0, 1,
+                (changes, totalsChanged, totalPoints, userLevel) -> { }, executor, 60_000);
+        List<AchievementType> counters = new ArrayList<>();
+        for (AchievementType type : AchievementType.values()) {
+            if (type.kind == AchievementManager.ProgressKind.COUNTER) {
+                counters.add(type);
+            }
+        }
+        AchievementType[] types = counters.toArray(new AchievementType[0]);
+
+        // Warm up so the event path is compiled before it is timed
+        for (int i = 0; i < EVENTS / 4; i++) {
+            tracker.updateProgress(types[i % types.length], ((i / types.length) & 1) == 0 ? 1 : -1);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++) {
+            tracker.updateProgress(types[i % types.length], ((i / types.length) & 1) == 0 ? 1 : -1);
+        }
+        double nsPerEvent = (System.nanoTime() - start) / (double) EVENTS;
+
+        report("ns_per_counter_event", nsPerEvent);
+        Log.i(TAG, achievements.size() + " achievements, " + String.format("%.1f", nsPerEvent) + " ns per counter event");
+    }
+
+    @Test
+    public void costPerStepReport() {
+        List<Achievement> achievements = outOfReachAchievements();
+        AchievementTracker tracker = new AchievementTracker(achievements, 0, 1,
+                (changes, totalsChanged, totalPoints, userLevel) -> { }, executor, 60_000);
+
+        // Today's total after every step, reported twice as the session does; no goal is ever reached
+        for (int steps = 1; steps <= EVENTS / 8; steps++) {
+            tracker.updateProgress(AchievementType.STEP_GOAL, steps);
+            tracker.updateProgress(AchievementType.STEP_GOAL, steps);
+        }
+        long start = System.nanoTime();
+        for (int steps = EVENTS / 8 + 1; steps <= EVENTS / 8 + EVENTS / 2; steps++) {
+            tracker.updateProgress(AchievementType.STEP_GOAL, steps);
+            tracker.updateProgress(AchievementType.STEP_GOAL, steps);
+        }
+        double nsPerReport = (System.nanoTime() - start) / (double) EVENTS;
+
+        report("ns_per_step_report", nsPerReport);
+        Log.i(TAG, String.format("%.1f", nsPerReport) + " ns per step report");
+    }
+
+    private static void report(String key, double value) {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Bundle status = new Bundle();
+        status.putDouble(key, value);
+        instrumentation.sendStatus(0, status);
+    }
+
+    /**
+     * Five achievements of every type, each out of reach
+     */
+    private static List<Achievement> outOfReachAchievements() {
+        List<Achievement> achievements = new ArrayList<>();
+        for (AchievementType type : AchievementType.values()) {
+            for (int i = 1; i <= 5; i++) {
+                achievements.add(new Achievement(type.name() + "_" + i, "", "", type,
+                        AchievementLevel.values()[i - 1], Integer.MAX_VALUE - i, 0, 10));
+            }
+        }
+        return achievements;
+    }
+}
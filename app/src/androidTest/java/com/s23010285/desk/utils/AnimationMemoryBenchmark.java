@@ -0,0 +1,136 @@
+package com.s23010285.desk.utils;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Debug;
+import android.util.Log;
+import android.widget.ImageView;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.resource.gif.GifDrawable;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.Target;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures how much memory exercise animations take, by cycling through every animation in
+ * ExerciseAnimationManager.getAvailableAnimations and letting each one play for a moment
+ * It runs once with the app's animation options at the default view size and once at full size
+ * without them, and reports the peak heap (Java plus native, where bitmaps live) of both as
+ * instrumentation status, e.g.
+ * adb shell am instrument -w -e class com.s23010285.desk.utils.AnimationMemoryBenchmark ...
+ * Needs the network (or the offline media pack) to load the GIFs
+ */
+@RunWith(AndroidJUnit4.class)
+public class AnimationMemoryBenchmark {
+
+    private static final String TAG = "AnimationMemory";
+    // How long each animation plays, and how often the heap is sampled meanwhile
+    private static final long PLAY_MS = 1_500;
+    private static final long SAMPLE_MS = 50;
+
+    @Test
+    public void peakHeapWhileCyclingAnimations() throws Exception {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = instrumentation.getTargetContext();
+        int size = ExerciseAnimationManager.getDefaultAnimationSizePx(context);
+
+        Result viewSized = cycle(instrumentation, context, ExerciseAnimationManager.animationOptions(), size);
+        Result fullSize = cycle(instrumentation, context, new RequestOptions(), Target.SIZE_ORIGINAL);
+        assumeTrue("No animation could be loaded, is the device online?", viewSized.loaded > 0 && fullSize.loaded > 0);
+
+        Bundle status = new Bundle();
+        status.putInt("animations", viewSized.loaded);
+        status.putLong("view_sized_peak_heap_kb", viewSized.peakBytes / 1024);
+        status.putLong("full_size_peak_heap_kb", fullSize.peakBytes / 1024);
+        status.putInt("view_sized_max_frame_px", viewSized.maxFrameWidth);
+        status.putInt("full_size_max_frame_px", fullSize.maxFrameWidth);
+        instrumentation.sendStatus(0, status);
+        Log.i(TAG, "Peak heap over " + viewSized.loaded + " animations: view sized "
+                + viewSized.peakBytes / 1024 + " KB, full size " + fullSize.peakBytes / 1024 + " KB");
+
+        // Glide samples GIFs down by powers of two, so a frame is less than twice the requested size
+        // (GIFs already smaller than that are left as they are)
+        int limit = fullSize.maxFrameWidth < size * 2 ? fullSize.maxFrameWidth : size * 2 - 1;
+        assertTrue("Frames decoded at " + viewSized.maxFrameWidth + " px for a " + size + " px view",
+                viewSized.maxFrameWidth <= limit);
+    }
+
+    /**
+     * Load and play every animation in turn, starting each one from an empty memory cache
+     */
+    private Result cycle(Instrumentation instrumentation, Context context, RequestOptions options, int size)
+            throws InterruptedException {
+        Result result = new Result();
+        for (String key : ExerciseAnimationManager.getAvailableAnimations()) {
+            instrumentation.runOnMainSync(() -> Glide.get(context).clearMemory());
+            collectGarbage();
+            long before = usedHeapBytes();
+            String url = ExerciseAnimationManager.getAnimationData(key).gifUrl;
+            FutureTarget<GifDrawable> target = Glide.with(context)
+                    .asGif()
+                    .load(OfflineMediaPack.glideSource(context, url))
+                    .apply(options)
+                    .submit(size, size);
+            try {
+                GifDrawable drawable = target.get(30, TimeUnit.SECONDS);
+                // A GIF only keeps decoding frames while a view holds it
+                ImageView[] view = new ImageView[1];
+                instrumentation.runOnMainSync(() -> {
+                    view[0] = new ImageView(context);
+                    view[0].setImageDrawable(drawable);
+                    drawable.start();
+                });
+                for (long played = 0; played < PLAY_MS; played += SAMPLE_MS) {
+                    result.peakBytes = Math.max(result.peakBytes, usedHeapBytes() - before);
+                    Thread.sleep(SAMPLE_MS);
+                }
+                instrumentation.runOnMainSync(() -> {
+                    drawable.stop();
+                    view[0].setImageDrawable(null);
+                });
+                result.maxFrameWidth = Math.max(result.maxFrameWidth, drawable.getIntrinsicWidth());
+                result.loaded++;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading animation " + key + ": " + e.getMessage(), e);
+            } finally {
+                Glide.with(context).clear(target);
+            }
+        }
+        return result;
+    }
+
+    private static long usedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+
+    private static void collectGarbage() throws InterruptedException {
+        Runtime.getRuntime().gc();
+        Thread.sleep(100);
+        Runtime.getRuntime().gc();
+    }
+
+    /**
+     * What one pass over the animations measured
+     */
+    private static final class Result {
+        int loaded;
+        long peakBytes;
+        int maxFrameWidth;
+    }
+}
@@ -0,0 +1,52 @@
+package com.s23010285.desk.utils;
+
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures how long RouteSimplifier takes to add a point to a full route, and reports it as
+ * instrumentation status, e.g.
+ * adb shell am instrument -w -e class com.s23010285.desk.utils.RouteSimplifierBenchmark ...
+ * A fix arrives every few seconds, so even a slow device has plenty of time; the time is reported
+ * rather than checked, since it depends on the device and on what else it is doing
+ */
+@RunWith(AndroidJUnit4.class)
+public class RouteSimplifierBenchmark {
+
+    private static final String TAG = "RouteSimplifier";
+    // About one metre in degrees of latitude
+    private static final double METER = 1.0 / 111_195.0;
+    private static final int POINTS = 50_000;
+
+    @Test
+    public void costPerPoint() {
+        RouteSimplifier simplifier = new RouteSimplifier(RouteTracker.DEFAULT_MAX_POINTS);
+        // Fill the route first, so every timed point also drops one
+        for (int i = 0; i < POINTS / 4; i++) {
+            simplifier.add(Math.sin(i / 30.0) * 100 * METER, i * METER, i);
+        }
+        long start = System.nanoTime();
+        for (int i = POINTS / 4; i < POINTS / 4 + POINTS; i++) {
+            simplifier.add(Math.sin(i / 30.0) * 100 * METER, i * METER, i);
+        }
+        double nsPerPoint = (System.nanoTime() - start) / (double) POINTS;
+        assertEquals(RouteTracker.DEFAULT_MAX_POINTS, simplifier.size());
+
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Bundle status = new Bundle();
+        status.putInt("max_points", RouteTracker.DEFAULT_MAX_POINTS);
+        status.putDouble("ns_per_point", nsPerPoint);
+        instrumentation.sendStatus(0, status);
+        Log.i(TAG, RouteTracker.DEFAULT_MAX_POINTS + " points kept, " + String.format("%.1f", nsPerPoint)
+                + " ns per added point");
+    }
+}
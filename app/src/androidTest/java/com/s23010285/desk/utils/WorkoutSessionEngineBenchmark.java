@@ -0,0 +1,56 @@
+package com.s23010285.desk.utils;
+
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures how long saving and restoring a WorkoutSessionEngine snapshot takes, and reports it as
+ * instrumentation status, e.g.
+ * adb shell am instrument -w -e class com.s23010285.desk.utils.WorkoutSessionEngineBenchmark ...
+ * A snapshot is taken on every configuration change, so it should take a few microseconds at most;
+ * the time is reported rather than checked, since it depends on the device and on what else it is doing
+ */
+@RunWith(AndroidJUnit4.class)
+public class WorkoutSessionEngineBenchmark {
+
+    private static final String TAG = "WorkoutSessionEngine";
+    private static final int ROUNDS = 200_000;
+
+    @Test
+    public void costPerSaveAndRestore() {
+        int[] durations = {30, 45, 20};
+        WorkoutSessionEngine engine = new WorkoutSessionEngine(durations, 5 * 60_000, 2000,
+                new SessionClock(SystemClock::elapsedRealtime));
+        WorkoutSessionEngine target = new WorkoutSessionEngine(durations, 5 * 60_000, 2000,
+                new SessionClock(SystemClock::elapsedRealtime));
+        engine.start();
+        engine.tick();
+
+        // Warm up so saving and restoring are compiled before they are timed
+        for (int i = 0; i < ROUNDS / 4; i++) {
+            target.restoreState(engine.saveState());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            target.restoreState(engine.saveState());
+        }
+        double nsPerRound = (System.nanoTime() - start) / (double) ROUNDS;
+        assertEquals(engine.getExerciseIndex(), target.getExerciseIndex());
+
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Bundle status = new Bundle();
+        status.putDouble("ns_per_save_and_restore", nsPerRound);
+        instrumentation.sendStatus(0, status);
+        Log.i(TAG, String.format("%.1f", nsPerRound) + " ns per save and restore");
+    }
+}
@@ -0,0 +1,21 @@
+package com.s23010285.desk;
+
+import android.app.Application;
+import com.s23010285.desk.utils.WorkoutCatalogLoader;
+
+/**
+ * The DeskBreak application, created before any screen
+ * It starts the work every screen relies on, whichever screen the app is opened at
+ */
+public class DeskApplication extends Application {
+
+    /**
+     * This method is called once when the app's process starts
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Start reading the workout catalog in the background so it is ready before a screen asks for it
+        WorkoutCatalogLoader.preload(this);
+    }
+}
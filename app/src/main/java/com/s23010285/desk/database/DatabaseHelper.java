@@ -3,14 +3,18 @@ package com.s23010285.desk.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
 
 import com.s23010285.desk.model.User;
 import com.s23010285.desk.model.WorkoutSession;
 import com.s23010285.desk.model.ActivityRecord;
+import com.s23010285.desk.model.WorkoutExerciseRecord;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -20,11 +24,17 @@ import java.util.List;
  */
 public class DatabaseHelper extends SQLiteOpenHelper {
     
+    private static final String TAG = "DatabaseHelper";
+    
     // These constants define the database name and version
     // DATABASE_NAME is what we call our database file
     private static final String DATABASE_NAME = "DeskBreakDB";
     // DATABASE_VERSION helps us know when to update the database structure
-    private static final int DATABASE_VERSION = 1;
+    // Version 2 added the activity_minutes table
+    // Version 3 added the extra session columns and the workout_exercise_records table
+    // Version 4 added the packed GPS route to workout_sessions
+    // Version 5 added the rep count to workout_exercise_records
+    private static final int DATABASE_VERSION = 5;
     
     // User table - this table stores information about all the app's users
     // TABLE_USERS is the name of the table that holds user data
@@ -61,6 +71,65 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_SESSION_START_TIME = "start_time";
     // COLUMN_SESSION_END_TIME stores when the workout ended
     private static final String COLUMN_SESSION_END_TIME = "end_time";
+    // COLUMN_SESSION_NAME stores the name of the workout program
+    private static final String COLUMN_SESSION_NAME = "name";
+    // COLUMN_SESSION_CALORIES stores the estimated calories burned
+    private static final String COLUMN_SESSION_CALORIES = "calories";
+    // COLUMN_SESSION_EXERCISES_COMPLETED stores how many exercises ran to the end
+    private static final String COLUMN_SESSION_EXERCISES_COMPLETED = "exercises_completed";
+    // COLUMN_SESSION_STATUS stores whether the workout was completed or abandoned
+    private static final String COLUMN_SESSION_STATUS = "status";
+    // COLUMN_SESSION_PROGRESS stores how much of the workout was done (0-100)
+    private static final String COLUMN_SESSION_PROGRESS = "progress";
+    // COLUMN_SESSION_ROUTE stores the GPS route packed by RouteCodec
+    private static final String COLUMN_SESSION_ROUTE = "route";
+    
+    // Exercise records table - this stores what happened to each exercise of a workout session
+    // TABLE_EXERCISE_RECORDS is the name of the table that holds the per-exercise rows
+    private static final String TABLE_EXERCISE_RECORDS = "workout_exercise_records";
+    // COLUMN_EXERCISE_ID is a unique number that identifies each exercise record
+    private static final String COLUMN_EXERCISE_ID = "id";
+    // COLUMN_EXERCISE_SESSION_ID links the exercise record to its workout session
+    private static final String COLUMN_EXERCISE_SESSION_ID = "session_id";
+    // COLUMN_EXERCISE_POSITION stores where the exercise comes in the workout
+    private static final String COLUMN_EXERCISE_POSITION = "position";
+    // COLUMN_EXERCISE_NAME stores the name of the exercise
+    private static final String COLUMN_EXERCISE_NAME = "name";
+    // COLUMN_EXERCISE_PLANNED_SECONDS stores how long the exercise should have lasted
+    private static final String COLUMN_EXERCISE_PLANNED_SECONDS = "planned_seconds";
+    // COLUMN_EXERCISE_ACTIVE_MS stores how long the user actually did the exercise
+    private static final String COLUMN_EXERCISE_ACTIVE_MS = "active_ms";
+    // COLUMN_EXERCISE_PAUSES stores how many times the user paused during the exercise
+    private static final String COLUMN_EXERCISE_PAUSES = "pauses";
+    // COLUMN_EXERCISE_PAUSED_MS stores how long those pauses lasted
+    private static final String COLUMN_EXERCISE_PAUSED_MS = "paused_ms";
+    // COLUMN_EXERCISE_STEPS stores the steps counted during the exercise
+    private static final String COLUMN_EXERCISE_STEPS = "steps";
+    // COLUMN_EXERCISE_REPS stores the repetitions counted during the exercise
+    private static final String COLUMN_EXERCISE_REPS = "reps";
+    // COLUMN_EXERCISE_COMPLETED is 1 if the exercise countdown ran to zero
+    private static final String COLUMN_EXERCISE_COMPLETED = "completed";
+    // COLUMN_EXERCISE_SKIPPED is 1 if the user moved on before the countdown ended
+    private static final String COLUMN_EXERCISE_SKIPPED = "skipped";
+    
+    // The exercise rows of a session are always read together, so they are indexed by session
+    private static final String CREATE_EXERCISE_RECORDS_TABLE = "CREATE TABLE " + TABLE_EXERCISE_RECORDS + "("
+            + COLUMN_EXERCISE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COLUMN_EXERCISE_SESSION_ID + " INTEGER NOT NULL,"
+            + COLUMN_EXERCISE_POSITION + " INTEGER NOT NULL,"
+            + COLUMN_EXERCISE_NAME + " TEXT,"
+            + COLUMN_EXERCISE_PLANNED_SECONDS + " INTEGER,"
+            + COLUMN_EXERCISE_ACTIVE_MS + " INTEGER,"
+            + COLUMN_EXERCISE_PAUSES + " INTEGER,"
+            + COLUMN_EXERCISE_PAUSED_MS + " INTEGER,"
+            + COLUMN_EXERCISE_STEPS + " INTEGER,"
+            + COLUMN_EXERCISE_REPS + " INTEGER DEFAULT 0,"
+            + COLUMN_EXERCISE_COMPLETED + " INTEGER,"
+            + COLUMN_EXERCISE_SKIPPED + " INTEGER,"
+            + "FOREIGN KEY(" + COLUMN_EXERCISE_SESSION_ID + ") REFERENCES " + TABLE_WORKOUT_SESSIONS + "(" + COLUMN_SESSION_ID + ")"
+            + ")";
+    private static final String CREATE_EXERCISE_RECORDS_INDEX = "CREATE INDEX idx_exercise_records_session ON "
+            + TABLE_EXERCISE_RECORDS + "(" + COLUMN_EXERCISE_SESSION_ID + ")";
     
     // Activity records table - this table stores daily summaries of user activity
     // TABLE_ACTIVITY_RECORDS is the name of the table that holds daily activity data
@@ -79,6 +148,24 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     // COLUMN_RECORD_DISTANCE stores how far the user moved that day
     private static final String COLUMN_RECORD_DISTANCE = "distance";
     
+    // Activity minutes table - this stores the per-minute step histogram for each day
+    // TABLE_ACTIVITY_MINUTES is the name of the table that holds the packed histograms
+    private static final String TABLE_ACTIVITY_MINUTES = "activity_minutes";
+    // COLUMN_MINUTES_USER_ID links the histogram to the user it belongs to
+    private static final String COLUMN_MINUTES_USER_ID = "user_id";
+    // COLUMN_MINUTES_DATE stores which day this histogram is for (YYYY-MM-DD format)
+    private static final String COLUMN_MINUTES_DATE = "date";
+    // COLUMN_MINUTES_HISTOGRAM stores the packed step counts for every minute of the day
+    private static final String COLUMN_MINUTES_HISTOGRAM = "histogram";
+    
+    // There is one histogram row per user and day, so saving it again simply replaces the row
+    private static final String CREATE_ACTIVITY_MINUTES_TABLE = "CREATE TABLE " + TABLE_ACTIVITY_MINUTES + "("
+            + COLUMN_MINUTES_USER_ID + " INTEGER NOT NULL,"
+            + COLUMN_MINUTES_DATE + " TEXT NOT NULL,"
+            + COLUMN_MINUTES_HISTOGRAM + " BLOB NOT NULL,"
+            + "PRIMARY KEY(" + COLUMN_MINUTES_USER_ID + ", " + COLUMN_MINUTES_DATE + ")"
+            + ")";
+    
     /**
      * Constructor for the DatabaseHelper
      * This method is called when we want to create a new database or connect to an existing one
@@ -118,6 +205,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 + COLUMN_SESSION_DISTANCE + " REAL,"
                 + COLUMN_SESSION_START_TIME + " DATETIME,"
                 + COLUMN_SESSION_END_TIME + " DATETIME,"
+                + COLUMN_SESSION_NAME + " TEXT,"
+                + COLUMN_SESSION_CALORIES + " INTEGER DEFAULT 0,"
+                + COLUMN_SESSION_EXERCISES_COMPLETED + " INTEGER DEFAULT 0,"
+                + COLUMN_SESSION_STATUS + " TEXT,"
+                + COLUMN_SESSION_PROGRESS + " INTEGER DEFAULT 0,"
+                + COLUMN_SESSION_ROUTE + " BLOB,"
                 + "FOREIGN KEY(" + COLUMN_SESSION_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_USER_ID + ")"
                 + ")";
         
@@ -137,6 +230,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL(CREATE_USERS_TABLE);
         db.execSQL(CREATE_WORKOUT_SESSIONS_TABLE);
         db.execSQL(CREATE_ACTIVITY_RECORDS_TABLE);
+        db.execSQL(CREATE_ACTIVITY_MINUTES_TABLE);
+        db.execSQL(CREATE_EXERCISE_RECORDS_TABLE);
+        db.execSQL(CREATE_EXERCISE_RECORDS_INDEX);
     }
     
     /**
@@ -148,13 +244,26 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // For now, we'll just delete the old tables and recreate them
-        // In a real app, you might want to migrate data instead
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_WORKOUT_SESSIONS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ACTIVITY_RECORDS);
-        // Create the new tables with the updated structure
-        onCreate(db);
+        // Apply each version's changes in order so existing users keep their data
+        if (oldVersion < 2) {
+            db.execSQL(CREATE_ACTIVITY_MINUTES_TABLE);
+        }
+        if (oldVersion < 3) {
+            db.execSQL("ALTER TABLE " + TABLE_WORKOUT_SESSIONS + " ADD COLUMN " + COLUMN_SESSION_NAME + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_WORKOUT_SESSIONS + " ADD COLUMN " + COLUMN_SESSION_CALORIES + " INTEGER DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_WORKOUT_SESSIONS + " ADD COLUMN " + COLUMN_SESSION_EXERCISES_COMPLETED + " INTEGER DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_WORKOUT_SESSIONS + " ADD COLUMN " + COLUMN_SESSION_STATUS + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_WORKOUT_SESSIONS + " ADD COLUMN " + COLUMN_SESSION_PROGRESS + " INTEGER DEFAULT 0");
+            db.execSQL(CREATE_EXERCISE_RECORDS_TABLE);
+            db.execSQL(CREATE_EXERCISE_RECORDS_INDEX);
+        }
+        if (oldVersion < 4) {
+            db.execSQL("ALTER TABLE " + TABLE_WORKOUT_SESSIONS + " ADD COLUMN " + COLUMN_SESSION_ROUTE + " BLOB");
+        }
+        if (oldVersion >= 3 && oldVersion < 5) {
+            // Older versions create the exercise table above, which already has this column
+            db.execSQL("ALTER TABLE " + TABLE_EXERCISE_RECORDS + " ADD COLUMN " + COLUMN_EXERCISE_REPS + " INTEGER DEFAULT 0");
+        }
     }
     
     // User operations
@@ -223,28 +332,74 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     
     // Workout session operations
     public long addWorkoutSession(WorkoutSession session) {
+        return addWorkoutSession(session, new ArrayList<>());
+    }
+    
+    /**
+     * Save a finished workout session together with its per-exercise records
+     * Everything is written in one transaction, so a session is never saved without its exercises
+     * This does disk work, so call it from a background thread
+     * @param session The session to save
+     * @param exerciseRecords One record per exercise of the session
+     * @return The new session's ID, or -1 if it could not be saved
+     */
+    public long addWorkoutSession(WorkoutSession session, List<WorkoutExerciseRecord> exerciseRecords) {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_SESSION_USER_ID, session.getUserId());
-        values.put(COLUMN_SESSION_TYPE, session.getType());
-        values.put(COLUMN_SESSION_DURATION, session.getDuration());
-        values.put(COLUMN_SESSION_STEPS, session.getSteps());
-        values.put(COLUMN_SESSION_DISTANCE, session.getDistance());
-        values.put(COLUMN_SESSION_START_TIME, session.getStartTime());
-        values.put(COLUMN_SESSION_END_TIME, session.getEndTime());
-        
-        long id = db.insert(TABLE_WORKOUT_SESSIONS, null, values);
-        db.close();
-        return id;
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_SESSION_USER_ID, session.getUserId());
+            values.put(COLUMN_SESSION_TYPE, session.getWorkoutType() != null ? session.getWorkoutType() : "");
+            values.put(COLUMN_SESSION_NAME, session.getWorkoutName());
+            values.put(COLUMN_SESSION_DURATION, session.getDurationMinutes());
+            values.put(COLUMN_SESSION_STEPS, session.getSteps());
+            values.put(COLUMN_SESSION_DISTANCE, session.getDistance());
+            // Times are stored as milliseconds since 1970 so they sort and compare as numbers
+            values.put(COLUMN_SESSION_START_TIME, session.getStartTime() != null ? session.getStartTime().getTime() : null);
+            values.put(COLUMN_SESSION_END_TIME, session.getEndTime() != null ? session.getEndTime().getTime() : null);
+            values.put(COLUMN_SESSION_CALORIES, session.getCaloriesBurned());
+            values.put(COLUMN_SESSION_EXERCISES_COMPLETED, session.getExercisesCompleted());
+            values.put(COLUMN_SESSION_STATUS, session.getStatus());
+            values.put(COLUMN_SESSION_PROGRESS, session.getProgressPercentage());
+            values.put(COLUMN_SESSION_ROUTE, session.getRoute());
+            long sessionId = db.insertOrThrow(TABLE_WORKOUT_SESSIONS, null, values);
+            
+            for (WorkoutExerciseRecord record : exerciseRecords) {
+                ContentValues exerciseValues = new ContentValues();
+                exerciseValues.put(COLUMN_EXERCISE_SESSION_ID, sessionId);
+                exerciseValues.put(COLUMN_EXERCISE_POSITION, record.getPosition());
+                exerciseValues.put(COLUMN_EXERCISE_NAME, record.getExerciseName());
+                exerciseValues.put(COLUMN_EXERCISE_PLANNED_SECONDS, record.getPlannedSeconds());
+                exerciseValues.put(COLUMN_EXERCISE_ACTIVE_MS, record.getActiveMs());
+                exerciseValues.put(COLUMN_EXERCISE_PAUSES, record.getPauseCount());
+                exerciseValues.put(COLUMN_EXERCISE_PAUSED_MS, record.getPausedMs());
+                exerciseValues.put(COLUMN_EXERCISE_STEPS, record.getSteps());
+                exerciseValues.put(COLUMN_EXERCISE_REPS, record.getReps());
+                exerciseValues.put(COLUMN_EXERCISE_COMPLETED, record.isCompleted() ? 1 : 0);
+                exerciseValues.put(COLUMN_EXERCISE_SKIPPED, record.isSkipped() ? 1 : 0);
+                db.insertOrThrow(TABLE_EXERCISE_RECORDS, null, exerciseValues);
+                record.setSessionId(sessionId);
+            }
+            db.setTransactionSuccessful();
+            session.setId(sessionId);
+            return sessionId;
+        } catch (SQLException e) {
+            Log.e(TAG, "Error saving workout session: " + e.getMessage(), e);
+            return -1;
+        } finally {
+            db.endTransaction();
+        }
     }
     
     public List<WorkoutSession> getWorkoutSessionsByUserId(long userId) {
         List<WorkoutSession> sessions = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
         
-        String[] columns = {COLUMN_SESSION_ID, COLUMN_SESSION_USER_ID, COLUMN_SESSION_TYPE, 
+        String[] columns = {COLUMN_SESSION_ID, COLUMN_SESSION_USER_ID, COLUMN_SESSION_TYPE, COLUMN_SESSION_NAME,
                            COLUMN_SESSION_DURATION, COLUMN_SESSION_STEPS, COLUMN_SESSION_DISTANCE,
-                           COLUMN_SESSION_START_TIME, COLUMN_SESSION_END_TIME};
+                           COLUMN_SESSION_START_TIME, COLUMN_SESSION_END_TIME, COLUMN_SESSION_CALORIES,
+                           COLUMN_SESSION_EXERCISES_COMPLETED, COLUMN_SESSION_STATUS, COLUMN_SESSION_PROGRESS,
+                           COLUMN_SESSION_ROUTE};
         String selection = COLUMN_SESSION_USER_ID + " = ?";
         String[] selectionArgs = {String.valueOf(userId)};
         String orderBy = COLUMN_SESSION_START_TIME + " DESC";
@@ -255,12 +410,18 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             WorkoutSession session = new WorkoutSession();
             session.setId(cursor.getLong(cursor.getColumnIndex(COLUMN_SESSION_ID)));
             session.setUserId(cursor.getLong(cursor.getColumnIndex(COLUMN_SESSION_USER_ID)));
-            session.setType(cursor.getString(cursor.getColumnIndex(COLUMN_SESSION_TYPE)));
-            session.setDuration(cursor.getInt(cursor.getColumnIndex(COLUMN_SESSION_DURATION)));
+            session.setWorkoutType(cursor.getString(cursor.getColumnIndex(COLUMN_SESSION_TYPE)));
+            session.setWorkoutName(cursor.getString(cursor.getColumnIndex(COLUMN_SESSION_NAME)));
+            session.setDurationMinutes(cursor.getInt(cursor.getColumnIndex(COLUMN_SESSION_DURATION)));
             session.setSteps(cursor.getInt(cursor.getColumnIndex(COLUMN_SESSION_STEPS)));
             session.setDistance(cursor.getDouble(cursor.getColumnIndex(COLUMN_SESSION_DISTANCE)));
-            session.setStartTime(cursor.getLong(cursor.getColumnIndex(COLUMN_SESSION_START_TIME)));
-            session.setEndTime(cursor.getLong(cursor.getColumnIndex(COLUMN_SESSION_END_TIME)));
+            session.setStartTime(new Date(cursor.getLong(cursor.getColumnIndex(COLUMN_SESSION_START_TIME))));
+            session.setEndTime(new Date(cursor.getLong(cursor.getColumnIndex(COLUMN_SESSION_END_TIME))));
+            session.setCaloriesBurned(cursor.getInt(cursor.getColumnIndex(COLUMN_SESSION_CALORIES)));
+            session.setExercisesCompleted(cursor.getInt(cursor.getColumnIndex(COLUMN_SESSION_EXERCISES_COMPLETED)));
+            session.setStatus(cursor.getString(cursor.getColumnIndex(COLUMN_SESSION_STATUS)));
+            session.setProgressPercentage(cursor.getInt(cursor.getColumnIndex(COLUMN_SESSION_PROGRESS)));
+            session.setRoute(cursor.getBlob(cursor.getColumnIndex(COLUMN_SESSION_ROUTE)));
             sessions.add(session);
         }
         
@@ -269,6 +430,41 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return sessions;
     }
     
+    /**
+     * Get the per-exercise records of a workout session
+     * @param sessionId The session's ID
+     * @return The records in exercise order (empty if there are none)
+     */
+    public List<WorkoutExerciseRecord> getExerciseRecords(long sessionId) {
+        List<WorkoutExerciseRecord> records = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        
+        String selection = COLUMN_EXERCISE_SESSION_ID + " = ?";
+        String[] selectionArgs = {String.valueOf(sessionId)};
+        Cursor cursor = db.query(TABLE_EXERCISE_RECORDS, null, selection, selectionArgs, null, null,
+                COLUMN_EXERCISE_POSITION + " ASC");
+        
+        while (cursor.moveToNext()) {
+            WorkoutExerciseRecord record = new WorkoutExerciseRecord(
+                    cursor.getInt(cursor.getColumnIndex(COLUMN_EXERCISE_POSITION)),
+                    cursor.getString(cursor.getColumnIndex(COLUMN_EXERCISE_NAME)),
+                    cursor.getInt(cursor.getColumnIndex(COLUMN_EXERCISE_PLANNED_SECONDS)));
+            record.setId(cursor.getLong(cursor.getColumnIndex(COLUMN_EXERCISE_ID)));
+            record.setSessionId(sessionId);
+            record.setActiveMs(cursor.getLong(cursor.getColumnIndex(COLUMN_EXERCISE_ACTIVE_MS)));
+            record.setPauseCount(cursor.getInt(cursor.getColumnIndex(COLUMN_EXERCISE_PAUSES)));
+            record.setPausedMs(cursor.getLong(cursor.getColumnIndex(COLUMN_EXERCISE_PAUSED_MS)));
+            record.setSteps(cursor.getInt(cursor.getColumnIndex(COLUMN_EXERCISE_STEPS)));
+            record.setReps(cursor.getInt(cursor.getColumnIndex(COLUMN_EXERCISE_REPS)));
+            record.setCompleted(cursor.getInt(cursor.getColumnIndex(COLUMN_EXERCISE_COMPLETED)) == 1);
+            record.setSkipped(cursor.getInt(cursor.getColumnIndex(COLUMN_EXERCISE_SKIPPED)) == 1);
+            records.add(record);
+        }
+        
+        cursor.close();
+        return records;
+    }
+    
     // Activity record operations
     public long addActivityRecord(ActivityRecord record) {
         SQLiteDatabase db = this.getWritableDatabase();
@@ -324,6 +520,62 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.close();
     }
     
+    // Activity minutes operations
+    
+    /**
+     * Save the per-minute histogram for a day together with the day's totals
+     * The histogram row is replaced and the activity record for that day is updated
+     * (or created) in one transaction, so the two never disagree
+     * @param userId The user the data belongs to
+     * @param date The day, in YYYY-MM-DD format
+     * @param histogram The packed histogram bytes
+     * @param steps The total steps for the day
+     * @param activeMinutes The active minutes for the day
+     */
+    public void saveActivityMinutes(long userId, String date, byte[] histogram, int steps, int activeMinutes) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues histogramValues = new ContentValues();
+            histogramValues.put(COLUMN_MINUTES_USER_ID, userId);
+            histogramValues.put(COLUMN_MINUTES_DATE, date);
+            histogramValues.put(COLUMN_MINUTES_HISTOGRAM, histogram);
+            db.insertWithOnConflict(TABLE_ACTIVITY_MINUTES, null, histogramValues, SQLiteDatabase.CONFLICT_REPLACE);
+            
+            ContentValues recordValues = new ContentValues();
+            recordValues.put(COLUMN_RECORD_STEPS, steps);
+            recordValues.put(COLUMN_RECORD_ACTIVE_MINUTES, activeMinutes);
+            String whereClause = COLUMN_RECORD_USER_ID + " = ? AND " + COLUMN_RECORD_DATE + " = ?";
+            String[] whereArgs = {String.valueOf(userId), date};
+            if (db.update(TABLE_ACTIVITY_RECORDS, recordValues, whereClause, whereArgs) == 0) {
+                recordValues.put(COLUMN_RECORD_USER_ID, userId);
+                recordValues.put(COLUMN_RECORD_DATE, date);
+                db.insert(TABLE_ACTIVITY_RECORDS, null, recordValues);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    /**
+     * Get the packed per-minute histogram for a day
+     * @param userId The user the data belongs to
+     * @param date The day, in YYYY-MM-DD format
+     * @return The packed histogram bytes, or null if nothing was saved for that day
+     */
+    public byte[] getActivityMinutes(long userId, String date) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        String[] columns = {COLUMN_MINUTES_HISTOGRAM};
+        String selection = COLUMN_MINUTES_USER_ID + " = ? AND " + COLUMN_MINUTES_DATE + " = ?";
+        String[] selectionArgs = {String.valueOf(userId), date};
+        
+        Cursor cursor = db.query(TABLE_ACTIVITY_MINUTES, columns, selection, selectionArgs, null, null, null);
+        byte[] histogram = cursor.moveToFirst() ? cursor.getBlob(0) : null;
+        cursor.close();
+        return histogram;
+    }
+    
     /**
      * Check if a user exists with the given email
      */
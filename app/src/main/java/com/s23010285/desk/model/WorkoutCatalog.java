@@ -0,0 +1,313 @@
+package com.s23010285.desk.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The workout programs the app offers, loaded once and shared by every screen
+ * All schedules are frozen (read-only), so handing the same instance to several screens is safe.
+ * Looking a schedule up by id is a hash lookup, and the lists by category, difficulty and target
+ * area are worked out once when the catalog is built instead of on every call
+ * The catalog starts with summaries only (no exercises); a schedule's exercises are read by its
+ * DetailsLoader the first time it is opened, then kept. See WorkoutCatalogLoader for where the data comes from
+ */
+public final class WorkoutCatalog {
+
+    /**
+     * Reads the full schedule (exercises, equipment, instructions) for a summary
+     */
+    public interface DetailsLoader {
+        /**
+         * Read a schedule's details
+         * @param summary The schedule as listed in the catalog
+         * @return A new schedule with the same summary fields plus its exercises
+         * @throws IOException if the catalog data can't be read
+         */
+        WorkoutSchedule loadDetails(WorkoutSchedule summary) throws IOException;
+    }
+
+    // version is the content version of the catalog data, newer downloads have higher versions
+    private final int version;
+    // detailsLoader reads exercises on demand, detailed keeps what it read by schedule id
+    private final DetailsLoader detailsLoader;
+    private final Map<String, WorkoutSchedule> detailed = new ConcurrentHashMap<>();
+    // schedules holds every schedule in display order
+    private final List<WorkoutSchedule> schedules;
+    // byId finds a schedule from its id, positions finds where it is in the display order
+    private final Map<String, WorkoutSchedule> byId;
+    private final Map<String, Integer> positions;
+    // byCategory, byDifficulty and byTargetArea group the schedules, keyed by the lower-case value
+    // The maps keep the order values first appear in, so they can be shown as filters in that order
+    private final Map<String, List<WorkoutSchedule>> byCategory;
+    private final Map<String, List<WorkoutSchedule>> byDifficulty;
+    private final Map<String, List<WorkoutSchedule>> byTargetArea;
+    // searchIndex finds schedules from what the user types
+    private final WorkoutSearchIndex searchIndex;
+    // facets holds the library filters as bitsets over display positions
+    private final WorkoutFacets facets;
+
+    /**
+     * Build a catalog, freezing the given schedules
+     * @param version The content version of the catalog data
+     * @param schedules The schedule summaries in display order, ids must be unique
+     * @param detailsLoader Reads a schedule's exercises when it is first opened
+     * @throws IllegalArgumentException if two schedules share an id
+     */
+    public WorkoutCatalog(int version, List<WorkoutSchedule> schedules, DetailsLoader detailsLoader) {
+        this(version, schedules, detailsLoader, null, null);
+    }
+
+    /**
+     * Build a catalog with a search index and filters made while reading it
+     * Summaries don't carry their exercises or equipment, so the reader indexes them as it skips past them
+     * @param version The content version of the catalog data
+     * @param schedules The schedule summaries in display order, ids must be unique
+     * @param detailsLoader Reads a schedule's exercises when it is first opened
+     * @param searchIndex An index over the same schedules in the same order, or null to index the summaries
+     * @param facets Filters over the same schedules in the same order, or null to build them from the summaries
+     * @throws IllegalArgumentException if two schedules share an id or an index doesn't fit the schedules
+     */
+    public WorkoutCatalog(int version, List<WorkoutSchedule> schedules, DetailsLoader detailsLoader,
+                          WorkoutSearchIndex searchIndex, WorkoutFacets facets) {
+        this.version = version;
+        this.detailsLoader = detailsLoader;
+        List<WorkoutSchedule> all = new ArrayList<>(schedules.size());
+        Map<String, WorkoutSchedule> ids = new HashMap<>(schedules.size() * 2);
+        Map<String, Integer> idPositions = new HashMap<>(schedules.size() * 2);
+        Map<String, List<WorkoutSchedule>> categories = new LinkedHashMap<>();
+        Map<String, List<WorkoutSchedule>> difficulties = new LinkedHashMap<>();
+        Map<String, List<WorkoutSchedule>> targetAreas = new LinkedHashMap<>();
+        for (WorkoutSchedule schedule : schedules) {
+            schedule.freeze();
+            if (ids.put(schedule.getId(), schedule) != null) {
+                throw new IllegalArgumentException("Duplicate workout id " + schedule.getId());
+            }
+            idPositions.put(schedule.getId(), all.size());
+            all.add(schedule);
+            addToIndex(categories, schedule.getCategory(), schedule);
+            addToIndex(difficulties, schedule.getDifficulty(), schedule);
+            addToIndex(targetAreas, schedule.getTargetArea(), schedule);
+        }
+        this.schedules = Collections.unmodifiableList(all);
+        this.byId = ids;
+        this.positions = idPositions;
+        this.byCategory = freezeIndex(categories);
+        this.byDifficulty = freezeIndex(difficulties);
+        this.byTargetArea = freezeIndex(targetAreas);
+        if (searchIndex == null) {
+            WorkoutSearchIndex.Builder builder = new WorkoutSearchIndex.Builder();
+            for (WorkoutSchedule schedule : all) {
+                builder.add(schedule);
+            }
+            searchIndex = builder.build();
+        } else if (searchIndex.size() != all.size()) {
+            throw new IllegalArgumentException("Search index has " + searchIndex.size() + " schedules, catalog has " + all.size());
+        }
+        this.searchIndex = searchIndex;
+        if (facets == null) {
+            WorkoutFacets.Builder builder = new WorkoutFacets.Builder();
+            for (WorkoutSchedule schedule : all) {
+                builder.add(schedule);
+            }
+            facets = builder.build();
+        } else if (facets.size() != all.size()) {
+            throw new IllegalArgumentException("Facets have " + facets.size() + " schedules, catalog has " + all.size());
+        }
+        this.facets = facets;
+    }
+
+    /**
+     * Get the content version of the catalog data
+     * @return The version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Get every schedule
+     * @return An unmodifiable list in display order
+     */
+    public List<WorkoutSchedule> getAll() {
+        return schedules;
+    }
+
+    /**
+     * Find a schedule summary by its id, without its exercises
+     * @param id The schedule id (may be null)
+     * @return The schedule, or null if there is none with that id
+     */
+    public WorkoutSchedule getById(String id) {
+        return id != null ? byId.get(id) : null;
+    }
+
+    /**
+     * Find where a schedule is in the display order
+     * @param id The schedule id (may be null)
+     * @return The position, or -1 if there is no schedule with that id
+     */
+    public int getPosition(String id) {
+        Integer position = id != null ? positions.get(id) : null;
+        return position != null ? position : -1;
+    }
+
+    /**
+     * Get a schedule with its exercises, reading them the first time the schedule is opened
+     * @param id The schedule id (may be null)
+     * @return The full schedule, or null if there is none with that id
+     * @throws IOException if the exercises couldn't be read
+     */
+    public WorkoutSchedule openSchedule(String id) throws IOException {
+        WorkoutSchedule summary = getById(id);
+        if (summary == null) {
+            return null;
+        }
+        WorkoutSchedule schedule = detailed.get(id);
+        if (schedule == null) {
+            // Two screens opening the same schedule at once may both read it, the first one stored wins
+            WorkoutSchedule loaded = detailsLoader.loadDetails(summary);
+            if (loaded == null || !id.equals(loaded.getId())) {
+                throw new IOException("Catalog has no details for workout " + id);
+            }
+            loaded.freeze();
+            WorkoutSchedule previous = detailed.putIfAbsent(id, loaded);
+            schedule = previous != null ? previous : loaded;
+        }
+        return schedule;
+    }
+
+    /**
+     * Find the schedules matching what the user typed
+     * Each word matches the start of a word in the name, description, category, purpose, target area,
+     * equipment or exercise names, and every word has to match
+     * @param query The search text (may be null)
+     * @return The matching schedules, best first; every schedule in display order for an empty query
+     */
+    public List<WorkoutSchedule> search(String query) {
+        return searchIndex.search(query);
+    }
+
+    /**
+     * Find the schedules matching what the user typed that also pass the picked filters
+     * @param query The search text (may be null)
+     * @param selection The picked filter values (may be null)
+     * @return The matching schedules, best first; in display order for an empty query
+     */
+    public List<WorkoutSchedule> search(String query, WorkoutFacets.Selection selection) {
+        if (selection == null || selection.isEmpty()) {
+            return search(query);
+        }
+        long[] passing = facets.filter(selection);
+        int[] found = searchIndex.searchPositions(query);
+        List<WorkoutSchedule> results = new ArrayList<>(Math.min(found.length, WorkoutFacets.count(passing)));
+        for (int position : found) {
+            if (WorkoutFacets.contains(passing, position)) {
+                results.add(schedules.get(position));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get the filters the library offers
+     * @return The facets, over the schedules in display order
+     */
+    public WorkoutFacets getFacets() {
+        return facets;
+    }
+
+    /**
+     * Get the schedules of a category, ignoring case
+     * @param category The category, e.g. "Cardio"
+     * @return An unmodifiable list, empty if no schedule has that category
+     */
+    public List<WorkoutSchedule> getByCategory(String category) {
+        return lookup(byCategory, category);
+    }
+
+    /**
+     * Get the schedules of a difficulty, ignoring case
+     * @param difficulty The difficulty, e.g. "Beginner"
+     * @return An unmodifiable list, empty if no schedule has that difficulty
+     */
+    public List<WorkoutSchedule> getByDifficulty(String difficulty) {
+        return lookup(byDifficulty, difficulty);
+    }
+
+    /**
+     * Get the schedules for a target area, ignoring case
+     * @param targetArea The target area, e.g. "Full Body"
+     * @return An unmodifiable list, empty if no schedule has that target area
+     */
+    public List<WorkoutSchedule> getByTargetArea(String targetArea) {
+        return lookup(byTargetArea, targetArea);
+    }
+
+    /**
+     * Get every category in the catalog, in the order they first appear (lower case)
+     * @return An unmodifiable set
+     */
+    public Set<String> getCategories() {
+        return byCategory.keySet();
+    }
+
+    /**
+     * Get every difficulty in the catalog, in the order they first appear (lower case)
+     * @return An unmodifiable set
+     */
+    public Set<String> getDifficulties() {
+        return byDifficulty.keySet();
+    }
+
+    /**
+     * Get every target area in the catalog, in the order they first appear (lower case)
+     * @return An unmodifiable set
+     */
+    public Set<String> getTargetAreas() {
+        return byTargetArea.keySet();
+    }
+
+    /**
+     * Get how many schedules the catalog has
+     * @return The number of schedules
+     */
+    public int size() {
+        return schedules.size();
+    }
+
+    private static void addToIndex(Map<String, List<WorkoutSchedule>> index, String value, WorkoutSchedule schedule) {
+        if (value == null) {
+            return;
+        }
+        String key = value.toLowerCase(Locale.ROOT);
+        List<WorkoutSchedule> list = index.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            index.put(key, list);
+        }
+        list.add(schedule);
+    }
+
+    private static Map<String, List<WorkoutSchedule>> freezeIndex(Map<String, List<WorkoutSchedule>> index) {
+        for (Map.Entry<String, List<WorkoutSchedule>> entry : index.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
+    private static List<WorkoutSchedule> lookup(Map<String, List<WorkoutSchedule>> index, String value) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        List<WorkoutSchedule> list = index.get(value.toLowerCase(Locale.ROOT));
+        return list != null ? list : Collections.<WorkoutSchedule>emptyList();
+    }
+}
@@ -0,0 +1,250 @@
+package com.s23010285.desk.model;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Exercise record model for DeskBreak App
+ * Records what really happened to one exercise of a workout session
+ * (how long the user did it, how often they paused, whether they skipped it)
+ * Each WorkoutSession has one of these per exercise in the workout
+ */
+@Entity(tableName = "workout_exercise_records")
+public class WorkoutExerciseRecord {
+
+    // id is a unique identifier for this exercise record
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+    // sessionId links this record to the workout session it belongs to
+    private long sessionId;
+    // position is where this exercise comes in the workout (0 for the first one)
+    private int position;
+    // exerciseName is the name of the exercise
+    private String exerciseName;
+    // plannedSeconds is how long the workout said this exercise should last
+    private int plannedSeconds;
+    // activeMs is how long the user actually spent on the exercise, not counting pauses
+    private long activeMs;
+    // pauseCount is how many times the user paused during this exercise
+    private int pauseCount;
+    // pausedMs is how long those pauses lasted in total
+    private long pausedMs;
+    // steps is how many steps were counted during this exercise
+    private int steps;
+    // reps is how many repetitions the accelerometer counted during this exercise
+    private int reps;
+    // completed is true if the exercise countdown ran all the way to zero
+    private boolean completed;
+    // skipped is true if the user moved on before the countdown ended
+    private boolean skipped;
+
+    /**
+     * Default constructor - creates an empty exercise record
+     */
+    public WorkoutExerciseRecord() {
+    }
+
+    /**
+     * Constructor with the exercise's basic information
+     * @param position Where this exercise comes in the workout
+     * @param exerciseName The name of the exercise
+     * @param plannedSeconds How long the exercise should last
+     */
+    public WorkoutExerciseRecord(int position, String exerciseName, int plannedSeconds) {
+        this.position = position;
+        this.exerciseName = exerciseName;
+        this.plannedSeconds = plannedSeconds;
+    }
+
+    /**
+     * Get the record's unique identifier
+     * @return The record's ID
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Set the record's unique identifier
+     * @param id The new ID
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Get the workout session this record belongs to
+     * @return The session's ID
+     */
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Set the workout session this record belongs to
+     * @param sessionId The session's ID
+     */
+    public void setSessionId(long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * Get where this exercise comes in the workout
+     * @return The position, 0 for the first exercise
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Set where this exercise comes in the workout
+     * @param position The position, 0 for the first exercise
+     */
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    /**
+     * Get the name of the exercise
+     * @return The exercise name
+     */
+    public String getExerciseName() {
+        return exerciseName;
+    }
+
+    /**
+     * Set the name of the exercise
+     * @param exerciseName The exercise name
+     */
+    public void setExerciseName(String exerciseName) {
+        this.exerciseName = exerciseName;
+    }
+
+    /**
+     * Get how long the exercise should have lasted
+     * @return The planned length in seconds
+     */
+    public int getPlannedSeconds() {
+        return plannedSeconds;
+    }
+
+    /**
+     * Set how long the exercise should have lasted
+     * @param plannedSeconds The planned length in seconds
+     */
+    public void setPlannedSeconds(int plannedSeconds) {
+        this.plannedSeconds = plannedSeconds;
+    }
+
+    /**
+     * Get how long the user actually spent on the exercise
+     * @return The time in milliseconds, not counting pauses
+     */
+    public long getActiveMs() {
+        return activeMs;
+    }
+
+    /**
+     * Set how long the user actually spent on the exercise
+     * @param activeMs The time in milliseconds, not counting pauses
+     */
+    public void setActiveMs(long activeMs) {
+        this.activeMs = activeMs;
+    }
+
+    /**
+     * Get how many times the user paused during the exercise
+     * @return The number of pauses
+     */
+    public int getPauseCount() {
+        return pauseCount;
+    }
+
+    /**
+     * Set how many times the user paused during the exercise
+     * @param pauseCount The number of pauses
+     */
+    public void setPauseCount(int pauseCount) {
+        this.pauseCount = pauseCount;
+    }
+
+    /**
+     * Get how long the user was paused during the exercise
+     * @return The total pause time in milliseconds
+     */
+    public long getPausedMs() {
+        return pausedMs;
+    }
+
+    /**
+     * Set how long the user was paused during the exercise
+     * @param pausedMs The total pause time in milliseconds
+     */
+    public void setPausedMs(long pausedMs) {
+        this.pausedMs = pausedMs;
+    }
+
+    /**
+     * Get how many steps were counted during the exercise
+     * @return The number of steps
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Set how many steps were counted during the exercise
+     * @param steps The number of steps
+     */
+    public void setSteps(int steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Get how many repetitions were counted during the exercise
+     * @return The number of reps
+     */
+    public int getReps() {
+        return reps;
+    }
+
+    /**
+     * Set how many repetitions were counted during the exercise
+     * @param reps The number of reps
+     */
+    public void setReps(int reps) {
+        this.reps = reps;
+    }
+
+    /**
+     * Check whether the exercise countdown ran all the way to zero
+     * @return true if the exercise was completed
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Set whether the exercise countdown ran all the way to zero
+     * @param completed true if the exercise was completed
+     */
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    /**
+     * Check whether the user moved on before the countdown ended
+     * @return true if the exercise was skipped
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Set whether the user moved on before the countdown ended
+     * @param skipped true if the exercise was skipped
+     */
+    public void setSkipped(boolean skipped) {
+        this.skipped = skipped;
+    }
+}
@@ -0,0 +1,367 @@
+package com.s23010285.desk.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The filters the workout library offers, each value worked out once as a bitset over catalog positions
+ * Bit i of a value is set when the schedule at catalog position i has that value, so a filter
+ * combination is a few OR and AND operations on 64 schedules at a time instead of a pass over the list.
+ * Values of the same facet are OR-ed ("Cardio or Strength"), facets are AND-ed ("Cardio and Beginner")
+ */
+public final class WorkoutFacets {
+
+    /**
+     * What a filter looks at
+     */
+    public enum Facet {
+        CATEGORY,
+        DIFFICULTY,
+        TARGET_AREA,
+        DURATION,
+        EQUIPMENT
+    }
+
+    // Upper limits in minutes of the duration buckets, anything longer goes in one last bucket
+    private static final int[] DURATION_LIMITS = {10, 20, 30};
+
+    // size is how many schedules the bitsets cover
+    private final int size;
+    // values keeps each facet's values in the order they first appear, keyed by lower-case value
+    // (duration buckets are keyed by their number and kept shortest first)
+    private final Map<Facet, Map<String, Value>> values;
+    // all has a bit set for every schedule
+    private final long[] all;
+
+    private WorkoutFacets(int size, Map<Facet, Map<String, Value>> values) {
+        this.size = size;
+        this.values = values;
+        all = new long[words(size)];
+        Arrays.fill(all, -1L);
+        if (size % 64 != 0) {
+            // Clear the bits past the last schedule
+            all[all.length - 1] = (1L << size) - 1;
+        }
+    }
+
+    /**
+     * Get the values of a facet that at least one schedule has
+     * @param facet The facet
+     * @return An unmodifiable list in display order
+     */
+    public List<Value> getValues(Facet facet) {
+        return Collections.unmodifiableList(new ArrayList<>(values.get(facet).values()));
+    }
+
+    /**
+     * Work out which schedules pass a filter combination
+     * @param selection The selected values (may be null)
+     * @return A new bitset over catalog positions, every schedule when nothing is selected
+     */
+    public long[] filter(Selection selection) {
+        long[] result = all.clone();
+        if (selection == null) {
+            return result;
+        }
+        long[] union = new long[all.length];
+        for (Map.Entry<Facet, Set<String>> entry : selection.selected.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            Arrays.fill(union, 0L);
+            Map<String, Value> facetValues = values.get(entry.getKey());
+            for (String key : entry.getValue()) {
+                Value value = facetValues.get(key);
+                if (value == null) {
+                    // No schedule has it, so it adds nothing to the union
+                    continue;
+                }
+                for (int w = 0; w < union.length; w++) {
+                    union[w] |= value.bits[w];
+                }
+            }
+            for (int w = 0; w < result.length; w++) {
+                result[w] &= union[w];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check whether a schedule is in a bitset
+     * @param bits A bitset from filter
+     * @param position The schedule's catalog position
+     * @return true if its bit is set
+     */
+    public static boolean contains(long[] bits, int position) {
+        return (bits[position >>> 6] & (1L << position)) != 0;
+    }
+
+    /**
+     * Count the schedules in a bitset
+     * @param bits A bitset from filter
+     * @return How many bits are set
+     */
+    public static int count(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Get how many schedules the bitsets cover
+     * @return The number of schedules
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the duration bucket a schedule falls in
+     * @param minutes The schedule's duration
+     * @return 0 for the shortest bucket up to getDurationLimits().length for the longest
+     */
+    public static int getDurationBucket(int minutes) {
+        int bucket = 0;
+        while (bucket < DURATION_LIMITS.length && minutes > DURATION_LIMITS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * Get the upper limits of the duration buckets
+     * @return A copy of the limits in minutes, shortest first; the last bucket has no limit
+     */
+    public static int[] getDurationLimits() {
+        return DURATION_LIMITS.clone();
+    }
+
+    private static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * One value of a facet and the schedules that have it
+     */
+    public static final class Value {
+
+        // facet is what the value belongs to, key is how a Selection refers to it
+        private final Facet facet;
+        private final String key;
+        // label is the value as first written in the catalog, e.g. "Full Body"
+        private final String label;
+        // bits has bit i set when the schedule at catalog position i has this value
+        private final long[] bits;
+        private int count = 0;
+
+        private Value(Facet facet, String key, String label, int size) {
+            this.facet = facet;
+            this.key = key;
+            this.label = label;
+            this.bits = new long[words(size)];
+        }
+
+        /**
+         * Get the facet the value belongs to
+         * @return The facet
+         */
+        public Facet getFacet() {
+            return facet;
+        }
+
+        /**
+         * Get the key to select this value with
+         * @return The lower-case value, or the bucket number for durations
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Get the value as written in the catalog
+         * @return The label, or the bucket number for durations
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Get how many schedules have this value
+         * @return The number of schedules
+         */
+        public int getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * The values the user picked, by facet
+     */
+    public static final class Selection {
+
+        // selected keeps the picked keys of each facet in the order they were picked
+        private final Map<Facet, Set<String>> selected = new EnumMap<>(Facet.class);
+
+        /**
+         * Pick or unpick a value
+         * @param value The value
+         * @param picked true to pick it, false to unpick it
+         */
+        public void set(Value value, boolean picked) {
+            set(value.getFacet(), value.getKey(), picked);
+        }
+
+        /**
+         * Pick or unpick a value by its key
+         * @param facet The facet
+         * @param key The value's key
+         * @param picked true to pick it, false to unpick it
+         */
+        public void set(Facet facet, String key, boolean picked) {
+            Set<String> keys = selected.get(facet);
+            if (picked) {
+                if (keys == null) {
+                    keys = new LinkedHashSet<>();
+                    selected.put(facet, keys);
+                }
+                keys.add(key);
+            } else if (keys != null) {
+                keys.remove(key);
+            }
+        }
+
+        /**
+         * Check whether a value is picked
+         * @param value The value
+         * @return true if it is picked
+         */
+        public boolean contains(Value value) {
+            Set<String> keys = selected.get(value.getFacet());
+            return keys != null && keys.contains(value.getKey());
+        }
+
+        /**
+         * Get the keys picked for a facet
+         * @param facet The facet
+         * @return An unmodifiable set, empty if nothing is picked
+         */
+        public Set<String> getKeys(Facet facet) {
+            Set<String> keys = selected.get(facet);
+            return keys != null ? Collections.unmodifiableSet(keys) : Collections.<String>emptySet();
+        }
+
+        /**
+         * Check whether nothing is picked
+         * @return true if every facet is unfiltered
+         */
+        public boolean isEmpty() {
+            for (Set<String> keys : selected.values()) {
+                if (!keys.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Unpick everything
+         */
+        public void clear() {
+            selected.clear();
+        }
+    }
+
+    /**
+     * Collects schedules in catalog order and builds the bitsets
+     */
+    public static final class Builder {
+
+        private final List<WorkoutSchedule> schedules = new ArrayList<>();
+        private final List<Collection<String>> equipment = new ArrayList<>();
+
+        /**
+         * Add a schedule, using its own equipment list
+         * @param schedule The schedule
+         * @return This builder
+         */
+        public Builder add(WorkoutSchedule schedule) {
+            return add(schedule, schedule.getEquipment());
+        }
+
+        /**
+         * Add a schedule whose equipment isn't loaded, with its equipment given separately
+         * @param schedule The schedule
+         * @param equipment The equipment it needs (may be null)
+         * @return This builder
+         */
+        public Builder add(WorkoutSchedule schedule, Collection<String> equipment) {
+            schedules.add(schedule);
+            this.equipment.add(equipment != null ? equipment : Collections.<String>emptyList());
+            return this;
+        }
+
+        /**
+         * Build the bitsets
+         * @return The facets over every schedule added, in the order they were added
+         */
+        public WorkoutFacets build() {
+            int size = schedules.size();
+            Map<Facet, Map<String, Value>> values = new EnumMap<>(Facet.class);
+            for (Facet facet : Facet.values()) {
+                values.put(facet, new LinkedHashMap<>());
+            }
+            // Create the duration buckets up front so they keep their order
+            Map<String, Value> durations = values.get(Facet.DURATION);
+            for (int bucket = 0; bucket <= DURATION_LIMITS.length; bucket++) {
+                String key = String.valueOf(bucket);
+                durations.put(key, new Value(Facet.DURATION, key, key, size));
+            }
+            for (int position = 0; position < size; position++) {
+                WorkoutSchedule schedule = schedules.get(position);
+                mark(values, Facet.CATEGORY, schedule.getCategory(), position, size);
+                mark(values, Facet.DIFFICULTY, schedule.getDifficulty(), position, size);
+                mark(values, Facet.TARGET_AREA, schedule.getTargetArea(), position, size);
+                mark(values, Facet.DURATION, String.valueOf(getDurationBucket(schedule.getDurationMinutes())),
+                        position, size);
+                for (String item : equipment.get(position)) {
+                    mark(values, Facet.EQUIPMENT, item, position, size);
+                }
+            }
+            // Drop the duration buckets no schedule falls in
+            durations.values().removeIf(value -> value.count == 0);
+            return new WorkoutFacets(size, values);
+        }
+
+        private static void mark(Map<Facet, Map<String, Value>> values, Facet facet, String text,
+                                 int position, int size) {
+            if (text == null || text.trim().isEmpty()) {
+                return;
+            }
+            String label = text.trim();
+            String key = label.toLowerCase(Locale.ROOT);
+            Map<String, Value> facetValues = values.get(facet);
+            Value value = facetValues.get(key);
+            if (value == null) {
+                value = new Value(facet, key, label, size);
+                facetValues.put(key, value);
+            }
+            long bit = 1L << position;
+            if ((value.bits[position >>> 6] & bit) == 0) {
+                value.bits[position >>> 6] |= bit;
+                value.count++;
+            }
+        }
+    }
+}
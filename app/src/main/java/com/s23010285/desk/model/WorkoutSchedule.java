@@ -1,6 +1,7 @@
 package com.s23010285.desk.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -29,6 +30,8 @@ public class WorkoutSchedule {
     private String difficulty;
     // targetArea specifies which part of the body the workout focuses on
     private String targetArea;
+    // thumbnailUrl is the picture shown on the workout's library card (null to use its category's)
+    private String thumbnailUrl;
     
     // These variables store the workout's content and structure
     // exercises is the list of individual exercises in this workout
@@ -37,6 +40,8 @@ public class WorkoutSchedule {
     private List<String> equipment;
     // instructions provides general guidance for the entire workout
     private String instructions;
+    // frozen is true once the schedule is shared through WorkoutCatalog, after that it can't be changed
+    private boolean frozen = false;
     
     /**
      * Default constructor - creates a new workout schedule with empty lists
@@ -93,6 +98,7 @@ public class WorkoutSchedule {
      * @param id The new ID to assign to this workout schedule
      */
     public void setId(String id) {
+        checkNotFrozen();
         this.id = id;
     }
     
@@ -109,6 +115,7 @@ public class WorkoutSchedule {
      * @param name The new name to assign to this workout
      */
     public void setName(String name) {
+        checkNotFrozen();
         this.name = name;
     }
     
@@ -125,6 +132,7 @@ public class WorkoutSchedule {
      * @param description The new description to assign to this workout
      */
     public void setDescription(String description) {
+        checkNotFrozen();
         this.description = description;
     }
     
@@ -141,6 +149,7 @@ public class WorkoutSchedule {
      * @param category The new category to assign to this workout
      */
     public void setCategory(String category) {
+        checkNotFrozen();
         this.category = category;
     }
     
@@ -157,6 +166,7 @@ public class WorkoutSchedule {
      * @param purpose The new purpose to assign to this workout
      */
     public void setPurpose(String purpose) {
+        checkNotFrozen();
         this.purpose = purpose;
     }
     
@@ -173,6 +183,7 @@ public class WorkoutSchedule {
      * @param schedule The new schedule to assign to this workout
      */
     public void setSchedule(String schedule) {
+        checkNotFrozen();
         this.schedule = schedule;
     }
     
@@ -189,6 +200,7 @@ public class WorkoutSchedule {
      * @param durationMinutes The new duration in minutes
      */
     public void setDurationMinutes(int durationMinutes) {
+        checkNotFrozen();
         this.durationMinutes = durationMinutes;
     }
     
@@ -205,6 +217,7 @@ public class WorkoutSchedule {
      * @param difficulty The new difficulty level
      */
     public void setDifficulty(String difficulty) {
+        checkNotFrozen();
         this.difficulty = difficulty;
     }
     
@@ -221,9 +234,27 @@ public class WorkoutSchedule {
      * @param targetArea The new target area
      */
     public void setTargetArea(String targetArea) {
+        checkNotFrozen();
         this.targetArea = targetArea;
     }
     
+    /**
+     * Get the picture shown on the workout's library card
+     * @return The image url, or null if the workout has none of its own
+     */
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+    
+    /**
+     * Set the picture shown on the workout's library card
+     * @param thumbnailUrl The new image url
+     */
+    public void setThumbnailUrl(String thumbnailUrl) {
+        checkNotFrozen();
+        this.thumbnailUrl = thumbnailUrl;
+    }
+    
     /**
      * Get the list of exercises in this workout
      * @return The list of workout exercises
@@ -237,6 +268,7 @@ public class WorkoutSchedule {
      * @param exercises The new list of workout exercises
      */
     public void setExercises(List<WorkoutExercise> exercises) {
+        checkNotFrozen();
         this.exercises = exercises;
     }
     
@@ -253,6 +285,7 @@ public class WorkoutSchedule {
      * @param equipment The new list of required equipment
      */
     public void setEquipment(List<String> equipment) {
+        checkNotFrozen();
         this.equipment = equipment;
     }
     
@@ -269,6 +302,7 @@ public class WorkoutSchedule {
      * @param instructions The new workout instructions
      */
     public void setInstructions(String instructions) {
+        checkNotFrozen();
         this.instructions = instructions;
     }
     
@@ -278,6 +312,7 @@ public class WorkoutSchedule {
      * @param exercise The exercise to add to the workout
      */
     public void addExercise(WorkoutExercise exercise) {
+        checkNotFrozen();
         if (exercises == null) {
             exercises = new ArrayList<>();
         }
@@ -290,6 +325,7 @@ public class WorkoutSchedule {
      * @param equipmentItem The equipment item to add to the workout
      */
     public void addEquipment(String equipmentItem) {
+        checkNotFrozen();
         if (equipment == null) {
             equipment = new ArrayList<>();
         }
@@ -297,111 +333,38 @@ public class WorkoutSchedule {
     }
     
     /**
-     * Get all available workout schedules
-     * This method returns a list of predefined workout programs
-     * @return A list of all available workout schedules
+     * Make this schedule and its exercises read-only, so one instance can be shared by every screen
+     * Setters throw afterwards and the lists become unmodifiable
      */
-    public static List<WorkoutSchedule> getAllWorkoutSchedules() {
-        // Create a list to store all available workout schedules
-        List<WorkoutSchedule> schedules = new ArrayList<>();
-        
-        // Morning Energy Boost - a quick morning workout to start the day
-        WorkoutSchedule morningBoost = new WorkoutSchedule(
-            "morning_boost",
-            "Morning Energy Boost",
-            "Quick morning workout to energize your day",
-            "Cardio",
-            "Increase energy and metabolism",
-            "Daily",
-            15,
-            "Beginner",
-            "Full Body"
-        );
-        // Add exercises to the morning boost workout
-        morningBoost.addExercise(new WorkoutExercise("Light Stretching", 3, "Gentle stretching to wake up your muscles"));
-        morningBoost.addExercise(new WorkoutExercise("Marching in Place", 5, "March in place to get your heart rate up"));
-        morningBoost.addExercise(new WorkoutExercise("Arm Circles", 3, "Circular arm movements to loosen shoulders"));
-        morningBoost.addExercise(new WorkoutExercise("Deep Breathing", 4, "Deep breathing exercises for mental clarity"));
-        schedules.add(morningBoost);
-        
-        // Desk Stretching - exercises you can do while sitting at your desk
-        WorkoutSchedule deskStretching = new WorkoutSchedule(
-            "desk_stretching",
-            "Desk Stretching",
-            "Stretching exercises you can do at your desk",
-            "Flexibility",
-            "Relieve tension and improve posture",
-            "Every 2 hours",
-            10,
-            "Beginner",
-            "Upper Body"
-        );
-        // Add exercises to the desk stretching workout
-        deskStretching.addExercise(new WorkoutExercise("Neck Stretches", 2, "Gentle neck stretches to relieve tension"));
-        deskStretching.addExercise(new WorkoutExercise("Shoulder Rolls", 2, "Circular shoulder movements"));
-        deskStretching.addExercise(new WorkoutExercise("Wrist Stretches", 2, "Wrist and hand stretches"));
-        deskStretching.addExercise(new WorkoutExercise("Back Twists", 2, "Gentle back twisting movements"));
-        deskStretching.addExercise(new WorkoutExercise("Deep Breathing", 2, "Breathing exercises for relaxation"));
-        schedules.add(deskStretching);
-        
-        // Quick Cardio - a short cardio workout for energy
-        WorkoutSchedule quickCardio = new WorkoutSchedule(
-            "quick_cardio",
-            "Quick Cardio",
-            "Short cardio workout for energy boost",
-            "Cardio",
-            "Increase heart rate and energy",
-            "2-3 times per day",
-            12,
-            "Beginner",
-            "Cardiovascular"
-        );
-        // Add exercises to the quick cardio workout
-        quickCardio.addExercise(new WorkoutExercise("Walking in Place", 4, "Walk in place to get moving"));
-        quickCardio.addExercise(new WorkoutExercise("Jumping Jacks", 3, "Jumping jacks for cardio"));
-        quickCardio.addExercise(new WorkoutExercise("Step Ups", 3, "Step up and down on a chair"));
-        quickCardio.addExercise(new WorkoutExercise("Cool Down", 2, "Gentle stretching to cool down"));
-        schedules.add(quickCardio);
-        
-        // Strength Training - basic strength exercises
-        WorkoutSchedule strengthTraining = new WorkoutSchedule(
-            "strength_training",
-            "Strength Training",
-            "Basic strength exercises for muscle tone",
-            "Strength",
-            "Build muscle strength and tone",
-            "3 times per week",
-            20,
-            "Intermediate",
-            "Full Body"
-        );
-        // Add exercises to the strength training workout
-        strengthTraining.addExercise(new WorkoutExercise("Push-ups", 5, "Standard push-ups for upper body strength"));
-        strengthTraining.addExercise(new WorkoutExercise("Squats", 5, "Body weight squats for leg strength"));
-        strengthTraining.addExercise(new WorkoutExercise("Planks", 5, "Hold plank position for core strength"));
-        strengthTraining.addExercise(new WorkoutExercise("Lunges", 5, "Alternating lunges for leg strength"));
-        schedules.add(strengthTraining);
-        
-        // Meditation Break - mental wellness exercises
-        WorkoutSchedule meditationBreak = new WorkoutSchedule(
-            "meditation_break",
-            "Meditation Break",
-            "Mental wellness and relaxation exercises",
-            "Meditation",
-            "Reduce stress and improve focus",
-            "Daily",
-            10,
-            "Beginner",
-            "Mental Wellness"
-        );
-        // Add exercises to the meditation break workout
-        meditationBreak.addExercise(new WorkoutExercise("Breathing Exercise", 4, "Deep breathing for relaxation"));
-        meditationBreak.addExercise(new WorkoutExercise("Mindfulness", 3, "Present moment awareness"));
-        meditationBreak.addExercise(new WorkoutExercise("Progressive Relaxation", 3, "Tense and relax muscle groups"));
-        schedules.add(meditationBreak);
-        
-        // Return all the workout schedules
-        return schedules;
+    void freeze() {
+        if (frozen) {
+            return;
+        }
+        // Copy the lists so whoever built them can't change them behind the catalog's back
+        List<WorkoutExercise> exerciseCopy = exercises != null ? new ArrayList<>(exercises) : new ArrayList<>();
+        for (WorkoutExercise exercise : exerciseCopy) {
+            exercise.frozen = true;
+        }
+        exercises = Collections.unmodifiableList(exerciseCopy);
+        equipment = Collections.unmodifiableList(equipment != null ? new ArrayList<>(equipment) : new ArrayList<>());
+        frozen = true;
+    }
+
+    /**
+     * Check whether this schedule is read-only
+     * @return true if it belongs to the shared catalog
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Stop changes to a frozen schedule
+     */
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Workout schedule " + id + " is shared and can't be changed");
+        }
     }
     
     /**
@@ -416,6 +379,8 @@ public class WorkoutSchedule {
         private int durationMinutes;
         // description explains how to do the exercise
         private String description;
+        // frozen is true once the exercise belongs to a frozen schedule
+        private boolean frozen = false;
         
         /**
          * Constructor for the WorkoutExercise class
@@ -430,6 +395,15 @@ public class WorkoutSchedule {
             this.description = description;
         }
         
+        /**
+         * Stop changes to an exercise of a frozen schedule
+         */
+        private void checkExerciseNotFrozen() {
+            if (frozen) {
+                throw new UnsupportedOperationException("Exercise " + name + " is shared and can't be changed");
+            }
+        }
+        
         // Getters and Setters for the WorkoutExercise class
         
         /**
@@ -445,6 +419,7 @@ public class WorkoutSchedule {
          * @param name The new name to assign to this exercise
          */
         public void setName(String name) {
+            checkExerciseNotFrozen();
             this.name = name;
         }
         
@@ -456,11 +431,20 @@ public class WorkoutSchedule {
             return durationMinutes;
         }
         
+        /**
+         * Get how long the exercise should be done, in seconds
+         * @return The exercise duration in seconds
+         */
+        public int getDurationSeconds() {
+            return durationMinutes * 60;
+        }
+        
         /**
          * Set how long the exercise should be done
          * @param durationMinutes The new duration in minutes
          */
         public void setDurationMinutes(int durationMinutes) {
+            checkExerciseNotFrozen();
             this.durationMinutes = durationMinutes;
         }
         
@@ -477,6 +461,7 @@ public class WorkoutSchedule {
          * @param description The new description to assign to this exercise
          */
         public void setDescription(String description) {
+            checkExerciseNotFrozen();
             this.description = description;
         }
     }
@@ -0,0 +1,330 @@
+package com.s23010285.desk.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Full-text search over workout schedules, built once so every keystroke is a few array lookups
+ * Each word of a schedule's name, description, category, purpose, target area, equipment and exercise
+ * names goes into an inverted index: a sorted list of words, each with the schedules that contain it.
+ * Every query word matches as a prefix ("squ" finds "squats"), and a schedule must match all query words.
+ * Results are ranked by where the words were found (the name counts most, the description least),
+ * with a small bonus for whole-word matches, and keep catalog order when they rank the same
+ */
+public final class WorkoutSearchIndex {
+
+    // How much a match in each field counts
+    public static final int WEIGHT_NAME = 8;
+    public static final int WEIGHT_CATEGORY = 4;
+    public static final int WEIGHT_TARGET_AREA = 4;
+    public static final int WEIGHT_EXERCISE = 3;
+    public static final int WEIGHT_PURPOSE = 2;
+    public static final int WEIGHT_EQUIPMENT = 2;
+    public static final int WEIGHT_DESCRIPTION = 1;
+    // Extra weight when a query word is a whole word of the schedule, not just the start of one
+    private static final int EXACT_BONUS = 1;
+
+    // schedules holds the indexed schedules, a schedule's position is its document number
+    private final WorkoutSchedule[] schedules;
+    // terms is every indexed word in sorted order, so a prefix is a range found by binary search
+    private final String[] terms;
+    // The schedules containing terms[t] are postingDocs[postingStart[t] .. postingStart[t + 1]),
+    // in document order, with the weight of the best field the word appeared in
+    private final int[] postingStart;
+    private final int[] postingDocs;
+    private final byte[] postingWeights;
+
+    // Scratch arrays reused by every search, so a keystroke allocates almost nothing
+    // A document's entries only count if its stamp is the current one, which saves clearing them
+    private final int[] queryStamp;
+    private final int[] wordStamp;
+    private final int[] matchedWords;
+    private final int[] score;
+    private final int[] bestWeight;
+    private int stamp = 0;
+
+    private WorkoutSearchIndex(WorkoutSchedule[] schedules, Map<String, Postings> index) {
+        this.schedules = schedules;
+        terms = index.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        postingStart = new int[terms.length + 1];
+        int total = 0;
+        for (int t = 0; t < terms.length; t++) {
+            postingStart[t] = total;
+            total += index.get(terms[t]).size;
+        }
+        postingStart[terms.length] = total;
+        postingDocs = new int[total];
+        postingWeights = new byte[total];
+        for (int t = 0; t < terms.length; t++) {
+            Postings postings = index.get(terms[t]);
+            System.arraycopy(postings.docs, 0, postingDocs, postingStart[t], postings.size);
+            System.arraycopy(postings.weights, 0, postingWeights, postingStart[t], postings.size);
+        }
+
+        int count = schedules.length;
+        queryStamp = new int[count];
+        wordStamp = new int[count];
+        matchedWords = new int[count];
+        score = new int[count];
+        bestWeight = new int[count];
+    }
+
+    /**
+     * Find the schedules matching a query
+     * @param query What the user typed (may be null)
+     * @return The matching schedules, best first; every schedule in order for an empty query
+     */
+    public List<WorkoutSchedule> search(String query) {
+        int[] positions = searchPositions(query);
+        List<WorkoutSchedule> results = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            results.add(schedules[position]);
+        }
+        return results;
+    }
+
+    /**
+     * Find the positions of the schedules matching a query
+     * @param query What the user typed (may be null)
+     * @return Positions in the indexed list, best first; every position in order for an empty query
+     */
+    public synchronized int[] searchPositions(String query) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            int[] all = new int[schedules.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int queryId = nextStamp();
+        int last = words.size() - 1;
+        // Packs each result as score in the high bits and position in the low bits, so one sort ranks them
+        long[] ranked = new long[16];
+        int found = 0;
+        for (int w = 0; w <= last; w++) {
+            String word = words.get(w);
+            int wordId = nextStamp();
+            int from = lowerBound(word);
+            for (int t = from; t < terms.length && terms[t].startsWith(word); t++) {
+                int bonus = terms[t].length() == word.length() ? EXACT_BONUS : 0;
+                for (int p = postingStart[t]; p < postingStart[t + 1]; p++) {
+                    int doc = postingDocs[p];
+                    if (queryStamp[doc] != queryId) {
+                        // First time this query meets the document
+                        queryStamp[doc] = queryId;
+                        matchedWords[doc] = 0;
+                        score[doc] = 0;
+                    }
+                    int weight = postingWeights[p] + bonus;
+                    if (wordStamp[doc] != wordId) {
+                        wordStamp[doc] = wordId;
+                        // Only documents that matched every earlier word can still match
+                        if (matchedWords[doc] != w) {
+                            continue;
+                        }
+                        matchedWords[doc] = w + 1;
+                        bestWeight[doc] = weight;
+                        score[doc] += weight;
+                    } else if (matchedWords[doc] == w + 1 && weight > bestWeight[doc]) {
+                        // The word matched this document more than once, keep its best match
+                        score[doc] += weight - bestWeight[doc];
+                        bestWeight[doc] = weight;
+                    }
+                }
+            }
+            if (w == last) {
+                // Collect once the last word is done, so scores are final
+                for (int t = from; t < terms.length && terms[t].startsWith(word); t++) {
+                    for (int p = postingStart[t]; p < postingStart[t + 1]; p++) {
+                        int doc = postingDocs[p];
+                        if (queryStamp[doc] == queryId && matchedWords[doc] == words.size()) {
+                            // Mark it collected so a document found through two words isn't listed twice
+                            matchedWords[doc] = -1;
+                            if (found == ranked.length) {
+                                ranked = Arrays.copyOf(ranked, found * 2);
+                            }
+                            ranked[found++] = ((long) score[doc] << 32) | (Integer.MAX_VALUE - doc);
+                        }
+                    }
+                }
+            }
+        }
+
+        Arrays.sort(ranked, 0, found);
+        int[] positions = new int[found];
+        for (int i = 0; i < found; i++) {
+            positions[i] = Integer.MAX_VALUE - (int) ranked[found - 1 - i];
+        }
+        return positions;
+    }
+
+    /**
+     * Get how many schedules are indexed
+     * @return The number of schedules
+     */
+    public int size() {
+        return schedules.length;
+    }
+
+    /**
+     * Get how many different words are indexed
+     * @return The number of words
+     */
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    /**
+     * Split text into lower-case words, anything that isn't a letter or digit separates words
+     * @param text The text (may be null)
+     * @return The words in order
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> words = new ArrayList<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private int nextStamp() {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            // After two billion stamps start over, clearing the old ones so none look current
+            Arrays.fill(queryStamp, 0);
+            Arrays.fill(wordStamp, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    /**
+     * Find the first term that is not smaller than a word
+     */
+    private int lowerBound(String word) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (terms[middle].compareTo(word) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The documents one word appears in, while the index is being built
+     */
+    private static final class Postings {
+        int[] docs = new int[4];
+        byte[] weights = new byte[4];
+        int size = 0;
+
+        void add(int doc, int weight) {
+            if (size > 0 && docs[size - 1] == doc) {
+                weights[size - 1] = (byte) Math.max(weights[size - 1], weight);
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = doc;
+            weights[size] = (byte) weight;
+            size++;
+        }
+    }
+
+    /**
+     * Collects schedules in order and builds the index
+     */
+    public static final class Builder {
+
+        private final List<WorkoutSchedule> schedules = new ArrayList<>();
+        private final Map<String, Postings> index = new HashMap<>();
+
+        /**
+         * Add a schedule, using its own exercise and equipment lists
+         * @param schedule The schedule
+         * @return This builder
+         */
+        public Builder add(WorkoutSchedule schedule) {
+            List<String> exerciseNames = new ArrayList<>();
+            if (schedule.getExercises() != null) {
+                for (WorkoutSchedule.WorkoutExercise exercise : schedule.getExercises()) {
+                    exerciseNames.add(exercise.getName());
+                }
+            }
+            return add(schedule, exerciseNames, schedule.getEquipment());
+        }
+
+        /**
+         * Add a schedule whose exercises aren't loaded, with their names given separately
+         * @param schedule The schedule
+         * @param exerciseNames The names of its exercises (may be null)
+         * @param equipment The equipment it needs (may be null)
+         * @return This builder
+         */
+        public Builder add(WorkoutSchedule schedule, List<String> exerciseNames, List<String> equipment) {
+            int doc = schedules.size();
+            schedules.add(schedule);
+            addText(doc, schedule.getName(), WEIGHT_NAME);
+            addText(doc, schedule.getCategory(), WEIGHT_CATEGORY);
+            addText(doc, schedule.getTargetArea(), WEIGHT_TARGET_AREA);
+            addText(doc, schedule.getPurpose(), WEIGHT_PURPOSE);
+            addText(doc, schedule.getDescription(), WEIGHT_DESCRIPTION);
+            if (exerciseNames != null) {
+                for (String exerciseName : exerciseNames) {
+                    addText(doc, exerciseName, WEIGHT_EXERCISE);
+                }
+            }
+            if (equipment != null) {
+                for (String item : equipment) {
+                    addText(doc, item, WEIGHT_EQUIPMENT);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Build the index
+         * @return The index over every schedule added, in the order they were added
+         */
+        public WorkoutSearchIndex build() {
+            return new WorkoutSearchIndex(schedules.toArray(new WorkoutSchedule[0]), index);
+        }
+
+        private void addText(int doc, String text, int weight) {
+            for (String word : tokenize(text)) {
+                Postings postings = index.get(word);
+                if (postings == null) {
+                    postings = new Postings();
+                    index.put(word, postings);
+                }
+                postings.add(doc, weight);
+            }
+        }
+    }
+}
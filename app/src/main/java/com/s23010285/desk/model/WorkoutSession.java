@@ -48,6 +48,8 @@ public class WorkoutSession {
     private int progressPercentage;
     // notes allows users to add personal comments about the workout
     private String notes;
+    // route is the GPS route of a cardio workout, packed by RouteCodec (null if there was no GPS)
+    private byte[] route;
     
     /**
      * Default constructor - creates a new workout session with default values
@@ -311,6 +313,22 @@ public class WorkoutSession {
         this.notes = notes;
     }
     
+    /**
+     * Get the GPS route of the workout
+     * @return The route packed by RouteCodec, or null if there was no GPS
+     */
+    public byte[] getRoute() {
+        return route;
+    }
+    
+    /**
+     * Set the GPS route of the workout
+     * @param route The route packed by RouteCodec
+     */
+    public void setRoute(byte[] route) {
+        this.route = route;
+    }
+    
     /**
      * Calculate the actual duration of the workout session
      * This method calculates how long the workout lasted based on start and end times
@@ -0,0 +1,193 @@
+package com.s23010285.desk.service;
+
+import java.util.Locale;
+
+/**
+ * Decides how fast the accelerometer should be sampled while step detection is running
+ * At a desk the phone is still most of the time, so streaming at game rate wastes power
+ * The policy slows down after a period of stillness, can switch the accelerometer off entirely
+ * when a low-power wake-up sensor is available, and goes back to full speed as soon as motion resumes
+ */
+public class AdaptiveSamplingPolicy {
+
+    /**
+     * The sampling levels the policy can choose between
+     */
+    public enum SamplingRate {
+        // FAST is full-rate sampling used while the user is moving (about 50 Hz)
+        FAST(20_000),
+        // SLOW keeps watching for motion at a low rate (about 5 Hz)
+        SLOW(200_000),
+        // DORMANT switches the accelerometer off and waits for a wake-up sensor to fire
+        DORMANT(0);
+
+        // samplingPeriodUs is the accelerometer sampling period to request, or 0 when it is off
+        public final int samplingPeriodUs;
+
+        SamplingRate(int samplingPeriodUs) {
+            this.samplingPeriodUs = samplingPeriodUs;
+        }
+    }
+
+    // How far the acceleration magnitude must move away from gravity (m/s²) to count as motion
+    // Sensor noise on a phone lying on a desk stays well below this
+    public static final float MOTION_THRESHOLD = 0.6f;
+    // How long the phone must stay still before we drop to the slow rate
+    public static final long STILL_TO_SLOW_NS = 20_000_000_000L; // 20 seconds
+    // How long the phone must stay still before we switch the accelerometer off
+    public static final long STILL_TO_DORMANT_NS = 120_000_000_000L; // 2 minutes
+
+    // canSleep tells us whether a wake-up sensor exists, without one we never go DORMANT
+    private final boolean canSleep;
+    // currentRate is the sampling level the policy has currently chosen
+    private SamplingRate currentRate = SamplingRate.FAST;
+    // rateEnteredNs is when we switched to the current rate
+    private long rateEnteredNs = -1;
+    // lastMotionNs is the timestamp of the most recent sample that looked like motion
+    private long lastMotionNs = -1;
+    // timeAtRateNs adds up how long we spent at each sampling rate
+    private final long[] timeAtRateNs = new long[SamplingRate.values().length];
+    // transitions counts how many times the sampling rate changed
+    private int transitions = 0;
+
+    /**
+     * Create a sampling policy
+     * @param canSleep true if a significant-motion or step-detector sensor can wake us from DORMANT
+     */
+    public AdaptiveSamplingPolicy(boolean canSleep) {
+        this.canSleep = canSleep;
+    }
+
+    /**
+     * Start timing from the given moment at full rate
+     * @param nowNs The current time in nanoseconds, on the same clock as sensor event timestamps
+     */
+    public void start(long nowNs) {
+        currentRate = SamplingRate.FAST;
+        rateEnteredNs = nowNs;
+        lastMotionNs = nowNs;
+    }
+
+    /**
+     * Stop timing and add the time spent at the current rate to the totals
+     * @param nowNs The current time in nanoseconds
+     */
+    public void stop(long nowNs) {
+        accumulate(nowNs);
+        rateEnteredNs = -1;
+    }
+
+    /**
+     * Feed one accelerometer sample into the policy
+     * @param adjustedMagnitude How far the acceleration magnitude is from gravity, in m/s²
+     * @param timestampNs The sensor event timestamp
+     * @return The sampling rate that should be used from now on
+     */
+    public SamplingRate onAccelerometerSample(float adjustedMagnitude, long timestampNs) {
+        if (rateEnteredNs < 0) {
+            start(timestampNs);
+        }
+        if (adjustedMagnitude > MOTION_THRESHOLD) {
+            lastMotionNs = timestampNs;
+            if (currentRate != SamplingRate.FAST) {
+                switchTo(SamplingRate.FAST, timestampNs);
+            }
+            return currentRate;
+        }
+
+        long stillNs = timestampNs - lastMotionNs;
+        if (canSleep && stillNs >= STILL_TO_DORMANT_NS) {
+            switchTo(SamplingRate.DORMANT, timestampNs);
+        } else if (currentRate == SamplingRate.FAST && stillNs >= STILL_TO_SLOW_NS) {
+            switchTo(SamplingRate.SLOW, timestampNs);
+        }
+        return currentRate;
+    }
+
+    /**
+     * Called when the wake-up sensor reports motion while the accelerometer is off
+     * @param timestampNs When the wake-up event happened
+     * @return The sampling rate that should be used from now on (always FAST)
+     */
+    public SamplingRate onWakeEvent(long timestampNs) {
+        if (rateEnteredNs < 0) {
+            start(timestampNs);
+        }
+        lastMotionNs = timestampNs;
+        switchTo(SamplingRate.FAST, timestampNs);
+        return currentRate;
+    }
+
+    /**
+     * Get the sampling rate the policy has currently chosen
+     * @return The current sampling rate
+     */
+    public SamplingRate getCurrentRate() {
+        return currentRate;
+    }
+
+    /**
+     * Get how long we spent at a sampling rate, including the time since the last switch
+     * @param rate The sampling rate to look up
+     * @param nowNs The current time in nanoseconds
+     * @return The time spent at that rate in nanoseconds
+     */
+    public long getTimeAtRateNs(SamplingRate rate, long nowNs) {
+        long total = timeAtRateNs[rate.ordinal()];
+        if (rate == currentRate && rateEnteredNs >= 0 && nowNs > rateEnteredNs) {
+            total += nowNs - rateEnteredNs;
+        }
+        return total;
+    }
+
+    /**
+     * Get how many times the sampling rate changed
+     * @return The number of rate changes
+     */
+    public int getTransitionCount() {
+        return transitions;
+    }
+
+    /**
+     * Build a one-line summary of the time spent at each rate
+     * @param nowNs The current time in nanoseconds
+     * @return A report such as "FAST 12.0s (10%), SLOW 30.0s (25%), DORMANT 78.0s (65%), 4 switches"
+     */
+    public String formatReport(long nowNs) {
+        long total = 0;
+        for (SamplingRate rate : SamplingRate.values()) {
+            total += getTimeAtRateNs(rate, nowNs);
+        }
+        StringBuilder report = new StringBuilder();
+        for (SamplingRate rate : SamplingRate.values()) {
+            long ns = getTimeAtRateNs(rate, nowNs);
+            int percent = total > 0 ? (int) (ns * 100 / total) : 0;
+            report.append(String.format(Locale.US, "%s %.1fs (%d%%), ", rate.name(), ns / 1e9, percent));
+        }
+        report.append(transitions).append(" switches");
+        return report.toString();
+    }
+
+    /**
+     * Switch to a new rate and close the timing window of the old one
+     */
+    private void switchTo(SamplingRate rate, long nowNs) {
+        if (rate == currentRate) {
+            return;
+        }
+        accumulate(nowNs);
+        currentRate = rate;
+        rateEnteredNs = nowNs;
+        transitions++;
+    }
+
+    /**
+     * Add the time since the last switch to the current rate's total
+     */
+    private void accumulate(long nowNs) {
+        if (rateEnteredNs >= 0 && nowNs > rateEnteredNs) {
+            timeAtRateNs[currentRate.ordinal()] += nowNs - rateEnteredNs;
+            rateEnteredNs = nowNs;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.s23010285.desk.service;
+
+/**
+ * Describes what one repetition of an exercise looks like to the accelerometer
+ * RepCounter uses it to decide which movement to follow, how strong a rep has to be and how fast reps can come
+ */
+public final class MotionTemplate {
+
+    /**
+     * Which part of the acceleration a template follows
+     */
+    public enum Axis {
+        // Up and down movement along gravity, whatever way the phone is held (squats, lunges, push-ups)
+        VERTICAL,
+        // Total movement in any direction, for exercises that swing the phone around (jumping jacks)
+        MAGNITUDE
+    }
+
+    public static final MotionTemplate SQUAT = new MotionTemplate("Squats", Axis.VERTICAL, 1.2f, 1200, 2500);
+    public static final MotionTemplate LUNGE = new MotionTemplate("Lunges", Axis.VERTICAL, 1.0f, 1500, 3000);
+    public static final MotionTemplate PUSH_UP = new MotionTemplate("Push-ups", Axis.VERTICAL, 0.8f, 1000, 2500);
+    public static final MotionTemplate STEP_UP = new MotionTemplate("Step Ups", Axis.VERTICAL, 1.0f, 1200, 3000);
+    public static final MotionTemplate JUMPING_JACK = new MotionTemplate("Jumping Jacks", Axis.MAGNITUDE, 3.0f, 500, 1200);
+
+    // name is the exercise the template was made for
+    private final String name;
+    // axis is the part of the acceleration that is followed
+    private final Axis axis;
+    // minAmplitude is the smallest swing (m/s²) that counts as movement rather than noise
+    private final float minAmplitude;
+    // minRepMs is the shortest time between two reps, anything quicker is part of the same rep
+    private final long minRepMs;
+    // maxHalfRepMs is the longest a rep's up and down swings can be apart
+    private final long maxHalfRepMs;
+
+    /**
+     * Create a template
+     * @param name The exercise the template was made for
+     * @param axis The part of the acceleration to follow
+     * @param minAmplitude The smallest swing in m/s² that counts as movement
+     * @param minRepMs The shortest time between two reps
+     * @param maxHalfRepMs The longest time between a rep's up and down swings
+     */
+    public MotionTemplate(String name, Axis axis, float minAmplitude, long minRepMs, long maxHalfRepMs) {
+        this.name = name;
+        this.axis = axis;
+        this.minAmplitude = minAmplitude;
+        this.minRepMs = minRepMs;
+        this.maxHalfRepMs = maxHalfRepMs;
+    }
+
+    /**
+     * Find the template for an exercise, going by its name
+     * @param exerciseName The name of the exercise (may be null)
+     * @return The template, or null if the exercise has no reps to count (planks, stretches, breathing, ...)
+     */
+    public static MotionTemplate forExercise(String exerciseName) {
+        if (exerciseName == null) {
+            return null;
+        }
+        String name = exerciseName.toLowerCase();
+        if (name.contains("squat")) {
+            return SQUAT;
+        }
+        if (name.contains("lunge")) {
+            return LUNGE;
+        }
+        if (name.contains("push-up") || name.contains("push up") || name.contains("pushup")) {
+            return PUSH_UP;
+        }
+        if (name.contains("step up")) {
+            return STEP_UP;
+        }
+        if (name.contains("jumping jack")) {
+            return JUMPING_JACK;
+        }
+        return null;
+    }
+
+    /**
+     * Get the exercise the template was made for
+     * @return The exercise name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the part of the acceleration the template follows
+     * @return The axis
+     */
+    public Axis getAxis() {
+        return axis;
+    }
+
+    /**
+     * Get the smallest swing that counts as movement
+     * @return The amplitude in m/s²
+     */
+    public float getMinAmplitude() {
+        return minAmplitude;
+    }
+
+    /**
+     * Get the shortest time between two reps
+     * @return The time in milliseconds
+     */
+    public long getMinRepMs() {
+        return minRepMs;
+    }
+
+    /**
+     * Get the longest time between a rep's up and down swings
+     * @return The time in milliseconds
+     */
+    public long getMaxHalfRepMs() {
+        return maxHalfRepMs;
+    }
+}
@@ -0,0 +1,197 @@
+package com.s23010285.desk.service;
+
+/**
+ * Counts repetitions of a strength exercise from raw accelerometer samples
+ * Gravity is tracked with a slow low-pass filter and taken away, leaving the user's own movement,
+ * which is projected onto the axis the exercise's MotionTemplate follows and smoothed over a few samples.
+ * A rep is one swing above the threshold followed by one below it, within the template's timing limits.
+ * The threshold follows the recent swing size, so big and small movers are both counted
+ * All state lives in fields and fixed-size primitive arrays, so a sample costs a few multiplications and
+ * never allocates, which lets it run on a sensor thread for a whole session
+ * It has no Android dependencies so recorded accelerometer traces can be replayed through it on the JVM
+ */
+public class RepCounter {
+
+    // How many samples the smoothing window holds (about 160 ms at the 50 Hz game sensor rate)
+    private static final int SMOOTHING_SAMPLES = 8;
+    // Time constant of the gravity filter, slow enough that a rep doesn't move it
+    private static final float GRAVITY_TAU_S = 4.0f;
+    // Time constant the swing envelope shrinks with when the user slows down
+    private static final float ENVELOPE_TAU_S = 3.0f;
+    // The threshold is this share of the recent swing size
+    private static final float THRESHOLD_SHARE = 0.4f;
+    // Samples further apart than this (the sensor was stopped) restart the filters
+    private static final long MAX_SAMPLE_GAP_NS = 500_000_000L;
+
+    // Where the counter is within a rep
+    private static final int WAITING_FOR_HIGH = 0;
+    private static final int WAITING_FOR_LOW = 1;
+
+    // template describes the exercise being counted
+    private MotionTemplate template;
+
+    // gravity is the filtered gravity vector (x, y, z)
+    private final float[] gravity = new float[3];
+    // hasGravity is false until the first sample seeds the filter
+    private boolean hasGravity = false;
+    // gravitySamples counts samples since the filter was seeded, so it can start with a plain average
+    private int gravitySamples = 0;
+    // lastTimestampNs is the time of the previous sample
+    private long lastTimestampNs = 0;
+
+    // window holds the latest projected samples, windowSum is their sum
+    private final float[] window = new float[SMOOTHING_SAMPLES];
+    private int windowCount = 0;
+    private float windowSum = 0;
+
+    // envelope follows the size of recent swings
+    private float envelope = 0;
+    // state is WAITING_FOR_HIGH or WAITING_FOR_LOW
+    private int state = WAITING_FOR_HIGH;
+    // highTimestampNs is when the current rep's upward swing crossed the threshold
+    private long highTimestampNs = 0;
+    // lastRepTimestampNs is when the last rep was counted (Long.MIN_VALUE before the first)
+    private long lastRepTimestampNs = Long.MIN_VALUE;
+    // reps counts reps since the last reset
+    private int reps = 0;
+
+    /**
+     * Create a counter
+     * @param template The exercise to count
+     */
+    public RepCounter(MotionTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Switch to another exercise and start counting from zero
+     * @param template The exercise to count
+     */
+    public void setTemplate(MotionTemplate template) {
+        this.template = template;
+        reset();
+    }
+
+    /**
+     * Handle one accelerometer sample
+     * @param x Acceleration along the x axis in m/s², gravity included
+     * @param y Acceleration along the y axis in m/s², gravity included
+     * @param z Acceleration along the z axis in m/s², gravity included
+     * @param timestampNs The sensor event timestamp
+     * @return true if this sample completed a rep
+     */
+    public boolean onSample(float x, float y, float z, long timestampNs) {
+        if (!hasGravity || timestampNs - lastTimestampNs > MAX_SAMPLE_GAP_NS || timestampNs < lastTimestampNs) {
+            restartFilters(x, y, z, timestampNs);
+            return false;
+        }
+        float dt = (timestampNs - lastTimestampNs) / 1e9f;
+        lastTimestampNs = timestampNs;
+
+        // Follow gravity slowly, whatever is left over is the user's movement
+        // Until the filter has seen enough samples it takes their plain average, so a first sample
+        // taken mid-movement doesn't skew gravity for the next few seconds
+        gravitySamples++;
+        float alpha = Math.max(dt / (GRAVITY_TAU_S + dt), 1f / (gravitySamples + 1));
+        gravity[0] += alpha * (x - gravity[0]);
+        gravity[1] += alpha * (y - gravity[1]);
+        gravity[2] += alpha * (z - gravity[2]);
+        float g = (float) Math.sqrt(gravity[0] * gravity[0] + gravity[1] * gravity[1] + gravity[2] * gravity[2]);
+        if (g < 1e-3f) {
+            return false;
+        }
+
+        float signal;
+        if (template.getAxis() == MotionTemplate.Axis.VERTICAL) {
+            // Project the movement onto gravity: at rest the accelerometer reads gravity pointing up, so positive is up
+            signal = ((x - gravity[0]) * gravity[0] + (y - gravity[1]) * gravity[1] + (z - gravity[2]) * gravity[2]) / g;
+        } else {
+            signal = (float) Math.sqrt(x * x + y * y + z * z) - g;
+        }
+
+        // Moving average over the last few samples takes out the sensor noise
+        int slot = windowCount % SMOOTHING_SAMPLES;
+        if (windowCount >= SMOOTHING_SAMPLES) {
+            windowSum -= window[slot];
+        }
+        window[slot] = signal;
+        windowSum += signal;
+        windowCount++;
+        if (windowCount < SMOOTHING_SAMPLES) {
+            return false;
+        }
+        float smoothed = windowSum / SMOOTHING_SAMPLES;
+
+        // The envelope jumps up with big swings and shrinks slowly when they get smaller
+        float magnitude = Math.abs(smoothed);
+        envelope = magnitude > envelope ? magnitude : envelope - envelope * dt / ENVELOPE_TAU_S;
+        float threshold = Math.max(template.getMinAmplitude(), envelope * THRESHOLD_SHARE);
+
+        if (state == WAITING_FOR_HIGH) {
+            if (smoothed > threshold) {
+                state = WAITING_FOR_LOW;
+                highTimestampNs = timestampNs;
+            }
+            return false;
+        }
+        if (timestampNs - highTimestampNs > template.getMaxHalfRepMs() * 1_000_000L) {
+            // The downward swing never came, so that wasn't a rep
+            state = WAITING_FOR_HIGH;
+            return false;
+        }
+        if (smoothed < -threshold) {
+            state = WAITING_FOR_HIGH;
+            if (lastRepTimestampNs == Long.MIN_VALUE
+                    || timestampNs - lastRepTimestampNs >= template.getMinRepMs() * 1_000_000L) {
+                lastRepTimestampNs = timestampNs;
+                reps++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of reps counted since the last reset
+     * @return The rep count
+     */
+    public int getReps() {
+        return reps;
+    }
+
+    /**
+     * Get the exercise being counted
+     * @return The template
+     */
+    public MotionTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Start counting from zero again
+     */
+    public void reset() {
+        hasGravity = false;
+        windowCount = 0;
+        windowSum = 0;
+        envelope = 0;
+        state = WAITING_FOR_HIGH;
+        lastRepTimestampNs = Long.MIN_VALUE;
+        reps = 0;
+    }
+
+    /**
+     * Seed gravity with a sample and empty the smoothing window, e.g. after the sensor was stopped
+     */
+    private void restartFilters(float x, float y, float z, long timestampNs) {
+        gravity[0] = x;
+        gravity[1] = y;
+        gravity[2] = z;
+        hasGravity = true;
+        gravitySamples = 0;
+        lastTimestampNs = timestampNs;
+        windowCount = 0;
+        windowSum = 0;
+        state = WAITING_FOR_HIGH;
+    }
+}
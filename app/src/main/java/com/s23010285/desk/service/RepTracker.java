@@ -0,0 +1,154 @@
+package com.s23010285.desk.service;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Counts reps of the current strength exercise while a workout session is on screen
+ * The accelerometer delivers its samples to a background thread, where RepCounter runs, so the
+ * UI thread only hears about finished reps. It runs alongside StepDetectorService, which keeps
+ * counting steps with its own listener
+ * Call start for each exercise that has a MotionTemplate, stop when it ends or the session pauses,
+ * and release when the screen goes away
+ */
+public class RepTracker implements SensorEventListener {
+
+    private static final String TAG = "RepTracker";
+
+    // 50 Hz is enough to follow a body moving and cheap to process
+    private static final int SAMPLING_PERIOD_US = SensorManager.SENSOR_DELAY_GAME;
+
+    /**
+     * Told about every rep, on the main thread
+     */
+    public interface Listener {
+        /**
+         * Called when a rep of the current exercise was counted
+         * @param reps The number of reps since start was called
+         */
+        void onRepCounted(int reps);
+    }
+
+    // sensorManager and accelerometer give us the samples (accelerometer is null if the device has none)
+    private final SensorManager sensorManager;
+    private final Sensor accelerometer;
+    // listener hears about reps
+    private final Listener listener;
+    // sensorThread receives the samples and runs the counter
+    private final HandlerThread sensorThread;
+    private final Handler sensorHandler;
+    // mainHandler passes reps back to the UI thread
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // counter and counterGeneration are only touched on sensorThread
+    private final RepCounter counter = new RepCounter(MotionTemplate.SQUAT);
+    private int counterGeneration = 0;
+    // generation goes up on every start and stop, so reps still on their way from an old exercise are dropped
+    // It is only touched on the main thread, the sensor thread gets its own copy with each template
+    private int generation = 0;
+    // running is true while the accelerometer is registered
+    private boolean running = false;
+
+    /**
+     * Create a tracker, the accelerometer stays off until start is called
+     * @param context The context used to get the sensor service
+     * @param listener Hears about reps on the main thread
+     */
+    public RepTracker(Context context, Listener listener) {
+        this.listener = listener;
+        sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        accelerometer = sensorManager != null ? sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER) : null;
+        sensorThread = new HandlerThread("RepTracker");
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+    }
+
+    /**
+     * Check whether reps can be counted on this device
+     * @return true if there is an accelerometer
+     */
+    public boolean isAvailable() {
+        return accelerometer != null;
+    }
+
+    /**
+     * Start counting reps of an exercise from zero
+     * @param template What a rep of the exercise looks like
+     */
+    public void start(MotionTemplate template) {
+        if (accelerometer == null) {
+            return;
+        }
+        stop();
+        int startGeneration = ++generation;
+        sensorHandler.post(() -> {
+            counter.setTemplate(template);
+            counterGeneration = startGeneration;
+        });
+        try {
+            running = sensorManager.registerListener(this, accelerometer, SAMPLING_PERIOD_US, sensorHandler);
+        } catch (Exception e) {
+            Log.e(TAG, "Error registering accelerometer: " + e.getMessage(), e);
+        }
+        if (!running) {
+            Log.e(TAG, "Accelerometer could not be started for " + template.getName());
+        } else {
+            Log.d(TAG, "Counting reps of " + template.getName());
+        }
+    }
+
+    /**
+     * Stop counting, e.g. when the exercise ends or the session is paused
+     */
+    public void stop() {
+        if (running) {
+            sensorManager.unregisterListener(this);
+            running = false;
+        }
+        generation++;
+    }
+
+    /**
+     * Stop counting and end the sensor thread, the tracker can't be used afterwards
+     */
+    public void release() {
+        stop();
+        sensorThread.quitSafely();
+    }
+
+    /**
+     * Check whether the accelerometer is on
+     * @return true while reps are being counted
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Called on sensorThread for every accelerometer sample
+     */
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if (counter.onSample(event.values[0], event.values[1], event.values[2], event.timestamp)) {
+            int reps = counter.getReps();
+            int sampleGeneration = counterGeneration;
+            mainHandler.post(() -> {
+                // Reps that arrive after the exercise changed belong to the old one
+                if (running && sampleGeneration == generation) {
+                    listener.onRepCounted(reps);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        // Accuracy changes don't affect rep counting
+    }
+}
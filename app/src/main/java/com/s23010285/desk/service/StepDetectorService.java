@@ -7,10 +7,15 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.hardware.TriggerEvent;
+import android.hardware.TriggerEventListener;
 import android.os.Binder;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.Nullable;
+import com.s23010285.desk.utils.ActivityHistogramStore;
+import java.util.concurrent.Executor;
 
 /**
  * Service for detecting steps using accelerometer sensor
@@ -35,12 +40,29 @@ public class StepDetectorService extends Service implements SensorEventListener
     private Sensor accelerometer;
     // stepCounterSensor is a built-in sensor that some devices have for counting steps
     private Sensor stepCounterSensor;
+    // These low-power sensors can wake us up when the accelerometer has been switched off
+    // significantMotionSensor fires once when the user starts moving (walking, getting up, etc.)
+    private Sensor significantMotionSensor;
+    // stepDetectorSensor reports each step from dedicated hardware
+    private Sensor stepDetectorSensor;
     // isDetecting tracks whether we're currently monitoring for steps
     private boolean isDetecting = false;
     // useStepCounter tells us whether to use the built-in step counter or calculate steps ourselves
     private boolean useStepCounter = false;
     // initialStepCounterValue stores the starting value of the built-in step counter
     private int initialStepCounterValue = -1;
+    // useFusion is true when both the step detector and step counter exist
+    // The detector gives instant per-step feedback and the counter corrects its drift
+    private boolean useFusion = false;
+    // stepFusion combines the two hardware step sensors into one total
+    private final StepFusion stepFusion = new StepFusion();
+    
+    // activityStore buckets every counted step into the per-minute activity histogram
+    private ActivityHistogramStore activityStore;
+    // recordedStepCount is the part of stepCount that has already been added to the histogram
+    private int recordedStepCount = 0;
+    // The counter only corrects drift, so the sensor hub may hold its readings back for a few seconds
+    private static final int STEP_COUNTER_MAX_REPORT_LATENCY_US = 5_000_000;
     
     // Step detection variables - these help us determine when a step has occurred
     // lastMagnitude stores the previous movement intensity to compare with current movement
@@ -60,11 +82,27 @@ public class StepDetectorService extends Service implements SensorEventListener
     // historyIndex keeps track of where in the array to store the next measurement
     private int historyIndex = 0;
     
+    // Adaptive sampling - the accelerometer slows down or switches off while the phone is still
+    // samplingPolicy decides which rate to use based on recent motion
+    private AdaptiveSamplingPolicy samplingPolicy;
+    // currentSamplingRate is the rate the accelerometer is actually registered at
+    private AdaptiveSamplingPolicy.SamplingRate currentSamplingRate = AdaptiveSamplingPolicy.SamplingRate.FAST;
+    // While SLOW we let the sensor hub batch samples for up to a second so the CPU can sleep in between
+    private static final int SLOW_MAX_REPORT_LATENCY_US = 1_000_000;
+    // wakeTriggerListener wakes us up from DORMANT when significant motion is detected
+    private final TriggerEventListener wakeTriggerListener = new TriggerEventListener() {
+        @Override
+        public void onTrigger(TriggerEvent event) {
+            wakeFromDormant(event.timestamp);
+        }
+    };
+    
     // Callback interface for step events
     // This interface lets other parts of the app know when steps are detected
     public interface StepDetectionListener {
         /**
          * This method is called whenever a new step is detected
+         * Rate-limited subscribers may skip totals, so always treat the value as the latest total, not +1
          * @param totalSteps The total number of steps detected so far
          */
         void onStepDetected(int totalSteps);
@@ -75,8 +113,10 @@ public class StepDetectorService extends Service implements SensorEventListener
         void onStepCountReset();
     }
     
-    // This variable holds the listener that will receive step detection events
-    private StepDetectionListener stepListener;
+    // stepEventBus delivers step totals to every screen or component that subscribed to them
+    private final StepEventBus stepEventBus = new StepEventBus();
+    // legacySubscription is the subscription created through setStepDetectionListener
+    private StepEventBus.Subscription legacySubscription;
     
     // Binder for local service binding
     // This class lets other parts of the app connect to this service
@@ -100,6 +140,7 @@ public class StepDetectorService extends Service implements SensorEventListener
     @Override
     public void onCreate() {
         super.onCreate();
+        activityStore = ActivityHistogramStore.getInstance(this);
         try {
             // Get access to the device's sensor system
             sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
@@ -108,8 +149,16 @@ public class StepDetectorService extends Service implements SensorEventListener
                 stepCounterSensor = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER);
                 // Also get the accelerometer sensor as a backup
                 accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+                // Wake-up sensors let the accelerometer be switched off while the phone is still
+                significantMotionSensor = sensorManager.getDefaultSensor(Sensor.TYPE_SIGNIFICANT_MOTION);
+                stepDetectorSensor = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_DETECTOR);
                 
-                if (stepCounterSensor != null) {
+                if (stepCounterSensor != null && stepDetectorSensor != null) {
+                    // If the device has both hardware step sensors, fuse them
+                    Log.d(TAG, "Using fused step detector and step counter sensors");
+                    useStepCounter = true;
+                    useFusion = true;
+                } else if (stepCounterSensor != null) {
                     // If the device has a built-in step counter, use it
                     Log.d(TAG, "Using built-in step counter sensor");
                     useStepCounter = true;
@@ -152,7 +201,20 @@ public class StepDetectorService extends Service implements SensorEventListener
             if (sensorManager != null && !isDetecting) {
                 boolean registered = false;
                 
-                if (useStepCounter && stepCounterSensor != null) {
+                if (useFusion) {
+                    // The detector reports each step as it happens, the counter arrives in batches
+                    registered = sensorManager.registerListener(
+                        this,
+                        stepDetectorSensor,
+                        SensorManager.SENSOR_DELAY_FASTEST
+                    ) && sensorManager.registerListener(
+                        this,
+                        stepCounterSensor,
+                        SensorManager.SENSOR_DELAY_NORMAL,
+                        STEP_COUNTER_MAX_REPORT_LATENCY_US
+                    );
+                    Log.d(TAG, "Attempting to register step detector and step counter sensors");
+                } else if (useStepCounter && stepCounterSensor != null) {
                     // Use built-in step counter
                     registered = sensorManager.registerListener(
                         this, 
@@ -161,7 +223,11 @@ public class StepDetectorService extends Service implements SensorEventListener
                     );
                     Log.d(TAG, "Attempting to register step counter sensor");
                 } else if (accelerometer != null) {
-                    // Use accelerometer-based detection
+                    // Use accelerometer-based detection, starting at full rate
+                    samplingPolicy = new AdaptiveSamplingPolicy(
+                        significantMotionSensor != null || stepDetectorSensor != null);
+                    samplingPolicy.start(SystemClock.elapsedRealtimeNanos());
+                    currentSamplingRate = AdaptiveSamplingPolicy.SamplingRate.FAST;
                     registered = sensorManager.registerListener(
                         this, 
                         accelerometer, 
@@ -174,8 +240,11 @@ public class StepDetectorService extends Service implements SensorEventListener
                     isDetecting = true;
                     resetStepCount();
                     Log.d(TAG, "Step detection started successfully using " + 
-                              (useStepCounter ? "step counter" : "accelerometer"));
+                              (useFusion ? "step detector + counter"
+                                         : useStepCounter ? "step counter" : "accelerometer"));
                 } else {
+                    // Don't leave half of a fused registration behind
+                    sensorManager.unregisterListener(this);
                     Log.e(TAG, "Failed to register sensor listener");
                 }
             } else {
@@ -197,7 +266,19 @@ public class StepDetectorService extends Service implements SensorEventListener
         try {
             if (isDetecting && sensorManager != null) {
                 sensorManager.unregisterListener(this);
+                if (significantMotionSensor != null) {
+                    sensorManager.cancelTriggerSensor(wakeTriggerListener, significantMotionSensor);
+                }
                 isDetecting = false;
+                if (samplingPolicy != null) {
+                    long nowNs = SystemClock.elapsedRealtimeNanos();
+                    samplingPolicy.stop(nowNs);
+                    Log.d(TAG, "Sampling report: " + samplingPolicy.formatReport(nowNs));
+                }
+                // Write the remaining minutes of activity now instead of waiting for the next batch
+                if (activityStore != null) {
+                    activityStore.flush();
+                }
                 Log.d(TAG, "Step detection stopped");
             }
         } catch (Exception e) {
@@ -216,15 +297,15 @@ public class StepDetectorService extends Service implements SensorEventListener
         lastStepTimeNs = 0;
         historyIndex = 0;
         initialStepCounterValue = -1; // Reset step counter baseline
+        stepFusion.reset();
+        recordedStepCount = 0;
         
         // Clear magnitude history
         for (int i = 0; i < FILTER_SIZE; i++) {
             magnitudeHistory[i] = 0;
         }
         
-        if (stepListener != null) {
-            stepListener.onStepCountReset();
-        }
+        stepEventBus.publishReset();
         Log.d(TAG, "Step count reset (including step counter baseline)");
     }
     
@@ -237,9 +318,32 @@ public class StepDetectorService extends Service implements SensorEventListener
     
     /**
      * Set step detection listener
+     * This replaces the listener set by a previous call and notifies it on every step, on the sensor thread
+     * Prefer subscribe() so several components can observe steps at their own rate
      */
     public void setStepDetectionListener(StepDetectionListener listener) {
-        this.stepListener = listener;
+        stepEventBus.unsubscribe(legacySubscription);
+        legacySubscription = listener != null ? stepEventBus.subscribe(listener, 0, Runnable::run) : null;
+    }
+    
+    /**
+     * Subscribe to step totals without replacing anyone else's subscription
+     * @param listener The object that should receive step totals
+     * @param maxDeliveriesPerSecond The most callbacks per second the listener wants, or 0 for every step
+     * @param executor Where the callbacks should run, e.g. ContextCompat.getMainExecutor(context)
+     * @return The subscription, which should be passed to unsubscribe() when the listener goes away
+     */
+    public StepEventBus.Subscription subscribe(StepDetectionListener listener, int maxDeliveriesPerSecond,
+                                               Executor executor) {
+        return stepEventBus.subscribe(listener, maxDeliveriesPerSecond, executor);
+    }
+    
+    /**
+     * Stop delivering step totals to a subscription
+     * @param subscription The subscription returned by subscribe()
+     */
+    public void unsubscribe(StepEventBus.Subscription subscription) {
+        stepEventBus.unsubscribe(subscription);
     }
     
     /**
@@ -249,9 +353,32 @@ public class StepDetectorService extends Service implements SensorEventListener
         return isDetecting;
     }
     
+    /**
+     * Get a summary of how long the accelerometer spent at each sampling rate
+     * @return The sampling report, or null when the built-in step counter is used instead
+     */
+    @Nullable
+    public String getSamplingReport() {
+        return samplingPolicy != null
+                ? samplingPolicy.formatReport(SystemClock.elapsedRealtimeNanos())
+                : null;
+    }
+    
     @Override
     public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_STEP_COUNTER) {
+        if (useFusion) {
+            // Fused mode - the detector drives the total and the counter corrects it
+            int fusedTotal = stepCount;
+            if (event.sensor.getType() == Sensor.TYPE_STEP_DETECTOR) {
+                fusedTotal = stepFusion.onDetectorStep(event.timestamp);
+            } else if (event.sensor.getType() == Sensor.TYPE_STEP_COUNTER) {
+                fusedTotal = stepFusion.onCounterReading((long) event.values[0], event.timestamp);
+            }
+            if (fusedTotal != stepCount) {
+                stepCount = fusedTotal;
+                publishStepCount(event.timestamp);
+            }
+        } else if (event.sensor.getType() == Sensor.TYPE_STEP_COUNTER) {
             // Use built-in step counter
             int currentStepCount = (int) event.values[0];
             
@@ -265,10 +392,8 @@ public class StepDetectorService extends Service implements SensorEventListener
                 Log.d(TAG, "Step counter - Current: " + currentStepCount + 
                           ", Baseline: " + initialStepCounterValue + ", Steps: " + stepCount);
                 
-                // Notify listener
-                if (stepListener != null) {
-                    stepListener.onStepDetected(stepCount);
-                }
+                // Notify subscribers
+                publishStepCount(event.timestamp);
             }
         } else if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
             // Calculate magnitude of acceleration vector
@@ -292,6 +417,103 @@ public class StepDetectorService extends Service implements SensorEventListener
             
             // Detect steps using improved peak detection algorithm
             detectStep(smoothedMagnitude, event.timestamp);
+            
+            // Let the sampling policy slow down or speed up the accelerometer
+            if (samplingPolicy != null) {
+                applySamplingRate(samplingPolicy.onAccelerometerSample(adjustedMagnitude, event.timestamp));
+            }
+        } else if (event.sensor.getType() == Sensor.TYPE_STEP_DETECTOR
+                && currentSamplingRate == AdaptiveSamplingPolicy.SamplingRate.DORMANT) {
+            // A hardware step while the accelerometer was off - count it and wake back up
+            stepCount++;
+            lastStepTimeNs = event.timestamp;
+            publishStepCount(event.timestamp);
+            wakeFromDormant(event.timestamp);
+        }
+    }
+    
+    /**
+     * Record the steps counted since the last call in the activity histogram and notify subscribers
+     * @param eventTimestampNs The sensor timestamp of the event that produced the new count
+     */
+    private void publishStepCount(long eventTimestampNs) {
+        int newSteps = stepCount - recordedStepCount;
+        if (newSteps > 0 && activityStore != null) {
+            // Batched sensor events can be a few seconds old, so place the steps at the event time
+            long ageMs = (SystemClock.elapsedRealtimeNanos() - eventTimestampNs) / 1_000_000;
+            activityStore.recordSteps(System.currentTimeMillis() - Math.max(0, ageMs), newSteps);
+        }
+        recordedStepCount = stepCount;
+        stepEventBus.publish(stepCount);
+    }
+    
+    /**
+     * Re-register the accelerometer when the sampling policy picks a different rate
+     * @param rate The rate chosen by the sampling policy
+     */
+    private void applySamplingRate(AdaptiveSamplingPolicy.SamplingRate rate) {
+        if (rate == currentSamplingRate || sensorManager == null || !isDetecting) {
+            return;
+        }
+        try {
+            sensorManager.unregisterListener(this, accelerometer);
+            if (currentSamplingRate == AdaptiveSamplingPolicy.SamplingRate.DORMANT) {
+                disarmWakeSensor();
+            }
+            currentSamplingRate = rate;
+            switch (rate) {
+                case FAST:
+                    sensorManager.registerListener(this, accelerometer, rate.samplingPeriodUs);
+                    break;
+                case SLOW:
+                    sensorManager.registerListener(this, accelerometer, rate.samplingPeriodUs,
+                            SLOW_MAX_REPORT_LATENCY_US);
+                    break;
+                case DORMANT:
+                    // Forget the old readings so the filter doesn't see a stale peak when we wake up
+                    for (int i = 0; i < FILTER_SIZE; i++) {
+                        magnitudeHistory[i] = 0;
+                    }
+                    lastMagnitude = 0;
+                    armWakeSensor();
+                    break;
+            }
+            Log.d(TAG, "Accelerometer sampling switched to " + rate);
+        } catch (Exception e) {
+            Log.e(TAG, "Error changing sampling rate: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Resume full-rate sampling after a wake-up sensor reported motion
+     * @param timestampNs When the wake-up event happened
+     */
+    private void wakeFromDormant(long timestampNs) {
+        if (samplingPolicy != null && isDetecting) {
+            applySamplingRate(samplingPolicy.onWakeEvent(timestampNs));
+        }
+    }
+    
+    /**
+     * Listen for motion with a low-power sensor while the accelerometer is off
+     * The step detector is preferred because it also tells us about the step that woke us
+     */
+    private void armWakeSensor() {
+        if (stepDetectorSensor != null) {
+            sensorManager.registerListener(this, stepDetectorSensor, SensorManager.SENSOR_DELAY_NORMAL);
+        } else if (significantMotionSensor != null) {
+            sensorManager.requestTriggerSensor(wakeTriggerListener, significantMotionSensor);
+        }
+    }
+    
+    /**
+     * Stop listening to the wake-up sensor once the accelerometer is back on
+     */
+    private void disarmWakeSensor() {
+        if (stepDetectorSensor != null) {
+            sensorManager.unregisterListener(this, stepDetectorSensor);
+        } else if (significantMotionSensor != null) {
+            sensorManager.cancelTriggerSensor(wakeTriggerListener, significantMotionSensor);
         }
     }
     
@@ -332,10 +554,8 @@ public class StepDetectorService extends Service implements SensorEventListener
                 Log.d(TAG, "Step detected! Count: " + stepCount + 
                           ", Magnitude: " + magnitude + ", Diff: " + magnitudeDifference);
                 
-                // Notify listener
-                if (stepListener != null) {
-                    stepListener.onStepDetected(stepCount);
-                }
+                // Notify subscribers
+                publishStepCount(timestamp);
             }
         }
         
@@ -351,6 +571,7 @@ public class StepDetectorService extends Service implements SensorEventListener
     public void onDestroy() {
         super.onDestroy();
         stopStepDetection();
+        stepEventBus.shutdown();
         Log.d(TAG, "StepDetectorService destroyed");
     }
 }
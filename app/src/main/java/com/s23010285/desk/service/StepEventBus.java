@@ -0,0 +1,233 @@
+package com.s23010285.desk.service;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Step event bus that fans step totals out to any number of subscribers
+ * Each subscriber picks how often it wants to hear about steps and which executor it is called on
+ * Steps that arrive faster than a subscriber's rate are coalesced, so it only ever sees the latest total
+ */
+public class StepEventBus {
+
+    // Subscribers are registered and removed rarely but notified on every step,
+    // so a copy-on-write list lets publish() iterate without taking any lock
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    // clock returns the current time in milliseconds and is used to enforce delivery rates
+    private final LongSupplier clock;
+    // timer holds back deliveries for subscribers that have already been notified recently,
+    // created the first time a delivery has to wait unless one was passed in
+    private ScheduledExecutorService timer;
+
+    /**
+     * A single registration on the bus
+     * It remembers the subscriber's rate limit, executor and the newest total waiting to be delivered
+     */
+    public static final class Subscription {
+        // listener is the object that receives the coalesced step totals
+        private final StepDetectorService.StepDetectionListener listener;
+        // executor is where the listener wants its callbacks to run (e.g. the main thread)
+        private final Executor executor;
+        // minIntervalMs is the shortest time allowed between two deliveries (0 = no limit)
+        private final long minIntervalMs;
+        // latestTotal always holds the newest total, even while a delivery is still waiting
+        private final AtomicInteger latestTotal = new AtomicInteger();
+        // deliveryPending is true while a delivery has been scheduled but has not run yet
+        private final AtomicBoolean deliveryPending = new AtomicBoolean(false);
+        // lastDeliveryMs and lastDeliveredTotal describe the most recent callback
+        private volatile long lastDeliveryMs = Long.MIN_VALUE / 2;
+        private volatile int lastDeliveredTotal = -1;
+        // active becomes false once the subscription is removed so queued work is dropped
+        private volatile boolean active = true;
+        // deliverTask is created once and reused so publishing a step does not allocate
+        private final Runnable deliverTask;
+        // delayedTask hands deliverTask to the executor once the timer's wait is over
+        private final Runnable delayedTask;
+
+        private Subscription(StepDetectorService.StepDetectionListener listener, Executor executor,
+                             long minIntervalMs, LongSupplier clock) {
+            this.listener = listener;
+            this.executor = executor;
+            this.minIntervalMs = minIntervalMs;
+            this.deliverTask = () -> {
+                if (!active) {
+                    return;
+                }
+                lastDeliveryMs = clock.getAsLong();
+                // Clear the flag before reading the total so a step published right now schedules a new delivery
+                deliveryPending.set(false);
+                int total = latestTotal.get();
+                if (total != lastDeliveredTotal) {
+                    lastDeliveredTotal = total;
+                    listener.onStepDetected(total);
+                }
+            };
+            this.delayedTask = () -> executor.execute(deliverTask);
+        }
+
+        /**
+         * Get the listener behind this subscription
+         * @return The subscribed listener
+         */
+        public StepDetectorService.StepDetectionListener getListener() {
+            return listener;
+        }
+    }
+
+    /**
+     * Create a bus that measures delivery rates with the monotonic system clock
+     */
+    public StepEventBus() {
+        this(() -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    /**
+     * Create a bus with a custom clock
+     * @param clock Returns the current time in milliseconds
+     */
+    public StepEventBus(LongSupplier clock) {
+        this(clock, null);
+    }
+
+    /**
+     * Create a bus with a custom clock and delay timer
+     * @param clock Returns the current time in milliseconds
+     * @param timer Runs the deliveries that wait for a subscriber's rate (null to create one when needed),
+     *              shut down along with the bus
+     */
+    public StepEventBus(LongSupplier clock, ScheduledExecutorService timer) {
+        this.clock = clock;
+        this.timer = timer;
+    }
+
+    /**
+     * Register a subscriber
+     * @param listener The object that should receive step totals
+     * @param maxDeliveriesPerSecond The most callbacks per second this subscriber wants, or 0 for every step
+     * @param executor Where the callbacks should run
+     * @return The subscription, which can later be passed to unsubscribe()
+     */
+    public Subscription subscribe(StepDetectorService.StepDetectionListener listener,
+                                  int maxDeliveriesPerSecond, Executor executor) {
+        if (listener == null || executor == null) {
+            throw new IllegalArgumentException("listener and executor are required");
+        }
+        long minIntervalMs = maxDeliveriesPerSecond > 0 ? 1000L / maxDeliveriesPerSecond : 0;
+        Subscription subscription = new Subscription(listener, executor, minIntervalMs, clock);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Remove a subscription so it receives no further callbacks, including ones already queued
+     * @param subscription The subscription returned by subscribe()
+     */
+    public void unsubscribe(Subscription subscription) {
+        if (subscription != null) {
+            subscription.active = false;
+            subscriptions.remove(subscription);
+        }
+    }
+
+    /**
+     * Remove every subscription that belongs to the given listener
+     * @param listener The listener to remove
+     */
+    public void unsubscribe(StepDetectorService.StepDetectionListener listener) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.listener == listener) {
+                unsubscribe(subscription);
+            }
+        }
+    }
+
+    /**
+     * Get how many subscribers are currently registered
+     * @return The number of subscriptions
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Publish a new step total to every subscriber
+     * This is called from the sensor thread on every step, so it never blocks, and allocates nothing
+     * unless a delivery has to wait for the subscriber's rate, which the timer's queue entry needs
+     * (at most once per subscriber and interval, since later steps join the waiting delivery)
+     * @param totalSteps The latest total step count
+     */
+    public void publish(int totalSteps) {
+        for (Subscription subscription : subscriptions) {
+            subscription.latestTotal.set(totalSteps);
+            // Only one delivery is queued per subscriber - later steps just update latestTotal
+            if (subscription.deliveryPending.compareAndSet(false, true)) {
+                scheduleDelivery(subscription);
+            }
+        }
+    }
+
+    /**
+     * Tell every subscriber that the step count went back to zero
+     * Resets are never coalesced or rate limited because subscribers use them to rebase their own counters
+     */
+    public void publishReset() {
+        for (Subscription subscription : subscriptions) {
+            subscription.latestTotal.set(0);
+            subscription.executor.execute(() -> {
+                if (subscription.active) {
+                    subscription.lastDeliveredTotal = 0;
+                    subscription.listener.onStepCountReset();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop the delay timer and drop all subscriptions
+     * This should be called when the owning service is destroyed
+     */
+    public synchronized void shutdown() {
+        for (Subscription subscription : subscriptions) {
+            subscription.active = false;
+        }
+        subscriptions.clear();
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    /**
+     * Run a delivery now if the subscriber's rate allows it, otherwise hold it back until it does
+     */
+    private void scheduleDelivery(Subscription subscription) {
+        long waitMs = subscription.lastDeliveryMs + subscription.minIntervalMs - clock.getAsLong();
+        if (waitMs <= 0) {
+            subscription.executor.execute(subscription.deliverTask);
+        } else {
+            getTimer().schedule(subscription.delayedTask, waitMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Get the shared delay timer, creating it the first time a delivery has to wait
+     */
+    private synchronized ScheduledExecutorService getTimer() {
+        if (timer == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "StepEventBus");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            timer = executor;
+        }
+        return timer;
+    }
+}
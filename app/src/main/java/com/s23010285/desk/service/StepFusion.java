@@ -0,0 +1,150 @@
+package com.s23010285.desk.service;
+
+/**
+ * Combines the hardware step detector and step counter into one step total
+ * TYPE_STEP_DETECTOR fires on every step with very little delay, so it drives the number the user sees
+ * TYPE_STEP_COUNTER is batched and laggy but it is the authoritative count, so each reading corrects
+ * any steps the detector dropped or invented
+ * The displayed total never goes backwards - if the detector over-counted we hold the total until
+ * the counter catches up
+ * It has no Android dependencies so recorded event streams can be replayed through it on the JVM
+ */
+public class StepFusion {
+
+    // How many recent detector timestamps we remember (must be a power of two)
+    // This only has to cover the steps that can happen between two counter readings
+    private static final int DETECTOR_HISTORY = 256;
+    private static final int DETECTOR_MASK = DETECTOR_HISTORY - 1;
+
+    // detectorTimestampsNs is a ring buffer holding the timestamps of the latest detector events
+    private final long[] detectorTimestampsNs = new long[DETECTOR_HISTORY];
+    // detectorEvents counts every detector event since the last reset
+    private int detectorEvents = 0;
+
+    // counterBaseline is the counter value that corresponds to zero steps in this session (-1 = no reading yet)
+    private long counterBaseline = -1;
+    // counterSteps is the session step count according to the latest counter reading
+    private int counterSteps = 0;
+    // counterTimestampNs is when the latest counter reading was taken
+    private long counterTimestampNs = Long.MIN_VALUE;
+
+    // displayedTotal is the fused total we last reported
+    private int displayedTotal = 0;
+    // correctedSteps adds up how many steps counter readings added on top of the detector
+    private int correctedSteps = 0;
+
+    /**
+     * Handle one step reported by the step detector
+     * @param timestampNs The sensor event timestamp
+     * @return The fused step total after this event
+     */
+    public int onDetectorStep(long timestampNs) {
+        detectorTimestampsNs[detectorEvents & DETECTOR_MASK] = timestampNs;
+        detectorEvents++;
+        return update();
+    }
+
+    /**
+     * Handle a reading from the step counter
+     * @param counterValue The counter value, which counts steps since the device booted
+     * @param timestampNs When the reading was taken
+     * @return The fused step total after this reading
+     */
+    public int onCounterReading(long counterValue, long timestampNs) {
+        if (counterBaseline < 0) {
+            // Detector steps that happened before this reading are already part of the session,
+            // so the baseline sits that many steps below the first value we see
+            counterBaseline = counterValue - (detectorEvents - countDetectorStepsAfter(timestampNs));
+        }
+        counterSteps = (int) Math.max(0, counterValue - counterBaseline);
+        counterTimestampNs = timestampNs;
+
+        int before = displayedTotal;
+        int total = update();
+        int detectorOnlyTotal = Math.max(before, detectorEvents);
+        if (total > detectorOnlyTotal) {
+            correctedSteps += total - detectorOnlyTotal;
+        }
+        return total;
+    }
+
+    /**
+     * Get the fused step total
+     * @return The number of steps in this session
+     */
+    public int getTotal() {
+        return displayedTotal;
+    }
+
+    /**
+     * Get how many steps the detector reported since the last reset
+     * @return The raw detector count
+     */
+    public int getDetectorSteps() {
+        return detectorEvents;
+    }
+
+    /**
+     * Get the session step count according to the latest counter reading
+     * @return The counter-based step count, or 0 before the first reading
+     */
+    public int getCounterSteps() {
+        return counterSteps;
+    }
+
+    /**
+     * Get how many steps counter readings added that the detector had missed
+     * @return The total size of upward corrections
+     */
+    public int getCorrectedSteps() {
+        return correctedSteps;
+    }
+
+    /**
+     * Start counting from zero again
+     * The next counter reading becomes the new baseline
+     */
+    public void reset() {
+        detectorEvents = 0;
+        counterBaseline = -1;
+        counterSteps = 0;
+        counterTimestampNs = Long.MIN_VALUE;
+        displayedTotal = 0;
+        correctedSteps = 0;
+    }
+
+    /**
+     * Recompute the estimate and keep the displayed total monotonic
+     */
+    private int update() {
+        int estimate;
+        if (counterBaseline < 0) {
+            // No counter reading yet - the detector is all we have
+            estimate = detectorEvents;
+        } else {
+            // Trust the counter up to its timestamp, then add the detector steps that came after it
+            estimate = counterSteps + countDetectorStepsAfter(counterTimestampNs);
+        }
+        if (estimate > displayedTotal) {
+            displayedTotal = estimate;
+        }
+        return displayedTotal;
+    }
+
+    /**
+     * Count the remembered detector events that are newer than the given time
+     * Events are stored in time order, so we walk back from the newest one and stop at the first older event
+     */
+    private int countDetectorStepsAfter(long timestampNs) {
+        int remembered = Math.min(detectorEvents, DETECTOR_HISTORY);
+        int count = 0;
+        for (int i = 1; i <= remembered; i++) {
+            if (detectorTimestampsNs[(detectorEvents - i) & DETECTOR_MASK] > timestampNs) {
+                count++;
+            } else {
+                break;
+            }
+        }
+        return count;
+    }
+}
@@ -25,6 +25,7 @@ import com.s23010285.desk.R;
 import com.s23010285.desk.database.DatabaseHelper;
 import com.s23010285.desk.model.User;
 import com.s23010285.desk.utils.ProgressTracker;
+import com.s23010285.desk.utils.StrideProfile;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -526,15 +527,45 @@ public class ProfileFragment extends Fragment {
                     .setMessage("Email: " + currentUser.getEmail() + "\n" +
                               "Name: " + currentUser.getName() + "\n" +
                               "Member since: " + new java.text.SimpleDateFormat("MMM dd, yyyy")
-                              .format(new java.util.Date(currentUser.getCreatedAt())))
+                              .format(new java.util.Date(currentUser.getCreatedAt())) + "\n" +
+                              "Height: " + new StrideProfile(requireContext()).getHeightCm() + " cm")
                     .setPositiveButton("Edit", (dialog, which) -> {
                         Toast.makeText(requireContext(), "Account editing coming soon!", Toast.LENGTH_SHORT).show();
                     })
+                    .setNeutralButton("Set Height", (dialog, which) -> showEditHeightDialog())
                     .setNegativeButton("Close", null)
                     .show();
         }
     }
 
+    /**
+     * Let the user enter their height, which sets their stride length for distance tracking
+     */
+    private void showEditHeightDialog() {
+        StrideProfile strideProfile = new StrideProfile(requireContext());
+        AlertDialog.Builder builder = new AlertDialog.Builder(requireContext());
+        builder.setTitle("Height (cm)");
+
+        final EditText input = new EditText(requireContext());
+        input.setText(String.valueOf(strideProfile.getHeightCm()));
+        input.setInputType(android.text.InputType.TYPE_CLASS_NUMBER);
+        builder.setView(input);
+
+        builder.setPositiveButton("Save", (dialog, which) -> {
+            String newHeight = input.getText().toString().trim();
+            if (!newHeight.isEmpty() && newHeight.length() <= 3
+                    && strideProfile.setHeightCm(Integer.parseInt(newHeight))) {
+                Toast.makeText(requireContext(), "Height updated!", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(requireContext(), "Please enter a height between " + StrideProfile.MIN_HEIGHT_CM +
+                        " and " + StrideProfile.MAX_HEIGHT_CM + " cm", Toast.LENGTH_SHORT).show();
+            }
+        });
+        builder.setNegativeButton("Cancel", (dialog, which) -> dialog.cancel());
+
+        builder.show();
+    }
+
     private void showHelpSupport() {
         new AlertDialog.Builder(requireContext())
                 .setTitle("❓ Help & Support")
@@ -9,10 +9,13 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import com.s23010285.desk.R;
 import com.s23010285.desk.database.DatabaseHelper;
 import com.s23010285.desk.model.User;
+import com.s23010285.desk.utils.ActivityHistogramStore;
+import com.s23010285.desk.utils.MinuteActivityHistogram;
 import com.s23010285.desk.utils.ProgressTracker;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -141,27 +144,26 @@ public class ProgressFragment extends Fragment {
         int currentSteps = progressTracker.getTodaySteps();
         // Get the user's current workout count for today
         int currentWorkouts = progressTracker.getTodayWorkouts();
-        // Calculate how many minutes the user has been active today
-        int activeMinutes = calculateActiveMinutes(currentSteps, currentWorkouts);
         
         // Display the current progress data to the user
         todaySteps.setText(formatNumber(currentSteps));
         todayWorkouts.setText(String.valueOf(currentWorkouts));
-        todayActiveMinutes.setText(String.valueOf(activeMinutes));
+        // Count the minutes the user was actually moving, from the per-minute step histogram
+        // It is read from the database, so it is loaded in the background and shown when it arrives
+        ActivityHistogramStore.getInstance(requireContext()).loadTodaySummary(
+            ContextCompat.getMainExecutor(requireContext()), this::showTodayActivity);
     }
 
     /**
-     * This method calculates how many minutes the user has been active today
-     * It uses their step count and workout count to estimate active time
-     * @param steps How many steps the user has taken today
-     * @param workouts How many workouts the user has completed today
-     * @return The estimated number of active minutes
+     * Show today's active minutes once the histogram summary has loaded
+     * @param todayActivity Today's summary
      */
-    private int calculateActiveMinutes(int steps, int workouts) {
-        // Calculate active minutes based on steps and workouts
-        int stepMinutes = steps / 100; // Roughly 1 minute per 100 steps
-        int workoutMinutes = workouts * 15; // Assume 15 minutes per workout
-        return Math.min(stepMinutes + workoutMinutes, 120); // Cap at 2 hours
+    private void showTodayActivity(MinuteActivityHistogram.Summary todayActivity) {
+        // The screen may have been closed while the summary was loading
+        if (getView() == null) {
+            return;
+        }
+        todayActiveMinutes.setText(String.valueOf(todayActivity.activeMinutes));
     }
 
     private String formatNumber(int number) {
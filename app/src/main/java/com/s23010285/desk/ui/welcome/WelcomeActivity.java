@@ -7,6 +7,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.s23010285.desk.R;
 import com.s23010285.desk.ui.auth.LoginActivity;
 import com.s23010285.desk.ui.auth.SignUpActivity;
+import com.s23010285.desk.utils.OfflineMediaPack;
 
 /**
  * Welcome activity that serves as the entry point for the DeskBreak app
@@ -25,6 +26,8 @@ public class WelcomeActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Get exercise media onto the device so workouts also work offline
+        OfflineMediaPack.syncInBackground(this);
         // This line tells the app which layout file to use for the welcome screen
         setContentView(R.layout.welcome_activity_welcome);
 
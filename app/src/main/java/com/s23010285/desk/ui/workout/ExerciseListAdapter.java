@@ -0,0 +1,185 @@
+package com.s23010285.desk.ui.workout;
+
+import android.graphics.Typeface;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.s23010285.desk.R;
+import com.s23010285.desk.model.WorkoutSchedule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows the full exercise list of a workout session and highlights the current exercise
+ * Row text is built once when the list is set, and moving to another exercise only rebinds
+ * the two rows whose highlight changed (as a payload, so their text isn't set again)
+ */
+public class ExerciseListAdapter extends ListAdapter<ExerciseListAdapter.ExerciseRow, ExerciseListAdapter.ExerciseViewHolder> {
+
+    // PAYLOAD_HIGHLIGHT marks a change where only the highlight of a row moved
+    static final Object PAYLOAD_HIGHLIGHT = new Object();
+
+    // currentIndex is the position of the highlighted exercise (-1 when none is)
+    private int currentIndex = -1;
+    // rows is the newest list handed to submitList; getCurrentList() lags behind it until the
+    // background diff finishes, so every change starts from this one
+    private List<ExerciseRow> rows = Collections.emptyList();
+
+    /**
+     * Create an empty exercise list
+     */
+    public ExerciseListAdapter() {
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
+    }
+
+    /**
+     * Show the exercises of a session
+     * @param exercises The exercises in session order
+     * @param currentIndex The position of the exercise to highlight
+     */
+    public void setExercises(List<WorkoutSchedule.WorkoutExercise> exercises, int currentIndex) {
+        this.currentIndex = currentIndex;
+        List<ExerciseRow> newRows = new ArrayList<>(exercises.size());
+        for (int i = 0; i < exercises.size(); i++) {
+            WorkoutSchedule.WorkoutExercise ex = exercises.get(i);
+            String text = "• " + ex.getName() + "  (" + ex.getDurationSeconds() + "s)\n" + ex.getDescription();
+            newRows.add(new ExerciseRow(i, text, i == currentIndex));
+        }
+        rows = newRows;
+        submitList(newRows);
+    }
+
+    /**
+     * Move the highlight to another exercise
+     * @param index The position of the exercise that is now current
+     */
+    public void setCurrentIndex(int index) {
+        if (index == currentIndex || rows.isEmpty()) {
+            return;
+        }
+        // Only the old and the new current row are replaced, every other row keeps its object
+        // Two moves in one frame both start from rows, so the first one's highlight is never left behind
+        List<ExerciseRow> newRows = new ArrayList<>(rows);
+        if (currentIndex >= 0 && currentIndex < newRows.size()) {
+            newRows.set(currentIndex, newRows.get(currentIndex).withCurrent(false));
+        }
+        if (index >= 0 && index < newRows.size()) {
+            newRows.set(index, newRows.get(index).withCurrent(true));
+        }
+        currentIndex = index;
+        rows = newRows;
+        submitList(newRows);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
+
+    @NonNull
+    @Override
+    public ExerciseViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_workout_exercise, parent, false);
+        return new ExerciseViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ExerciseViewHolder holder, int position) {
+        holder.bind(getItem(position));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ExerciseViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_HIGHLIGHT)) {
+            // The text is still right, only the highlight moved
+            holder.bindHighlight(getItem(position).current);
+        } else {
+            super.onBindViewHolder(holder, position, payloads);
+        }
+    }
+
+    /**
+     * One row of the list, never changed after it is made
+     */
+    static final class ExerciseRow {
+        // id is the exercise position, the list never reorders so it is a stable id
+        final long id;
+        // text is the finished row text
+        final String text;
+        // current is true for the exercise being done now
+        final boolean current;
+
+        ExerciseRow(long id, String text, boolean current) {
+            this.id = id;
+            this.text = text;
+            this.current = current;
+        }
+
+        /**
+         * Get the same row with a different highlight
+         */
+        ExerciseRow withCurrent(boolean isCurrent) {
+            return isCurrent == current ? this : new ExerciseRow(id, text, isCurrent);
+        }
+    }
+
+    // DIFF_CALLBACK matches rows by id and reports a highlight-only change as a payload
+    private static final DiffUtil.ItemCallback<ExerciseRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<ExerciseRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ExerciseRow oldRow, @NonNull ExerciseRow newRow) {
+            return oldRow.id == newRow.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ExerciseRow oldRow, @NonNull ExerciseRow newRow) {
+            return oldRow.current == newRow.current && oldRow.text.equals(newRow.text);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull ExerciseRow oldRow, @NonNull ExerciseRow newRow) {
+            return oldRow.text.equals(newRow.text) ? PAYLOAD_HIGHLIGHT : null;
+        }
+    };
+
+    /**
+     * Holds the text view of one exercise row
+     */
+    static class ExerciseViewHolder extends RecyclerView.ViewHolder {
+        // tvExercise shows the name, duration and description of the exercise
+        private final TextView tvExercise;
+
+        ExerciseViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvExercise = itemView.findViewById(R.id.tvExerciseItem);
+        }
+
+        /**
+         * Fill the row with an exercise
+         */
+        void bind(ExerciseRow row) {
+            tvExercise.setText(row.text);
+            bindHighlight(row.current);
+        }
+
+        /**
+         * Show whether this row is the current exercise
+         */
+        void bindHighlight(boolean current) {
+            int color = current ? R.color.accent_green : R.color.text_secondary;
+            tvExercise.setTextColor(ContextCompat.getColor(itemView.getContext(), color));
+            tvExercise.setTypeface(null, current ? Typeface.BOLD : Typeface.NORMAL);
+        }
+    }
+}
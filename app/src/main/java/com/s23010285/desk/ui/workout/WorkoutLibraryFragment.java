@@ -1,19 +1,46 @@
 package com.s23010285.desk.ui.workout;
 
+import android.content.Context;
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
 import com.google.android.material.card.MaterialCardView;
+import com.google.android.material.chip.Chip;
+import com.google.android.material.chip.ChipGroup;
+import com.google.android.material.textfield.TextInputEditText;
 import com.s23010285.desk.R;
+import com.s23010285.desk.model.WorkoutCatalog;
+import com.s23010285.desk.model.WorkoutFacets;
 import com.s23010285.desk.model.WorkoutSchedule;
+import com.s23010285.desk.utils.ExerciseAnimationManager;
+import com.s23010285.desk.utils.ExerciseAnimationPrefetcher;
+import com.s23010285.desk.utils.OfflineMediaPack;
+import com.s23010285.desk.utils.WorkoutCatalogLoader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -22,12 +49,31 @@ import java.util.List;
  */
 public class WorkoutLibraryFragment extends Fragment {
 
+    // Saved state key prefix for the picked filters, followed by the facet name
+    private static final String STATE_FILTER = "filter_";
+    // How many cards ahead (in the scroll direction) get their thumbnails loaded before they show
+    private static final int PRELOAD_CARDS = 6;
+    // About two screens of cards are kept for reuse, so a fast fling doesn't inflate new ones
+    private static final int CARD_POOL_SIZE = 12;
+    // Cards just scrolled off keep their thumbnail and come back without being bound again
+    private static final int CACHED_CARDS = 4;
+
     // This variable holds the RecyclerView that displays the list of workouts
     private RecyclerView recyclerView;
     // This adapter helps display the workout data in the RecyclerView
     private WorkoutAdapter adapter;
-    // This list holds all the available workout schedules
+    // This list holds the workout schedules currently shown
     private List<WorkoutSchedule> workoutSchedules;
+    // catalog holds the workouts, their search index and their filters
+    private WorkoutCatalog catalog;
+    // selection holds the filter chips that are checked
+    private final WorkoutFacets.Selection selection = new WorkoutFacets.Selection();
+    // query is the search text
+    private String query = "";
+    // noResultsText is shown when the search and filters match nothing
+    private TextView noResultsText;
+    // animationPrefetcher downloads the thumbnails' GIFs before their cards scroll in
+    private ExerciseAnimationPrefetcher animationPrefetcher;
 
     /**
      * This method is called when the workout library screen is created
@@ -47,12 +93,60 @@ public class WorkoutLibraryFragment extends Fragment {
         recyclerView = view.findViewById(R.id.recyclerViewWorkouts);
         // Set the layout manager to display workouts in a vertical list
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        // The list's size comes from the screen, not from its cards, and every card uses one layout
+        recyclerView.setHasFixedSize(true);
+        recyclerView.setItemViewCacheSize(CACHED_CARDS);
+        recyclerView.getRecycledViewPool().setMaxRecycledViews(0, CARD_POOL_SIZE);
         
-        // Load all available workout schedules from our predefined list
-        workoutSchedules = WorkoutSchedule.getAllWorkoutSchedules();
+        // Restore the checked filters, their chips are added once the catalog is in
+        if (savedInstanceState != null) {
+            for (WorkoutFacets.Facet facet : WorkoutFacets.Facet.values()) {
+                ArrayList<String> keys = savedInstanceState.getStringArrayList(STATE_FILTER + facet.name());
+                if (keys != null) {
+                    for (String key : keys) {
+                        selection.set(facet, key, true);
+                    }
+                }
+            }
+        }
+        noResultsText = view.findViewById(R.id.tvWorkoutNoResults);
+        
+        // Return the view so it can be displayed
+        return view;
+    }
+
+    /**
+     * Fill the screen with the catalog's workouts
+     * @param view The view made by onCreateView
+     * @param savedInstanceState Any saved state from previous instances
+     */
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        // The catalog is built once per process, so coming back to this screen doesn't rebuild it
+        // The first time it may still be loading, so the list is filled in when it arrives
+        WorkoutCatalogLoader.loadCatalog(requireContext(), ContextCompat.getMainExecutor(requireContext()),
+                loaded -> {
+                    // The screen may have been left, or its view replaced, while the catalog loaded
+                    if (getView() != view) {
+                        return;
+                    }
+                    showCatalog(loaded, view);
+                });
+    }
+
+    /**
+     * Fill the list, the filter chips and the search box once the catalog has loaded
+     * @param catalog The catalog
+     * @param view This screen's view
+     */
+    private void showCatalog(WorkoutCatalog catalog, View view) {
+        this.catalog = catalog;
+        workoutSchedules = catalog.getAll();
         
         // Create an adapter to display the workouts and handle user taps
-        adapter = new WorkoutAdapter(workoutSchedules, workout -> {
+        RequestManager glide = Glide.with(this);
+        adapter = new WorkoutAdapter(catalog, requireContext(), glide, workout -> {
             // Handle workout selection - when a user taps on a workout
             // Create an intent to open the workout session screen
             Intent intent = new Intent(getActivity(), WorkoutSessionActivity.class);
@@ -66,30 +160,250 @@ public class WorkoutLibraryFragment extends Fragment {
         
         // Set the adapter to the RecyclerView so it can display the workouts
         recyclerView.setAdapter(adapter);
+        // Load thumbnails for the cards about to scroll in, at the size of the card's image
+        recyclerView.addOnScrollListener(new RecyclerViewPreloader<>(glide, adapter,
+                adapter.getPreloadSizeProvider(), PRELOAD_CARDS));
+        // Download the thumbnails further down into the disk cache, in list order, as the network allows
+        List<String> thumbnailUrls = new ArrayList<>(workoutSchedules.size());
+        for (WorkoutSchedule workout : workoutSchedules) {
+            thumbnailUrls.add(WorkoutAdapter.thumbnailUrl(workout));
+        }
+        animationPrefetcher = new ExerciseAnimationPrefetcher(requireContext());
+        animationPrefetcher.start(thumbnailUrls);
         
-        // Return the view so it can be displayed
-        return view;
+        addFilterChips(getLayoutInflater(), view.findViewById(R.id.chipGroupWorkoutFilters));
+        
+        // Search as the user types, the catalog's index answers each keystroke without going through every workout
+        // Search text typed (or restored after rotation) before the catalog arrived is picked up here,
+        // text restored later goes through the listener
+        TextInputEditText searchInput = view.findViewById(R.id.etWorkoutSearch);
+        query = searchInput.getText() != null ? searchInput.getText().toString() : "";
+        searchInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+            
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+            
+            @Override
+            public void afterTextChanged(Editable s) {
+                query = s.toString();
+                showResults();
+            }
+        });
+        showResults();
+    }
+
+    /**
+     * Drop thumbnail downloads that haven't finished once the screen goes away
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (animationPrefetcher != null) {
+            animationPrefetcher.cancel();
+            animationPrefetcher = null;
+        }
+    }
+
+    /**
+     * Save the checked filters so they survive a rotation
+     * @param outState Where to save them
+     */
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        for (WorkoutFacets.Facet facet : WorkoutFacets.Facet.values()) {
+            outState.putStringArrayList(STATE_FILTER + facet.name(), new ArrayList<>(selection.getKeys(facet)));
+        }
+    }
+
+    /**
+     * Add a chip for every filter value the catalog has, facet by facet
+     * @param inflater Creates the chips
+     * @param chipGroup Where the chips go
+     */
+    private void addFilterChips(LayoutInflater inflater, ChipGroup chipGroup) {
+        WorkoutFacets facets = catalog.getFacets();
+        for (WorkoutFacets.Facet facet : WorkoutFacets.Facet.values()) {
+            for (WorkoutFacets.Value value : facets.getValues(facet)) {
+                Chip chip = (Chip) inflater.inflate(R.layout.item_workout_filter_chip, chipGroup, false);
+                chip.setText(facet == WorkoutFacets.Facet.DURATION
+                        ? getDurationLabel(Integer.parseInt(value.getKey())) : value.getLabel());
+                // Check it before listening, so restored filters don't each refresh the list
+                chip.setChecked(selection.contains(value));
+                chip.setOnCheckedChangeListener((button, checked) -> {
+                    selection.set(value, checked);
+                    showResults();
+                });
+                chipGroup.addView(chip);
+            }
+        }
+    }
+
+    /**
+     * Get the chip text for a duration bucket, e.g. "11–20 min"
+     * @param bucket The bucket number from WorkoutFacets.getDurationBucket
+     * @return The text to show
+     */
+    private String getDurationLabel(int bucket) {
+        int[] limits = WorkoutFacets.getDurationLimits();
+        if (bucket == 0) {
+            return getString(R.string.workout_filter_duration_up_to, limits[0]);
+        }
+        if (bucket == limits.length) {
+            return getString(R.string.workout_filter_duration_over, limits[limits.length - 1]);
+        }
+        return getString(R.string.workout_filter_duration_range, limits[bucket - 1] + 1, limits[bucket]);
+    }
+
+    /**
+     * Show the workouts matching the search text and the checked filters
+     * The adapter works out what changed on a background thread, so only the changed cards are redrawn
+     */
+    private void showResults() {
+        List<WorkoutSchedule> results = catalog.search(query, selection);
+        workoutSchedules = results;
+        noResultsText.setVisibility(results.isEmpty() ? View.VISIBLE : View.GONE);
+        adapter.submitList(results, () -> {
+            // Best matches come first, so show them once the new list is in
+            if (workoutSchedules == results) {
+                recyclerView.scrollToPosition(0);
+            }
+        });
     }
 
     /**
      * This adapter class helps display workout data in the RecyclerView
      * It creates workout cards and handles when users tap on them
+     * New lists are compared with the shown one on a background thread, and each workout's id is its
+     * catalog position, so cards that stay are kept and only added, removed or moved ones animate
+     * It also tells the preloader which thumbnail each position shows, built exactly as bind loads it
+     * so the preloaded image is the one found in the cache
      */
-    private static class WorkoutAdapter extends RecyclerView.Adapter<WorkoutAdapter.WorkoutViewHolder> {
+    private static class WorkoutAdapter extends ListAdapter<WorkoutSchedule, WorkoutAdapter.WorkoutViewHolder>
+            implements ListPreloader.PreloadModelProvider<WorkoutSchedule> {
+        
+        // Catalog schedules are frozen, so the same id always means the same, unchanged schedule
+        private static final DiffUtil.ItemCallback<WorkoutSchedule> DIFF = new DiffUtil.ItemCallback<WorkoutSchedule>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull WorkoutSchedule oldItem, @NonNull WorkoutSchedule newItem) {
+                return oldItem.getId().equals(newItem.getId());
+            }
+            
+            @Override
+            public boolean areContentsTheSame(@NonNull WorkoutSchedule oldItem, @NonNull WorkoutSchedule newItem) {
+                return oldItem == newItem;
+            }
+        };
+        
+        // Thumbnails are a still frame cropped to the card's image; the crop is set here rather than
+        // taken from the ImageView's scale type so preloads, which have no view, ask for the same image
+        private static final RequestOptions THUMBNAIL_OPTIONS = new RequestOptions()
+                .centerCrop()
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .placeholder(R.drawable.exercise_default)
+                .error(R.drawable.exercise_default);
         
-        // This list holds all the workouts we want to display
-        private List<WorkoutSchedule> workouts;
+        // catalog gives each workout its stable id
+        private final WorkoutCatalog catalog;
+        // context finds thumbnails in the offline media pack, glide loads them
+        private final Context context;
+        private final RequestManager glide;
+        // sizeProvider measures the first bound thumbnail so preloads decode at that size
+        private final ViewPreloadSizeProvider<WorkoutSchedule> sizeProvider = new ViewPreloadSizeProvider<>();
         // This listener is called when a user taps on a workout
         private OnWorkoutClickListener listener;
 
         /**
          * Constructor for the adapter
-         * @param workouts The list of workouts to display
+         * @param catalog The catalog the workouts come from
+         * @param context Any context
+         * @param glide Loads the thumbnails for the screen showing the list
          * @param listener The listener that handles workout selection
          */
-        public WorkoutAdapter(List<WorkoutSchedule> workouts, OnWorkoutClickListener listener) {
-            this.workouts = workouts;
+        public WorkoutAdapter(WorkoutCatalog catalog, Context context, RequestManager glide,
+                              OnWorkoutClickListener listener) {
+            super(DIFF);
+            this.catalog = catalog;
+            this.context = context.getApplicationContext();
+            this.glide = glide;
             this.listener = listener;
+            setHasStableIds(true);
+        }
+
+        /**
+         * Get what tells the preloader how big thumbnails are
+         * @return The size provider, which knows the size once the first card is bound
+         */
+        public ViewPreloadSizeProvider<WorkoutSchedule> getPreloadSizeProvider() {
+            return sizeProvider;
+        }
+
+        /**
+         * Get the workouts whose thumbnails a position shows
+         * @param position A position in the shown list
+         * @return The workout there, or nothing if the list has changed since
+         */
+        @NonNull
+        @Override
+        public List<WorkoutSchedule> getPreloadItems(int position) {
+            List<WorkoutSchedule> shown = getCurrentList();
+            if (position < 0 || position >= shown.size()) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(shown.get(position));
+        }
+
+        /**
+         * Get the request that loads a workout's thumbnail
+         * @param workout The workout
+         * @return The same request its card makes when bound
+         */
+        @Nullable
+        @Override
+        public RequestBuilder<?> getPreloadRequestBuilder(@NonNull WorkoutSchedule workout) {
+            return thumbnailRequest(workout);
+        }
+
+        /**
+         * Let go of a card's thumbnail once it is off screen, so the bitmap can be reused
+         * @param holder The card being recycled
+         */
+        @Override
+        public void onViewRecycled(@NonNull WorkoutViewHolder holder) {
+            super.onViewRecycled(holder);
+            glide.clear(holder.ivThumbnail);
+        }
+
+        private RequestBuilder<Bitmap> thumbnailRequest(WorkoutSchedule workout) {
+            // From the offline pack if it has it
+            return glide.asBitmap()
+                    .load(OfflineMediaPack.glideSource(context, thumbnailUrl(workout)))
+                    .apply(THUMBNAIL_OPTIONS);
+        }
+
+        /**
+         * Get the picture a workout's card shows
+         * @param workout The workout
+         * @return Its own picture, or its category's exercise animation if it has none
+         */
+        static String thumbnailUrl(WorkoutSchedule workout) {
+            return workout.getThumbnailUrl() != null
+                    ? workout.getThumbnailUrl()
+                    : ExerciseAnimationManager.getGifUrlForCategory(workout.getCategory());
+        }
+
+        /**
+         * Get a workout's stable id
+         * @param position The position of the workout in the shown list
+         * @return Its position in the catalog
+         */
+        @Override
+        public long getItemId(int position) {
+            return catalog.getPosition(getItem(position).getId());
         }
 
         /**
@@ -117,19 +431,10 @@ public class WorkoutLibraryFragment extends Fragment {
         @Override
         public void onBindViewHolder(@NonNull WorkoutViewHolder holder, int position) {
             // Get the workout at this position and bind it to the view holder
-            WorkoutSchedule workout = workouts.get(position);
+            WorkoutSchedule workout = getItem(position);
             holder.bind(workout);
         }
 
-        /**
-         * This method tells the RecyclerView how many workouts we have
-         * @return The total number of workouts to display
-         */
-        @Override
-        public int getItemCount() {
-            return workouts.size();
-        }
-
         /**
          * This class holds references to all the UI elements in a workout card
          * It helps us efficiently update the card's content
@@ -139,6 +444,8 @@ public class WorkoutLibraryFragment extends Fragment {
             private MaterialCardView cardView;
             // These text views display different details about the workout
             private TextView tvName, tvPurpose, tvDuration, tvSchedule, tvCategory;
+            // ivThumbnail shows the workout's picture
+            private ImageView ivThumbnail;
 
             /**
              * Constructor for the view holder
@@ -153,6 +460,7 @@ public class WorkoutLibraryFragment extends Fragment {
                 tvDuration = itemView.findViewById(R.id.tvWorkoutDuration);
                 tvSchedule = itemView.findViewById(R.id.tvWorkoutSchedule);
                 tvCategory = itemView.findViewById(R.id.tvWorkoutCategory);
+                ivThumbnail = itemView.findViewById(R.id.ivWorkoutThumbnail);
             }
 
             /**
@@ -171,6 +479,9 @@ public class WorkoutLibraryFragment extends Fragment {
                 tvSchedule.setText(workout.getSchedule());
                 // Set the workout category (like cardio, strength, etc.)
                 tvCategory.setText(workout.getCategory());
+                // Show the workout's thumbnail, usually already decoded by the preloader
+                sizeProvider.setView(ivThumbnail);
+                thumbnailRequest(workout).into(ivThumbnail);
 
                 // Set up what happens when someone taps on this workout card
                 cardView.setOnClickListener(v -> {
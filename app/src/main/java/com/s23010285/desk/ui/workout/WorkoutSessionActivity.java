@@ -1,15 +1,15 @@
 package com.s23010285.desk.ui.workout;
 
 import android.Manifest;
-import android.animation.ObjectAnimator;
-import android.animation.ValueAnimator;
 import android.content.pm.PackageManager;
+import android.location.Location;
 import android.os.Bundle;
-import android.os.CountDownTimer;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.HapticFeedbackConstants;
 import android.view.View;
-import android.view.animation.AccelerateDecelerateInterpolator;
 import android.widget.Button;
 import android.widget.LinearLayout;
 import android.widget.TextView;
@@ -18,25 +18,46 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
 import com.google.android.material.progressindicator.LinearProgressIndicator;
 import com.s23010285.desk.R;
 import com.s23010285.desk.model.WorkoutSchedule;
+import com.s23010285.desk.utils.BreathingEngine;
+import com.s23010285.desk.utils.BreathingPattern;
+import com.s23010285.desk.utils.FrameMetricsRecorder;
 import com.s23010285.desk.utils.ProgressTracker;
+import com.s23010285.desk.utils.RouteCodec;
+import com.s23010285.desk.utils.RouteTracker;
+import com.s23010285.desk.utils.SessionClock;
+import com.s23010285.desk.utils.SessionRecorder;
 import com.s23010285.desk.utils.ExerciseVideoManager;
 import com.s23010285.desk.utils.WorkoutAudioManager;
 import com.s23010285.desk.utils.AchievementManager;
 import com.s23010285.desk.utils.SocialFeaturesManager;
-import com.pierfrancescosoffritti.androidyoutubeplayer.core.player.YouTubePlayer;
-import com.pierfrancescosoffritti.androidyoutubeplayer.core.player.listeners.AbstractYouTubePlayerListener;
-import com.pierfrancescosoffritti.androidyoutubeplayer.core.player.views.YouTubePlayerView;
+import com.s23010285.desk.utils.StrideCalibrationSpan;
+import com.s23010285.desk.utils.StrideEstimator;
+import com.s23010285.desk.utils.StrideProfile;
+import com.s23010285.desk.utils.TutorialVideoController;
+import com.s23010285.desk.utils.WorkoutCatalogLoader;
+import com.s23010285.desk.utils.WorkoutSessionEngine;
+import com.s23010285.desk.service.MotionTemplate;
+import com.s23010285.desk.service.RepTracker;
 import com.s23010285.desk.service.StepDetectorService;
+import com.s23010285.desk.service.StepEventBus;
 import android.content.ServiceConnection;
 import android.content.ComponentName;
 import android.content.Context;
@@ -44,34 +65,37 @@ import android.content.Intent;
 import android.os.IBinder;
 import android.util.Log;
 import android.widget.ImageView;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Workout session activity for active workout tracking
  * Displays different UI based on workout type with interactive exercise flow
  * This is the main screen where users actually do their workouts
  */
-public class WorkoutSessionActivity extends AppCompatActivity implements OnMapReadyCallback, StepDetectorService.StepDetectionListener {
+public class WorkoutSessionActivity extends AppCompatActivity implements OnMapReadyCallback, StepDetectorService.StepDetectionListener,
+        WorkoutSessionEngine.Listener {
 
     // These variables hold references to the main workout session UI elements
     // workoutSessionTitle shows the name of the current workout
-    private TextView workoutSessionTitle, tvSteps, tvDistance;
+    private TextView workoutSessionTitle, tvSteps, tvDistance, tvPace;
     // These buttons let users control their workout session
     private Button btnPause, btnStop, btnFinish;
 
     // Exercise navigation views - these help users move through different exercises
     // exerciseNumber shows which exercise the user is currently doing (e.g., "Exercise 1 of 5")
     private TextView exerciseNumber, exerciseName, exerciseDescription, exerciseTimerText;
+    // exerciseReps shows how many reps the accelerometer counted (hidden for exercises without reps)
+    private TextView exerciseReps;
     // exerciseProgress shows a visual progress bar for the current exercise
     private LinearProgressIndicator exerciseProgress;
     // These buttons let users go to the previous or next exercise
     private Button btnPrevious, btnNext;
     
     // YouTube video tutorial views - these show exercise videos to help users
-    // youTubePlayerView displays the video player
-    private YouTubePlayerView youTubePlayerView;
-    // youTubePlayer controls the video playback
-    private YouTubePlayer youTubePlayer;
+    // videoController creates the player on first use and buffers the next exercise's video
+    private TutorialVideoController videoController;
     // videoTutorialLabel shows text explaining the video
     private TextView videoTutorialLabel;
 
@@ -90,8 +114,6 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
     private String workoutCategory;
     // workoutDuration is how long the workout should take in minutes
     private int workoutDuration;
-    // isPaused tracks whether the workout is currently paused
-    private boolean isPaused = false;
     // isMeditationSession tells us if this is a meditation workout
     private boolean isMeditationSession = false;
 
@@ -100,10 +122,19 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
     private WorkoutSchedule selectedSchedule;
     // exercises is the list of individual exercises in this workout
     private List<WorkoutSchedule.WorkoutExercise> exercises;
-    // currentExerciseIndex tracks which exercise the user is currently doing
-    private int currentExerciseIndex = 0;
-    // exerciseTimer counts down the time for each exercise
-    private CountDownTimer exerciseTimer;
+    // exerciseListAdapter shows the full exercise list and highlights the current one
+    private ExerciseListAdapter exerciseListAdapter;
+    // sessionEngine owns the session state (current exercise, paused, countdowns) and tells us what to draw
+    // It is null until the schedule has been opened
+    private WorkoutSessionEngine sessionEngine;
+    // restoredState is the state the activity was recreated with, kept until the schedule is open
+    private Bundle restoredState;
+    // sessionHandler runs sessionTick on the main thread
+    private final Handler sessionHandler = new Handler(Looper.getMainLooper());
+    // How long we wait after an exercise ends before moving to the next one
+    private static final long AUTO_ADVANCE_DELAY_MS = 2000;
+    // KEY_SESSION_STATE is where the engine snapshot is kept when the activity is recreated
+    private static final String KEY_SESSION_STATE = "session_state";
     // totalWorkoutTime tracks the total time the workout should take
     private int totalWorkoutTime = 0;
     // completedWorkoutTime tracks how much time has been completed
@@ -122,16 +153,38 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
     private int stepCount = 0;
     // totalDistance tracks how far the user has moved during this workout
     private double totalDistance = 0.0;
+    // routeTracker filters GPS fixes into a simplified route, distance and pace (cardio sessions only)
+    private RouteTracker routeTracker;
+    // routePolyline draws the route on the map
+    private Polyline routePolyline;
+    // drawnRouteVersion is the route version the map shows, so the line is only rebuilt when the route changed
+    private int drawnRouteVersion = -1;
+    // locationUpdatesIntervalMs is the interval we asked the location service for (0 when not receiving updates)
+    private long locationUpdatesIntervalMs = 0;
+    // KEY_ROUTE and KEY_ROUTE_DISTANCE keep the route when the activity is recreated
+    private static final String KEY_ROUTE = "route";
+    private static final String KEY_ROUTE_DISTANCE = "route_distance";
+    // routeLocationCallback receives the continuous GPS fixes while a cardio session runs
+    private final LocationCallback routeLocationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            for (Location location : result.getLocations()) {
+                onRouteLocation(location);
+            }
+        }
+    };
 
     // Meditation session variables - these help manage meditation-specific features
-    // meditationHandler helps schedule meditation-related actions
-    private Handler meditationHandler;
-    // meditationProgressValue tracks how far along the meditation session is
-    private int meditationProgressValue = 0;
-    // isBreathingIn tracks whether the user should be breathing in or out
-    private boolean isBreathingIn = true;
-    // breathingAnimator creates smooth animations for breathing guidance
-    private ObjectAnimator breathingAnimator;
+    // breathingEngine works out the breathing phase and circle size from the session clock
+    private BreathingEngine breathingEngine;
+    // breathingFrame redraws the breathing circle once per frame while the session runs
+    private final Choreographer.FrameCallback breathingFrame = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            updateBreathing();
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
     
     // Progress tracking - these help monitor the user's workout performance
     private ProgressTracker progressTracker;
@@ -145,6 +198,28 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
     private StepDetectorService stepDetectorService;
     private boolean isStepServiceBound = false;
     private int sessionStartSteps = 0;
+    // lastReportedTotal is the last step total we received, so we only add the new steps to the tracker
+    private int lastReportedTotal = 0;
+    // stepSubscription is our registration on the step service's event bus
+    private StepEventBus.Subscription stepSubscription;
+    // The step card only needs a handful of refreshes per second, not one per step
+    private static final int STEP_UI_MAX_UPDATES_PER_SECOND = 4;
+    
+    // strideProfile holds the user's height and GPS stride calibration
+    private StrideProfile strideProfile;
+    // strideEstimator turns this session's steps into cadence, distance and pace
+    private StrideEstimator strideEstimator;
+    // strideCalibrationSpan keeps the GPS and step distances of the stretches where both were measuring
+    private StrideCalibrationSpan strideCalibrationSpan;
+    
+    // sessionRecorder collects per-exercise timings, pauses, skips and steps and saves them when the session ends
+    private SessionRecorder sessionRecorder;
+    
+    // repTracker counts reps of strength exercises with the accelerometer on a background thread
+    private RepTracker repTracker;
+    
+    // frameMetricsRecorder measures frame times per exercise in debug builds (null in release builds)
+    private FrameMetricsRecorder frameMetricsRecorder;
     
     // Service connection for step detector
     private ServiceConnection stepServiceConnection = new ServiceConnection() {
@@ -154,7 +229,8 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
                 Log.d("WorkoutSession", "StepDetectorService connected");
                 StepDetectorService.LocalBinder binder = (StepDetectorService.LocalBinder) service;
                 stepDetectorService = binder.getService();
-                stepDetectorService.setStepDetectionListener(WorkoutSessionActivity.this);
+                stepSubscription = stepDetectorService.subscribe(WorkoutSessionActivity.this,
+                        STEP_UI_MAX_UPDATES_PER_SECOND, ContextCompat.getMainExecutor(WorkoutSessionActivity.this));
                 isStepServiceBound = true;
                 
                 // Start step detection for cardio workouts
@@ -175,6 +251,7 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         public void onServiceDisconnected(ComponentName name) {
             Log.d("WorkoutSession", "StepDetectorService disconnected");
             stepDetectorService = null;
+            stepSubscription = null;
             isStepServiceBound = false;
         }
     };
@@ -196,14 +273,67 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         audioManager = new WorkoutAudioManager(this);
         achievementManager = new AchievementManager(this);
         socialFeaturesManager = new SocialFeaturesManager(this);
+        
+        // Distance comes from the user's own stride model instead of a fixed step length
+        strideProfile = new StrideProfile(this);
+        strideEstimator = strideProfile.createEstimator();
+        strideCalibrationSpan = new StrideCalibrationSpan();
+        
+        // The GPS route survives the activity being recreated
+        routeTracker = new RouteTracker();
+        if (savedInstanceState != null && savedInstanceState.getByteArray(KEY_ROUTE) != null) {
+            routeTracker.restore(savedInstanceState.getByteArray(KEY_ROUTE),
+                    savedInstanceState.getDouble(KEY_ROUTE_DISTANCE));
+            totalDistance = routeTracker.getDistanceMeters();
+        }
+
+
+        // Opening the schedule may read its exercises from the catalog file, so it happens off the main
+        // thread and the session is set up once it's open
+        restoredState = savedInstanceState;
+        WorkoutCatalogLoader.openSchedule(this, workoutId, ContextCompat.getMainExecutor(this), schedule -> {
+            if (isFinishing() || isDestroyed()) {
+                return;
+            }
+            applySchedule(schedule);
+            startSession(restoredState);
+        });
+    }
 
-        // Resolve full schedule by id
-        resolveSelectedSchedule();
+    /**
+     * Set up the session for the opened schedule
+     * @param savedInstanceState The state the activity was recreated with, or null
+     */
+    private void startSession(Bundle savedInstanceState) {
+        // The engine runs the session, restoring it if the activity was recreated (e.g. on rotation)
+        sessionEngine = createSessionEngine();
+        boolean restored = savedInstanceState != null
+                && sessionEngine.restoreState(savedInstanceState.getLongArray(KEY_SESSION_STATE));
+        sessionRecorder = new SessionRecorder(this, workoutCategory, workoutName, exercises,
+                workoutDuration * 60_000L, sessionEngine::getElapsedMs, SystemClock::elapsedRealtime);
+        if (restored) {
+            sessionRecorder.restoreState(savedInstanceState);
+        }
+        repTracker = new RepTracker(this, reps -> onRepCounted());
+        frameMetricsRecorder = FrameMetricsRecorder.startIfDebuggable(this, workoutCategory,
+                exercises != null ? exercises.size() : 0);
+        if (frameMetricsRecorder != null) {
+            frameMetricsRecorder.setExerciseIndex(sessionEngine.getExerciseIndex());
+        }
 
         setupViews();
         setupUI();
         setupClickListeners();
         
+        if (restored) {
+            renderRestoredSession();
+        } else {
+            sessionEngine.start();
+        }
+        scheduleSessionTick(0);
+        // Show the tutorial video (already done if the session started with an exercise)
+        loadExerciseVideo();
+        
         // Bind step detector service only for cardio workouts
         if ("Cardio".equalsIgnoreCase(workoutCategory) || 
             "lite_cardio".equalsIgnoreCase(workoutId)) {
@@ -213,16 +343,12 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         startWorkoutSession();
     }
 
-    private void resolveSelectedSchedule() {
-        List<WorkoutSchedule> all = WorkoutSchedule.getAllWorkoutSchedules();
-        if (all != null) {
-            for (WorkoutSchedule s : all) {
-                if (s.getId().equals(workoutId)) {
-                    selectedSchedule = s;
-                    break;
-                }
-            }
-        }
+    /**
+     * Use the opened schedule's name, duration, category and exercises
+     * @param schedule The schedule, or null if it couldn't be opened (the intent's values are kept)
+     */
+    private void applySchedule(WorkoutSchedule schedule) {
+        selectedSchedule = schedule;
         if (selectedSchedule != null) {
             // prefer canonical values from the schedule
             workoutName = selectedSchedule.getName();
@@ -242,6 +368,7 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         workoutSessionTitle = findViewById(R.id.workoutSessionTitle);
         tvSteps = findViewById(R.id.tvSteps);
         tvDistance = findViewById(R.id.tvDistance);
+        tvPace = findViewById(R.id.tvPace);
         btnPause = findViewById(R.id.btnPause);
         btnStop = findViewById(R.id.btnStop);
         btnFinish = findViewById(R.id.btnFinish);
@@ -251,14 +378,15 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         exerciseName = findViewById(R.id.exerciseName);
         exerciseDescription = findViewById(R.id.exerciseDescription);
         exerciseTimerText = findViewById(R.id.exerciseTimer);
+        exerciseReps = findViewById(R.id.exerciseReps);
         exerciseProgress = findViewById(R.id.exerciseProgress);
         btnPrevious = findViewById(R.id.btnPrevious);
         btnNext = findViewById(R.id.btnNext);
-        youTubePlayerView = findViewById(R.id.youtubePlayerView);
         videoTutorialLabel = findViewById(R.id.videoTutorialLabel);
         
-        // Setup YouTube player
-        setupYouTubePlayer();
+        // The YouTube player itself is only created when a video is first shown
+        videoController = new TutorialVideoController(getLifecycle(), findViewById(R.id.videoTutorialCard),
+                findViewById(R.id.youtubePlayerStub), videoTutorialLabel);
 
         // Meditation views
         cardMeditation = findViewById(R.id.cardMeditation);
@@ -290,8 +418,8 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         // Setup exercise navigation
         setupExerciseNavigation();
 
-        // Render exercises if available
-        renderExercises();
+        // Show the exercise list if there is one
+        setupExerciseList();
     }
 
     private void setupExerciseNavigation() {
@@ -302,8 +430,7 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
             return;
         }
 
-        // Show first exercise
-        showCurrentExercise();
+        // The first exercise is shown when the session engine starts it
         
         // Setup navigation buttons
         btnPrevious.setOnClickListener(v -> previousExercise());
@@ -311,153 +438,190 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         
         // Initially disable previous button
         btnPrevious.setEnabled(false);
-        updateNavigationButtons();
     }
 
     private void showCurrentExercise() {
-        if (exercises == null || currentExerciseIndex >= exercises.size()) {
+        int index = sessionEngine.getExerciseIndex();
+        if (exercises == null || index >= exercises.size()) {
             return;
         }
 
-        WorkoutSchedule.WorkoutExercise exercise = exercises.get(currentExerciseIndex);
+        WorkoutSchedule.WorkoutExercise exercise = exercises.get(index);
         
         // Update exercise info
-        exerciseNumber.setText("Exercise " + (currentExerciseIndex + 1) + " of " + exercises.size());
+        exerciseNumber.setText("Exercise " + (index + 1) + " of " + exercises.size());
         exerciseName.setText(exercise.getName());
         exerciseDescription.setText(exercise.getDescription());
         
-        // Load exercise animation
-        // Exercise video will be loaded when YouTube player is ready
-        
-        // Start exercise timer
-        startExerciseTimer(exercise.getDurationSeconds());
-        
         // Update progress
         updateExerciseProgress();
     }
 
     /**
-     * Setup YouTube player for exercise tutorials
+     * Show the YouTube video for the current exercise and buffer the next one
      */
-    private void setupYouTubePlayer() {
-        if (youTubePlayerView != null) {
-            getLifecycle().addObserver(youTubePlayerView);
-            
-            youTubePlayerView.addYouTubePlayerListener(new AbstractYouTubePlayerListener() {
-                @Override
-                public void onReady(YouTubePlayer player) {
-                    youTubePlayer = player;
-                    // Load initial video
-                    loadExerciseVideo();
-                }
-            });
+    private void loadExerciseVideo() {
+        int index = sessionEngine.getExerciseIndex();
+        videoController.show(getExerciseVideo(index));
+        // The next exercise's video is loaded in the background so the switch doesn't stall
+        boolean hasNext = exercises != null && index + 1 < exercises.size();
+        videoController.cueNext(hasNext ? getExerciseVideo(index + 1) : null);
+    }
+
+    /**
+     * Get the tutorial video for an exercise
+     * @param index The position of the exercise
+     * @return The exercise's video, or the workout category's video if there is no exercise
+     */
+    private ExerciseVideoManager.VideoData getExerciseVideo(int index) {
+        if (exercises != null && !exercises.isEmpty() && index < exercises.size()) {
+            return ExerciseVideoManager.getVideoData(exercises.get(index).getName());
         }
+        return ExerciseVideoManager.getVideoDataForCategory(workoutCategory);
     }
-    
+
+    private void updateExerciseProgress() {
+        // Move the highlight, only the old and new current rows are rebound
+        if (exerciseListAdapter != null) {
+            exerciseListAdapter.setCurrentIndex(sessionEngine.getExerciseIndex());
+        }
+    }
+
     /**
-     * Load YouTube video for current exercise with timestamp
+     * Build the session engine for the resolved schedule
+     * @return A new engine on a clock based on SystemClock.elapsedRealtime
      */
-    private void loadExerciseVideo() {
-        if (youTubePlayer == null) return;
-        
-        String exerciseName = null;
-        if (exercises != null && !exercises.isEmpty() && currentExerciseIndex < exercises.size()) {
-            exerciseName = exercises.get(currentExerciseIndex).getName();
+    private WorkoutSessionEngine createSessionEngine() {
+        int exerciseCount = exercises != null ? exercises.size() : 0;
+        int[] durationsSeconds = new int[exerciseCount];
+        for (int i = 0; i < exerciseCount; i++) {
+            durationsSeconds[i] = exercises.get(i).getDurationSeconds();
         }
-        
-        ExerciseVideoManager.VideoData videoData;
-        if (exerciseName != null) {
-            videoData = ExerciseVideoManager.getVideoData(exerciseName);
-        } else {
-            videoData = ExerciseVideoManager.getVideoDataForCategory(workoutCategory);
+        WorkoutSessionEngine engine = new WorkoutSessionEngine(durationsSeconds, workoutDuration * 60_000L,
+                AUTO_ADVANCE_DELAY_MS, new SessionClock(SystemClock::elapsedRealtime));
+        engine.setListener(this);
+        return engine;
+    }
+
+    /**
+     * Redraw everything from the engine after the activity was recreated
+     * Nothing is replayed, so no sounds play and nothing is recorded twice
+     */
+    private void renderRestoredSession() {
+        WorkoutSessionEngine.State state = sessionEngine.getState();
+        if (state == WorkoutSessionEngine.State.COMPLETED) {
+            showCompletion();
+            return;
         }
-        
-        // Load video with timestamp
-        youTubePlayer.loadVideo(videoData.videoId, videoData.startTimeSeconds);
-        
-        // Update label with video title
-        if (videoTutorialLabel != null) {
-            videoTutorialLabel.setText(videoData.title);
+        if (exercises != null && !exercises.isEmpty()) {
+            showCurrentExercise();
+            updateNavigationButtons();
+            updateRepTracking();
+        }
+        if (state == WorkoutSessionEngine.State.PAUSED) {
+            btnPause.setText("Resume");
+            pauseMedia();
         }
-        
-        Log.d("WorkoutSession", "Loading video: " + videoData.title + 
-              " (ID: " + videoData.videoId + ", Time: " + videoData.startTimeSeconds + "s)");
     }
 
-    private void updateExerciseProgress() {
-        // Update the exercise list to highlight current exercise
-        renderExercises();
+    /**
+     * Schedule the next session tick, replacing any tick that is already waiting
+     * @param delayMs How long to wait before the tick runs
+     */
+    private void scheduleSessionTick(long delayMs) {
+        sessionHandler.removeCallbacks(sessionTick);
+        sessionHandler.postDelayed(sessionTick, delayMs);
     }
 
-    private void startExerciseTimer(int durationSeconds) {
-        if (exerciseTimer != null) {
-            exerciseTimer.cancel();
+    // sessionTick brings the engine up to date and reschedules itself for the next whole-second boundary
+    // There is only ever one pending tick, and none while the session is paused or finished
+    private final Runnable sessionTick = new Runnable() {
+        @Override
+        public void run() {
+            long delayMs = sessionEngine.tick();
+            if (delayMs >= 0) {
+                sessionHandler.postDelayed(this, delayMs);
+            }
+        }
+    };
+
+    // Session engine callbacks - these only draw what the engine tells us
+
+    @Override
+    public void onStateChanged(WorkoutSessionEngine.State state) {
+        btnPause.setText(state == WorkoutSessionEngine.State.PAUSED ? "Resume" : "Pause");
+        if (state == WorkoutSessionEngine.State.PAUSED) {
+            sessionRecorder.onPaused();
+        } else {
+            sessionRecorder.onResumed();
         }
+    }
 
+    @Override
+    public void onExerciseStarted(int index) {
+        sessionRecorder.onExerciseStarted(index);
+        if (breathingEngine != null) {
+            // Each meditation exercise can use its own rhythm
+            breathingEngine.setPattern(BreathingPattern.forExercise(getExerciseName(index)), sessionEngine.getElapsedMs());
+        }
+        if (frameMetricsRecorder != null) {
+            frameMetricsRecorder.setExerciseIndex(index);
+        }
         // Play exercise start sound
         audioManager.playExerciseStartSound();
+        showCurrentExercise();
+        updateNavigationButtons();
+        loadExerciseVideo(); // Load new video for this exercise
+        updateRepTracking();
+    }
 
-        exerciseTimer = new CountDownTimer(durationSeconds * 1000L, 1000) {
-            @Override
-            public void onTick(long millisUntilFinished) {
-                if (!isPaused) {
-                    int secondsLeft = (int) (millisUntilFinished / 1000);
-                    exerciseTimerText.setText(String.format("%02d:%02d", secondsLeft / 60, secondsLeft % 60));
-                    
-                    // Update progress bar
-                    int progress = (int) (((durationSeconds - secondsLeft) * 100) / durationSeconds);
-                    exerciseProgress.setProgress(progress);
-                    
-                    // Play timer beep for last 3 seconds
-                    if (secondsLeft <= 3 && secondsLeft > 0) {
-                        audioManager.playTimerBeepSound();
-                    }
-                }
-            }
+    @Override
+    public void onExerciseTick(int index, int secondsLeft, int progressPercent) {
+        exerciseTimerText.setText(String.format(Locale.getDefault(), "%02d:%02d", secondsLeft / 60, secondsLeft % 60));
+        exerciseProgress.setProgress(progressPercent);
+        
+        // Play timer beep for last 3 seconds
+        if (secondsLeft > 0 && secondsLeft <= 3) {
+            audioManager.playTimerBeepSound();
+        }
+    }
 
-            @Override
-            public void onFinish() {
-                exerciseTimerText.setText("00:00");
-                exerciseProgress.setProgress(100);
-                
-                // Play exercise complete sound
-                audioManager.playExerciseCompleteSound();
-                
-                // Auto-advance to next exercise after a short delay
-                new Handler().postDelayed(() -> {
-                    if (currentExerciseIndex < exercises.size() - 1) {
-                        nextExercise();
-                    }
-                }, 2000);
-            }
-        }.start();
+    @Override
+    public void onExerciseFinished(int index) {
+        sessionRecorder.onExerciseFinished(index);
+        // Movement during the break before the next exercise isn't a rep
+        repTracker.stop();
+        // Play exercise complete sound
+        audioManager.playExerciseCompleteSound();
     }
 
-    private void previousExercise() {
-        if (currentExerciseIndex > 0) {
-            currentExerciseIndex--;
-            showCurrentExercise();
-            updateNavigationButtons();
-            loadExerciseVideo(); // Load new video for this exercise
+    @Override
+    public void onSessionProgress(int percent) {
+        if (isMeditationSession) {
+            meditationProgress.setText("Session Progress: " + percent + "%");
         }
     }
 
+    @Override
+    public void onSessionCompleted() {
+        sessionHandler.removeCallbacks(sessionTick);
+        completeWorkout();
+    }
+
+    private void previousExercise() {
+        sessionEngine.previous();
+    }
+
     private void nextExercise() {
-        if (currentExerciseIndex < exercises.size() - 1) {
-            currentExerciseIndex++;
-            showCurrentExercise();
-            updateNavigationButtons();
-            loadExerciseVideo(); // Load new video for this exercise
-        } else {
-            // Last exercise completed
-            completeWorkout();
-        }
+        // On the last exercise this finishes the session
+        sessionEngine.next();
     }
 
     private void updateNavigationButtons() {
-        btnPrevious.setEnabled(currentExerciseIndex > 0);
+        int index = sessionEngine.getExerciseIndex();
+        btnPrevious.setEnabled(index > 0);
         
-        if (currentExerciseIndex == exercises.size() - 1) {
+        if (index == exercises.size() - 1) {
             btnNext.setText("Finish Workout");
         } else {
             btnNext.setText("Next Exercise");
@@ -473,13 +637,30 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         // Play workout complete sound
         audioManager.playWorkoutCompleteSound();
         
-        // Update achievements
+        // If GPS measured this walk while steps were counted, use it to fine-tune the user's stride length
+        if (strideCalibrationSpan.getStepDistanceMeters() > 0) {
+            strideProfile.calibrateFromGpsWalk(strideCalibrationSpan.getGpsDistanceMeters(),
+                    strideCalibrationSpan.getStepDistanceMeters());
+        }
+        
+        // Save the full session with its per-exercise records (written in the background)
+        stopRouteUpdates();
+        sessionRecorder.finish(SessionRecorder.STATUS_COMPLETED, getSessionDistance(), getPackedRoute());
+        
+        // Update achievements: one more workout counted, and this workout's length for the time goals
         achievementManager.updateProgress(AchievementManager.AchievementType.EXERCISE_COUNT, 1);
         achievementManager.updateProgress(AchievementManager.AchievementType.TIME_GOAL, workoutDuration);
         
         // Show completion message
         Toast.makeText(this, "Workout completed! Great job!", Toast.LENGTH_LONG).show();
         
+        showCompletion();
+    }
+    
+    /**
+     * Show the finished state of the session
+     */
+    private void showCompletion() {
         // Update UI to show completion
         exerciseName.setText("Workout Complete! 🎉");
         exerciseDescription.setText("You've successfully completed all exercises. Well done!");
@@ -494,6 +675,10 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         btnFinish.setVisibility(View.VISIBLE);
         btnFinish.setText("Finish & Save");
         
+        // The session clock has stopped, so the breathing circle has nothing left to follow
+        stopBreathingFrames();
+        repTracker.stop();
+        
         // Stop background music
         audioManager.stopBackgroundMusic();
     }
@@ -503,13 +688,47 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
             int todaySteps = progressTracker.getTodaySteps();
             tvSteps.setText(String.valueOf(todaySteps));
             
-            // Update step goal achievements
+            // Step goals watch today's total, reporting it on every step costs nothing until a goal is reached
             achievementManager.updateProgress(AchievementManager.AchievementType.STEP_GOAL, todaySteps);
         }
+        updateDistanceDisplay();
+    }
+    
+    /**
+     * Get how far the user moved in this session
+     * @return The GPS distance if we have one, otherwise the step-based distance, in metres
+     */
+    private double getSessionDistance() {
+        return totalDistance > 0 ? totalDistance : strideEstimator.getDistanceMeters();
+    }
+    
+    /**
+     * Get the GPS route to save with the session
+     * @return The route packed by RouteCodec, or null if there were no GPS fixes
+     */
+    private byte[] getPackedRoute() {
+        return routeTracker.getRoute().size() > 0 ? routeTracker.encodeRoute() : null;
+    }
+    
+    /**
+     * Show this session's distance and the current pace
+     */
+    private void updateDistanceDisplay() {
         if (tvDistance != null) {
-            int todaySteps = progressTracker.getTodaySteps();
-            double distance = todaySteps * 0.7; // meters per step approximation
-            tvDistance.setText(String.format("%.1fm", distance));
+            tvDistance.setText(String.format(Locale.getDefault(), "%.1fm", getSessionDistance()));
+        }
+        if (tvPace != null) {
+            // GPS pace when we have it, otherwise the pace worked out from cadence
+            int paceSeconds = routeTracker.getPaceSecondsPerKm();
+            if (paceSeconds == 0) {
+                paceSeconds = strideEstimator.getPaceSecondsPerKm(SystemClock.elapsedRealtimeNanos());
+            }
+            if (paceSeconds > 0) {
+                tvPace.setText(String.format(Locale.getDefault(), "%d:%02d /km", paceSeconds / 60, paceSeconds % 60));
+                tvPace.setVisibility(View.VISIBLE);
+            } else {
+                tvPace.setVisibility(View.GONE);
+            }
         }
     }
 
@@ -527,18 +746,7 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         // Start breathing animation
         startBreathingAnimation();
         
-        // Start meditation progress
-        startMeditationProgress();
-        
-        // Load meditation video tutorial
-        if (youTubePlayer != null) {
-            ExerciseVideoManager.VideoData videoData = 
-                ExerciseVideoManager.getVideoDataForCategory("meditation");
-            youTubePlayer.loadVideo(videoData.videoId, videoData.startTimeSeconds);
-            if (videoTutorialLabel != null) {
-                videoTutorialLabel.setText(videoData.title);
-            }
-        }
+        // Meditation progress is reported by the session engine
         
         // Start background music for meditation
         audioManager.playBackgroundMusic("meditation");
@@ -567,16 +775,6 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         // Setup Google Maps
         setupGoogleMaps();
         
-        // Load cardio video tutorial
-        if (youTubePlayer != null) {
-            ExerciseVideoManager.VideoData videoData = 
-                ExerciseVideoManager.getVideoDataForCategory("cardio");
-            youTubePlayer.loadVideo(videoData.videoId, videoData.startTimeSeconds);
-            if (videoTutorialLabel != null) {
-                videoTutorialLabel.setText(videoData.title);
-            }
-        }
-        
         // Start background music for cardio
         audioManager.playBackgroundMusic("cardio");
     }
@@ -591,58 +789,66 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         cardMeditation.setVisibility(View.GONE);
         
         // Load default animation for regular workout
-        // Exercise video will be loaded when YouTube player is ready
+        // Exercise video is loaded once the session starts
         
         // Start background music for strength training
         audioManager.playBackgroundMusic("strength");
     }
 
     private void startBreathingAnimation() {
-        // Create breathing animation
-        breathingAnimator = ObjectAnimator.ofFloat(breathingCircle, "scaleX", 1.0f, 1.5f, 1.0f);
-        breathingAnimator.setDuration(4000); // 4 seconds for complete breath cycle
-        breathingAnimator.setRepeatCount(ValueAnimator.INFINITE);
-        breathingAnimator.setInterpolator(new AccelerateDecelerateInterpolator());
-        
-        breathingAnimator.addUpdateListener(animation -> {
-            float scale = (Float) animation.getAnimatedValue();
-            breathingCircle.setScaleX(scale);
-            breathingCircle.setScaleY(scale);
-            
-            // Update breathing guide text
-            if (scale > 1.25f) {
-                breathingGuide.setText("Breathe in...");
-            } else if (scale < 1.25f) {
-                breathingGuide.setText("Breathe out...");
-            }
-        });
-        
-        breathingAnimator.start();
+        // The breath follows the session clock, so it stops during pauses and survives rotation
+        breathingEngine = new BreathingEngine(
+                BreathingPattern.forExercise(getExerciseName(sessionEngine.getExerciseIndex())), 1.0f, 1.5f);
+        breathingEngine.start(0);
+        updateBreathing();
+        startBreathingFrames();
     }
 
-    private void startMeditationProgress() {
-        meditationHandler = new Handler(Looper.getMainLooper());
-        
-        Runnable progressRunnable = new Runnable() {
-            @Override
-            public void run() {
-                if (!isPaused && meditationProgressValue < 100) {
-                    meditationProgressValue += 1;
-                    meditationProgress.setText("Session Progress: " + meditationProgressValue + "%");
-                    
-                    // Continue progress
-                    meditationHandler.postDelayed(this, (workoutDuration * 60 * 1000) / 100);
-                }
-            }
-        };
-        
-        meditationHandler.post(progressRunnable);
+    /**
+     * Redraw the breathing circle every frame until stopBreathingFrames is called
+     */
+    private void startBreathingFrames() {
+        if (breathingEngine == null) {
+            return;
+        }
+        Choreographer.getInstance().removeFrameCallback(breathingFrame);
+        Choreographer.getInstance().postFrameCallback(breathingFrame);
+    }
+
+    private void stopBreathingFrames() {
+        Choreographer.getInstance().removeFrameCallback(breathingFrame);
+    }
+
+    /**
+     * Size the breathing circle for the current moment, and change the guide only when a new phase begins
+     */
+    private void updateBreathing() {
+        boolean newPhase = breathingEngine.update(sessionEngine.getElapsedMs());
+        float scale = breathingEngine.getScale();
+        breathingCircle.setScaleX(scale);
+        breathingCircle.setScaleY(scale);
+        if (newPhase) {
+            breathingGuide.setText(breathingEngine.getPhase().getLabel());
+            breathingCircle.performHapticFeedback(HapticFeedbackConstants.CONTEXT_CLICK);
+        }
+    }
+
+    /**
+     * Get the name of an exercise
+     * @param index The position of the exercise
+     * @return The name, or null if there is no such exercise
+     */
+    private String getExerciseName(int index) {
+        if (exercises == null || index < 0 || index >= exercises.size()) {
+            return null;
+        }
+        return exercises.get(index).getName();
     }
 
     private void setupClickListeners() {
         // Pause/Resume button
         btnPause.setOnClickListener(v -> {
-            if (isPaused) {
+            if (sessionEngine.getState() == WorkoutSessionEngine.State.PAUSED) {
                 resumeWorkout();
             } else {
                 pauseWorkout();
@@ -677,6 +883,8 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
     @Override
     public void onMapReady(GoogleMap googleMap) {
         mMap = googleMap;
+        // Draw the route recorded before the activity was recreated
+        drawRoute();
 
         // Check location permission
         if (checkLocationPermission()) {
@@ -713,7 +921,88 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
                             mMap.addMarker(new MarkerOptions().position(currentLocation).title("You are here"));
                         }
                     });
+            startRouteUpdates();
+        }
+    }
+    
+    /**
+     * Ask for continuous GPS fixes at the interval that suits the current speed
+     * Calling it again with a different interval replaces the previous request
+     */
+    private void startRouteUpdates() {
+        if (fusedLocationClient == null || !checkLocationPermission()) return;
+        WorkoutSessionEngine.State state = sessionEngine.getState();
+        if (state == WorkoutSessionEngine.State.PAUSED || state == WorkoutSessionEngine.State.COMPLETED) return;
+        long intervalMs = routeTracker.getRecommendedIntervalMs();
+        if (intervalMs == locationUpdatesIntervalMs) return;
+        LocationRequest request = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, intervalMs)
+                .setMinUpdateIntervalMillis(intervalMs / 2)
+                .build();
+        try {
+            fusedLocationClient.requestLocationUpdates(request, routeLocationCallback, Looper.getMainLooper());
+            locationUpdatesIntervalMs = intervalMs;
+            Log.d("WorkoutSession", "GPS updates every " + intervalMs + "ms");
+        } catch (SecurityException e) {
+            Log.e("WorkoutSession", "Error requesting location updates: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Stop the continuous GPS fixes
+     */
+    private void stopRouteUpdates() {
+        if (fusedLocationClient != null && locationUpdatesIntervalMs != 0) {
+            fusedLocationClient.removeLocationUpdates(routeLocationCallback);
+            locationUpdatesIntervalMs = 0;
+        }
+    }
+    
+    /**
+     * Add a GPS fix to the route and update the map, distance and pace
+     * @param location The new fix
+     */
+    private void onRouteLocation(Location location) {
+        WorkoutSessionEngine.State state = sessionEngine.getState();
+        if (state != WorkoutSessionEngine.State.RUNNING && state != WorkoutSessionEngine.State.TRANSITIONING) return;
+        float accuracy = location.hasAccuracy() ? location.getAccuracy() : Float.MAX_VALUE;
+        // getTime() is wall-clock time, which can jump when the network corrects it
+        long fixTimeMs = location.getElapsedRealtimeNanos() / 1_000_000;
+        if (routeTracker.addFix(location.getLatitude(), location.getLongitude(), accuracy, fixTimeMs)) {
+            totalDistance = routeTracker.getDistanceMeters();
+            // Only stretches where steps were counted too can calibrate the stride
+            if (stepDetectorService != null && stepDetectorService.isDetecting()) {
+                strideCalibrationSpan.onFix(totalDistance, strideEstimator.getDistanceMeters());
+            } else {
+                strideCalibrationSpan.breakSpan();
+            }
+            currentLocation = new LatLng(location.getLatitude(), location.getLongitude());
+            drawRoute();
+            updateDistanceDisplay();
+        }
+        // Speeding up or slowing down changes how often we need fixes
+        startRouteUpdates();
+    }
+    
+    /**
+     * Redraw the route line if the simplified route changed since it was last drawn
+     */
+    private void drawRoute() {
+        if (mMap == null || drawnRouteVersion == routeTracker.getRouteVersion()) return;
+        RouteCodec.Route route = routeTracker.getRoute();
+        if (route.size() == 0) return;
+        // The simplified route has a fixed maximum size, so this stays cheap however long the session is
+        List<LatLng> points = new ArrayList<>(route.size());
+        for (int i = 0; i < route.size(); i++) {
+            points.add(new LatLng(route.latitudes[i], route.longitudes[i]));
+        }
+        if (routePolyline == null) {
+            routePolyline = mMap.addPolyline(new PolylineOptions()
+                    .color(ContextCompat.getColor(this, R.color.teal_600))
+                    .width(10f));
         }
+        routePolyline.setPoints(points);
+        drawnRouteVersion = routeTracker.getRouteVersion();
+        mMap.animateCamera(com.google.android.gms.maps.CameraUpdateFactory.newLatLng(points.get(points.size() - 1)));
     }
 
     @Override
@@ -731,57 +1020,55 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
     }
 
     private void pauseWorkout() {
-        isPaused = true;
-        btnPause.setText("Resume");
+        // Stop the session clock - countdowns keep their exact remaining time
+        sessionEngine.pause();
+        sessionHandler.removeCallbacks(sessionTick);
         
+        pauseMedia();
+        repTracker.stop();
+        
+        // Stop GPS while paused, and don't count what the user walked in the meantime
+        stopRouteUpdates();
+        routeTracker.markGap();
+        strideCalibrationSpan.breakSpan();
+        
+        // Pause step detection for cardio workouts
+        if (("Cardio".equalsIgnoreCase(workoutCategory) || 
+             "lite_cardio".equalsIgnoreCase(workoutId)) && stepDetectorService != null) {
+            stopStepCounting();
+        }
+    }
+    
+    /**
+     * Pause the breathing animation, video and music
+     */
+    private void pauseMedia() {
         if (isMeditationSession) {
             // Pause breathing animation
-            if (breathingAnimator != null) {
-                breathingAnimator.pause();
-            }
-        }
-        
-        // Pause exercise timer
-        if (exerciseTimer != null) {
-            exerciseTimer.cancel();
+            stopBreathingFrames();
         }
         
         // Pause YouTube video
-        if (youTubePlayer != null) {
-            youTubePlayer.pause();
-        }
+        videoController.pause();
         
         // Pause background music
         audioManager.pauseBackgroundMusic();
-        
-        // Pause step detection for cardio workouts
-        if (("Cardio".equalsIgnoreCase(workoutCategory) || 
-             "lite_cardio".equalsIgnoreCase(workoutId)) && stepDetectorService != null) {
-            stopStepCounting();
-        }
     }
 
     private void resumeWorkout() {
-        isPaused = false;
-        btnPause.setText("Pause");
-        
         if (isMeditationSession) {
             // Resume breathing animation
-            if (breathingAnimator != null) {
-                breathingAnimator.resume();
-            }
+            startBreathingFrames();
         }
         
-        // Resume exercise timer
-        if (exercises != null && currentExerciseIndex < exercises.size()) {
-            WorkoutSchedule.WorkoutExercise exercise = exercises.get(currentExerciseIndex);
-            startExerciseTimer(exercise.getDurationSeconds());
-        }
+        // Carry on from where the session clock stopped
+        sessionEngine.resume();
+        scheduleSessionTick(0);
+        startRouteUpdates();
+        updateRepTracking();
         
         // Resume YouTube video
-        if (youTubePlayer != null) {
-            youTubePlayer.play();
-        }
+        videoController.play();
         
         // Resume background music
         audioManager.resumeBackgroundMusic();
@@ -795,8 +1082,7 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
 
     private void startWorkoutSession() {
         if (isMeditationSession) {
-            // Start meditation session
-            startMeditationProgress();
+            // Meditation progress is reported by the session engine
         } else if ("Cardio".equalsIgnoreCase(workoutCategory) || 
                    "lite_cardio".equalsIgnoreCase(workoutId)) {
             // Start cardio session with real step tracking
@@ -821,17 +1107,22 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
             if (stepDetectorService != null && stepDetectorService.isDetecting()) {
                 // Already detecting, just reset for this session
                 sessionStartSteps = stepDetectorService.getStepCount();
+                lastReportedTotal = sessionStartSteps;
                 Log.d("WorkoutSession", "Using existing step detection, session start: " + sessionStartSteps);
             } else if (stepDetectorService != null) {
                 // Start fresh step detection
                 stepDetectorService.resetStepCount();
                 stepDetectorService.startStepDetection();
                 sessionStartSteps = 0;
+                lastReportedTotal = 0;
                 Log.d("WorkoutSession", "Started new step detection");
             } else {
                 Log.w("WorkoutSession", "StepDetectorService not available, cannot start step counting");
                 return;
             }
+            // The estimator keeps the distance of the whole session across pauses, but a calibration
+            // stretch has to start after steps are counted again
+            strideCalibrationSpan.breakSpan();
             
             // Initialize display
             updateStepCounter();
@@ -851,55 +1142,80 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
         }
     }
     
+    /**
+     * Count reps with the accelerometer while the current exercise has a motion template and is running
+     * Exercises without reps (planks, stretches, breathing) hide the rep count
+     */
+    private void updateRepTracking() {
+        int index = sessionEngine.getExerciseIndex();
+        MotionTemplate template = isMeditationSession ? null : MotionTemplate.forExercise(getExerciseName(index));
+        if (template == null || !repTracker.isAvailable()) {
+            repTracker.stop();
+            exerciseReps.setVisibility(View.GONE);
+            return;
+        }
+        exerciseReps.setVisibility(View.VISIBLE);
+        exerciseReps.setText("Reps: " + sessionRecorder.getReps(index));
+        WorkoutSessionEngine.State state = sessionEngine.getState();
+        if (state == WorkoutSessionEngine.State.PAUSED || state == WorkoutSessionEngine.State.COMPLETED) {
+            repTracker.stop();
+        } else {
+            repTracker.start(template);
+        }
+    }
+
+    /**
+     * Called on the main thread for every rep the accelerometer counted
+     */
+    private void onRepCounted() {
+        sessionRecorder.onRep();
+        exerciseReps.setText("Reps: " + sessionRecorder.getReps(sessionEngine.getExerciseIndex()));
+    }
+
     // Step detection listener methods
+    // These run on the main thread because we subscribed with the main executor
     @Override
     public void onStepDetected(int totalSteps) {
         try {
-            runOnUiThread(() -> {
-                try {
-                    // Calculate steps for this session
-                    int sessionSteps = totalSteps - sessionStartSteps;
-                    
-                    // Update progress tracker with real steps
-                    if (sessionSteps > 0) {
-                        progressTracker.addSteps(1); // Add one step at a time as detected
-                    }
-                    
-                    // Update UI
-                    updateStepCounter();
-                    
-                    // Show step count in UI
-                    if (tvSteps != null) {
-                        tvSteps.setText(String.valueOf(sessionSteps));
-                    }
-                    
-                    // Update distance based on real steps
-                    if (tvDistance != null) {
-                        double distance = sessionSteps * 0.7; // meters per step approximation
-                        tvDistance.setText(String.format("%.1fm", distance));
-                    }
-                    
-                    Log.d("WorkoutSession", "Step detected - Total: " + totalSteps + 
-                                           ", Session start: " + sessionStartSteps + 
-                                           ", Session steps: " + sessionSteps);
-                } catch (Exception e) {
-                    Log.e("WorkoutSession", "Error updating UI for step detection: " + e.getMessage(), e);
-                }
-            });
+            // Calculate steps for this session
+            int sessionSteps = totalSteps - sessionStartSteps;
+            
+            // Totals are coalesced, so add every step since the last update, not just one
+            int newSteps = totalSteps - lastReportedTotal;
+            lastReportedTotal = totalSteps;
+            if (newSteps > 0 && sessionSteps > 0) {
+                progressTracker.addSteps(newSteps);
+                strideEstimator.onSteps(newSteps, SystemClock.elapsedRealtimeNanos());
+                sessionRecorder.onSteps(newSteps);
+            }
+            
+            // Update UI (this also refreshes distance and pace)
+            updateStepCounter();
+            
+            // Show step count in UI
+            if (tvSteps != null) {
+                tvSteps.setText(String.valueOf(sessionSteps));
+            }
+            
+            Log.d("WorkoutSession", "Step detected - Total: " + totalSteps + 
+                                   ", Session start: " + sessionStartSteps + 
+                                   ", Session steps: " + sessionSteps);
         } catch (Exception e) {
-            Log.e("WorkoutSession", "Error in onStepDetected: " + e.getMessage(), e);
+            Log.e("WorkoutSession", "Error updating UI for step detection: " + e.getMessage(), e);
         }
     }
     
     @Override
     public void onStepCountReset() {
-        runOnUiThread(() -> {
-            sessionStartSteps = 0;
-            updateStepCounter();
-        });
+        sessionStartSteps = 0;
+        lastReportedTotal = 0;
+        updateStepCounter();
     }
 
-    private void renderExercises() {
+    /**
+     * Set up the full exercise list once, moving between exercises only updates the highlight
+     */
+    private void setupExerciseList() {
         LinearLayout container = findViewById(R.id.exercisesContainer);
         if (container == null) return;
         if (selectedSchedule == null || selectedSchedule.getExercises() == null) {
@@ -907,43 +1223,49 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
             return;
         }
         container.setVisibility(View.VISIBLE);
-        // Remove any existing children after header
-        if (container.getChildCount() > 1) {
-            container.removeViews(1, container.getChildCount() - 1);
-        }
-        for (int i = 0; i < selectedSchedule.getExercises().size(); i++) {
-            WorkoutSchedule.WorkoutExercise ex = selectedSchedule.getExercises().get(i);
-            TextView item = new TextView(this);
-            
-            // Highlight current exercise
-            String exerciseText = "• " + ex.getName() + "  (" + ex.getDurationSeconds() + "s)\n" + ex.getDescription();
-            item.setText(exerciseText);
-            
-            if (i == currentExerciseIndex) {
-                item.setTextColor(ContextCompat.getColor(this, R.color.accent_green));
-                item.setTypeface(null, android.graphics.Typeface.BOLD);
-            } else {
-                item.setTextColor(ContextCompat.getColor(this, R.color.text_secondary));
+        RecyclerView exercisesList = findViewById(R.id.exercisesList);
+        exercisesList.setLayoutManager(new LinearLayoutManager(this));
+        exerciseListAdapter = new ExerciseListAdapter();
+        exercisesList.setAdapter(exerciseListAdapter);
+        exerciseListAdapter.setExercises(selectedSchedule.getExercises(), sessionEngine.getExerciseIndex());
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (sessionEngine == null) {
+            // Still opening the schedule, so keep the state this activity was given
+            if (restoredState != null) {
+                outState.putAll(restoredState);
             }
-            
-            item.setTextSize(14f);
-            item.setLineSpacing(4f, 1f);
-            LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(
-                    LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.WRAP_CONTENT);
-            lp.topMargin = (int) (getResources().getDisplayMetrics().density * 8);
-            item.setLayoutParams(lp);
-            container.addView(item);
+            return;
+        }
+        // A few longs are enough to bring the whole session back
+        outState.putLongArray(KEY_SESSION_STATE, sessionEngine.saveState());
+        if (routeTracker.getRoute().size() > 0) {
+            outState.putByteArray(KEY_ROUTE, routeTracker.encodeRoute());
+            outState.putDouble(KEY_ROUTE_DISTANCE, routeTracker.getDistanceMeters());
         }
+        sessionRecorder.saveState(outState);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
         
+        // Leaving before the end still saves what was done (does nothing if the session was already saved)
+        if (isFinishing() && sessionRecorder != null) {
+            sessionRecorder.finish(SessionRecorder.STATUS_ABANDONED, getSessionDistance(), getPackedRoute());
+        }
+        
         // Clean up step detector service
         try {
             if (isStepServiceBound) {
                 stopStepCounting();
+                if (stepDetectorService != null) {
+                    stepDetectorService.unsubscribe(stepSubscription);
+                    stepSubscription = null;
+                }
                 unbindService(stepServiceConnection);
                 isStepServiceBound = false;
                 Log.d("WorkoutSession", "StepDetectorService unbound successfully");
@@ -952,15 +1274,27 @@ public class WorkoutSessionActivity extends AppCompatActivity implements OnMapRe
             Log.e("WorkoutSession", "Error unbinding StepDetectorService: " + e.getMessage(), e);
         }
         
-        // Clean up meditation resources
-        if (meditationHandler != null) {
-            meditationHandler.removeCallbacksAndMessages(null);
+        // Stop GPS updates
+        stopRouteUpdates();
+        
+        // Save achievement progress still waiting for its save delay
+        if (achievementManager != null) {
+            achievementManager.flush();
         }
-        if (breathingAnimator != null) {
-            breathingAnimator.cancel();
+        
+        // Write this session's frame time summary
+        if (frameMetricsRecorder != null) {
+            frameMetricsRecorder.stop();
+            frameMetricsRecorder = null;
         }
-        if (exerciseTimer != null) {
-            exerciseTimer.cancel();
+        
+        // Stop the session tick and the breathing animation
+        sessionHandler.removeCallbacks(sessionTick);
+        stopBreathingFrames();
+        
+        // Turn the accelerometer off and end the rep counting thread
+        if (repTracker != null) {
+            repTracker.release();
         }
         
         // Clean up audio manager
@@ -4,28 +4,51 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Achievement Manager for DeskBreak App
  * Implements gamification with badges, rewards, and progress tracking
  * This class is like a game system that rewards users for reaching fitness milestones
+ * Progress is kept by an AchievementTracker, which saves only the achievements that changed, in the
+ * background and at most once every couple of seconds; call flush when the screen reporting progress closes
  */
 public class AchievementManager {
     
     // Achievement types - these define different categories of achievements
     // WORKOUT_STREAK rewards users for doing workouts multiple days in a row
+    // Each type says whether its progress reports are amounts to add up or a value being watched
     public enum AchievementType {
-        WORKOUT_STREAK,
-        STEP_GOAL,
-        EXERCISE_COUNT,
-        MEDITATION_SESSIONS,
-        PERFECT_FORM,
-        TIME_GOAL,
-        SOCIAL_SHARING,
-        THEME_UNLOCK
+        WORKOUT_STREAK(ProgressKind.GAUGE),
+        STEP_GOAL(ProgressKind.GAUGE),
+        EXERCISE_COUNT(ProgressKind.COUNTER),
+        MEDITATION_SESSIONS(ProgressKind.COUNTER),
+        PERFECT_FORM(ProgressKind.COUNTER),
+        TIME_GOAL(ProgressKind.GAUGE),
+        SOCIAL_SHARING(ProgressKind.COUNTER),
+        THEME_UNLOCK(ProgressKind.COUNTER);
+        
+        // kind says how updateProgress reads a report for this type
+        public final ProgressKind kind;
+        
+        AchievementType(ProgressKind kind) {
+            this.kind = kind;
+        }
+    }
+    
+    // How progress reports are read
+    public enum ProgressKind {
+        // COUNTER reports are amounts to add, e.g. one more exercise done
+        COUNTER,
+        // GAUGE reports are the current value of something, e.g. today's steps, the current streak or
+        // the length of a workout; the best value counts, and reporting it again changes nothing
+        GAUGE
     }
     
     // Achievement levels - these define how prestigious an achievement is
@@ -97,16 +120,22 @@ public class AchievementManager {
     // These variables help manage the achievement system
     // TAG is used for logging messages to help with debugging
     private static final String TAG = "AchievementManager";
+    // How long after a change progress is saved, so a burst of step updates is one write
+    private static final long SAVE_DELAY_MS = 2_000;
+    // writeExecutor saves achievement progress off the main thread, one write at a time
+    private static final ScheduledExecutorService writeExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AchievementWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
     // context helps us access the app's resources and preferences
     private Context context;
     // preferences stores which achievements the user has unlocked
     private SharedPreferences preferences;
-    // achievements stores all available achievements and their unlock status
+    // achievements stores all available achievements and their unlock status, in the order they are listed
     private Map<String, Achievement> achievements;
-    // totalPoints tracks the user's total achievement points
-    private int totalPoints = 0;
-    // userLevel tracks the user's current level based on their achievement points
-    private int userLevel = 1;
+    // tracker adds progress, unlocks achievements, keeps the points and level and saves what changed
+    private AchievementTracker tracker;
     
     /**
      * Constructor for the AchievementManager
@@ -129,7 +158,7 @@ public class AchievementManager {
      */
     private void initializeAchievements() {
         // Create a map to store all achievements
-        achievements = new HashMap<>();
+        achievements = new LinkedHashMap<>();
         
         // Workout streak achievements - reward users for consistent workouts
         // "Getting Started" - complete 3 workouts in a row
@@ -217,82 +246,62 @@ public class AchievementManager {
      * Load achievement progress from preferences
      */
     private void loadProgress() {
-        totalPoints = preferences.getInt("total_points", 0);
-        userLevel = preferences.getInt("user_level", 1);
+        int totalPoints = preferences.getInt("total_points", 0);
+        int userLevel = preferences.getInt("user_level", 1);
         
         for (Achievement achievement : achievements.values()) {
             String key = "achievement_" + achievement.id;
             achievement.isUnlocked = preferences.getBoolean(key + "_unlocked", false);
             achievement.currentProgress = preferences.getInt(key + "_progress", 0);
         }
+        tracker = new AchievementTracker(new ArrayList<>(achievements.values()), totalPoints, userLevel,
+                this::saveChanges, writeExecutor, SAVE_DELAY_MS);
         
         Log.d(TAG, "Loaded achievements - Total points: " + totalPoints + ", Level: " + userLevel);
     }
     
     /**
-     * Save achievement progress to preferences
+     * Save the achievements that changed to preferences, runs on the write executor
      */
-    private void saveProgress() {
+    private void saveChanges(List<AchievementTracker.Change> changes, boolean totalsChanged,
+                             int totalPoints, int userLevel) {
         SharedPreferences.Editor editor = preferences.edit();
-        editor.putInt("total_points", totalPoints);
-        editor.putInt("user_level", userLevel);
+        if (totalsChanged) {
+            editor.putInt("total_points", totalPoints);
+            editor.putInt("user_level", userLevel);
+        }
         
-        for (Achievement achievement : achievements.values()) {
-            String key = "achievement_" + achievement.id;
-            editor.putBoolean(key + "_unlocked", achievement.isUnlocked);
-            editor.putInt(key + "_progress", achievement.currentProgress);
+        for (AchievementTracker.Change change : changes) {
+            String key = "achievement_" + change.id;
+            editor.putBoolean(key + "_unlocked", change.unlocked);
+            editor.putInt(key + "_progress", change.progress);
         }
         
         editor.apply();
-        Log.d(TAG, "Saved achievement progress");
+        Log.d(TAG, "Saved " + changes.size() + " achievements");
     }
     
     /**
      * Update progress for a specific achievement type
+     * Only this type's locked achievements are looked at, and the change is saved a little later
+     * A gauge value only costs work when it reaches the next achievement, so it can be reported on every step
+     * @param type The achievement type
+     * @param progress For counter types how much to add, for gauge types the current value
      */
     public void updateProgress(AchievementType type, int progress) {
-        List<Achievement> typeAchievements = getAchievementsByType(type);
-        
-        for (Achievement achievement : typeAchievements) {
-            if (!achievement.isUnlocked) {
-                achievement.currentProgress += progress;
-                
-                if (achievement.currentProgress >= achievement.requirement) {
-                    unlockAchievement(achievement);
-                }
-            }
-        }
-        
-        saveProgress();
-    }
-    
-    /**
-     * Unlock an achievement
-     */
-    private void unlockAchievement(Achievement achievement) {
-        if (!achievement.isUnlocked) {
-            achievement.isUnlocked = true;
-            totalPoints += achievement.points;
-            
-            // Check for level up
-            int newLevel = calculateUserLevel();
-            if (newLevel > userLevel) {
-                userLevel = newLevel;
-                Log.d(TAG, "Level up! New level: " + userLevel);
-            }
-            
-            Log.d(TAG, "Achievement unlocked: " + achievement.title + " (+" + achievement.points + " points)");
-            
+        int unlocked = tracker.updateProgress(type, progress);
+        if (unlocked > 0) {
             // Here you could trigger notifications, animations, etc.
+            Log.d(TAG, unlocked + " achievements unlocked - Total points: " + tracker.getTotalPoints()
+                    + ", Level: " + tracker.getUserLevel());
         }
     }
     
     /**
-     * Calculate user level based on total points
+     * Save any progress not saved yet, without waiting for the save delay
      */
-    private int calculateUserLevel() {
-        // Simple level calculation: every 100 points = 1 level
-        return (totalPoints / 100) + 1;
+    public void flush() {
+        tracker.flush();
     }
     
     /**
@@ -304,15 +313,10 @@ public class AchievementManager {
     
     /**
      * Get achievements by type
+     * @return The type's achievements, easiest first
      */
     public List<Achievement> getAchievementsByType(AchievementType type) {
-        List<Achievement> typeAchievements = new ArrayList<>();
-        for (Achievement achievement : achievements.values()) {
-            if (achievement.type == type) {
-                typeAchievements.add(achievement);
-            }
-        }
-        return typeAchievements;
+        return new ArrayList<>(Arrays.asList(tracker.getByType(type)));
     }
     
     /**
@@ -345,14 +349,14 @@ public class AchievementManager {
      * Get total points
      */
     public int getTotalPoints() {
-        return totalPoints;
+        return tracker.getTotalPoints();
     }
     
     /**
      * Get user level
      */
     public int getUserLevel() {
-        return userLevel;
+        return tracker.getUserLevel();
     }
     
     /**
@@ -376,7 +380,7 @@ public class AchievementManager {
     public float getAchievementProgress(String id) {
         Achievement achievement = achievements.get(id);
         if (achievement != null) {
-            return Math.min(100.0f, (float) achievement.currentProgress / achievement.requirement * 100);
+            return Math.min(100.0f, (float) tracker.getProgress(achievement) / achievement.requirement * 100);
         }
         return 0.0f;
     }
@@ -404,13 +408,8 @@ public class AchievementManager {
      * Reset all achievements (for testing)
      */
     public void resetAchievements() {
-        for (Achievement achievement : achievements.values()) {
-            achievement.isUnlocked = false;
-            achievement.currentProgress = 0;
-        }
-        totalPoints = 0;
-        userLevel = 1;
-        saveProgress();
+        tracker.reset();
+        tracker.flush();
         Log.d(TAG, "All achievements reset");
     }
 }
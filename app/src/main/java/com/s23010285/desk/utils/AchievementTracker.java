@@ -0,0 +1,342 @@
+package com.s23010285.desk.utils;
+
+import com.s23010285.desk.utils.AchievementManager.Achievement;
+import com.s23010285.desk.utils.AchievementManager.AchievementType;
+import com.s23010285.desk.utils.AchievementManager.ProgressKind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps achievement progress in memory and saves only what changed, a little after it changed
+ * Achievements are grouped by type in arrays sorted by requirement, so a progress event looks at the
+ * achievements of its own type only, starting from the first one still locked, and allocates nothing.
+ * Each achievement it changes is marked; the first change schedules a write on the executor, and
+ * every change until that write runs goes into it, so a burst of updates is one write
+ * Counter types add each report to every locked achievement. Gauge types keep the best value
+ * reported: a value that isn't higher is ignored, and a higher one only does work (unlocking and
+ * saving) once it reaches the next requirement, so reporting today's steps on every step is cheap
+ * AchievementManager gives it its store and the executor the writes run on
+ */
+public final class AchievementTracker {
+
+    /**
+     * Where changed achievements are written
+     */
+    public interface Store {
+        /**
+         * Write achievements that changed since the last write, called on the tracker's executor
+         * @param changes The changed achievements as they were when the write started
+         * @param totalsChanged true if the points or level changed too
+         * @param totalPoints The user's achievement points
+         * @param userLevel The user's level
+         */
+        void write(List<Change> changes, boolean totalsChanged, int totalPoints, int userLevel);
+    }
+
+    /**
+     * The state of one achievement at the time of a write
+     */
+    public static final class Change {
+        public final String id;
+        public final boolean unlocked;
+        public final int progress;
+
+        Change(String id, boolean unlocked, int progress) {
+            this.id = id;
+            this.unlocked = unlocked;
+            this.progress = progress;
+        }
+    }
+
+    // all holds every achievement in the order they were given
+    private final Achievement[] all;
+    // byType holds each type's achievements, easiest first, and slotsByType where each of them is in all
+    private final Map<AchievementType, Achievement[]> byType = new EnumMap<>(AchievementType.class);
+    private final Map<AchievementType, int[]> slotsByType = new EnumMap<>(AchievementType.class);
+    // firstLocked is, by type ordinal, where the locked achievements of that type start
+    // Everything before it is unlocked, so progress events skip it
+    private final int[] firstLocked = new int[AchievementType.values().length];
+    // gaugeValues is, by type ordinal, the best value reported for a gauge type since the tracker started
+    private final int[] gaugeValues = new int[AchievementType.values().length];
+    // changed marks, by position in all, the achievements the next write has to save
+    private final boolean[] changed;
+    private boolean totalsChanged = false;
+    private int totalPoints;
+    private int userLevel;
+
+    // store saves changes on executor, debounceMs after the first unsaved change
+    private final Store store;
+    private final ScheduledExecutorService executor;
+    private final long debounceMs;
+    // pendingWrite is the scheduled write, null when everything is saved or being saved
+    private ScheduledFuture<?> pendingWrite;
+
+    /**
+     * Create a tracker for achievements whose saved progress has already been loaded
+     * @param achievements Every achievement, ids must be unique
+     * @param totalPoints The saved achievement points
+     * @param userLevel The saved level
+     * @param store Where changes are written
+     * @param executor Runs the writes, off the thread reporting progress
+     * @param debounceMs How long to wait after a change before writing, to collect the changes after it
+     */
+    public AchievementTracker(List<Achievement> achievements, int totalPoints, int userLevel, Store store,
+                              ScheduledExecutorService executor, long debounceMs) {
+        this.all = achievements.toArray(new Achievement[0]);
+        this.changed = new boolean[all.length];
+        this.totalPoints = totalPoints;
+        this.userLevel = userLevel;
+        this.store = store;
+        this.executor = executor;
+        this.debounceMs = debounceMs;
+
+        Map<AchievementType, List<Integer>> grouped = new EnumMap<>(AchievementType.class);
+        for (AchievementType type : AchievementType.values()) {
+            grouped.put(type, new ArrayList<>());
+        }
+        for (int slot = 0; slot < all.length; slot++) {
+            grouped.get(all[slot].type).add(slot);
+        }
+        for (Map.Entry<AchievementType, List<Integer>> entry : grouped.entrySet()) {
+            List<Integer> slots = entry.getValue();
+            // Sorting is stable, so achievements with the same requirement keep their order
+            slots.sort(Comparator.comparingInt(slot -> all[slot].requirement));
+            Achievement[] sorted = new Achievement[slots.size()];
+            int[] sortedSlots = new int[slots.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sortedSlots[i] = slots.get(i);
+                sorted[i] = all[sortedSlots[i]];
+            }
+            byType.put(entry.getKey(), sorted);
+            slotsByType.put(entry.getKey(), sortedSlots);
+            advanceFirstLocked(entry.getKey(), sorted);
+        }
+    }
+
+    /**
+     * Report progress for a type, unlocking the achievements that reach their requirement
+     * @param type The achievement type
+     * @param progress For counter types how much to add, for gauge types the current value
+     * @return How many achievements were unlocked
+     */
+    public synchronized int updateProgress(AchievementType type, int progress) {
+        return type.kind == ProgressKind.GAUGE ? observe(type, progress) : add(type, progress);
+    }
+
+    /**
+     * Get how far an achievement is
+     * @param achievement One of the tracked achievements
+     * @return Its progress; for a locked gauge achievement, the best value reported so far
+     */
+    public synchronized int getProgress(Achievement achievement) {
+        if (achievement.type.kind == ProgressKind.GAUGE && !achievement.isUnlocked) {
+            // Saved progress of a locked gauge achievement may come from when gauges were added up, so it isn't used
+            return gaugeValues[achievement.type.ordinal()];
+        }
+        return achievement.currentProgress;
+    }
+
+    /**
+     * Lock every achievement again and clear all points
+     */
+    public synchronized void reset() {
+        for (Achievement achievement : all) {
+            achievement.isUnlocked = false;
+            achievement.currentProgress = 0;
+        }
+        Arrays.fill(changed, true);
+        Arrays.fill(firstLocked, 0);
+        Arrays.fill(gaugeValues, 0);
+        totalPoints = 0;
+        userLevel = 1;
+        totalsChanged = true;
+        scheduleWrite();
+    }
+
+    /**
+     * Write any unsaved changes now instead of waiting, e.g. when the screen reporting progress closes
+     */
+    public synchronized void flush() {
+        if (pendingWrite != null && pendingWrite.cancel(false)) {
+            pendingWrite = null;
+        }
+        if (hasChanges()) {
+            executor.execute(this::write);
+        }
+    }
+
+    /**
+     * Get a type's achievements
+     * @param type The achievement type
+     * @return The achievements, easiest first (don't change the array)
+     */
+    public Achievement[] getByType(AchievementType type) {
+        return byType.get(type);
+    }
+
+    /**
+     * Get the user's achievement points
+     * @return The points of every unlocked achievement
+     */
+    public synchronized int getTotalPoints() {
+        return totalPoints;
+    }
+
+    /**
+     * Get the user's level
+     * @return The level, 1 for new users
+     */
+    public synchronized int getUserLevel() {
+        return userLevel;
+    }
+
+    /**
+     * Calculate the level a number of points reaches
+     * @param points Achievement points
+     * @return One level for every 100 points, starting from 1
+     */
+    public static int levelForPoints(int points) {
+        return (points / 100) + 1;
+    }
+
+    /**
+     * Add progress to every locked achievement of a counter type
+     */
+    private int add(AchievementType type, int progress) {
+        if (progress == 0) {
+            return 0;
+        }
+        Achievement[] achievements = byType.get(type);
+        int[] slots = slotsByType.get(type);
+        int first = firstLocked[type.ordinal()];
+        if (first == achievements.length) {
+            // Every achievement of this type is unlocked, nothing to track or save
+            return 0;
+        }
+        int unlocked = 0;
+        for (int i = first; i < achievements.length; i++) {
+            Achievement achievement = achievements[i];
+            if (achievement.isUnlocked) {
+                continue;
+            }
+            achievement.currentProgress += progress;
+            changed[slots[i]] = true;
+            if (achievement.currentProgress >= achievement.requirement) {
+                unlock(achievement);
+                unlocked++;
+            }
+        }
+        if (unlocked > 0) {
+            advanceFirstLocked(type, achievements);
+        }
+        scheduleWrite();
+        return unlocked;
+    }
+
+    /**
+     * Take a new value for a gauge type, doing nothing until it reaches the next requirement
+     */
+    private int observe(AchievementType type, int value) {
+        int index = type.ordinal();
+        if (value <= gaugeValues[index]) {
+            // Seen it (or better) already
+            return 0;
+        }
+        gaugeValues[index] = value;
+        Achievement[] achievements = byType.get(type);
+        int first = firstLocked[index];
+        // Achievements are sorted by requirement, so if the easiest locked one isn't reached none is
+        if (first == achievements.length || value < achievements[first].requirement) {
+            return 0;
+        }
+        int[] slots = slotsByType.get(type);
+        int unlocked = 0;
+        for (int i = first; i < achievements.length && achievements[i].requirement <= value; i++) {
+            Achievement achievement = achievements[i];
+            if (achievement.isUnlocked) {
+                continue;
+            }
+            achievement.currentProgress = value;
+            changed[slots[i]] = true;
+            unlock(achievement);
+            unlocked++;
+        }
+        advanceFirstLocked(type, achievements);
+        scheduleWrite();
+        return unlocked;
+    }
+
+    private void unlock(Achievement achievement) {
+        achievement.isUnlocked = true;
+        totalPoints += achievement.points;
+        int newLevel = levelForPoints(totalPoints);
+        if (newLevel > userLevel) {
+            userLevel = newLevel;
+        }
+        totalsChanged = true;
+    }
+
+    private void advanceFirstLocked(AchievementType type, Achievement[] achievements) {
+        int first = firstLocked[type.ordinal()];
+        while (first < achievements.length && achievements[first].isUnlocked) {
+            first++;
+        }
+        firstLocked[type.ordinal()] = first;
+    }
+
+    private boolean hasChanges() {
+        if (totalsChanged) {
+            return true;
+        }
+        for (boolean change : changed) {
+            if (change) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleWrite() {
+        if (pendingWrite == null) {
+            pendingWrite = executor.schedule(this::write, debounceMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Take the marked changes and write them, runs on the executor
+     */
+    private void write() {
+        List<Change> changes;
+        boolean totals;
+        int points;
+        int level;
+        synchronized (this) {
+            pendingWrite = null;
+            if (!hasChanges()) {
+                return;
+            }
+            changes = new ArrayList<>();
+            for (int i = 0; i < all.length; i++) {
+                if (changed[i]) {
+                    changed[i] = false;
+                    changes.add(new Change(all[i].id, all[i].isUnlocked, all[i].currentProgress));
+                }
+            }
+            totals = totalsChanged;
+            totalsChanged = false;
+            points = totalPoints;
+            level = userLevel;
+        }
+        // Changes made while this runs are marked again and get a write of their own
+        store.write(Collections.unmodifiableList(changes), totals, points, level);
+    }
+}
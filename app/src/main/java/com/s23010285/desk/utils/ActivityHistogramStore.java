@@ -0,0 +1,230 @@
+package com.s23010285.desk.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.s23010285.desk.database.DatabaseHelper;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the per-minute step histograms for each day and saves them to the database
+ * Steps are added to an in-memory histogram straight away and written out in batches on a
+ * background thread, so the sensor thread never waits for the database
+ * There is one store for the whole app so the step service and the screens see the same data
+ */
+public class ActivityHistogramStore {
+
+    private static final String TAG = "ActivityHistogramStore";
+
+    // How long new steps can wait in memory before they are written to the database
+    // Losing at most this much data if the process is killed is fine for daily statistics
+    private static final long FLUSH_DELAY_MS = 60_000;
+
+    // instance is the single instance of this class (singleton pattern)
+    private static ActivityHistogramStore instance;
+
+    // context is the application context, used to look up the current user
+    private final Context context;
+    // databaseHelper reads and writes the packed histograms
+    private final DatabaseHelper databaseHelper;
+    // flushExecutor runs the batched database writes one at a time, and the reads the screens ask for
+    private final ScheduledExecutorService flushExecutor;
+    // dateFormat turns a day into its YYYY-MM-DD key (guarded by this, SimpleDateFormat isn't thread-safe)
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+    // calendar is reused to find the day and minute of each step
+    private final Calendar calendar = Calendar.getInstance();
+
+    // pendingByDate holds steps that are not in the database yet, by day (guarded by this)
+    private Map<String, MinuteActivityHistogram> pendingByDate = new LinkedHashMap<>();
+    // flushScheduled is true while a batched write is waiting to run (guarded by this)
+    private boolean flushScheduled = false;
+    // databaseLock makes sure a read never sees steps that were taken out of pendingByDate
+    // but not yet written to the database
+    private final Object databaseLock = new Object();
+
+    /**
+     * Receives a summary loaded in the background
+     */
+    public interface SummaryCallback {
+        /**
+         * Called with the loaded summary
+         * @param summary The summary
+         */
+        void onSummaryLoaded(MinuteActivityHistogram.Summary summary);
+    }
+
+    /**
+     * Private constructor for the ActivityHistogramStore
+     * @param context The app's context
+     */
+    private ActivityHistogramStore(Context context) {
+        this.context = context;
+        this.databaseHelper = new DatabaseHelper(context);
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ActivityHistogramFlush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the single instance of the ActivityHistogramStore
+     * @param context The app's context, which helps us access system resources
+     * @return The ActivityHistogramStore instance
+     */
+    public static synchronized ActivityHistogramStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ActivityHistogramStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Record steps that happened at a given time
+     * This only touches memory, the database write happens later in a batch
+     * @param timeMillis When the steps happened (wall clock time)
+     * @param steps How many steps to record
+     */
+    public synchronized void recordSteps(long timeMillis, int steps) {
+        if (steps <= 0) {
+            return;
+        }
+        calendar.setTimeInMillis(timeMillis);
+        String date = dateFormat.format(calendar.getTime());
+        int minuteOfDay = calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+
+        MinuteActivityHistogram pending = pendingByDate.get(date);
+        if (pending == null) {
+            pending = new MinuteActivityHistogram();
+            pendingByDate.put(date, pending);
+        }
+        pending.addSteps(minuteOfDay, steps);
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            flushExecutor.schedule(this::writePending, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write any steps still in memory right away, without waiting for the batch delay
+     * Call this when step tracking stops
+     */
+    public void flush() {
+        flushExecutor.execute(this::writePending);
+    }
+
+    /**
+     * Load the summary for today in the background and hand it to a callback
+     * @param callbackExecutor Where the callback should run, e.g. ContextCompat.getMainExecutor(context)
+     * @param callback Receives today's summary
+     */
+    public void loadTodaySummary(Executor callbackExecutor, SummaryCallback callback) {
+        flushExecutor.execute(() -> {
+            MinuteActivityHistogram.Summary summary = getTodaySummary();
+            callbackExecutor.execute(() -> callback.onSummaryLoaded(summary));
+        });
+    }
+
+    /**
+     * Get the summary for today up to the current minute
+     * This reads the database and can wait for a batched write, so call it off the main and sensor threads
+     * @return Today's summary including steps that haven't been written yet
+     */
+    public MinuteActivityHistogram.Summary getTodaySummary() {
+        Calendar now = Calendar.getInstance();
+        int currentMinute = now.get(Calendar.HOUR_OF_DAY) * 60 + now.get(Calendar.MINUTE);
+        String today;
+        synchronized (this) {
+            today = dateFormat.format(now.getTime());
+        }
+        return getHistogram(today).summarize(currentMinute + 1);
+    }
+
+    /**
+     * Get the histogram for a day, combining what is saved with what is still in memory
+     * @param date The day, in YYYY-MM-DD format
+     * @return The histogram for that day (empty if there is no data)
+     */
+    public MinuteActivityHistogram getHistogram(String date) {
+        synchronized (databaseLock) {
+            MinuteActivityHistogram histogram;
+            try {
+                histogram = MinuteActivityHistogram.fromBytes(databaseHelper.getActivityMinutes(getCurrentUserId(), date));
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading activity minutes: " + e.getMessage(), e);
+                histogram = new MinuteActivityHistogram();
+            }
+            synchronized (this) {
+                MinuteActivityHistogram pending = pendingByDate.get(date);
+                if (pending != null) {
+                    histogram.addAll(pending);
+                }
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * Write every pending day in one go
+     * Each day's saved histogram is read, the new steps are added and the result is written back
+     * together with the day's steps and active minutes
+     */
+    private void writePending() {
+        synchronized (databaseLock) {
+            Map<String, MinuteActivityHistogram> toWrite;
+            synchronized (this) {
+                flushScheduled = false;
+                if (pendingByDate.isEmpty()) {
+                    return;
+                }
+                toWrite = pendingByDate;
+                pendingByDate = new LinkedHashMap<>();
+            }
+
+            long userId = getCurrentUserId();
+            for (Map.Entry<String, MinuteActivityHistogram> entry : toWrite.entrySet()) {
+                String date = entry.getKey();
+                try {
+                    MinuteActivityHistogram merged =
+                        MinuteActivityHistogram.fromBytes(databaseHelper.getActivityMinutes(userId, date));
+                    merged.addAll(entry.getValue());
+                    MinuteActivityHistogram.Summary summary =
+                        merged.summarize(MinuteActivityHistogram.MINUTES_PER_DAY);
+                    databaseHelper.saveActivityMinutes(userId, date, merged.toBytes(),
+                        summary.totalSteps, summary.activeMinutes);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error saving activity minutes: " + e.getMessage(), e);
+                    // Put the steps back so the next batch tries again
+                    synchronized (this) {
+                        MinuteActivityHistogram pending = pendingByDate.get(date);
+                        if (pending == null) {
+                            pendingByDate.put(date, entry.getValue());
+                        } else {
+                            pending.addAll(entry.getValue());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the ID of the logged-in user
+     * @return The user ID, or -1 if nobody is logged in
+     */
+    private long getCurrentUserId() {
+        SharedPreferences userPrefs = context.getSharedPreferences("user_session", Context.MODE_PRIVATE);
+        return userPrefs.getLong("current_user_id", -1);
+    }
+}
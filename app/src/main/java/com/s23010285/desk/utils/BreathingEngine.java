@@ -0,0 +1,163 @@
+package com.s23010285.desk.utils;
+
+/**
+ * Works out where in a breath the user is from a single clock reading
+ * The screen calls update once per frame with the session time; the engine answers with the circle
+ * scale and reports whether a new phase began, so the guide text and haptics only change on phase
+ * transitions instead of every frame
+ * The circle eases in and out using a table computed once, so a frame costs a lookup and no trigonometry
+ * Because it only depends on the time it is given, pausing the session clock pauses the breathing too
+ */
+public class BreathingEngine {
+
+    // How many steps the easing table has, the scale in between is interpolated
+    private static final int EASING_STEPS = 256;
+    // EASING holds a sine ease-in-out curve from 0 to 1, shared by every engine
+    private static final float[] EASING = new float[EASING_STEPS + 1];
+
+    static {
+        for (int i = 0; i <= EASING_STEPS; i++) {
+            EASING[i] = (float) ((1 - Math.cos(Math.PI * i / EASING_STEPS)) / 2);
+        }
+    }
+
+    private static final BreathingPattern.Phase[] PHASES = BreathingPattern.Phase.values();
+
+    // minScale and maxScale are the circle sizes after breathing out and after breathing in
+    private final float minScale;
+    private final float maxScale;
+
+    // pattern is the rhythm being followed
+    private BreathingPattern pattern;
+    // patternStartMs is the clock time the pattern started at
+    private long patternStartMs;
+    // phase is the phase found by the last update, null before the first one
+    private BreathingPattern.Phase phase;
+    // phaseRemainingMs is how long the current phase still lasts
+    private long phaseRemainingMs;
+    // scale is the circle scale found by the last update
+    private float scale;
+
+    /**
+     * Create an engine
+     * @param pattern The rhythm to follow
+     * @param minScale The circle size with empty lungs
+     * @param maxScale The circle size with full lungs
+     */
+    public BreathingEngine(BreathingPattern pattern, float minScale, float maxScale) {
+        this.pattern = pattern;
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+        this.scale = minScale;
+    }
+
+    /**
+     * Switch to another rhythm, starting with a fresh breath in
+     * Switching to the pattern already in use does nothing, so the breath isn't cut short
+     * @param pattern The new rhythm
+     * @param nowMs The clock time to start it at
+     */
+    public void setPattern(BreathingPattern pattern, long nowMs) {
+        if (pattern == this.pattern && phase != null) {
+            return;
+        }
+        this.pattern = pattern;
+        this.patternStartMs = nowMs;
+        this.phase = null;
+    }
+
+    /**
+     * Start the pattern from the beginning at the given time
+     * @param nowMs The clock time of the first breath in
+     */
+    public void start(long nowMs) {
+        patternStartMs = nowMs;
+        phase = null;
+    }
+
+    /**
+     * Move to the given time
+     * @param nowMs The clock time, the same clock given to start
+     * @return true if a new phase began since the last update (always true for the first one)
+     */
+    public boolean update(long nowMs) {
+        long cycleMs = pattern.getCycleMs();
+        long t = Math.floorMod(nowMs - patternStartMs, cycleMs);
+
+        BreathingPattern.Phase current = PHASES[0];
+        long phaseMs = 0;
+        for (BreathingPattern.Phase candidate : PHASES) {
+            phaseMs = pattern.getPhaseMs(candidate);
+            if (t < phaseMs) {
+                current = candidate;
+                break;
+            }
+            t -= phaseMs;
+        }
+        phaseRemainingMs = phaseMs - t;
+
+        switch (current) {
+            case INHALE:
+                scale = minScale + (maxScale - minScale) * ease((float) t / phaseMs);
+                break;
+            case EXHALE:
+                scale = maxScale - (maxScale - minScale) * ease((float) t / phaseMs);
+                break;
+            case HOLD_IN:
+                scale = maxScale;
+                break;
+            default:
+                scale = minScale;
+                break;
+        }
+
+        boolean changed = current != phase;
+        phase = current;
+        return changed;
+    }
+
+    /**
+     * Get the phase found by the last update
+     * @return The phase, or null before the first update
+     */
+    public BreathingPattern.Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Get how long the current phase still lasts
+     * @return The time left in milliseconds
+     */
+    public long getPhaseRemainingMs() {
+        return phaseRemainingMs;
+    }
+
+    /**
+     * Get the circle scale found by the last update
+     * @return The scale
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * Get the rhythm being followed
+     * @return The pattern
+     */
+    public BreathingPattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Look up the easing curve, interpolating between table steps
+     * @param fraction How far through the phase we are, from 0 to 1
+     */
+    static float ease(float fraction) {
+        float position = Math.max(0f, Math.min(1f, fraction)) * EASING_STEPS;
+        int index = (int) position;
+        if (index >= EASING_STEPS) {
+            return EASING[EASING_STEPS];
+        }
+        return EASING[index] + (EASING[index + 1] - EASING[index]) * (position - index);
+    }
+}
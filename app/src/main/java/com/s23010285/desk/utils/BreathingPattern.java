@@ -0,0 +1,102 @@
+package com.s23010285.desk.utils;
+
+/**
+ * A breathing rhythm for meditation sessions: how long to breathe in, hold, breathe out and hold again
+ * Phases with a length of zero are skipped, so 4-7-8 breathing simply has no hold after breathing out
+ */
+public final class BreathingPattern {
+
+    /**
+     * The parts of one breath, in the order they happen
+     */
+    public enum Phase {
+        INHALE("Breathe in..."),
+        HOLD_IN("Hold..."),
+        EXHALE("Breathe out..."),
+        HOLD_OUT("Hold...");
+
+        // label is the guide text shown during this phase
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Get the guide text for this phase
+         * @return The text to show
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // Box breathing: four equal sides of 4 seconds
+    public static final BreathingPattern BOX = new BreathingPattern("Box breathing", 4000, 4000, 4000, 4000);
+    // 4-7-8 breathing: in for 4, hold for 7, out for 8
+    public static final BreathingPattern FOUR_SEVEN_EIGHT = new BreathingPattern("4-7-8 breathing", 4000, 7000, 8000, 0);
+    // Coherent breathing: 5.5 breaths a minute, half the breath in and half out
+    public static final BreathingPattern COHERENT = new BreathingPattern("Coherent breathing", 5455, 0, 5455, 0);
+
+    // name is shown to the user
+    private final String name;
+    // phaseMs holds the length of each phase, indexed by Phase.ordinal()
+    private final long[] phaseMs;
+
+    /**
+     * Create a pattern
+     * @param name The name shown to the user
+     * @param inhaleMs How long to breathe in
+     * @param holdInMs How long to hold after breathing in (0 for no hold)
+     * @param exhaleMs How long to breathe out
+     * @param holdOutMs How long to hold after breathing out (0 for no hold)
+     */
+    public BreathingPattern(String name, long inhaleMs, long holdInMs, long exhaleMs, long holdOutMs) {
+        if (inhaleMs <= 0 || exhaleMs <= 0 || holdInMs < 0 || holdOutMs < 0) {
+            throw new IllegalArgumentException("Breathing in and out must take some time, holds can't be negative");
+        }
+        this.name = name;
+        this.phaseMs = new long[] {inhaleMs, holdInMs, exhaleMs, holdOutMs};
+    }
+
+    /**
+     * Pick the pattern that suits an exercise, going by its name
+     * @param exerciseName The name of the exercise (may be null)
+     * @return The pattern, coherent breathing if nothing more specific fits
+     */
+    public static BreathingPattern forExercise(String exerciseName) {
+        String name = exerciseName != null ? exerciseName.toLowerCase() : "";
+        if (name.contains("4-7-8") || name.contains("relax") || name.contains("sleep")) {
+            return FOUR_SEVEN_EIGHT;
+        }
+        if (name.contains("box") || name.contains("mindful") || name.contains("focus")) {
+            return BOX;
+        }
+        return COHERENT;
+    }
+
+    /**
+     * Get the name of the pattern
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get how long a phase lasts
+     * @param phase The phase
+     * @return The length in milliseconds (0 if the pattern skips it)
+     */
+    public long getPhaseMs(Phase phase) {
+        return phaseMs[phase.ordinal()];
+    }
+
+    /**
+     * Get how long one whole breath takes
+     * @return The length in milliseconds
+     */
+    public long getCycleMs() {
+        return phaseMs[0] + phaseMs[1] + phaseMs[2] + phaseMs[3];
+    }
+}
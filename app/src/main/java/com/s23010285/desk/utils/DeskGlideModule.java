@@ -0,0 +1,61 @@
+package com.s23010285.desk.utils;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.module.AppGlideModule;
+import com.bumptech.glide.request.RequestOptions;
+
+/**
+ * Sets up Glide for this app instead of relying on its defaults
+ * - The memory cache holds about two screens of images and the bitmap pool three, less on low-RAM devices
+ * - The disk cache has a fixed size in the app's cache folder, so Android can clear it when space runs low
+ * - Images without transparency (thumbnails, photos) are decoded as RGB_565, half the memory of ARGB_8888
+ * Exercise animations use their own options from ExerciseAnimationManager.animationOptions
+ */
+@GlideModule
+public final class DeskGlideModule extends AppGlideModule {
+
+    // How many screens of images the memory cache and the bitmap pool hold
+    private static final float MEMORY_CACHE_SCREENS = 2f;
+    private static final float BITMAP_POOL_SCREENS = 3f;
+    // Disk cache size on normal and low-RAM devices (the latter usually have little storage too)
+    private static final long DISK_CACHE_BYTES = 100L * 1024 * 1024;
+    private static final long LOW_RAM_DISK_CACHE_BYTES = 40L * 1024 * 1024;
+    private static final String DISK_CACHE_FOLDER = "glide";
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        MemorySizeCalculator calculator = new MemorySizeCalculator.Builder(context)
+                .setMemoryCacheScreens(MEMORY_CACHE_SCREENS)
+                .setBitmapPoolScreens(BITMAP_POOL_SCREENS)
+                .build();
+        builder.setMemoryCache(new LruResourceCache(calculator.getMemoryCacheSize()));
+        builder.setBitmapPool(new LruBitmapPool(calculator.getBitmapPoolSize()));
+
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = activityManager != null && activityManager.isLowRamDevice();
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_FOLDER,
+                lowRam ? LOW_RAM_DISK_CACHE_BYTES : DISK_CACHE_BYTES));
+
+        // PREFER_RGB_565 still uses ARGB_8888 for images that have transparency
+        builder.setDefaultRequestOptions(new RequestOptions().format(DecodeFormat.PREFER_RGB_565));
+        builder.setLogLevel(Log.ERROR);
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        // No library in the app registers a Glide module in its manifest, so skip looking for one
+        return false;
+    }
+}
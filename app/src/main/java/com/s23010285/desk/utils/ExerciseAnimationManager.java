@@ -2,12 +2,17 @@ package com.s23010285.desk.utils;
 
 import android.content.Context;
 import android.graphics.drawable.Drawable;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DecodeFormat;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.resource.gif.GifDrawable;
+import com.bumptech.glide.load.resource.gif.GifOptions;
+import com.bumptech.glide.request.RequestOptions;
 import com.s23010285.desk.R;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -46,9 +51,32 @@ public class ExerciseAnimationManager {
         }
     }
     
+    // Animations are decoded no bigger than this (in dp) when their view doesn't have a size yet
+    private static final int DEFAULT_ANIMATION_SIZE_DP = 240;
+    
+    // animationOptions is shared by every animation request, so display and preload requests hit the same cache entries
+    // GIFs are cached as downloaded (re-encoding them is slow), decoded at the view's size and shown
+    // without a transformation, which would otherwise run on every frame. Frames without transparency use RGB_565
+    private static final RequestOptions animationOptions = new RequestOptions()
+            .diskCacheStrategy(DiskCacheStrategy.DATA)
+            .dontTransform()
+            .set(GifOptions.DECODE_FORMAT, DecodeFormat.PREFER_RGB_565)
+            .placeholder(R.drawable.exercise_default)
+            .error(R.drawable.exercise_default);
+    
     // This map stores all the exercise animations and their data
-    // Each exercise name maps to its corresponding animation information
-    private static final Map<String, AnimationData> exerciseAnimations = new HashMap<>();
+    // Each exercise name maps to its corresponding animation information, in the order they were added
+    private static final Map<String, AnimationData> exerciseAnimations = new LinkedHashMap<>();
+    // resolver finds the animation for any exercise name, it is built from exerciseAnimations below
+    private static final ExerciseMediaResolver<AnimationData> resolver;
+    // labelResolver finds the guidance text shown under the animation
+    private static final ExerciseMediaResolver<String> labelResolver = new ExerciseMediaResolver.Builder<>("Follow the exercise pattern")
+            .keywords("Follow the push-up motion", "push", "press")
+            .keywords("Follow the squat movement", "squat", "sit")
+            .keywords("Gentle stretching motion", "stretch", "flexibility")
+            .keywords("Keep moving with energy", "cardio", "walking")
+            .keywords("Breathe slowly and deeply", "meditation", "breathing")
+            .build();
     
     // Static initialization block - this runs once when the class is first loaded
     // It sets up all the exercise animations with their GIF URLs and fallback images
@@ -208,6 +236,17 @@ public class ExerciseAnimationManager {
             "https://example.com/fallback/default.jpg",
             "General Exercise Animation",
             "Shows general office exercise movements"));
+
+        // Names that match no key fall back to an animation for their kind of exercise
+        // The rules are shared with every other manager, each gives the media of one of the keys above
+        ExerciseMediaResolver.Builder<AnimationData> builder = new ExerciseMediaResolver.Builder<>(exerciseAnimations.get("default"));
+        for (Map.Entry<String, AnimationData> entry : exerciseAnimations.entrySet()) {
+            if (!entry.getKey().equals("default")) {
+                builder.key(entry.getKey(), entry.getValue());
+            }
+        }
+        builder.exerciseKeywords();
+        resolver = builder.build();
     }
     
     /**
@@ -217,55 +256,9 @@ public class ExerciseAnimationManager {
      * @return AnimationData containing GIF URL, fallback URL, title, and description, or default if not found
      */
     public static AnimationData getAnimationData(String exerciseName) {
-        // Check if the exercise name is valid
-        if (exerciseName == null || exerciseName.trim().isEmpty()) {
-            // If no exercise name is provided, return the default animation
-            return exerciseAnimations.get("default");
-        }
-        
-        // Normalize the exercise name to make searching easier
-        // Convert to lowercase and remove extra spaces
-        String normalizedName = exerciseName.toLowerCase().trim();
-        
-        // Direct match
-        if (exerciseAnimations.containsKey(normalizedName)) {
-            return exerciseAnimations.get(normalizedName);
-        }
-        
-        // Partial match search
-        for (Map.Entry<String, AnimationData> entry : exerciseAnimations.entrySet()) {
-            if (normalizedName.contains(entry.getKey()) || entry.getKey().contains(normalizedName)) {
-                return entry.getValue();
-            }
-        }
-        
-        // Category-based fallback
-        if (normalizedName.contains("push") || normalizedName.contains("press")) {
-            return exerciseAnimations.get("push ups");
-        } else if (normalizedName.contains("squat") || normalizedName.contains("sit")) {
-            return exerciseAnimations.get("squats");
-        } else if (normalizedName.contains("stretch") || normalizedName.contains("neck") || 
-                   normalizedName.contains("shoulder") || normalizedName.contains("back") ||
-                   normalizedName.contains("wrist") || normalizedName.contains("posture")) {
-            return exerciseAnimations.get("desk stretches");
-        } else if (normalizedName.contains("cardio") || normalizedName.contains("walking") || 
-                   normalizedName.contains("marching") || normalizedName.contains("step") ||
-                   normalizedName.contains("jumping")) {
-            return exerciseAnimations.get("lite cardio");
-        } else if (normalizedName.contains("meditation") || normalizedName.contains("breathing") ||
-                   normalizedName.contains("mental") || normalizedName.contains("relax") ||
-                   normalizedName.contains("mindful")) {
-            return exerciseAnimations.get("meditation");
-        } else if (normalizedName.contains("plank")) {
-            return exerciseAnimations.get("planks");
-        } else if (normalizedName.contains("lunge")) {
-            return exerciseAnimations.get("lunges");
-        } else if (normalizedName.contains("burpee")) {
-            return exerciseAnimations.get("burpees");
-        }
-        
-        // Ultimate fallback
-        return exerciseAnimations.get("default");
+        // The resolver checks exact names, then names containing a known exercise, then keywords
+        // like "push" or "stretch", and remembers the answer for next time
+        return resolver.resolve(exerciseName);
     }
     
     /**
@@ -274,33 +267,16 @@ public class ExerciseAnimationManager {
      * @return Animation guidance text
      */
     public static String getAnimationLabel(String exerciseName) {
-        if (exerciseName == null || exerciseName.trim().isEmpty()) {
-            return "Follow the exercise pattern";
-        }
-        
-        String normalizedName = exerciseName.toLowerCase().trim();
-        
-        // Check for specific labels
-        for (Map.Entry<String, String> entry : animationLabels.entrySet()) {
-            if (normalizedName.contains(entry.getKey())) {
-                return entry.getValue();
-            }
-        }
-        
-        // Category-based labels
-        if (normalizedName.contains("push") || normalizedName.contains("press")) {
-            return "Follow the push-up motion";
-        } else if (normalizedName.contains("squat") || normalizedName.contains("sit")) {
-            return "Follow the squat movement";
-        } else if (normalizedName.contains("stretch") || normalizedName.contains("flexibility")) {
-            return "Gentle stretching motion";
-        } else if (normalizedName.contains("cardio") || normalizedName.contains("walking")) {
-            return "Keep moving with energy";
-        } else if (normalizedName.contains("meditation") || normalizedName.contains("breathing")) {
-            return "Breathe slowly and deeply";
-        }
-        
-        return "Follow the exercise pattern";
+        return labelResolver.resolve(exerciseName);
+    }
+    
+    /**
+     * Get the GIF URL for an exercise
+     * @param exerciseName Name of the exercise
+     * @return GIF URL string, the default animation's if the exercise has none
+     */
+    public static String getGifUrl(String exerciseName) {
+        return getAnimationData(exerciseName).gifUrl;
     }
     
     /**
@@ -315,13 +291,18 @@ public class ExerciseAnimationManager {
         // Get GIF URL
         String gifUrl = getGifUrl(exerciseName);
         
-        // Load GIF using Glide
-        Glide.with(context)
+        // Load GIF using Glide, from the offline media pack when it has the file
+        // Glide.with(imageView) ties the request to the screen showing it, so it stops with that screen
+        RequestOptions options = animationOptions;
+        if (!hasKnownSize(imageView)) {
+            // A wrap_content view would otherwise get the GIF at full size
+            int size = getDefaultAnimationSizePx(context);
+            options = options.override(size, size);
+        }
+        Glide.with(imageView)
                 .asGif()
-                .load(gifUrl)
-                .diskCacheStrategy(DiskCacheStrategy.ALL)
-                .placeholder(R.drawable.exercise_default) // Show static image while loading
-                .error(R.drawable.exercise_default) // Show static image if GIF fails to load
+                .load(OfflineMediaPack.glideSource(context, gifUrl))
+                .apply(options)
                 .into(imageView);
         
         // Set animation label
@@ -332,27 +313,63 @@ public class ExerciseAnimationManager {
     }
     
     /**
-     * Pause GIF animation (Note: GIFs auto-loop, this method is for future compatibility)
+     * Get the request options every exercise animation is loaded with
+     * @return The shared options
+     */
+    public static RequestOptions animationOptions() {
+        return animationOptions;
+    }
+    
+    /**
+     * Get the size animations are decoded at when their view has no size of its own
+     * @param context Any context
+     * @return The size in pixels
+     */
+    public static int getDefaultAnimationSizePx(Context context) {
+        return Math.round(DEFAULT_ANIMATION_SIZE_DP * context.getResources().getDisplayMetrics().density);
+    }
+    
+    /**
+     * Pause GIF animation, e.g. while the session is paused, so it stops decoding frames
      * @param imageView ImageView containing the GIF
      */
     public static void stopAnimation(ImageView imageView) {
-        // GIFs loaded via Glide automatically loop
-        // This method is maintained for compatibility with existing code
-        if (imageView != null) {
-            // Could implement pause functionality if needed in the future
+        if (imageView != null && imageView.getDrawable() instanceof GifDrawable) {
+            ((GifDrawable) imageView.getDrawable()).stop();
         }
     }
     
     /**
-     * Resume GIF animation (Note: GIFs auto-loop, this method is for future compatibility)
+     * Resume GIF animation after stopAnimation
      * @param imageView ImageView containing the GIF
      */
     public static void startAnimation(ImageView imageView) {
-        // GIFs loaded via Glide automatically loop
-        // This method is maintained for compatibility with existing code
+        if (imageView != null && imageView.getDrawable() instanceof GifDrawable) {
+            ((GifDrawable) imageView.getDrawable()).start();
+        }
+    }
+    
+    /**
+     * Cancel the animation request of a view and give its frames back to Glide, e.g. when the view goes away
+     * @param imageView ImageView containing the GIF
+     */
+    public static void clearAnimation(ImageView imageView) {
         if (imageView != null) {
-            // Could implement resume functionality if needed in the future
+            Glide.with(imageView).clear(imageView);
+        }
+    }
+    
+    /**
+     * Check whether a view's size is known without waiting for layout
+     */
+    private static boolean hasKnownSize(ImageView imageView) {
+        if (imageView.getWidth() > 0 && imageView.getHeight() > 0) {
+            return true;
         }
+        ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        // Fixed and match_parent sizes are worked out by layout, only wrap_content leaves Glide guessing
+        return params != null && params.width != ViewGroup.LayoutParams.WRAP_CONTENT
+                && params.height != ViewGroup.LayoutParams.WRAP_CONTENT;
     }
     
     /**
@@ -361,7 +378,7 @@ public class ExerciseAnimationManager {
      * @return true if custom GIF exists
      */
     public static boolean hasCustomAnimation(String exerciseName) {
-        return !getGifUrl(exerciseName).equals(exerciseGifUrls.get("default"));
+        return getAnimationData(exerciseName) != resolver.getDefault();
     }
     
     /**
@@ -371,7 +388,7 @@ public class ExerciseAnimationManager {
      */
     public static String getGifUrlForCategory(String category) {
         if (category == null) {
-            return exerciseGifUrls.get("default");
+            return exerciseAnimations.get("default").gifUrl;
         }
         
         String normalizedCategory = category.toLowerCase().trim();
@@ -379,18 +396,18 @@ public class ExerciseAnimationManager {
         switch (normalizedCategory) {
             case "cardio":
             case "lite cardio":
-                return exerciseGifUrls.get("lite cardio");
+                return exerciseAnimations.get("lite cardio").gifUrl;
             case "strength":
             case "strength training":
-                return exerciseGifUrls.get("push ups");
+                return exerciseAnimations.get("push ups").gifUrl;
             case "mental recharge":
             case "meditation":
-                return exerciseGifUrls.get("meditation");
+                return exerciseAnimations.get("meditation").gifUrl;
             case "flexibility":
             case "stretching":
-                return exerciseGifUrls.get("desk stretches");
+                return exerciseAnimations.get("desk stretches").gifUrl;
             default:
-                return exerciseGifUrls.get("default");
+                return exerciseAnimations.get("default").gifUrl;
         }
     }
     
@@ -399,6 +416,6 @@ public class ExerciseAnimationManager {
      * @return Array of exercise names that have GIFs
      */
     public static String[] getAvailableAnimations() {
-        return exerciseGifUrls.keySet().toArray(new String[0]);
+        return exerciseAnimations.keySet().toArray(new String[0]);
     }
 }
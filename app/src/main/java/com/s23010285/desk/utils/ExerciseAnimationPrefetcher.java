@@ -0,0 +1,162 @@
+package com.s23010285.desk.utils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.FutureTarget;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Downloads the exercise animations the workout library shows as thumbnails (a workout without its own
+ * picture shows its category's GIF), so cards further down the list don't wait for the network
+ * GIFs are fetched one at a time, in the order the library lists them, into Glide's disk cache under
+ * the same keys the thumbnail requests read. Decoding them for the cards about to show is left to the
+ * library's RecyclerViewPreloader, which knows the card size
+ * How much is fetched depends on the network: nothing when offline or when Data Saver is on for a
+ * metered network, a small budget on metered networks and a larger one on Wi-Fi
+ * Call cancel when the library screen goes away, anything still waiting is dropped
+ */
+public class ExerciseAnimationPrefetcher {
+
+    private static final String TAG = "AnimationPrefetcher";
+
+    // How many bytes may be downloaded per screen on unmetered and metered networks
+    private static final long UNMETERED_BUDGET_BYTES = 24L * 1024 * 1024;
+    private static final long METERED_BUDGET_BYTES = 3L * 1024 * 1024;
+
+    // context is the application context, so the prefetcher never holds on to an activity
+    private final Context context;
+    // executor downloads the GIFs one after another, off the main thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AnimationPrefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // current is the download in progress, so cancel can stop it
+    private volatile FutureTarget<File> current;
+    // cancelled is set once the screen has gone away
+    private volatile boolean cancelled = false;
+    // bytesFetched counts what this prefetcher downloaded, only touched on the executor thread
+    private long bytesFetched = 0;
+
+    /**
+     * Create a prefetcher, nothing is downloaded until start is called
+     * @param context Any context
+     */
+    public ExerciseAnimationPrefetcher(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Start fetching animations, in the order given
+     * @param gifUrls The URLs of the animations, repeats are fetched once (may be null)
+     */
+    public void start(List<String> gifUrls) {
+        if (gifUrls == null || cancelled) {
+            return;
+        }
+        long budget = getBudgetBytes();
+        if (budget <= 0) {
+            Log.d(TAG, "Not prefetching animations on this network");
+            return;
+        }
+
+        // Many workouts share their category's GIF, each URL only needs fetching once
+        Set<String> queue = new LinkedHashSet<>();
+        for (String url : gifUrls) {
+            // GIFs in the offline media pack are already on the device
+            if (url != null && !OfflineMediaPack.isAvailableOffline(context, url)) {
+                queue.add(url);
+            }
+        }
+        for (String url : queue) {
+            executor.execute(() -> fetch(url, budget));
+        }
+    }
+
+    /**
+     * Stop fetching, e.g. when the screen goes away, the prefetcher can't be used afterwards
+     */
+    public void cancel() {
+        cancelled = true;
+        executor.shutdownNow();
+        FutureTarget<File> download = current;
+        if (download != null) {
+            download.cancel(true);
+        }
+    }
+
+    /**
+     * Download one GIF into the disk cache, runs on the executor thread
+     */
+    private void fetch(String url, long budget) {
+        if (cancelled) {
+            return;
+        }
+        if (bytesFetched >= budget) {
+            Log.d(TAG, "Animation prefetch budget used up, skipping " + url);
+            return;
+        }
+        FutureTarget<File> download = Glide.with(context)
+                .asFile()
+                .load(url)
+                .diskCacheStrategy(DiskCacheStrategy.DATA)
+                .submit();
+        current = download;
+        try {
+            File file = download.get();
+            // Files already in the cache cost nothing, but counting them keeps the budget simple
+            bytesFetched += file.length();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Error prefetching animation " + url + ": " + e.getMessage(), e);
+        } catch (CancellationException e) {
+            // The screen went away while the GIF was downloading
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            current = null;
+            Glide.with(context).clear(download);
+        }
+    }
+
+    /**
+     * Work out how many bytes may be prefetched on the current network
+     * @return The budget, 0 when offline or when Data Saver is on for a metered network
+     */
+    private long getBudgetBytes() {
+        ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivity == null) {
+            return 0;
+        }
+        try {
+            Network network = connectivity.getActiveNetwork();
+            NetworkCapabilities capabilities = network != null ? connectivity.getNetworkCapabilities(network) : null;
+            if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+                return 0;
+            }
+            if (capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)) {
+                return UNMETERED_BUDGET_BYTES;
+            }
+            if (connectivity.getRestrictBackgroundStatus() == ConnectivityManager.RESTRICT_BACKGROUND_STATUS_ENABLED) {
+                return 0;
+            }
+            return METERED_BUDGET_BYTES;
+        } catch (SecurityException e) {
+            Log.e(TAG, "Error reading network state: " + e.getMessage(), e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.s23010285.desk.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the media (video, animation, label, ...) that belongs to an exercise name
+ * ExerciseVideoManager and ExerciseAnimationManager both use it, each with its own media
+ * A name is matched in this order, and the same name always gives the same answer:
+ * 1. A key equal to the name
+ * 2. The longest key found inside the name (ties go to the key added first)
+ * 3. The shortest key the name is part of, e.g. "plank" finds "planks" (ties go to the key added first)
+ * 4. The first keyword rule, in the order they were added, with a keyword found inside the name
+ * 5. The default
+ * Keys and keywords are compiled once into an Aho–Corasick automaton, so steps 2 and 4 take a single
+ * pass over the name however many there are. Answers are remembered per name
+ * The keyword rules for kinds of exercise are shared by every manager, see Builder.exerciseKeywords
+ * @param <T> The type of media
+ */
+public final class ExerciseMediaResolver<T> {
+
+    // Answers are remembered for at most this many names, after that the memory starts over
+    private static final int MAX_REMEMBERED = 256;
+    // NONE marks "no pattern" in the automaton tables
+    private static final int NONE = -1;
+    // The keyword rules for kinds of exercise, in priority order, so "push" wins over "sit" and so on
+    // Each rule is the key whose media it gives, followed by its keywords
+    private static final String[][] EXERCISE_KEYWORDS = {
+            {"push ups", "push", "press"},
+            {"squats", "squat", "sit"},
+            {"desk stretches", "stretch", "neck", "shoulder", "back", "wrist", "posture"},
+            {"lite cardio", "cardio", "walking", "marching", "step", "jumping"},
+            {"meditation", "meditation", "breathing", "mental", "relax", "mindful"},
+            {"planks", "plank"},
+            {"lunges", "lunge"},
+            {"burpees", "burpee"},
+    };
+
+    // byKey finds the media for an exact key, keys keeps the keys in the order they were added
+    private final Map<String, T> byKey;
+    private final String[] keys;
+    // ruleValues holds the media of each keyword rule, in priority order
+    private final List<T> ruleValues;
+    // defaultValue is returned when nothing matches
+    private final T defaultValue;
+
+    // charClass maps a character to its column in the transition table, 0 for characters no pattern uses
+    private final Map<Character, Integer> charClass;
+    private final int columns;
+    // next is the automaton's transition table, one row of columns per state
+    private final int[] next;
+    // bestKey and bestRule are, per state, the best key index and keyword rule index that end there
+    private final int[] bestKey;
+    private final int[] bestRule;
+
+    // remembered holds the answers already worked out, by normalized name
+    private final Map<String, T> remembered = new ConcurrentHashMap<>();
+
+    private ExerciseMediaResolver(Builder<T> builder) {
+        byKey = new LinkedHashMap<>(builder.keys);
+        keys = builder.keys.keySet().toArray(new String[0]);
+        ruleValues = new ArrayList<>(builder.ruleValues);
+        defaultValue = builder.defaultValue;
+
+        // Patterns are the keys followed by the keywords, keyword i belongs to rule ruleOf[i]
+        List<String> patterns = new ArrayList<>();
+        Collections.addAll(patterns, keys);
+        patterns.addAll(builder.keywords);
+        int keyCount = keys.length;
+
+        charClass = new HashMap<>();
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (!charClass.containsKey(c)) {
+                    charClass.put(c, charClass.size() + 1);
+                }
+            }
+        }
+        columns = charClass.size() + 1;
+
+        // Build the trie
+        int maxStates = 1;
+        for (String pattern : patterns) {
+            maxStates += pattern.length();
+        }
+        int[] trie = new int[maxStates * columns];
+        Arrays.fill(trie, NONE);
+        int[] keyAt = new int[maxStates];
+        int[] ruleAt = new int[maxStates];
+        Arrays.fill(keyAt, NONE);
+        Arrays.fill(ruleAt, NONE);
+        int states = 1;
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int column = charClass.get(pattern.charAt(i));
+                if (trie[state * columns + column] == NONE) {
+                    trie[state * columns + column] = states++;
+                }
+                state = trie[state * columns + column];
+            }
+            if (p < keyCount) {
+                keyAt[state] = betterKey(keyAt[state], p);
+            } else {
+                ruleAt[state] = betterRule(ruleAt[state], builder.ruleOf.get(p - keyCount));
+            }
+        }
+
+        // Turn it into an automaton: fill in the missing transitions from each state's fail link,
+        // and let every state also report the patterns that end at its fail link
+        next = Arrays.copyOf(trie, states * columns);
+        bestKey = Arrays.copyOf(keyAt, states);
+        bestRule = Arrays.copyOf(ruleAt, states);
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int column = 0; column < columns; column++) {
+            int child = next[column];
+            if (child == NONE) {
+                next[column] = 0;
+            } else {
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            bestKey[state] = betterKey(bestKey[state], bestKey[fail[state]]);
+            bestRule[state] = betterRule(bestRule[state], bestRule[fail[state]]);
+            for (int column = 0; column < columns; column++) {
+                int child = next[state * columns + column];
+                int fallback = next[fail[state] * columns + column];
+                if (child == NONE) {
+                    next[state * columns + column] = fallback;
+                } else {
+                    fail[child] = fallback;
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the media for an exercise
+     * @param exerciseName The exercise name as shown to the user (may be null)
+     * @return The media, or the default if nothing matches
+     */
+    public T resolve(String exerciseName) {
+        String name = normalize(exerciseName);
+        if (name.isEmpty()) {
+            return defaultValue;
+        }
+        T value = remembered.get(name);
+        if (value == null) {
+            value = match(name);
+            if (value == null) {
+                return null;
+            }
+            if (remembered.size() >= MAX_REMEMBERED) {
+                remembered.clear();
+            }
+            remembered.put(name, value);
+        }
+        return value;
+    }
+
+    /**
+     * Find the media for an exact key, without any partial matching
+     * @param key The key, in lower case
+     * @return The media, or null if there is no such key
+     */
+    public T get(String key) {
+        return byKey.get(key);
+    }
+
+    /**
+     * Get the media used when nothing matches
+     * @return The default media
+     */
+    public T getDefault() {
+        return defaultValue;
+    }
+
+    /**
+     * Get every key, in the order they were added
+     * @return An unmodifiable set of keys
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(byKey.keySet());
+    }
+
+    /**
+     * Normalize an exercise name the way keys are written: lower case, no surrounding spaces
+     * @param exerciseName The exercise name (may be null)
+     * @return The normalized name, empty for null
+     */
+    public static String normalize(String exerciseName) {
+        return exerciseName == null ? "" : exerciseName.toLowerCase(Locale.ROOT).trim();
+    }
+
+    private T match(String name) {
+        T exact = byKey.get(name);
+        if (exact != null) {
+            return exact;
+        }
+
+        // One pass over the name finds every key and keyword inside it
+        int key = NONE;
+        int rule = NONE;
+        int state = 0;
+        for (int i = 0; i < name.length(); i++) {
+            Integer column = charClass.get(name.charAt(i));
+            state = next[state * columns + (column != null ? column : 0)];
+            key = betterKey(key, bestKey[state]);
+            rule = betterRule(rule, bestRule[state]);
+        }
+        if (key != NONE) {
+            return byKey.get(keys[key]);
+        }
+
+        // Names shorter than a key, e.g. "plank" for "planks"
+        String shortest = null;
+        for (String candidate : keys) {
+            if (candidate.contains(name) && (shortest == null || candidate.length() < shortest.length())) {
+                shortest = candidate;
+            }
+        }
+        if (shortest != null) {
+            return byKey.get(shortest);
+        }
+
+        return rule != NONE ? ruleValues.get(rule) : defaultValue;
+    }
+
+    /**
+     * Pick the better of two keys: the longer one, or the one added first if they are as long
+     */
+    private int betterKey(int a, int b) {
+        if (a == NONE) {
+            return b;
+        }
+        if (b == NONE) {
+            return a;
+        }
+        int lengthA = keys[a].length();
+        int lengthB = keys[b].length();
+        if (lengthA != lengthB) {
+            return lengthA > lengthB ? a : b;
+        }
+        return Math.min(a, b);
+    }
+
+    /**
+     * Pick the better of two keyword rules: the one added first
+     */
+    private static int betterRule(int a, int b) {
+        if (a == NONE) {
+            return b;
+        }
+        if (b == NONE) {
+            return a;
+        }
+        return Math.min(a, b);
+    }
+
+    /**
+     * Collects keys and keyword rules for a resolver
+     * @param <T> The type of media
+     */
+    public static final class Builder<T> {
+
+        // keys maps each exact key to its media, in the order they were added
+        private final Map<String, T> keys = new LinkedHashMap<>();
+        // keywords lists every keyword, ruleOf says which rule each belongs to
+        private final List<String> keywords = new ArrayList<>();
+        private final List<Integer> ruleOf = new ArrayList<>();
+        // ruleValues holds each rule's media, in priority order
+        private final List<T> ruleValues = new ArrayList<>();
+        // defaultValue is returned when nothing matches
+        private final T defaultValue;
+
+        /**
+         * Start a resolver
+         * @param defaultValue The media used when nothing matches
+         */
+        public Builder(T defaultValue) {
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * Add an exercise key, e.g. "push ups"
+         * @param key The key, in lower case
+         * @param value Its media
+         * @return This builder
+         */
+        public Builder<T> key(String key, T value) {
+            keys.put(normalize(key), value);
+            return this;
+        }
+
+        /**
+         * Add a keyword rule, used when no key matches
+         * Rules added earlier win over later ones
+         * @param value The media for names containing any of the keywords
+         * @param words The keywords, in lower case
+         * @return This builder
+         */
+        public Builder<T> keywords(T value, String... words) {
+            int rule = ruleValues.size();
+            ruleValues.add(value);
+            for (String word : words) {
+                String keyword = normalize(word);
+                if (!keyword.isEmpty()) {
+                    keywords.add(keyword);
+                    ruleOf.add(rule);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Add the shared keyword rules for kinds of exercise, after any rules that should win over them
+         * Each rule gives the media of a key, so those keys must be added first
+         * @return This builder
+         * @throws IllegalStateException if a rule's key hasn't been added
+         */
+        public Builder<T> exerciseKeywords() {
+            for (String[] rule : EXERCISE_KEYWORDS) {
+                T value = keys.get(rule[0]);
+                if (value == null) {
+                    throw new IllegalStateException("No media for keyword rule key " + rule[0]);
+                }
+                keywords(value, Arrays.copyOfRange(rule, 1, rule.length));
+            }
+            return this;
+        }
+
+        /**
+         * Compile the keys and keywords
+         * @return The resolver
+         */
+        public ExerciseMediaResolver<T> build() {
+            return new ExerciseMediaResolver<>(this);
+        }
+    }
+}
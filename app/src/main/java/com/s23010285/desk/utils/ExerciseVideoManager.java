@@ -1,6 +1,6 @@
 package com.s23010285.desk.utils;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -45,8 +45,10 @@ public class ExerciseVideoManager {
     }
     
     // This map stores all the exercise videos and their data
-    // Each exercise name maps to its corresponding video information
-    private static final Map<String, VideoData> exerciseVideos = new HashMap<>();
+    // Each exercise name maps to its corresponding video information, in the order they were added
+    private static final Map<String, VideoData> exerciseVideos = new LinkedHashMap<>();
+    // resolver finds the video for any exercise name, it is built from exerciseVideos below
+    private static final ExerciseMediaResolver<VideoData> resolver;
     
     // Static initialization block - this runs once when the class is first loaded
     // It sets up all the exercise videos with their timestamps
@@ -113,6 +115,17 @@ public class ExerciseVideoManager {
         
         // Default fallback - this video is used when no specific exercise video is found
         exerciseVideos.put("default", new VideoData("RqcOCBb4arc", 0, "General Office Exercises"));
+
+        // Names that match no key fall back to a video for their kind of exercise
+        // The rules are shared with every other manager, each gives the media of one of the keys above
+        ExerciseMediaResolver.Builder<VideoData> builder = new ExerciseMediaResolver.Builder<>(exerciseVideos.get("default"));
+        for (Map.Entry<String, VideoData> entry : exerciseVideos.entrySet()) {
+            if (!entry.getKey().equals("default")) {
+                builder.key(entry.getKey(), entry.getValue());
+            }
+        }
+        builder.exerciseKeywords();
+        resolver = builder.build();
     }
     
     /**
@@ -122,55 +135,9 @@ public class ExerciseVideoManager {
      * @return VideoData containing video ID, timestamp, and title, or default if not found
      */
     public static VideoData getVideoData(String exerciseName) {
-        // Check if the exercise name is valid
-        if (exerciseName == null || exerciseName.trim().isEmpty()) {
-            // If no exercise name is provided, return the default video
-            return exerciseVideos.get("default");
-        }
-        
-        // Normalize the exercise name to make searching easier
-        // Convert to lowercase and remove extra spaces
-        String normalizedName = exerciseName.toLowerCase().trim();
-        
-        // Direct match
-        if (exerciseVideos.containsKey(normalizedName)) {
-            return exerciseVideos.get(normalizedName);
-        }
-        
-        // Partial match search
-        for (Map.Entry<String, VideoData> entry : exerciseVideos.entrySet()) {
-            if (normalizedName.contains(entry.getKey()) || entry.getKey().contains(normalizedName)) {
-                return entry.getValue();
-            }
-        }
-        
-        // Category-based fallback
-        if (normalizedName.contains("push") || normalizedName.contains("press")) {
-            return exerciseVideos.get("push ups");
-        } else if (normalizedName.contains("squat") || normalizedName.contains("sit")) {
-            return exerciseVideos.get("squats");
-        } else if (normalizedName.contains("stretch") || normalizedName.contains("neck") || 
-                   normalizedName.contains("shoulder") || normalizedName.contains("back") ||
-                   normalizedName.contains("wrist") || normalizedName.contains("posture")) {
-            return exerciseVideos.get("desk stretches");
-        } else if (normalizedName.contains("cardio") || normalizedName.contains("walking") || 
-                   normalizedName.contains("marching") || normalizedName.contains("step") ||
-                   normalizedName.contains("jumping")) {
-            return exerciseVideos.get("lite cardio");
-        } else if (normalizedName.contains("meditation") || normalizedName.contains("breathing") ||
-                   normalizedName.contains("mental") || normalizedName.contains("relax") ||
-                   normalizedName.contains("mindful")) {
-            return exerciseVideos.get("meditation");
-        } else if (normalizedName.contains("plank")) {
-            return exerciseVideos.get("planks");
-        } else if (normalizedName.contains("lunge")) {
-            return exerciseVideos.get("lunges");
-        } else if (normalizedName.contains("burpee")) {
-            return exerciseVideos.get("burpees");
-        }
-        
-        // Ultimate fallback
-        return exerciseVideos.get("default");
+        // The resolver checks exact names, then names containing a known exercise, then keywords
+        // like "push" or "stretch", and remembers the answer for next time
+        return resolver.resolve(exerciseName);
     }
     
     /**
@@ -0,0 +1,238 @@
+package com.s23010285.desk.utils;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import androidx.core.content.pm.PackageInfoCompat;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Measures how long every frame of a workout session takes, for debug builds only
+ * Frame durations come from the window's FrameMetrics on a background thread and are counted in a
+ * lock-free histogram per exercise, so measuring doesn't itself cost frames
+ * When the session ends a summary (p50/p95/p99, janky frames) is appended as one JSON line to
+ * files/frame_metrics/sessions.jsonl, tagged with the app version so builds can be compared
+ * Pull it with: adb shell run-as com.s23010285.desk cat files/frame_metrics/sessions.jsonl
+ */
+public class FrameMetricsRecorder {
+
+    private static final String TAG = "FrameMetrics";
+
+    // Where the summaries are written, inside the app's private files
+    private static final String DIRECTORY = "frame_metrics";
+    private static final String FILE_NAME = "sessions.jsonl";
+    // The refresh rate we assume if the display doesn't tell us
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    // window is the window whose frames we measure
+    private final Window window;
+    // appContext is used to find the files directory and the app version
+    private final Context appContext;
+    // sessionType tags the summary (cardio, strength, meditation, ...)
+    private final String sessionType;
+    // histograms holds one histogram per exercise, plus a last one for frames outside any exercise
+    private final FrameTimeHistogram[] histograms;
+    // overall counts every frame of the session
+    private final FrameTimeHistogram overall;
+    // metricsThread receives the frame metrics so the UI thread doesn't have to
+    private final HandlerThread metricsThread;
+    // listener is what we registered on the window
+    private final Window.OnFrameMetricsAvailableListener listener;
+    // exerciseIndex is the exercise being shown, read by the metrics thread
+    private volatile int exerciseIndex = -1;
+    // stopped is true once the summary has been written
+    private boolean stopped = false;
+
+    /**
+     * Start measuring an activity's frames, but only in debug builds
+     * @param activity The activity to measure
+     * @param sessionType The kind of session, used to tag the summary
+     * @param exerciseCount How many exercises the session has
+     * @return The recorder, or null in release builds
+     */
+    public static FrameMetricsRecorder startIfDebuggable(Activity activity, String sessionType, int exerciseCount) {
+        if ((activity.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) == 0) {
+            return null;
+        }
+        return new FrameMetricsRecorder(activity, sessionType, exerciseCount);
+    }
+
+    private FrameMetricsRecorder(Activity activity, String sessionType, int exerciseCount) {
+        this.window = activity.getWindow();
+        this.appContext = activity.getApplicationContext();
+        this.sessionType = sessionType != null ? sessionType : "unknown";
+
+        // A frame is janky when it takes longer than one refresh of the display
+        Display display = getDisplay(activity);
+        float refreshRate = display != null && display.getRefreshRate() > 0 ? display.getRefreshRate() : DEFAULT_REFRESH_RATE;
+        long frameBudgetNs = (long) (1_000_000_000L / refreshRate);
+
+        histograms = new FrameTimeHistogram[Math.max(0, exerciseCount) + 1];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new FrameTimeHistogram(frameBudgetNs);
+        }
+        overall = new FrameTimeHistogram(frameBudgetNs);
+
+        metricsThread = new HandlerThread("FrameMetrics");
+        metricsThread.start();
+        listener = (w, frameMetrics, dropCount) -> {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                    && frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1) {
+                // The first frame includes inflating the whole layout, it isn't a steady-state frame
+                // (Android 7 can't tell us which frame that is, so there it is counted)
+                return;
+            }
+            long durationNs = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+            overall.record(durationNs);
+            histogramFor(exerciseIndex).record(durationNs);
+        };
+        window.addOnFrameMetricsAvailableListener(listener, new Handler(metricsThread.getLooper()));
+    }
+
+    /**
+     * Tell the recorder which exercise is on screen, following frames are counted for it
+     * @param index The exercise position, or -1 if none is
+     */
+    public void setExerciseIndex(int index) {
+        exerciseIndex = index;
+    }
+
+    /**
+     * Stop measuring and append the session summary to the metrics file
+     * The file is written on the metrics thread, which then quits
+     */
+    public void stop() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        try {
+            window.removeOnFrameMetricsAvailableListener(listener);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Error removing frame metrics listener: " + e.getMessage(), e);
+        }
+        Handler handler = new Handler(metricsThread.getLooper());
+        handler.post(() -> {
+            writeSummary();
+            metricsThread.quitSafely();
+        });
+    }
+
+    /**
+     * Get the display the activity is shown on
+     */
+    private static Display getDisplay(Activity activity) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return activity.getDisplay();
+        }
+        // Before Android 11 activities are always on the default display
+        DisplayManager displayManager = (DisplayManager) activity.getSystemService(Context.DISPLAY_SERVICE);
+        return displayManager != null ? displayManager.getDisplay(Display.DEFAULT_DISPLAY) : null;
+    }
+
+    /**
+     * Get the histogram for an exercise
+     */
+    private FrameTimeHistogram histogramFor(int index) {
+        return index >= 0 && index < histograms.length - 1 ? histograms[index] : histograms[histograms.length - 1];
+    }
+
+    /**
+     * Append one JSON line describing this session's frames
+     */
+    private void writeSummary() {
+        try {
+            JSONObject summary = new JSONObject();
+            summary.put("time", System.currentTimeMillis());
+            summary.put("build", getAppVersion());
+            summary.put("device", Build.MODEL + " API " + Build.VERSION.SDK_INT);
+            summary.put("sessionType", sessionType);
+            summary.put("all", describe(overall));
+            JSONArray exercises = new JSONArray();
+            for (int i = 0; i < histograms.length - 1; i++) {
+                JSONObject exercise = describe(histograms[i]);
+                exercise.put("exercise", i);
+                exercises.put(exercise);
+            }
+            summary.put("exercises", exercises);
+            summary.put("outsideExercises", describe(histograms[histograms.length - 1]));
+
+            File directory = new File(appContext.getFilesDir(), DIRECTORY);
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                Log.e(TAG, "Error creating " + directory);
+                return;
+            }
+            try (Writer writer = new OutputStreamWriter(
+                    new FileOutputStream(new File(directory, FILE_NAME), true), StandardCharsets.UTF_8)) {
+                writer.write(summary.toString());
+                writer.write('\n');
+            }
+            Log.d(TAG, String.format(Locale.US, "%s session: %d frames, p50 %.1fms, p95 %.1fms, p99 %.1fms, %d janky",
+                    sessionType, overall.getCount(), overall.getPercentileMs(50), overall.getPercentileMs(95),
+                    overall.getPercentileMs(99), overall.getJankyCount()));
+        } catch (JSONException | IOException e) {
+            Log.e(TAG, "Error writing frame metrics: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Turn a histogram into its summary numbers
+     */
+    private static JSONObject describe(FrameTimeHistogram histogram) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("frames", histogram.getCount());
+        json.put("janky", histogram.getJankyCount());
+        json.put("p50", histogram.getPercentileMs(50));
+        json.put("p95", histogram.getPercentileMs(95));
+        json.put("p99", histogram.getPercentileMs(99));
+        json.put("max", histogram.getMaxMs());
+        return json;
+    }
+
+    /**
+     * Get the app's version name and code, e.g. "1.0 (1)"
+     */
+    private String getAppVersion() {
+        try {
+            PackageManager packageManager = appContext.getPackageManager();
+            String packageName = appContext.getPackageName();
+            PackageInfo info = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                    ? packageManager.getPackageInfo(packageName, PackageManager.PackageInfoFlags.of(0))
+                    : getPackageInfoBeforeTiramisu(packageManager, packageName);
+            return info.versionName + " (" + PackageInfoCompat.getLongVersionCode(info) + ")";
+        } catch (PackageManager.NameNotFoundException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * Look up the app's package the only way Android 12 and older offer
+     */
+    @SuppressWarnings("deprecation")
+    private static PackageInfo getPackageInfoBeforeTiramisu(PackageManager packageManager, String packageName)
+            throws PackageManager.NameNotFoundException {
+        return packageManager.getPackageInfo(packageName, 0);
+    }
+}
@@ -0,0 +1,97 @@
+package com.s23010285.desk.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts frame durations in fixed half-millisecond buckets
+ * Recording is a single atomic increment, so the frame-metrics thread never takes a lock and
+ * never allocates, and the UI thread can read percentiles at any time
+ */
+public class FrameTimeHistogram {
+
+    // Each bucket covers this many nanoseconds (0.5 ms)
+    private static final long BUCKET_NS = 500_000L;
+    // Frames up to 150 ms get their own bucket, longer ones all land in the last bucket
+    private static final int BUCKET_COUNT = 300;
+
+    // buckets holds how many frames fell into each half-millisecond range
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT + 1);
+    // jankThresholdNs is the frame budget, frames longer than this are janky
+    private final long jankThresholdNs;
+    // count, jankyCount and maxNs are kept separately so reading them is cheap
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong jankyCount = new AtomicLong();
+    private final AtomicLong maxNs = new AtomicLong();
+
+    /**
+     * Create an empty histogram
+     * @param jankThresholdNs The frame budget in nanoseconds (about 16.7 ms at 60 Hz)
+     */
+    public FrameTimeHistogram(long jankThresholdNs) {
+        this.jankThresholdNs = jankThresholdNs;
+    }
+
+    /**
+     * Count one frame, safe to call from any thread
+     * @param durationNs How long the frame took
+     */
+    public void record(long durationNs) {
+        if (durationNs < 0) {
+            return;
+        }
+        buckets.incrementAndGet((int) Math.min(BUCKET_COUNT, durationNs / BUCKET_NS));
+        count.incrementAndGet();
+        if (durationNs > jankThresholdNs) {
+            jankyCount.incrementAndGet();
+        }
+        maxNs.accumulateAndGet(durationNs, Math::max);
+    }
+
+    /**
+     * Get how many frames were counted
+     * @return The number of frames
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get how many frames went over the frame budget
+     * @return The number of janky frames
+     */
+    public long getJankyCount() {
+        return jankyCount.get();
+    }
+
+    /**
+     * Get the longest frame
+     * @return The duration in milliseconds
+     */
+    public double getMaxMs() {
+        return maxNs.get() / 1_000_000.0;
+    }
+
+    /**
+     * Get the frame duration that the given share of frames stayed under
+     * The answer is the top of the bucket it falls in, so it is accurate to half a millisecond
+     * @param percentile The percentile, e.g. 95 for p95
+     * @return The duration in milliseconds, or 0 if no frames were counted
+     */
+    public double getPercentileMs(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i <= BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                // The overflow bucket has no top, report the longest frame instead
+                return i == BUCKET_COUNT ? getMaxMs() : (i + 1) * BUCKET_NS / 1_000_000.0;
+            }
+        }
+        return getMaxMs();
+    }
+}
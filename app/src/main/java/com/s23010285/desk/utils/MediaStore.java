@@ -0,0 +1,483 @@
+package com.s23010285.desk.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps a pack of exercise media (GIFs, music) on disk so sessions work offline
+ * Files are stored by the SHA-256 of their content, so media shared by several exercises is kept once
+ * and a file can be checked against its name. A pack is described by a small text manifest:
+ * <pre>
+ * media-pack 1
+ * version 3
+ * &lt;sha256&gt; &lt;size in bytes&gt; &lt;url the app knows the media by&gt;
+ * </pre>
+ * The files themselves are downloaded from objects/&lt;sha256&gt; next to the manifest. Every download
+ * is checked against its size and hash before it is kept
+ * When the files take more than the size cap, the least recently used ones are deleted; callers then
+ * stream that media from its url as before
+ * It has no Android dependencies so it can be tested on the JVM against a local HTTP server
+ */
+public class MediaStore {
+
+    // The manifest layout this code understands
+    private static final String MANIFEST_HEADER = "media-pack 1";
+    // A manifest bigger than this isn't a media pack
+    private static final int MAX_MANIFEST_BYTES = 1024 * 1024;
+    private static final int TIMEOUT_MS = 15_000;
+
+    /**
+     * One media file in a pack
+     */
+    public static final class Entry {
+        // hash is the SHA-256 of the content in lower-case hex, size its length in bytes
+        public final String hash;
+        public final long size;
+
+        /**
+         * Create an entry
+         * @param hash The SHA-256 of the content in lower-case hex
+         * @param size The content length in bytes
+         */
+        public Entry(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+    }
+
+    // objectsDir holds the media files named by hash, packFile is the installed manifest
+    private final File objectsDir;
+    private final File packFile;
+    // maxBytes is the size cap for all media files together
+    private long maxBytes;
+
+    // version is the installed pack version (0 before the first pack), index maps each url to its file
+    private int version = 0;
+    private Map<String, Entry> index = new HashMap<>();
+    // stored holds the size of every file on disk by hash, least recently used first
+    private final LinkedHashMap<String, Long> stored = new LinkedHashMap<>(16, 0.75f, true);
+    private long storedBytes = 0;
+
+    // syncLock makes sure only one pack download runs at a time
+    private final Object syncLock = new Object();
+
+    /**
+     * Open the store in a folder, creating it if needed
+     * Files left over from an interrupted download are deleted
+     * @param directory The folder the store owns
+     * @param maxBytes The most bytes the media files may take together
+     * @throws IOException if the folder can't be created
+     */
+    public MediaStore(File directory, long maxBytes) throws IOException {
+        this.objectsDir = new File(directory, "objects");
+        this.packFile = new File(directory, "pack.txt");
+        this.maxBytes = maxBytes;
+        if (!objectsDir.isDirectory() && !objectsDir.mkdirs()) {
+            throw new IOException("Can't create " + objectsDir);
+        }
+        if (packFile.isFile()) {
+            try (InputStream in = new FileInputStream(packFile)) {
+                Manifest manifest = Manifest.read(in);
+                version = manifest.version;
+                index = manifest.entries;
+            } catch (IOException e) {
+                // A broken manifest only means the next sync downloads the pack again
+                version = 0;
+                index = new HashMap<>();
+            }
+        }
+
+        // Files used longest ago go first, so the LRU order survives restarts
+        File[] files = objectsDir.listFiles();
+        if (files != null) {
+            Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (File file : files) {
+                if (isHash(file.getName())) {
+                    stored.put(file.getName(), file.length());
+                    storedBytes += file.length();
+                } else {
+                    deleteQuietly(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the local copy of a media file, marking it as recently used
+     * @param url The url the app knows the media by
+     * @return The file, or null if it isn't stored (stream it from the url instead)
+     */
+    public synchronized File get(String url) {
+        Entry entry = url != null ? index.get(url) : null;
+        if (entry == null || stored.get(entry.hash) == null) {
+            return null;
+        }
+        File file = new File(objectsDir, entry.hash);
+        if (!file.setLastModified(System.currentTimeMillis()) && !file.exists()) {
+            // Deleted behind our back
+            forget(entry.hash);
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Check whether a media file is stored, without marking it as used
+     * @param url The url the app knows the media by
+     * @return true if get would return a file
+     */
+    public synchronized boolean contains(String url) {
+        Entry entry = url != null ? index.get(url) : null;
+        return entry != null && stored.containsKey(entry.hash);
+    }
+
+    /**
+     * Download a pack and keep its media, reusing files that are already stored
+     * Only files that pass the size and hash check are kept. If some fail, the rest are still used
+     * and the pack version isn't recorded, so the next sync tries the failed ones again
+     * @param manifestUrl Where the pack manifest is
+     * @return How many files were downloaded
+     * @throws IOException if the manifest can't be read
+     */
+    public int sync(URL manifestUrl) throws IOException {
+        synchronized (syncLock) {
+            Manifest manifest;
+            try (InputStream in = open(manifestUrl)) {
+                manifest = Manifest.read(new LimitedInputStream(in, MAX_MANIFEST_BYTES));
+            }
+            Map<String, Entry> previous;
+            synchronized (this) {
+                if (manifest.version <= version) {
+                    return 0;
+                }
+                previous = index;
+            }
+
+            int downloaded = 0;
+            boolean complete = true;
+            Set<String> done = new HashSet<>();
+            Map<String, Entry> available = new HashMap<>();
+            for (Map.Entry<String, Entry> item : manifest.entries.entrySet()) {
+                Entry entry = item.getValue();
+                if (done.add(entry.hash) && !isStored(entry.hash)) {
+                    try {
+                        download(new URL(manifestUrl, "objects/" + entry.hash), entry);
+                        downloaded++;
+                    } catch (IOException e) {
+                        complete = false;
+                    }
+                }
+                if (isStored(entry.hash)) {
+                    available.put(item.getKey(), entry);
+                } else if (previous.containsKey(item.getKey()) && isStored(previous.get(item.getKey()).hash)) {
+                    // Keep the old media for this url until the new one downloads
+                    available.put(item.getKey(), previous.get(item.getKey()));
+                }
+            }
+
+            synchronized (this) {
+                int installedVersion = complete ? manifest.version : version;
+                writePack(installedVersion, available);
+                version = installedVersion;
+                index = available;
+                // Files no url points to any more are of no use
+                Set<String> referenced = new HashSet<>();
+                for (Entry entry : available.values()) {
+                    referenced.add(entry.hash);
+                }
+                for (String hash : new ArrayList<>(stored.keySet())) {
+                    if (!referenced.contains(hash)) {
+                        delete(hash);
+                    }
+                }
+                evict(null);
+            }
+            return downloaded;
+        }
+    }
+
+    /**
+     * Change the size cap, deleting least recently used files if the store is now too big
+     * @param maxBytes The most bytes the media files may take together
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict(null);
+    }
+
+    /**
+     * Get the installed pack version
+     * @return The version, 0 before the first complete sync
+     */
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    /**
+     * Get how many bytes the stored files take
+     * @return The total size
+     */
+    public synchronized long getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * Download one file to a temp file, check it and move it into place
+     */
+    private void download(URL url, Entry entry) throws IOException {
+        File temp = File.createTempFile(entry.hash, ".tmp", objectsDir);
+        try {
+            MessageDigest digest = sha256();
+            long length = 0;
+            try (InputStream in = open(url); OutputStream out = new FileOutputStream(temp)) {
+                byte[] buffer = new byte[16 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    length += read;
+                    if (length > entry.size) {
+                        throw new IOException("Media " + entry.hash + " is bigger than its manifest says");
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            if (length != entry.size) {
+                throw new IOException("Media " + entry.hash + " is " + length + " bytes, expected " + entry.size);
+            }
+            String hash = toHex(digest.digest());
+            if (!hash.equals(entry.hash)) {
+                throw new IOException("Media " + entry.hash + " has hash " + hash);
+            }
+            File target = new File(objectsDir, entry.hash);
+            if (!temp.renameTo(target)) {
+                throw new IOException("Can't move media to " + target);
+            }
+            synchronized (this) {
+                stored.put(entry.hash, length);
+                storedBytes += length;
+                evict(entry.hash);
+            }
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Delete least recently used files until the store fits its cap
+     * @param keep A file that must stay even if it is the oldest (may be null)
+     */
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> iterator = stored.entrySet().iterator();
+        while (storedBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> oldest = iterator.next();
+            if (oldest.getKey().equals(keep)) {
+                continue;
+            }
+            deleteQuietly(new File(objectsDir, oldest.getKey()));
+            storedBytes -= oldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void delete(String hash) {
+        deleteQuietly(new File(objectsDir, hash));
+        forget(hash);
+    }
+
+    private void forget(String hash) {
+        Long size = stored.remove(hash);
+        if (size != null) {
+            storedBytes -= size;
+        }
+    }
+
+    private synchronized boolean isStored(String hash) {
+        return stored.containsKey(hash);
+    }
+
+    /**
+     * Write the installed manifest, through a temp file so a crash never leaves half of it
+     */
+    private void writePack(int packVersion, Map<String, Entry> entries) throws IOException {
+        File temp = new File(packFile.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            writer.write(MANIFEST_HEADER + "\nversion " + packVersion + "\n");
+            for (Map.Entry<String, Entry> item : entries.entrySet()) {
+                writer.write(item.getValue().hash + " " + item.getValue().size + " " + item.getKey() + "\n");
+            }
+        }
+        if (!temp.renameTo(packFile)) {
+            deleteQuietly(temp);
+            throw new IOException("Can't write " + packFile);
+        }
+    }
+
+    private static InputStream open(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            connection.disconnect();
+            throw new IOException("HTTP " + status + " for " + url);
+        }
+        return connection.getInputStream();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java and Android runtime has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the SHA-256 of some bytes in lower-case hex, the name a file with that content is stored under
+     * @param content The content
+     * @return The hash
+     */
+    public static String hashOf(byte[] content) {
+        return toHex(sha256().digest(content));
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = digits[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static boolean isHash(String name) {
+        if (name.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void deleteQuietly(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * A parsed pack manifest
+     */
+    private static final class Manifest {
+        int version;
+        Map<String, Entry> entries = new LinkedHashMap<>();
+
+        static Manifest read(InputStream in) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            if (!MANIFEST_HEADER.equals(reader.readLine())) {
+                throw new IOException("Not a media pack manifest");
+            }
+            String versionLine = reader.readLine();
+            Manifest manifest = new Manifest();
+            try {
+                if (versionLine == null || !versionLine.startsWith("version ")) {
+                    throw new IOException("Media pack manifest has no version");
+                }
+                manifest.version = Integer.parseInt(versionLine.substring("version ".length()).trim());
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    List<String> parts = splitEntry(line);
+                    if (parts == null || !isHash(parts.get(0))) {
+                        throw new IOException("Bad media pack line: " + line);
+                    }
+                    long size = Long.parseLong(parts.get(1));
+                    if (size < 0) {
+                        throw new IOException("Bad media size: " + line);
+                    }
+                    manifest.entries.put(parts.get(2), new Entry(parts.get(0), size));
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad number in media pack manifest", e);
+            }
+            return manifest;
+        }
+
+        /**
+         * Split "hash size url", the url may not contain spaces but everything else is kept as is
+         */
+        private static List<String> splitEntry(String line) {
+            int first = line.indexOf(' ');
+            int second = first < 0 ? -1 : line.indexOf(' ', first + 1);
+            if (second < 0 || second == line.length() - 1) {
+                return null;
+            }
+            List<String> parts = new ArrayList<>(3);
+            Collections.addAll(parts, line.substring(0, first), line.substring(first + 1, second),
+                    line.substring(second + 1).trim());
+            return parts;
+        }
+    }
+
+    /**
+     * Fails once more than a set number of bytes has been read
+     */
+    private static final class LimitedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining + 1));
+            if (read > 0) {
+                remaining -= read;
+                if (remaining < 0) {
+                    throw new IOException("Media pack manifest is too big");
+                }
+            }
+            return read;
+        }
+    }
+}
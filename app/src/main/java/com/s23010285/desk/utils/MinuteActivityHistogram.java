@@ -0,0 +1,191 @@
+package com.s23010285.desk.utils;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Holds one day of step data as a step count for every minute of the day
+ * Each of the 1440 minutes is stored as a small unsigned 16-bit number, so a whole day fits in under 3 KB
+ * in memory and usually a few hundred bytes once packed, because most minutes of a desk day are empty
+ * All the daily numbers (active minutes, steps per hour, longest sedentary stretch) come from one pass over it
+ */
+public class MinuteActivityHistogram {
+
+    // How many minutes there are in one day
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    // A minute with at least this many steps counts as an active minute
+    // Slow walking is around 60-80 steps per minute, so this skips the odd step taken while fidgeting
+    public static final int ACTIVE_STEPS_PER_MINUTE = 40;
+    // A minute with fewer steps than this counts as sedentary
+    public static final int SEDENTARY_STEPS_PER_MINUTE = 10;
+
+    // The largest count a single minute can hold
+    private static final int MAX_STEPS_PER_MINUTE = 0xFFFF;
+
+    // stepsPerMinute holds the step count for each minute of the day, as unsigned 16-bit values
+    private final char[] stepsPerMinute = new char[MINUTES_PER_DAY];
+
+    /**
+     * Add steps to one minute of the day
+     * Counts saturate instead of wrapping around, which no real minute of walking gets close to
+     * @param minuteOfDay The minute of the day, from 0 (00:00) to 1439 (23:59)
+     * @param steps How many steps to add
+     */
+    public void addSteps(int minuteOfDay, int steps) {
+        if (minuteOfDay < 0 || minuteOfDay >= MINUTES_PER_DAY || steps <= 0) {
+            return;
+        }
+        int updated = stepsPerMinute[minuteOfDay] + steps;
+        stepsPerMinute[minuteOfDay] = (char) Math.min(updated, MAX_STEPS_PER_MINUTE);
+    }
+
+    /**
+     * Add every minute of another histogram into this one
+     * @param other The histogram to add
+     */
+    public void addAll(MinuteActivityHistogram other) {
+        for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+            addSteps(minute, other.stepsPerMinute[minute]);
+        }
+    }
+
+    /**
+     * Get the step count for one minute of the day
+     * @param minuteOfDay The minute of the day, from 0 to 1439
+     * @return The number of steps in that minute
+     */
+    public int getSteps(int minuteOfDay) {
+        return stepsPerMinute[minuteOfDay];
+    }
+
+    /**
+     * Work out all the daily numbers in a single pass over the minutes
+     * @param endMinuteExclusive Only minutes before this one are looked at, so the rest of today
+     *                           doesn't count as sedentary (use MINUTES_PER_DAY for a finished day)
+     * @return The summary for the day
+     */
+    public Summary summarize(int endMinuteExclusive) {
+        int end = Math.max(0, Math.min(endMinuteExclusive, MINUTES_PER_DAY));
+        Summary summary = new Summary();
+        int sedentaryRun = 0;
+        for (int minute = 0; minute < end; minute++) {
+            int steps = stepsPerMinute[minute];
+            summary.totalSteps += steps;
+            summary.hourlySteps[minute / 60] += steps;
+            if (steps >= ACTIVE_STEPS_PER_MINUTE) {
+                summary.activeMinutes++;
+            }
+            if (steps < SEDENTARY_STEPS_PER_MINUTE) {
+                sedentaryRun++;
+                if (sedentaryRun > summary.longestSedentaryMinutes) {
+                    summary.longestSedentaryMinutes = sedentaryRun;
+                    summary.longestSedentaryStartMinute = minute - sedentaryRun + 1;
+                }
+            } else {
+                sedentaryRun = 0;
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Pack the histogram into bytes for storage
+     * Each run of empty minutes is written as a 0 followed by the run length, and every other
+     * minute as its step count, all as unsigned varints (7 bits per byte)
+     * @return The packed bytes
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        int minute = 0;
+        while (minute < MINUTES_PER_DAY) {
+            int steps = stepsPerMinute[minute];
+            if (steps == 0) {
+                int run = 0;
+                while (minute < MINUTES_PER_DAY && stepsPerMinute[minute] == 0) {
+                    run++;
+                    minute++;
+                }
+                out.write(0);
+                writeVarint(out, run);
+            } else {
+                writeVarint(out, steps);
+                minute++;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Rebuild a histogram from bytes written by toBytes()
+     * Damaged data never throws, it just leaves the remaining minutes empty
+     * @param bytes The packed bytes, may be null
+     * @return The histogram
+     */
+    public static MinuteActivityHistogram fromBytes(byte[] bytes) {
+        MinuteActivityHistogram histogram = new MinuteActivityHistogram();
+        if (bytes == null) {
+            return histogram;
+        }
+        int[] position = {0};
+        int minute = 0;
+        while (minute < MINUTES_PER_DAY && position[0] < bytes.length) {
+            int value = readVarint(bytes, position);
+            if (value < 0) {
+                break;
+            }
+            if (value == 0) {
+                int run = readVarint(bytes, position);
+                if (run <= 0) {
+                    break;
+                }
+                minute += run;
+            } else {
+                histogram.stepsPerMinute[minute] = (char) Math.min(value, MAX_STEPS_PER_MINUTE);
+                minute++;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Write a non-negative number 7 bits at a time, lowest bits first
+     */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Read a number written by writeVarint and move the position past it
+     * @return The number, or -1 if the data ends too early
+     */
+    private static int readVarint(byte[] bytes, int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 32 && position[0] < bytes.length; shift += 7) {
+            int b = bytes[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The daily numbers derived from a histogram
+     */
+    public static class Summary {
+        // totalSteps is the number of steps in the summarized minutes
+        public int totalSteps;
+        // activeMinutes is how many minutes had at least ACTIVE_STEPS_PER_MINUTE steps
+        public int activeMinutes;
+        // hourlySteps holds the steps taken in each hour of the day
+        public final int[] hourlySteps = new int[24];
+        // longestSedentaryMinutes is the length of the longest run of sedentary minutes
+        public int longestSedentaryMinutes;
+        // longestSedentaryStartMinute is the minute of the day that run started (-1 if there was none)
+        public int longestSedentaryStartMinute = -1;
+    }
+}
@@ -0,0 +1,168 @@
+package com.s23010285.desk.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.Uri;
+import android.util.Log;
+
+import com.s23010285.desk.BuildConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Gives the app its MediaStore and keeps its media pack up to date
+ * Screens ask it for a media file by its usual url: they get the local copy when the pack has it and
+ * the url otherwise, so Glide and ExoPlayer work the same online and offline
+ * The pack is checked at most once a day, and only on unmetered networks
+ */
+public final class OfflineMediaPack {
+
+    private static final String TAG = "OfflineMediaPack";
+
+    // Where the media pack manifest is published, set at build time (empty when there is no pack to sync)
+    private static final String MANIFEST_URL = BuildConfig.MEDIA_PACK_MANIFEST_URL;
+    // The pack lives in this folder inside the app's files
+    private static final String DIRECTORY = "media";
+    // How long to wait between pack checks
+    private static final long CHECK_INTERVAL_MS = 24L * 60 * 60 * 1000;
+    private static final String PREF_NAME = "OfflineMediaPack";
+    private static final String KEY_LAST_CHECK = "last_check";
+
+    // syncExecutor downloads the pack off the main thread, one sync at a time
+    private static final ExecutorService syncExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MediaPackSync");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // store is opened the first time it is needed (null if the folder couldn't be created)
+    private static MediaStore store;
+    private static boolean opened = false;
+
+    private OfflineMediaPack() {
+    }
+
+    /**
+     * Get the media store
+     * @param context Any context
+     * @return The store, or null if it couldn't be opened
+     */
+    public static synchronized MediaStore getStore(Context context) {
+        if (!opened) {
+            opened = true;
+            long maxBytes = SettingsManager.getInstance(context).getOfflineMediaLimitMb() * 1024L * 1024L;
+            try {
+                store = new MediaStore(new File(context.getApplicationContext().getFilesDir(), DIRECTORY), maxBytes);
+            } catch (IOException e) {
+                Log.e(TAG, "Error opening media store: " + e.getMessage(), e);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Get what Glide should load for a media url
+     * @param context Any context
+     * @param url The media url (may be null)
+     * @return The local file if the pack has it, the url otherwise
+     */
+    public static Object glideSource(Context context, String url) {
+        File file = getLocalFile(context, url);
+        return file != null ? file : url;
+    }
+
+    /**
+     * Get what ExoPlayer should play for a media url
+     * @param context Any context
+     * @param url The media url
+     * @return A file uri if the pack has it, the url otherwise
+     */
+    public static Uri playbackUri(Context context, String url) {
+        File file = getLocalFile(context, url);
+        return file != null ? Uri.fromFile(file) : Uri.parse(url);
+    }
+
+    /**
+     * Check whether a media url can be shown without the network
+     * @param context Any context
+     * @param url The media url
+     * @return true if the pack has it
+     */
+    public static boolean isAvailableOffline(Context context, String url) {
+        MediaStore mediaStore = getStore(context);
+        return mediaStore != null && mediaStore.contains(url);
+    }
+
+    /**
+     * Change the size cap, deleting least recently used media if the pack is now too big
+     * @param context Any context
+     * @param megabytes The new cap
+     */
+    public static void setLimitMb(Context context, int megabytes) {
+        SettingsManager.getInstance(context).setOfflineMediaLimitMb(megabytes);
+        MediaStore mediaStore = getStore(context);
+        if (mediaStore != null) {
+            syncExecutor.execute(() -> mediaStore.setMaxBytes(megabytes * 1024L * 1024L));
+        }
+    }
+
+    /**
+     * Open the store and check for a newer media pack in the background, if a pack is configured, it
+     * is time to and the network is unmetered
+     * @param context Any context
+     */
+    public static void syncInBackground(Context context) {
+        Context appContext = context.getApplicationContext();
+        syncExecutor.execute(() -> {
+            // Opening the store reads its folder, better done here than on the first screen that shows media
+            MediaStore mediaStore = getStore(appContext);
+            SharedPreferences preferences = appContext.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+            long now = System.currentTimeMillis();
+            long lastCheck = preferences.getLong(KEY_LAST_CHECK, 0);
+            if (mediaStore == null || MANIFEST_URL.isEmpty()
+                    || Math.abs(now - lastCheck) < CHECK_INTERVAL_MS || !isUnmetered(appContext)) {
+                return;
+            }
+            try {
+                int downloaded = mediaStore.sync(new URL(MANIFEST_URL));
+                preferences.edit().putLong(KEY_LAST_CHECK, now).apply();
+                Log.d(TAG, "Media pack v" + mediaStore.getVersion() + ", downloaded " + downloaded + " files");
+            } catch (IOException e) {
+                Log.e(TAG, "Error syncing media pack: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private static File getLocalFile(Context context, String url) {
+        if (url == null) {
+            return null;
+        }
+        MediaStore mediaStore = getStore(context);
+        return mediaStore != null ? mediaStore.get(url) : null;
+    }
+
+    private static boolean isUnmetered(Context context) {
+        ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivity == null) {
+            return false;
+        }
+        try {
+            Network network = connectivity.getActiveNetwork();
+            NetworkCapabilities capabilities = network != null ? connectivity.getNetworkCapabilities(network) : null;
+            return capabilities != null
+                    && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        } catch (SecurityException e) {
+            Log.e(TAG, "Error reading network state: " + e.getMessage(), e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.s23010285.desk.utils;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Packs a GPS route into a few bytes so it can be stored with a workout session
+ * Coordinates are rounded to 1e-6 degrees (about 11 cm) and times to whole seconds, then every point
+ * is stored as the difference from the one before it. Neighbouring points are close together, so the
+ * differences are small numbers, which are zigzag encoded (so negatives are small too) and written as
+ * varints (7 bits per byte). A point typically takes 5-7 bytes instead of 24
+ * It has no Android dependencies so it can be tested on the JVM
+ */
+public final class RouteCodec {
+
+    // The first byte of every packed route, so the format can change later
+    private static final int FORMAT_VERSION = 1;
+    // Coordinates are stored as whole multiples of 1e-6 degrees
+    private static final double COORDINATE_SCALE = 1_000_000.0;
+
+    /**
+     * A decoded route
+     */
+    public static final class Route {
+        // latitudes, longitudes and timesMs hold the points in order
+        public final double[] latitudes;
+        public final double[] longitudes;
+        public final long[] timesMs;
+
+        Route(double[] latitudes, double[] longitudes, long[] timesMs) {
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.timesMs = timesMs;
+        }
+
+        /**
+         * Get how many points the route has
+         * @return The number of points
+         */
+        public int size() {
+            return latitudes.length;
+        }
+    }
+
+    private RouteCodec() {
+    }
+
+    /**
+     * Pack a route
+     * @param latitudes The latitudes in degrees
+     * @param longitudes The longitudes in degrees
+     * @param timesMs The time of each point in milliseconds
+     * @param count How many points to pack from the start of the arrays
+     * @return The packed bytes
+     */
+    public static byte[] encode(double[] latitudes, double[] longitudes, long[] timesMs, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + count * 7);
+        out.write(FORMAT_VERSION);
+        writeVarint(out, count);
+        long lastLat = 0;
+        long lastLon = 0;
+        long lastSeconds = 0;
+        for (int i = 0; i < count; i++) {
+            long lat = Math.round(latitudes[i] * COORDINATE_SCALE);
+            long lon = Math.round(longitudes[i] * COORDINATE_SCALE);
+            long seconds = Math.floorDiv(timesMs[i], 1000L);
+            // The first point is stored as a difference from zero, i.e. as itself
+            writeVarint(out, zigzag(lat - lastLat));
+            writeVarint(out, zigzag(lon - lastLon));
+            writeVarint(out, zigzag(seconds - lastSeconds));
+            lastLat = lat;
+            lastLon = lon;
+            lastSeconds = seconds;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Unpack a route made by encode
+     * @param data The packed bytes
+     * @return The route
+     * @throws IllegalArgumentException if the data is not a packed route
+     */
+    public static Route decode(byte[] data) {
+        if (data == null || data.length == 0 || data[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Not a packed route");
+        }
+        int[] position = {1};
+        long count = readVarint(data, position);
+        // Every point takes at least 3 bytes, so a bigger count means the data is damaged
+        if (count < 0 || count > (data.length - position[0]) / 3) {
+            throw new IllegalArgumentException("Bad point count " + count);
+        }
+        int n = (int) count;
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        long[] timesMs = new long[n];
+        long lat = 0;
+        long lon = 0;
+        long seconds = 0;
+        for (int i = 0; i < n; i++) {
+            lat += unzigzag(readVarint(data, position));
+            lon += unzigzag(readVarint(data, position));
+            seconds += unzigzag(readVarint(data, position));
+            latitudes[i] = lat / COORDINATE_SCALE;
+            longitudes[i] = lon / COORDINATE_SCALE;
+            timesMs[i] = seconds * 1000L;
+        }
+        return new Route(latitudes, longitudes, timesMs);
+    }
+
+    /**
+     * Map signed numbers to unsigned ones so small negatives stay small: 0, -1, 1, -2 become 0, 1, 2, 3
+     */
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Undo zigzag
+     */
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Write a number 7 bits at a time, the top bit of each byte says whether more bytes follow
+     */
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Read a number written by writeVarint
+     * @param position The read position, moved past the number
+     */
+    private static long readVarint(byte[] data, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= data.length) {
+                throw new IllegalArgumentException("Packed route ends in the middle of a number");
+            }
+            int b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Number too long in packed route");
+    }
+}
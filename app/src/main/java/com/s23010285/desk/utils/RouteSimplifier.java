@@ -0,0 +1,181 @@
+package com.s23010285.desk.utils;
+
+/**
+ * Keeps a GPS route down to a fixed number of points while it is being recorded
+ * This is a streaming version of the Visvalingam-Whyatt algorithm: every point has an "effective area",
+ * the area of the triangle it forms with its neighbours, and when the route is full the point with the
+ * smallest area (the one whose removal changes the shape least) is dropped
+ * Points live in fixed arrays linked as a list, so adding a point never allocates
+ * The first and the newest point are never dropped
+ * It has no Android dependencies so it can be tested on the JVM
+ */
+public class RouteSimplifier {
+
+    // Metres per degree of latitude (the Earth's mean radius times pi / 180)
+    private static final double METERS_PER_DEGREE = 6_371_000.0 * Math.PI / 180.0;
+    // Marks "no point" in the prev/next links
+    private static final int NONE = -1;
+
+    // maxPoints is the most points the simplified route keeps
+    private final int maxPoints;
+
+    // Point data, indexed by slot
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[] timesMs;
+    // areas holds each point's effective area in square metres (infinite for the two ends)
+    private final double[] areas;
+    // prev and next link the slots in route order
+    private final int[] prev;
+    private final int[] next;
+
+    // first and last are the slots of the oldest and newest point
+    private int first = NONE;
+    private int last = NONE;
+    // size is how many points the route holds
+    private int size = 0;
+    // freeSlots is a stack of unused slots
+    private final int[] freeSlots;
+    private int freeCount;
+    // metersPerDegreeLon converts longitude to metres near the start of the route
+    private double metersPerDegreeLon = METERS_PER_DEGREE;
+
+    /**
+     * Create a simplifier
+     * @param maxPoints The most points to keep (at least 3)
+     */
+    public RouteSimplifier(int maxPoints) {
+        this.maxPoints = Math.max(3, maxPoints);
+        int capacity = this.maxPoints + 1;
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        timesMs = new long[capacity];
+        areas = new double[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+        freeSlots = new int[capacity];
+        clear();
+    }
+
+    /**
+     * Add the newest point of the route
+     * @param latitude The latitude in degrees
+     * @param longitude The longitude in degrees
+     * @param timeMs When the point was recorded
+     */
+    public void add(double latitude, double longitude, long timeMs) {
+        if (size == 0) {
+            // Longitude lines get closer towards the poles, measure them at the start of the route
+            metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+        }
+        int slot = freeSlots[--freeCount];
+        latitudes[slot] = latitude;
+        longitudes[slot] = longitude;
+        timesMs[slot] = timeMs;
+        areas[slot] = Double.POSITIVE_INFINITY;
+        prev[slot] = last;
+        next[slot] = NONE;
+        if (last != NONE) {
+            next[last] = slot;
+        } else {
+            first = slot;
+        }
+        last = slot;
+        size++;
+
+        // The previous newest point now has two neighbours, so it gets a real area
+        int middle = prev[slot];
+        if (middle != NONE && prev[middle] != NONE) {
+            areas[middle] = triangleArea(prev[middle], middle, slot);
+        }
+        if (size > maxPoints) {
+            removeSmallest();
+        }
+    }
+
+    /**
+     * Get how many points the simplified route has
+     * @return The number of points
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copy the simplified route out in order
+     * @param outLatitudes Receives the latitudes (at least size() long)
+     * @param outLongitudes Receives the longitudes (at least size() long)
+     * @param outTimesMs Receives the times (at least size() long, may be null)
+     * @return The number of points copied
+     */
+    public int copyTo(double[] outLatitudes, double[] outLongitudes, long[] outTimesMs) {
+        int i = 0;
+        for (int slot = first; slot != NONE; slot = next[slot]) {
+            outLatitudes[i] = latitudes[slot];
+            outLongitudes[i] = longitudes[slot];
+            if (outTimesMs != null) {
+                outTimesMs[i] = timesMs[slot];
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Forget the whole route
+     */
+    public void clear() {
+        first = NONE;
+        last = NONE;
+        size = 0;
+        freeCount = freeSlots.length;
+        for (int i = 0; i < freeSlots.length; i++) {
+            freeSlots[i] = freeSlots.length - 1 - i;
+        }
+    }
+
+    /**
+     * Drop the point whose removal changes the route's shape least
+     */
+    private void removeSmallest() {
+        int smallest = NONE;
+        double smallestArea = Double.POSITIVE_INFINITY;
+        for (int slot = next[first]; slot != last; slot = next[slot]) {
+            if (areas[slot] < smallestArea) {
+                smallestArea = areas[slot];
+                smallest = slot;
+            }
+        }
+        if (smallest == NONE) {
+            return;
+        }
+        int before = prev[smallest];
+        int after = next[smallest];
+        next[before] = after;
+        prev[after] = before;
+        freeSlots[freeCount++] = smallest;
+        size--;
+
+        // The neighbours' triangles changed; they never get a smaller area than the point just removed,
+        // otherwise a run of tiny wiggles would be removed in a different order than the batch algorithm
+        if (prev[before] != NONE) {
+            areas[before] = Math.max(smallestArea, triangleArea(prev[before], before, after));
+        }
+        if (next[after] != NONE) {
+            areas[after] = Math.max(smallestArea, triangleArea(before, after, next[after]));
+        }
+    }
+
+    /**
+     * Work out the area of the triangle formed by three points, in square metres
+     */
+    private double triangleArea(int a, int b, int c) {
+        double ax = longitudes[a] * metersPerDegreeLon;
+        double ay = latitudes[a] * METERS_PER_DEGREE;
+        double bx = longitudes[b] * metersPerDegreeLon;
+        double by = latitudes[b] * METERS_PER_DEGREE;
+        double cx = longitudes[c] * metersPerDegreeLon;
+        double cy = latitudes[c] * METERS_PER_DEGREE;
+        return Math.abs((bx - ax) * (cy - ay) - (cx - ax) * (by - ay)) / 2;
+    }
+}
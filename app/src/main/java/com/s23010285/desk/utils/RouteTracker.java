@@ -0,0 +1,220 @@
+package com.s23010285.desk.utils;
+
+/**
+ * Turns a stream of GPS fixes into a route, a distance and a pace for a cardio session
+ * Inaccurate fixes, jitter while standing and impossible jumps are filtered out before they
+ * count towards the distance, and the route kept for the map is simplified as it grows
+ * (see RouteSimplifier) so the map never has to draw more than a fixed number of points
+ * It also suggests how often to ask for fixes: rarely while standing, more often the faster the user moves
+ * It has no Android dependencies so it can be tested with synthetic coordinate streams
+ */
+public class RouteTracker {
+
+    // How many points the simplified route keeps
+    public static final int DEFAULT_MAX_POINTS = 500;
+
+    // How often to ask for a fix when standing, walking and running
+    public static final long STATIONARY_INTERVAL_MS = 10_000;
+    public static final long WALKING_INTERVAL_MS = 4_000;
+    public static final long RUNNING_INTERVAL_MS = 2_000;
+    // Speeds that separate standing from walking and walking from running (metres per second)
+    private static final double MOVING_SPEED_MPS = 0.5;
+    private static final double RUNNING_SPEED_MPS = 2.5;
+
+    // Fixes less accurate than this are ignored
+    private static final float MAX_ACCURACY_M = 30f;
+    // Moves shorter than this (or the fix accuracy, if that is more) are treated as GPS jitter
+    // Distance is measured from the last accepted fix, so slow walking still adds up once it gets past this
+    private static final double MIN_MOVE_M = 3.0;
+    // Faster than this on foot is a GPS glitch, not the user
+    private static final double MAX_SPEED_MPS = 12.0;
+    // How much each new speed reading moves the smoothed speed
+    private static final double SPEED_SMOOTHING = 0.3;
+
+    private static final double EARTH_RADIUS_M = 6_371_000.0;
+
+    // simplifier keeps the bounded route for the map and for saving
+    private final RouteSimplifier simplifier;
+
+    // hasLast, lastLat, lastLon and lastTimeMs describe the last fix we accepted
+    private boolean hasLast = false;
+    private double lastLat;
+    private double lastLon;
+    private long lastTimeMs;
+    // gap is true after a pause, so the first fix afterwards doesn't add the distance walked while paused
+    private boolean gap = false;
+
+    // distanceMeters is the filtered distance covered
+    private double distanceMeters = 0;
+    // speedMps is the smoothed current speed
+    private double speedMps = 0;
+    // routeVersion goes up every time the simplified route changes, so the map knows when to redraw
+    private int routeVersion = 0;
+
+    /**
+     * Create a tracker that keeps DEFAULT_MAX_POINTS route points
+     */
+    public RouteTracker() {
+        this(DEFAULT_MAX_POINTS);
+    }
+
+    /**
+     * Create a tracker
+     * @param maxRoutePoints The most points the simplified route keeps
+     */
+    public RouteTracker(int maxRoutePoints) {
+        this.simplifier = new RouteSimplifier(maxRoutePoints);
+    }
+
+    /**
+     * Add a GPS fix
+     * @param latitude The latitude in degrees
+     * @param longitude The longitude in degrees
+     * @param accuracyM The fix accuracy in metres (radius of 68% confidence)
+     * @param timeMs When the fix was taken, on a clock that never jumps
+     * @return true if the fix was added to the route
+     */
+    public boolean addFix(double latitude, double longitude, float accuracyM, long timeMs) {
+        if (accuracyM > MAX_ACCURACY_M) {
+            return false;
+        }
+        if (!hasLast || gap) {
+            gap = false;
+            accept(latitude, longitude, timeMs);
+            return true;
+        }
+        long dtMs = timeMs - lastTimeMs;
+        if (dtMs <= 0) {
+            return false;
+        }
+        double moved = distanceBetween(lastLat, lastLon, latitude, longitude);
+        double speed = moved * 1000.0 / dtMs;
+        if (speed > MAX_SPEED_MPS) {
+            return false;
+        }
+        // The speed is measured from the last accepted fix, so slow drifting still shows as slow movement
+        speedMps += SPEED_SMOOTHING * (speed - speedMps);
+        if (moved < Math.max(MIN_MOVE_M, accuracyM)) {
+            return false;
+        }
+        distanceMeters += moved;
+        accept(latitude, longitude, timeMs);
+        return true;
+    }
+
+    /**
+     * Call when the session is paused, so movement during the pause isn't counted
+     */
+    public void markGap() {
+        gap = true;
+        speedMps = 0;
+    }
+
+    /**
+     * Suggest how often to ask for GPS fixes at the current speed
+     * @return The interval in milliseconds
+     */
+    public long getRecommendedIntervalMs() {
+        if (speedMps < MOVING_SPEED_MPS) {
+            return STATIONARY_INTERVAL_MS;
+        }
+        return speedMps < RUNNING_SPEED_MPS ? WALKING_INTERVAL_MS : RUNNING_INTERVAL_MS;
+    }
+
+    /**
+     * Get the distance covered so far
+     * @return The distance in metres
+     */
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    /**
+     * Get the smoothed current speed
+     * @return The speed in metres per second
+     */
+    public double getSpeedMps() {
+        return speedMps;
+    }
+
+    /**
+     * Get the current pace
+     * @return Seconds per kilometre, or 0 when the user isn't moving
+     */
+    public int getPaceSecondsPerKm() {
+        return speedMps < MOVING_SPEED_MPS ? 0 : (int) Math.round(1000.0 / speedMps);
+    }
+
+    /**
+     * Get a number that changes whenever the simplified route changes
+     * @return The route version
+     */
+    public int getRouteVersion() {
+        return routeVersion;
+    }
+
+    /**
+     * Get the simplified route
+     * @return The route points in order
+     */
+    public RouteCodec.Route getRoute() {
+        int n = simplifier.size();
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        long[] timesMs = new long[n];
+        simplifier.copyTo(latitudes, longitudes, timesMs);
+        return new RouteCodec.Route(latitudes, longitudes, timesMs);
+    }
+
+    /**
+     * Pack the simplified route for storage
+     * @return The packed route (see RouteCodec)
+     */
+    public byte[] encodeRoute() {
+        RouteCodec.Route route = getRoute();
+        return RouteCodec.encode(route.latitudes, route.longitudes, route.timesMs, route.size());
+    }
+
+    /**
+     * Carry on from a route saved with encodeRoute, e.g. after the activity was recreated
+     * @param packedRoute The packed route
+     * @param distanceMeters The distance that had been covered
+     */
+    public void restore(byte[] packedRoute, double distanceMeters) {
+        RouteCodec.Route route = RouteCodec.decode(packedRoute);
+        simplifier.clear();
+        hasLast = false;
+        for (int i = 0; i < route.size(); i++) {
+            accept(route.latitudes[i], route.longitudes[i], route.timesMs[i]);
+        }
+        this.distanceMeters = distanceMeters;
+        speedMps = 0;
+        // We don't know where the user went while the activity was gone
+        gap = true;
+    }
+
+    /**
+     * Make a fix the newest point of the route
+     */
+    private void accept(double latitude, double longitude, long timeMs) {
+        simplifier.add(latitude, longitude, timeMs);
+        hasLast = true;
+        lastLat = latitude;
+        lastLon = longitude;
+        lastTimeMs = timeMs;
+        routeVersion++;
+    }
+
+    /**
+     * Work out the distance between two points along the Earth's surface (haversine formula)
+     * @return The distance in metres
+     */
+    static double distanceBetween(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.sqrt(Math.min(1, a)));
+    }
+}
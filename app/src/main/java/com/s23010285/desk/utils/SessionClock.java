@@ -0,0 +1,168 @@
+package com.s23010285.desk.utils;
+
+import java.util.function.LongSupplier;
+
+/**
+ * One monotonic clock for a whole workout session
+ * It only counts time while the session is running, so pausing and resuming never loses or adds time
+ * Countdowns (an exercise, the short break before the next one) are segments measured on this clock,
+ * which means they keep their exact remaining time across a pause
+ * The time source is passed in (SystemClock::elapsedRealtime in the app, a fake clock in tests),
+ * so this class has no Android dependencies
+ */
+public class SessionClock {
+
+    // One UI tick per second
+    public static final long TICK_MS = 1000;
+
+    // timeSource returns the current time in milliseconds from a clock that never jumps
+    private final LongSupplier timeSource;
+
+    // running is true while the session time is advancing
+    private boolean running = false;
+    // resumedAtMs is the time-source reading when the clock last started or resumed
+    private long resumedAtMs = 0;
+    // accumulatedMs is the running time collected before the last resume
+    private long accumulatedMs = 0;
+
+    // segmentStartMs is the session time when the current countdown began
+    private long segmentStartMs = 0;
+    // segmentDurationMs is how long the current countdown lasts (0 when there is none)
+    private long segmentDurationMs = 0;
+
+    /**
+     * Create a session clock
+     * @param timeSource Returns the current time in milliseconds, e.g. SystemClock::elapsedRealtime
+     */
+    public SessionClock(LongSupplier timeSource) {
+        this.timeSource = timeSource;
+    }
+
+    /**
+     * Start (or restart) the session from zero
+     */
+    public void start() {
+        accumulatedMs = 0;
+        segmentStartMs = 0;
+        segmentDurationMs = 0;
+        resumedAtMs = timeSource.getAsLong();
+        running = true;
+    }
+
+    /**
+     * Stop the session time from advancing
+     */
+    public void pause() {
+        if (!running) {
+            return;
+        }
+        accumulatedMs += timeSource.getAsLong() - resumedAtMs;
+        running = false;
+    }
+
+    /**
+     * Let the session time advance again from exactly where it was paused
+     */
+    public void resume() {
+        if (running) {
+            return;
+        }
+        resumedAtMs = timeSource.getAsLong();
+        running = true;
+    }
+
+    /**
+     * Check whether the session time is advancing
+     * @return true while running, false while paused or before start
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Get how much session time has passed, not counting pauses
+     * @return The running time in milliseconds
+     */
+    public long getElapsedMs() {
+        return running ? accumulatedMs + (timeSource.getAsLong() - resumedAtMs) : accumulatedMs;
+    }
+
+    /**
+     * Put the clock back to a saved session time, e.g. after the activity was recreated
+     * The clock is left paused
+     * @param elapsedMs The running time to restore
+     * @param segmentStartMs When the current countdown began, in session time
+     * @param segmentDurationMs How long the current countdown lasts
+     */
+    public void restore(long elapsedMs, long segmentStartMs, long segmentDurationMs) {
+        this.accumulatedMs = elapsedMs;
+        this.segmentStartMs = segmentStartMs;
+        this.segmentDurationMs = segmentDurationMs;
+        this.running = false;
+    }
+
+    /**
+     * Start a countdown that begins now
+     * @param durationMs How long the countdown lasts
+     */
+    public void beginSegment(long durationMs) {
+        segmentStartMs = getElapsedMs();
+        segmentDurationMs = Math.max(0, durationMs);
+    }
+
+    /**
+     * Start a countdown at a given session time
+     * Used to chain countdowns back to back, so a late tick doesn't push the next one back
+     * @param startMs When the countdown begins, in session time
+     * @param durationMs How long the countdown lasts
+     */
+    public void beginSegmentAt(long startMs, long durationMs) {
+        segmentStartMs = startMs;
+        segmentDurationMs = Math.max(0, durationMs);
+    }
+
+    /**
+     * Get when the current countdown began
+     * @return The session time in milliseconds
+     */
+    public long getSegmentStartMs() {
+        return segmentStartMs;
+    }
+
+    /**
+     * Get how long the current countdown lasts
+     * @return The duration in milliseconds
+     */
+    public long getSegmentDurationMs() {
+        return segmentDurationMs;
+    }
+
+    /**
+     * Get how much of the current countdown is left
+     * @return The remaining time in milliseconds, never below 0
+     */
+    public long getSegmentRemainingMs() {
+        long remaining = segmentDurationMs - (getElapsedMs() - segmentStartMs);
+        return Math.max(0, remaining);
+    }
+
+    /**
+     * Get how many whole seconds to show for the current countdown
+     * Rounds up, so a countdown shows its full length at the start and reaches 0 exactly when it ends
+     * @return The seconds left
+     */
+    public int getSegmentSecondsLeft() {
+        return (int) ((getSegmentRemainingMs() + TICK_MS - 1) / TICK_MS);
+    }
+
+    /**
+     * Work out how long to wait until the displayed countdown changes
+     * Scheduling ticks with this keeps the UI on whole-second boundaries instead of drifting
+     * @return The delay in milliseconds until the next tick
+     */
+    public long getDelayToNextTickMs() {
+        long remaining = getSegmentRemainingMs();
+        long delay = remaining > 0 ? remaining % TICK_MS : TICK_MS - getElapsedMs() % TICK_MS;
+        return delay == 0 ? TICK_MS : delay;
+    }
+}
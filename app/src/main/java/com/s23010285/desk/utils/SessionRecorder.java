@@ -0,0 +1,357 @@
+package com.s23010285.desk.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.s23010285.desk.database.DatabaseHelper;
+import com.s23010285.desk.model.WorkoutExerciseRecord;
+import com.s23010285.desk.model.WorkoutSchedule;
+import com.s23010285.desk.model.WorkoutSession;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+/**
+ * Records what happens during one workout session so it can be saved when the session ends
+ * Per-exercise timings, pauses, skips, steps and reps are collected in plain arrays while the session runs,
+ * and nothing touches the database until the session is completed or abandoned
+ * Then the session row and all its exercise rows are written in one transaction on a background thread
+ */
+public class SessionRecorder {
+
+    private static final String TAG = "SessionRecorder";
+
+    // The values saved in WorkoutSession.status
+    public static final String STATUS_COMPLETED = "completed";
+    public static final String STATUS_ABANDONED = "abandoned";
+
+    // Rough energy cost of each kind of workout in METs (multiples of resting energy use)
+    private static final float MET_CARDIO = 4.0f;
+    private static final float MET_STRENGTH = 3.5f;
+    private static final float MET_LIGHT = 2.0f;
+    // The body weight we assume for the calorie estimate, the app doesn't ask for it
+    private static final float ASSUMED_WEIGHT_KG = 70f;
+
+    // Key prefix for the values kept in the activity's saved state
+    private static final String KEY_PREFIX = "session_recorder_";
+
+    // writeExecutor does every session write, one at a time, off the main thread
+    private static final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    // appContext opens the database and reads the current user
+    private final Context appContext;
+    // sessionTimeMs reads the session's running time (pauses not counted)
+    private final LongSupplier sessionTimeMs;
+    // wallTimeMs reads a monotonic clock that keeps running during pauses
+    private final LongSupplier wallTimeMs;
+    // workoutType, workoutName and plannedDurationMs describe the workout being done
+    private final String workoutType;
+    private final String workoutName;
+    private final long plannedDurationMs;
+    // exerciseNames and plannedSeconds describe the exercises, in order
+    private final String[] exerciseNames;
+    private final int[] plannedSeconds;
+
+    // These arrays hold what really happened, one slot per exercise
+    private long[] activeMs;
+    private int[] pauseCounts;
+    private long[] pausedMs;
+    private int[] steps;
+    private int[] reps;
+    private boolean[] completed;
+    private boolean[] skipped;
+
+    // currentIndex is the exercise being done (-1 before the first one or when the session has none)
+    private int currentIndex = -1;
+    // exerciseOpen is true while the current exercise's countdown is running
+    private boolean exerciseOpen = false;
+    // exerciseStartMs is the session time when the current exercise started
+    private long exerciseStartMs = 0;
+    // paused and pausedAtMs track the pause that is going on right now
+    private boolean paused = false;
+    private long pausedAtMs = 0;
+    // totalSteps counts every step, including those outside an exercise
+    private int totalSteps = 0;
+    // startTimeMs is the wall-clock time the session started
+    private long startTimeMs;
+    // saved is true once the session has been handed over for saving
+    private boolean saved = false;
+
+    /**
+     * Create a recorder for a session that is starting now
+     * @param context The context used to open the database
+     * @param workoutType The kind of workout (cardio, strength, meditation, ...)
+     * @param workoutName The name of the workout program
+     * @param exercises The exercises in the session (may be null or empty)
+     * @param plannedDurationMs How long the whole session is planned to last
+     * @param sessionTimeMs Returns the session running time in milliseconds, not counting pauses
+     * @param wallTimeMs Returns a monotonic time in milliseconds that keeps running during pauses
+     */
+    public SessionRecorder(Context context, String workoutType, String workoutName,
+                           List<WorkoutSchedule.WorkoutExercise> exercises, long plannedDurationMs,
+                           LongSupplier sessionTimeMs, LongSupplier wallTimeMs) {
+        this.appContext = context.getApplicationContext();
+        this.workoutType = workoutType;
+        this.workoutName = workoutName;
+        this.plannedDurationMs = plannedDurationMs;
+        this.sessionTimeMs = sessionTimeMs;
+        this.wallTimeMs = wallTimeMs;
+
+        int count = exercises != null ? exercises.size() : 0;
+        exerciseNames = new String[count];
+        plannedSeconds = new int[count];
+        for (int i = 0; i < count; i++) {
+            exerciseNames[i] = exercises.get(i).getName();
+            plannedSeconds[i] = exercises.get(i).getDurationSeconds();
+        }
+        activeMs = new long[count];
+        pauseCounts = new int[count];
+        pausedMs = new long[count];
+        steps = new int[count];
+        reps = new int[count];
+        completed = new boolean[count];
+        skipped = new boolean[count];
+        startTimeMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Called when an exercise starts, including when the user skips or goes back to it
+     * @param index The position of the exercise
+     */
+    public void onExerciseStarted(int index) {
+        if (index < 0 || index >= exerciseNames.length) {
+            return;
+        }
+        if (exerciseOpen) {
+            // The user moved on before the countdown ended
+            closeExercise(false);
+        }
+        currentIndex = index;
+        exerciseOpen = true;
+        exerciseStartMs = sessionTimeMs.getAsLong();
+    }
+
+    /**
+     * Called when an exercise countdown reaches zero
+     * @param index The position of the exercise
+     */
+    public void onExerciseFinished(int index) {
+        if (exerciseOpen && index == currentIndex) {
+            closeExercise(true);
+        }
+    }
+
+    /**
+     * Called when the user pauses the session
+     */
+    public void onPaused() {
+        if (paused) {
+            return;
+        }
+        paused = true;
+        pausedAtMs = wallTimeMs.getAsLong();
+        if (currentIndex >= 0) {
+            pauseCounts[currentIndex]++;
+        }
+    }
+
+    /**
+     * Called when the user carries on after a pause
+     */
+    public void onResumed() {
+        if (!paused) {
+            return;
+        }
+        paused = false;
+        if (currentIndex >= 0) {
+            pausedMs[currentIndex] += wallTimeMs.getAsLong() - pausedAtMs;
+        }
+    }
+
+    /**
+     * Called when new steps were counted
+     * @param newSteps How many steps were added
+     */
+    public void onSteps(int newSteps) {
+        if (newSteps <= 0) {
+            return;
+        }
+        totalSteps += newSteps;
+        if (currentIndex >= 0) {
+            steps[currentIndex] += newSteps;
+        }
+    }
+
+    /**
+     * Called when the accelerometer counted a repetition of the current exercise
+     */
+    public void onRep() {
+        if (currentIndex >= 0) {
+            reps[currentIndex]++;
+        }
+    }
+
+    /**
+     * Get how many repetitions were counted for an exercise, including earlier visits to it
+     * @param index The position of the exercise
+     * @return The number of reps
+     */
+    public int getReps(int index) {
+        return index >= 0 && index < reps.length ? reps[index] : 0;
+    }
+
+    /**
+     * End the session and save it in the background
+     * Only the first call saves anything, so it is safe to call again when the activity closes
+     * @param status STATUS_COMPLETED or STATUS_ABANDONED
+     * @param distanceMeters How far the user moved during the session
+     * @param route The GPS route packed by RouteCodec, or null if there was none
+     */
+    public void finish(String status, double distanceMeters, byte[] route) {
+        if (saved) {
+            return;
+        }
+        saved = true;
+        onResumed();
+        if (exerciseOpen) {
+            closeExercise(false);
+        }
+
+        long runningMs = sessionTimeMs.getAsLong();
+        WorkoutSession session = new WorkoutSession(getCurrentUserId(), workoutType, workoutName);
+        session.setStartTime(new Date(startTimeMs));
+        session.setEndTime(new Date());
+        session.setDurationMinutes((int) Math.round(runningMs / 60_000.0));
+        session.setSteps(totalSteps);
+        session.setDistance(distanceMeters);
+        session.setRoute(route);
+        session.setCaloriesBurned(estimateCalories(runningMs));
+        session.setStatus(status);
+        session.setProgressPercentage(STATUS_COMPLETED.equals(status) ? 100
+                : plannedDurationMs > 0 ? (int) Math.min(100, runningMs * 100 / plannedDurationMs) : 0);
+
+        List<WorkoutExerciseRecord> records = new ArrayList<>(exerciseNames.length);
+        int exercisesCompleted = 0;
+        for (int i = 0; i < exerciseNames.length; i++) {
+            WorkoutExerciseRecord record = new WorkoutExerciseRecord(i, exerciseNames[i], plannedSeconds[i]);
+            record.setActiveMs(activeMs[i]);
+            record.setPauseCount(pauseCounts[i]);
+            record.setPausedMs(pausedMs[i]);
+            record.setSteps(steps[i]);
+            record.setReps(reps[i]);
+            record.setCompleted(completed[i]);
+            record.setSkipped(skipped[i]);
+            records.add(record);
+            if (completed[i]) {
+                exercisesCompleted++;
+            }
+        }
+        session.setExercisesCompleted(exercisesCompleted);
+
+        writeExecutor.execute(() -> {
+            try {
+                long id = new DatabaseHelper(appContext).addWorkoutSession(session, records);
+                Log.d(TAG, "Saved " + status + " session " + id + " with " + records.size() + " exercises");
+            } catch (Exception e) {
+                Log.e(TAG, "Error saving workout session: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Keep the recorded data when the activity is recreated (e.g. on rotation)
+     * @param outState The activity's saved state
+     */
+    public void saveState(Bundle outState) {
+        outState.putLongArray(KEY_PREFIX + "active_ms", activeMs);
+        outState.putIntArray(KEY_PREFIX + "pause_counts", pauseCounts);
+        outState.putLongArray(KEY_PREFIX + "paused_ms", pausedMs);
+        outState.putIntArray(KEY_PREFIX + "steps", steps);
+        outState.putIntArray(KEY_PREFIX + "reps", reps);
+        outState.putBooleanArray(KEY_PREFIX + "completed", completed);
+        outState.putBooleanArray(KEY_PREFIX + "skipped", skipped);
+        outState.putLongArray(KEY_PREFIX + "state", new long[] {
+            currentIndex, exerciseOpen ? 1 : 0, exerciseStartMs, paused ? 1 : 0, pausedAtMs,
+            totalSteps, startTimeMs, saved ? 1 : 0
+        });
+    }
+
+    /**
+     * Bring back data saved by saveState
+     * @param savedState The activity's saved state (may be null)
+     * @return true if the data was restored
+     */
+    public boolean restoreState(Bundle savedState) {
+        if (savedState == null) {
+            return false;
+        }
+        long[] state = savedState.getLongArray(KEY_PREFIX + "state");
+        long[] savedActiveMs = savedState.getLongArray(KEY_PREFIX + "active_ms");
+        if (state == null || state.length != 8 || savedActiveMs == null || savedActiveMs.length != exerciseNames.length) {
+            return false;
+        }
+        activeMs = savedActiveMs;
+        pauseCounts = savedState.getIntArray(KEY_PREFIX + "pause_counts");
+        pausedMs = savedState.getLongArray(KEY_PREFIX + "paused_ms");
+        steps = savedState.getIntArray(KEY_PREFIX + "steps");
+        int[] savedReps = savedState.getIntArray(KEY_PREFIX + "reps");
+        reps = savedReps != null ? savedReps : new int[exerciseNames.length];
+        completed = savedState.getBooleanArray(KEY_PREFIX + "completed");
+        skipped = savedState.getBooleanArray(KEY_PREFIX + "skipped");
+        currentIndex = (int) state[0];
+        exerciseOpen = state[1] == 1;
+        exerciseStartMs = state[2];
+        paused = state[3] == 1;
+        pausedAtMs = state[4];
+        totalSteps = (int) state[5];
+        startTimeMs = state[6];
+        saved = state[7] == 1;
+        return true;
+    }
+
+    /**
+     * Stop timing the current exercise
+     * @param finished true if its countdown ran to zero, false if the user left it early
+     */
+    private void closeExercise(boolean finished) {
+        activeMs[currentIndex] += Math.max(0, sessionTimeMs.getAsLong() - exerciseStartMs);
+        if (finished) {
+            completed[currentIndex] = true;
+            skipped[currentIndex] = false;
+        } else if (!completed[currentIndex]) {
+            skipped[currentIndex] = true;
+        }
+        exerciseOpen = false;
+    }
+
+    /**
+     * Estimate the calories burned from the kind of workout and how long it ran
+     */
+    private int estimateCalories(long runningMs) {
+        float met;
+        String type = workoutType != null ? workoutType.toLowerCase() : "";
+        if (type.contains("cardio")) {
+            met = MET_CARDIO;
+        } else if (type.contains("strength")) {
+            met = MET_STRENGTH;
+        } else {
+            met = MET_LIGHT;
+        }
+        // kcal = MET x weight in kg x hours
+        return Math.round(met * ASSUMED_WEIGHT_KG * runningMs / 3_600_000f);
+    }
+
+    /**
+     * Get the ID of the logged in user
+     */
+    private long getCurrentUserId() {
+        SharedPreferences userPrefs = appContext.getSharedPreferences("user_session", Context.MODE_PRIVATE);
+        return userPrefs.getLong("current_user_id", -1);
+    }
+}
@@ -47,6 +47,10 @@ public class SettingsManager {
     // KEY_MILESTONE_NOTIFICATIONS controls whether milestone notifications are shown
     public static final String KEY_MILESTONE_NOTIFICATIONS = "milestone_notifications";
     
+    // Storage settings - these control how much space the app may use
+    // KEY_OFFLINE_MEDIA_LIMIT_MB stores how many megabytes of exercise media are kept for offline use
+    public static final String KEY_OFFLINE_MEDIA_LIMIT_MB = "offline_media_limit_mb";
+    
     // These variables help manage the settings manager
     // instance is the single instance of this class (singleton pattern)
     private static SettingsManager instance;
@@ -252,6 +256,15 @@ public class SettingsManager {
         sharedPreferences.edit().putBoolean(KEY_MILESTONE_NOTIFICATIONS, enabled).apply();
     }
     
+    // Storage settings
+    public int getOfflineMediaLimitMb() {
+        return sharedPreferences.getInt(KEY_OFFLINE_MEDIA_LIMIT_MB, 64);
+    }
+    
+    public void setOfflineMediaLimitMb(int megabytes) {
+        sharedPreferences.edit().putInt(KEY_OFFLINE_MEDIA_LIMIT_MB, megabytes).apply();
+    }
+    
     // Utility methods
     public void resetToDefaults() {
         SharedPreferences.Editor editor = sharedPreferences.edit();
@@ -0,0 +1,59 @@
+package com.s23010285.desk.utils;
+
+/**
+ * Collects the parts of a session where GPS and step counting were both measuring, so a stride
+ * calibration compares the two distances over the same stretch of walking
+ * Each GPS fix closes a stretch from the fix before it; the GPS and step distances gained between the
+ * two fixes are added together, or not at all. Pausing, or steps not being counted, breaks the span,
+ * and the next fix starts a new stretch
+ */
+public class StrideCalibrationSpan {
+
+    // hasMark is true once a fix has been seen since the span was last broken
+    private boolean hasMark = false;
+    // markGpsMeters and markStepMeters are both running totals at that fix
+    private double markGpsMeters;
+    private double markStepMeters;
+
+    // gpsDistanceMeters and stepDistanceMeters are what both sources measured over the same stretches
+    private double gpsDistanceMeters = 0;
+    private double stepDistanceMeters = 0;
+
+    /**
+     * Add the stretch since the previous fix, if there was one
+     * @param gpsTotalMeters The GPS distance of the session after this fix
+     * @param stepTotalMeters The step-based distance of the session at the same moment
+     */
+    public void onFix(double gpsTotalMeters, double stepTotalMeters) {
+        if (hasMark) {
+            gpsDistanceMeters += gpsTotalMeters - markGpsMeters;
+            stepDistanceMeters += stepTotalMeters - markStepMeters;
+        }
+        markGpsMeters = gpsTotalMeters;
+        markStepMeters = stepTotalMeters;
+        hasMark = true;
+    }
+
+    /**
+     * Stop the current stretch, because one of the two sources stopped or just started measuring
+     */
+    public void breakSpan() {
+        hasMark = false;
+    }
+
+    /**
+     * Get the GPS distance over the stretches where steps were counted too
+     * @return The distance in metres
+     */
+    public double getGpsDistanceMeters() {
+        return gpsDistanceMeters;
+    }
+
+    /**
+     * Get the step-based distance over the stretches where GPS measured too
+     * @return The distance in metres
+     */
+    public double getStepDistanceMeters() {
+        return stepDistanceMeters;
+    }
+}
@@ -0,0 +1,213 @@
+package com.s23010285.desk.utils;
+
+/**
+ * Turns a stream of step counts into cadence, distance and pace
+ * Stride length isn't fixed - people take longer steps when they walk faster - so every batch of steps
+ * is converted to metres using a stride that depends on the current cadence and the user's height
+ * Cadence comes from a short sliding window of recent step samples, and each update costs O(1)
+ * (old samples are dropped from the front of a fixed ring buffer, never searched)
+ */
+public class StrideEstimator {
+
+    // How far back we look when working out cadence
+    public static final long CADENCE_WINDOW_NS = 10_000_000_000L; // 10 seconds
+    // Below this cadence we treat the user as standing still (shuffling at a desk, turning around)
+    public static final float MIN_WALKING_CADENCE = 40f;
+
+    // Stride length as a fraction of body height grows roughly linearly with cadence:
+    // about 0.41 x height at a relaxed 95 steps/min and about 0.52 x height at a 160 steps/min jog
+    private static final float STRIDE_RATIO_INTERCEPT = 0.25f;
+    private static final float STRIDE_RATIO_PER_SPM = 0.0017f;
+    // Limits that keep the ratio sensible at very low or very high cadence
+    private static final float MIN_STRIDE_RATIO = 0.30f;
+    private static final float MAX_STRIDE_RATIO = 0.65f;
+    // The cadence we assume until there are enough samples to measure it
+    private static final float DEFAULT_CADENCE = 100f;
+
+    // A GPS walk has to be at least this long before we trust it for calibration,
+    // because GPS error over a short distance is as large as the stride error we want to correct
+    public static final double MIN_CALIBRATION_DISTANCE_M = 400;
+    // Each walk only moves the factor part of the way, so one bad GPS track can't ruin it
+    private static final float CALIBRATION_WEIGHT = 0.3f;
+    // The factor never moves further than this from the height-based model
+    public static final float MIN_CALIBRATION_FACTOR = 0.75f;
+    public static final float MAX_CALIBRATION_FACTOR = 1.25f;
+
+    // How many samples the cadence window can hold (must be a power of two)
+    // Step events arrive at most a few times per second, so this easily covers the window
+    private static final int WINDOW_CAPACITY = 64;
+    private static final int WINDOW_MASK = WINDOW_CAPACITY - 1;
+
+    // heightMeters is the user's height, the main input to stride length
+    private final float heightMeters;
+    // calibrationFactor scales the model to match the user, learned from GPS walks (1.0 = uncalibrated)
+    private final float calibrationFactor;
+
+    // sampleTimesNs and sampleTotals are a ring buffer of (time, step total) pairs inside the cadence window
+    private final long[] sampleTimesNs = new long[WINDOW_CAPACITY];
+    private final int[] sampleTotals = new int[WINDOW_CAPACITY];
+    // head is the index of the oldest sample, size is how many samples are in the window
+    private int head = 0;
+    private int size = 0;
+
+    // totalSteps is the number of steps fed into the estimator
+    private int totalSteps = 0;
+    // distanceMeters is the distance covered by those steps
+    private double distanceMeters = 0;
+    // cadence is the latest cadence in steps per minute
+    private float cadence = 0;
+
+    /**
+     * Create an estimator for one user
+     * @param heightMeters The user's height in metres
+     * @param calibrationFactor The user's stride calibration factor (1.0 if they never calibrated)
+     */
+    public StrideEstimator(float heightMeters, float calibrationFactor) {
+        this.heightMeters = heightMeters;
+        this.calibrationFactor = calibrationFactor;
+    }
+
+    /**
+     * Add steps that were counted at the given time
+     * Step totals from the step service can be coalesced, so this accepts any number of steps at once
+     * @param steps How many new steps there are
+     * @param timestampNs When they were counted (any monotonic nanosecond clock)
+     * @return The total distance in metres after these steps
+     */
+    public double onSteps(int steps, long timestampNs) {
+        if (steps <= 0) {
+            return distanceMeters;
+        }
+        totalSteps += steps;
+        addSample(timestampNs, totalSteps);
+        cadence = measureCadence();
+        // Steps taken before we have a cadence still count, using a normal walking stride
+        float strideCadence = cadence >= MIN_WALKING_CADENCE ? cadence : DEFAULT_CADENCE;
+        distanceMeters += steps * strideLengthAt(strideCadence);
+        return distanceMeters;
+    }
+
+    /**
+     * Get the stride length this user has at a given cadence
+     * @param cadenceSpm The cadence in steps per minute
+     * @return The length of one step in metres
+     */
+    public float strideLengthAt(float cadenceSpm) {
+        float ratio = STRIDE_RATIO_INTERCEPT + STRIDE_RATIO_PER_SPM * cadenceSpm;
+        ratio = Math.max(MIN_STRIDE_RATIO, Math.min(MAX_STRIDE_RATIO, ratio));
+        return heightMeters * ratio * calibrationFactor;
+    }
+
+    /**
+     * Work out a new calibration factor from a walk where we had both GPS distance and step-based distance
+     * @param currentFactor The factor the step-based distance was worked out with
+     * @param gpsDistanceMeters The distance measured by GPS
+     * @param estimatedDistanceMeters The distance worked out from steps during the same walk
+     * @return The new factor, or NaN if the walk was too short to be used
+     */
+    public static float calibrate(float currentFactor, double gpsDistanceMeters, double estimatedDistanceMeters) {
+        if (gpsDistanceMeters < MIN_CALIBRATION_DISTANCE_M || estimatedDistanceMeters <= 0) {
+            return Float.NaN;
+        }
+        // The estimate was made with the current factor, so scale it by how far off it was
+        float measured = (float) (currentFactor * gpsDistanceMeters / estimatedDistanceMeters);
+        float updated = currentFactor + CALIBRATION_WEIGHT * (measured - currentFactor);
+        return Math.max(MIN_CALIBRATION_FACTOR, Math.min(MAX_CALIBRATION_FACTOR, updated));
+    }
+
+    /**
+     * Get the current cadence
+     * @param nowNs The current time, on the same clock as the step timestamps
+     * @return Steps per minute, or 0 if the user hasn't stepped within the cadence window
+     */
+    public float getCadence(long nowNs) {
+        if (size == 0 || nowNs - newestTimeNs() > CADENCE_WINDOW_NS) {
+            return 0;
+        }
+        return cadence;
+    }
+
+    /**
+     * Get the current pace
+     * @param nowNs The current time, on the same clock as the step timestamps
+     * @return Seconds per kilometre, or 0 when the user isn't walking
+     */
+    public int getPaceSecondsPerKm(long nowNs) {
+        float currentCadence = getCadence(nowNs);
+        if (currentCadence < MIN_WALKING_CADENCE) {
+            return 0;
+        }
+        float metersPerSecond = strideLengthAt(currentCadence) * currentCadence / 60f;
+        return Math.round(1000f / metersPerSecond);
+    }
+
+    /**
+     * Get the distance covered so far
+     * @return The distance in metres
+     */
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    /**
+     * Get how many steps were fed into the estimator
+     * @return The number of steps
+     */
+    public int getTotalSteps() {
+        return totalSteps;
+    }
+
+    /**
+     * Start a new session from zero steps and zero distance
+     */
+    public void reset() {
+        head = 0;
+        size = 0;
+        totalSteps = 0;
+        distanceMeters = 0;
+        cadence = 0;
+    }
+
+    /**
+     * Store a sample and drop the ones that have fallen out of the window
+     */
+    private void addSample(long timestampNs, int total) {
+        if (size == WINDOW_CAPACITY) {
+            // The buffer is full, overwrite the oldest sample
+            head = (head + 1) & WINDOW_MASK;
+            size--;
+        }
+        int tail = (head + size) & WINDOW_MASK;
+        sampleTimesNs[tail] = timestampNs;
+        sampleTotals[tail] = total;
+        size++;
+        // Drop samples that are older than the window, which also forgets everything before a pause
+        while (size > 1 && timestampNs - sampleTimesNs[head] > CADENCE_WINDOW_NS) {
+            head = (head + 1) & WINDOW_MASK;
+            size--;
+        }
+    }
+
+    /**
+     * Work out steps per minute between the oldest and newest sample in the window
+     */
+    private float measureCadence() {
+        if (size < 2) {
+            return 0;
+        }
+        int newest = (head + size - 1) & WINDOW_MASK;
+        long spanNs = sampleTimesNs[newest] - sampleTimesNs[head];
+        if (spanNs <= 0) {
+            return 0;
+        }
+        int steps = sampleTotals[newest] - sampleTotals[head];
+        return steps * 60_000_000_000f / spanNs;
+    }
+
+    /**
+     * Get the time of the newest sample
+     */
+    private long newestTimeNs() {
+        return sampleTimesNs[(head + size - 1) & WINDOW_MASK];
+    }
+}
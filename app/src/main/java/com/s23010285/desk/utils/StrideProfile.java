@@ -0,0 +1,94 @@
+package com.s23010285.desk.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * Stores what we know about the user's stride and creates StrideEstimators from it
+ * The stride model starts from the user's height (set on the profile screen) and is then
+ * fine-tuned by comparing step-based distance with GPS distance after outdoor walks
+ */
+public class StrideProfile {
+
+    private static final String TAG = "StrideProfile";
+
+    // PREFS_NAME is the name of the file where we save the stride settings
+    private static final String PREFS_NAME = "stride_profile";
+    // KEY_HEIGHT_CM stores the user's height in centimetres
+    private static final String KEY_HEIGHT_CM = "height_cm";
+    // KEY_CALIBRATION_FACTOR stores how much the user's real stride differs from the model
+    private static final String KEY_CALIBRATION_FACTOR = "calibration_factor";
+
+    // The height we assume until the user enters theirs (roughly the adult average)
+    public static final int DEFAULT_HEIGHT_CM = 170;
+    // Heights outside this range are treated as typing mistakes
+    public static final int MIN_HEIGHT_CM = 100;
+    public static final int MAX_HEIGHT_CM = 230;
+
+    // prefs is where we store the stride settings permanently
+    private final SharedPreferences prefs;
+
+    /**
+     * Constructor for the StrideProfile
+     * @param context The app's context, which helps us access system resources
+     */
+    public StrideProfile(Context context) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Create an estimator that uses the current height and calibration
+     * @return A new StrideEstimator for this user
+     */
+    public StrideEstimator createEstimator() {
+        return new StrideEstimator(getHeightCm() / 100f, getCalibrationFactor());
+    }
+
+    /**
+     * Get the user's height
+     * @return The height in centimetres
+     */
+    public int getHeightCm() {
+        return prefs.getInt(KEY_HEIGHT_CM, DEFAULT_HEIGHT_CM);
+    }
+
+    /**
+     * Save the user's height
+     * @param heightCm The height in centimetres
+     * @return true if the height was saved, false if it was out of range
+     */
+    public boolean setHeightCm(int heightCm) {
+        if (heightCm < MIN_HEIGHT_CM || heightCm > MAX_HEIGHT_CM) {
+            return false;
+        }
+        prefs.edit().putInt(KEY_HEIGHT_CM, heightCm).apply();
+        return true;
+    }
+
+    /**
+     * Get how much the user's stride differs from the height-based model
+     * @return The calibration factor (1.0 if the user never did a GPS walk)
+     */
+    public float getCalibrationFactor() {
+        return prefs.getFloat(KEY_CALIBRATION_FACTOR, 1.0f);
+    }
+
+    /**
+     * Learn from a walk where we had both GPS distance and step-based distance
+     * @param gpsDistanceMeters The distance measured by GPS
+     * @param estimatedDistanceMeters The distance the estimator worked out from steps during the same walk
+     * @return true if the walk was long enough to be used
+     */
+    public boolean calibrateFromGpsWalk(double gpsDistanceMeters, double estimatedDistanceMeters) {
+        float current = getCalibrationFactor();
+        float updated = StrideEstimator.calibrate(current, gpsDistanceMeters, estimatedDistanceMeters);
+        if (Float.isNaN(updated)) {
+            return false;
+        }
+        prefs.edit().putFloat(KEY_CALIBRATION_FACTOR, updated).apply();
+        Log.d(TAG, "Stride calibration " + current + " -> " + updated +
+                   " (GPS " + gpsDistanceMeters + "m, steps " + estimatedDistanceMeters + "m)");
+        return true;
+    }
+}
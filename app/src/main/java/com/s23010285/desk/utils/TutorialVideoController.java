@@ -0,0 +1,311 @@
+package com.s23010285.desk.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewStub;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+
+import com.pierfrancescosoffritti.androidyoutubeplayer.core.player.PlayerConstants;
+import com.pierfrancescosoffritti.androidyoutubeplayer.core.player.YouTubePlayer;
+import com.pierfrancescosoffritti.androidyoutubeplayer.core.player.listeners.AbstractYouTubePlayerListener;
+import com.pierfrancescosoffritti.androidyoutubeplayer.core.player.views.YouTubePlayerView;
+
+/**
+ * Shows the tutorial video of a workout session
+ * The YouTube player is a WebView, which is expensive to create, so it is only inflated from its
+ * ViewStub when the video card is really on screen (meditation sessions hide it and never pay for it)
+ * While an exercise runs, the next exercise's video is loaded muted into a hidden standby player and
+ * paused at its start time, so switching exercises just swaps the two players instead of loading cold
+ * When the next exercise uses the same video (only the timestamp differs) we seek instead of reloading
+ * How long each switch takes until the video is playing is logged as the time to first frame
+ */
+public class TutorialVideoController {
+
+    private static final String TAG = "TutorialVideo";
+
+    // How close (in seconds) the playing position has to be to the start time to count as the new video
+    private static final float FIRST_FRAME_TOLERANCE_SECONDS = 1.5f;
+
+    /**
+     * One YouTube player and what it has loaded
+     */
+    private static class PlayerSlot {
+        // view is the player view on screen (or hidden behind the other one)
+        final YouTubePlayerView view;
+        // player controls playback, null until the player has finished initialising
+        YouTubePlayer player;
+        // loaded is the video this player was last asked to load
+        ExerciseVideoManager.VideoData loaded;
+        // buffered is true once a standby player has loaded its video and paused at the start time
+        boolean buffered;
+
+        PlayerSlot(YouTubePlayerView view) {
+            this.view = view;
+        }
+    }
+
+    // lifecycle releases the players when the activity is destroyed
+    private final Lifecycle lifecycle;
+    // videoCard is the card around the player, the player is only created if it is shown
+    private final View videoCard;
+    // playerStub is replaced by the player frame on first use
+    private final ViewStub playerStub;
+    // titleLabel shows the title of the current video (may be null)
+    private final TextView titleLabel;
+
+    // playerFrame holds both players once inflated
+    private FrameLayout playerFrame;
+    // inflatePosted is true while a request to create the player is waiting to run
+    private boolean inflatePosted = false;
+    // active is the player the user sees, standby buffers the next video behind it
+    private PlayerSlot active;
+    private PlayerSlot standby;
+
+    // paused is true while the session is paused, videos are then cued without playing
+    private boolean paused = false;
+    // wanted is the video that should be showing, nextVideo is the one we expect after it
+    private ExerciseVideoManager.VideoData wanted;
+    private ExerciseVideoManager.VideoData nextVideo;
+
+    // switchStartMs is when the current switch was asked for (0 when nothing is being timed)
+    private long switchStartMs = 0;
+    // switchMode says how the current switch was done, for the log
+    private String switchMode;
+    // switchCount and totalSwitchMs give the average time to first frame
+    private int switchCount = 0;
+    private long totalSwitchMs = 0;
+
+    /**
+     * Create the controller, nothing is created until a video is shown
+     * @param lifecycle The lifecycle of the activity that shows the video
+     * @param videoCard The card that contains the player
+     * @param playerStub The stub that is inflated into the player
+     * @param titleLabel The text view that shows the video title (may be null)
+     */
+    public TutorialVideoController(Lifecycle lifecycle, View videoCard, ViewStub playerStub, TextView titleLabel) {
+        this.lifecycle = lifecycle;
+        this.videoCard = videoCard;
+        this.playerStub = playerStub;
+        this.titleLabel = titleLabel;
+    }
+
+    /**
+     * Show a video, starting at its timestamp
+     * @param video The video to show
+     */
+    public void show(ExerciseVideoManager.VideoData video) {
+        if (video == null) {
+            return;
+        }
+        if (sameVideo(video, wanted)) {
+            // The card may have been hidden when we last tried, so try creating the player again
+            ensurePlayer();
+            return;
+        }
+        wanted = video;
+        if (titleLabel != null) {
+            titleLabel.setText(video.title);
+        }
+        if (!ensurePlayer() || active.player == null) {
+            // Shown from onReady once the player exists
+            return;
+        }
+        switchTo(video);
+    }
+
+    /**
+     * Tell the controller which video comes next so it can be buffered ahead of time
+     * @param video The next exercise's video, or null if this is the last exercise
+     */
+    public void cueNext(ExerciseVideoManager.VideoData video) {
+        nextVideo = video;
+        if (playerFrame != null) {
+            prepareStandby();
+        }
+    }
+
+    /**
+     * Pause the video the user sees
+     */
+    public void pause() {
+        paused = true;
+        if (active != null && active.player != null) {
+            active.player.pause();
+        }
+    }
+
+    /**
+     * Carry on playing the video the user sees
+     */
+    public void play() {
+        paused = false;
+        if (active != null && active.player != null) {
+            active.player.play();
+        }
+    }
+
+    /**
+     * Get the average time it took to show a video after a switch
+     * @return The average in milliseconds, or 0 if nothing was timed yet
+     */
+    public long getAverageTimeToFirstFrameMs() {
+        return switchCount == 0 ? 0 : totalSwitchMs / switchCount;
+    }
+
+    /**
+     * Create the player the first time it is needed
+     * @return true if the player views exist
+     */
+    private boolean ensurePlayer() {
+        if (playerFrame != null) {
+            return true;
+        }
+        if (!inflatePosted && playerStub != null) {
+            inflatePosted = true;
+            // Wait until the layout is on screen, so a hidden card never creates a WebView
+            videoCard.post(() -> {
+                if (!videoCard.isShown()) {
+                    // The next show() tries again, once an exercise has the card on screen
+                    Log.d(TAG, "Video card hidden, not creating the player");
+                    inflatePosted = false;
+                    return;
+                }
+                playerFrame = (FrameLayout) playerStub.inflate();
+                active = createSlot((YouTubePlayerView) playerFrame.getChildAt(0));
+            });
+        }
+        return false;
+    }
+
+    /**
+     * Wrap a player view in a slot and listen to it
+     */
+    private PlayerSlot createSlot(YouTubePlayerView view) {
+        PlayerSlot slot = new PlayerSlot(view);
+        lifecycle.addObserver(view);
+        view.addYouTubePlayerListener(new AbstractYouTubePlayerListener() {
+            @Override
+            public void onReady(@NonNull YouTubePlayer player) {
+                slot.player = player;
+                if (slot == active && wanted != null && !sameVideo(wanted, slot.loaded)) {
+                    switchTo(wanted);
+                } else if (slot == standby) {
+                    prepareStandby();
+                }
+            }
+
+            @Override
+            public void onStateChange(@NonNull YouTubePlayer player, @NonNull PlayerConstants.PlayerState state) {
+                if (slot == standby && !slot.buffered && state == PlayerConstants.PlayerState.PLAYING) {
+                    // The next video has started loading, hold it at its start time until it is needed
+                    player.pause();
+                    player.seekTo(slot.loaded.startTimeSeconds);
+                    slot.buffered = true;
+                }
+            }
+
+            @Override
+            public void onCurrentSecond(@NonNull YouTubePlayer player, float second) {
+                if (slot == active && switchStartMs != 0 && wanted != null
+                        && Math.abs(second - wanted.startTimeSeconds) < FIRST_FRAME_TOLERANCE_SECONDS) {
+                    recordFirstFrame();
+                }
+            }
+        });
+        return slot;
+    }
+
+    /**
+     * Make the active player show a video, using the cheapest way available
+     */
+    private void switchTo(ExerciseVideoManager.VideoData video) {
+        switchStartMs = SystemClock.elapsedRealtime();
+        if (active.loaded != null && active.loaded.videoId.equals(video.videoId)) {
+            // Same video, different exercise: just jump to its part
+            switchMode = "seek";
+            active.player.seekTo(video.startTimeSeconds);
+            if (!paused) {
+                active.player.play();
+            }
+        } else if (standby != null && standby.buffered && sameVideo(video, standby.loaded)) {
+            // The next video is already buffered behind the current one, bring it to the front
+            switchMode = "prebuffered";
+            active.player.pause();
+            PlayerSlot shown = standby;
+            standby = active;
+            active = shown;
+            active.view.setVisibility(View.VISIBLE);
+            standby.view.setVisibility(View.INVISIBLE);
+            // What the old player had loaded is no longer buffered for anything
+            standby.loaded = null;
+            standby.buffered = false;
+            active.player.unMute();
+            if (!paused) {
+                active.player.play();
+            }
+        } else if (paused) {
+            switchMode = "cold";
+            active.player.cueVideo(video.videoId, video.startTimeSeconds);
+        } else {
+            switchMode = "cold";
+            active.player.loadVideo(video.videoId, video.startTimeSeconds);
+        }
+        active.loaded = video;
+        Log.d(TAG, "Showing video: " + video.title + " (ID: " + video.videoId + ", Time: " + video.startTimeSeconds + "s)");
+        prepareStandby();
+    }
+
+    /**
+     * Start buffering the next video in the standby player if it will be needed
+     */
+    private void prepareStandby() {
+        ExerciseVideoManager.VideoData video = nextVideo;
+        if (video == null || active == null) {
+            return;
+        }
+        if (active.loaded != null && active.loaded.videoId.equals(video.videoId)) {
+            // The next exercise is a seek in the current video, nothing to buffer
+            return;
+        }
+        if (standby == null) {
+            YouTubePlayerView view = new YouTubePlayerView(playerFrame.getContext());
+            view.setVisibility(View.INVISIBLE);
+            // Behind the active player, with the same size
+            playerFrame.addView(view, 0, new FrameLayout.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+            standby = createSlot(view);
+        }
+        if (standby.player == null || sameVideo(video, standby.loaded)) {
+            return;
+        }
+        standby.loaded = video;
+        standby.buffered = false;
+        standby.player.mute();
+        standby.player.loadVideo(video.videoId, video.startTimeSeconds);
+    }
+
+    /**
+     * The switch that is being timed has reached the screen
+     */
+    private void recordFirstFrame() {
+        long elapsedMs = SystemClock.elapsedRealtime() - switchStartMs;
+        switchStartMs = 0;
+        switchCount++;
+        totalSwitchMs += elapsedMs;
+        Log.d(TAG, "Time to first frame " + elapsedMs + "ms (" + switchMode + "), average "
+                + getAverageTimeToFirstFrameMs() + "ms over " + switchCount + " switches");
+    }
+
+    /**
+     * Check whether two videos are the same video at the same timestamp
+     */
+    private static boolean sameVideo(ExerciseVideoManager.VideoData a, ExerciseVideoManager.VideoData b) {
+        return a != null && b != null && a.videoId.equals(b.videoId) && a.startTimeSeconds == b.startTimeSeconds;
+    }
+}
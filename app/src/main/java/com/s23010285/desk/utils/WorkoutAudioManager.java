@@ -156,7 +156,8 @@ public class WorkoutAudioManager {
         try {
             String musicUrl = backgroundMusic.get(workoutCategory.toLowerCase());
             if (musicUrl != null) {
-                MediaItem mediaItem = MediaItem.fromUri(musicUrl);
+                // Play the offline media pack's copy when there is one
+                MediaItem mediaItem = MediaItem.fromUri(OfflineMediaPack.playbackUri(context, musicUrl));
                 backgroundPlayer.setMediaItem(mediaItem);
                 backgroundPlayer.prepare();
                 backgroundPlayer.setVolume(volume);
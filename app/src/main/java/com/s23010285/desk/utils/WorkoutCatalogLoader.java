@@ -0,0 +1,544 @@
+package com.s23010285.desk.utils;
+
+import android.content.Context;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import com.s23010285.desk.model.WorkoutCatalog;
+import com.s23010285.desk.model.WorkoutFacets;
+import com.s23010285.desk.model.WorkoutSchedule;
+import com.s23010285.desk.model.WorkoutSearchIndex;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loads the workout catalog from JSON instead of building it in code
+ * The app ships a catalog in assets/workout_catalog.json. A newer catalog can be downloaded and
+ * installed at runtime; it is kept in files/catalog/ and used instead of the bundled one as long as its
+ * version is higher, so workouts can change without a new release
+ * Files are read with a streaming JsonReader: at startup only the schedule summaries are read (of the
+ * exercise lists only the names are read, for search), and a schedule's exercises are read when it is first opened
+ * Catalog JSON looks like:
+ * {"format": 1, "version": 3, "schedules": [{"id": "...", "name": "...", "thumbnail": "...", ..., "exercises": [{"name": "...",
+ * "durationMinutes": 3, "description": "..."}]}]}
+ */
+public final class WorkoutCatalogLoader {
+
+    private static final String TAG = "WorkoutCatalogLoader";
+
+    // The bundled catalog in assets
+    private static final String ASSET_NAME = "workout_catalog.json";
+    // Downloaded catalogs live in this folder inside the app's files, one file per version
+    private static final String DIRECTORY = "catalog";
+    private static final Pattern DOWNLOADED_NAME = Pattern.compile("workout_catalog_v(\\d{1,9})\\.json");
+    // The newest file layout this code understands
+    private static final int SUPPORTED_FORMAT = 1;
+
+    // loadExecutor reads catalogs off the main thread, one at a time
+    private static final ExecutorService loadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "WorkoutCatalog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // pending is the startup load, started by preload
+    private static Future<WorkoutCatalog> pending;
+    // current is the catalog every screen uses, replaced in one step when a newer one is installed
+    private static volatile WorkoutCatalog current;
+
+    /**
+     * Callback for loadCatalog
+     */
+    public interface CatalogCallback {
+        void onCatalogLoaded(WorkoutCatalog catalog);
+    }
+
+    /**
+     * Callback for openSchedule
+     */
+    public interface ScheduleCallback {
+        void onScheduleOpened(WorkoutSchedule schedule);
+    }
+
+    /**
+     * Where a catalog file can be read from
+     */
+    private interface Source {
+        Reader open() throws IOException;
+    }
+
+    private WorkoutCatalogLoader() {
+    }
+
+    /**
+     * Start loading the catalog in the background, call this as early as possible
+     * Calling it again does nothing
+     * @param context Any context
+     */
+    public static synchronized void preload(Context context) {
+        if (current != null || pending != null) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        pending = loadExecutor.submit(() -> {
+            WorkoutCatalog catalog = loadNewest(appContext);
+            publish(catalog);
+            return catalog;
+        });
+    }
+
+    /**
+     * Get the catalog without waiting for it
+     * If it is already loaded the callback is called straight away, otherwise once the startup load is done
+     * @param context Any context
+     * @param callbackExecutor Where the callback runs, e.g. ContextCompat.getMainExecutor(context)
+     * @param callback Gets the catalog (empty if no catalog could be read at all)
+     */
+    public static void loadCatalog(Context context, Executor callbackExecutor, CatalogCallback callback) {
+        WorkoutCatalog catalog = current;
+        if (catalog != null) {
+            callback.onCatalogLoaded(catalog);
+            return;
+        }
+        preload(context);
+        Context appContext = context.getApplicationContext();
+        // Queued behind the startup load on the same thread, so this doesn't wait long
+        loadExecutor.execute(() -> {
+            WorkoutCatalog loaded = getCatalog(appContext);
+            callbackExecutor.execute(() -> callback.onCatalogLoaded(loaded));
+        });
+    }
+
+    /**
+     * Open a schedule with its exercises without waiting for the catalog or the file read
+     * @param context Any context
+     * @param id The schedule's id
+     * @param callbackExecutor Where the callback runs, e.g. ContextCompat.getMainExecutor(context)
+     * @param callback Gets the schedule, or null if the catalog doesn't have it or it can't be read
+     */
+    public static void openSchedule(Context context, String id, Executor callbackExecutor,
+                                    ScheduleCallback callback) {
+        preload(context);
+        Context appContext = context.getApplicationContext();
+        loadExecutor.execute(() -> {
+            WorkoutSchedule schedule = null;
+            try {
+                schedule = getCatalog(appContext).openSchedule(id);
+            } catch (IOException e) {
+                Log.e(TAG, "Error opening workout schedule " + id + ": " + e.getMessage(), e);
+            }
+            WorkoutSchedule opened = schedule;
+            callbackExecutor.execute(() -> callback.onScheduleOpened(opened));
+        });
+    }
+
+    /**
+     * Get the catalog, waiting for the startup load if it hasn't finished yet
+     * Don't call this on the main thread, use loadCatalog or openSchedule there
+     * @param context Any context
+     * @return The catalog (empty if no catalog could be read at all)
+     */
+    public static WorkoutCatalog getCatalog(Context context) {
+        WorkoutCatalog catalog = current;
+        if (catalog != null) {
+            return catalog;
+        }
+        preload(context);
+        Future<WorkoutCatalog> load;
+        synchronized (WorkoutCatalogLoader.class) {
+            load = pending;
+        }
+        try {
+            if (load != null) {
+                load.get();
+            }
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Error loading workout catalog: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catalog = current;
+        return catalog != null ? catalog : emptyCatalog();
+    }
+
+    /**
+     * Install a downloaded catalog, replacing the current one if it is newer
+     * The file is checked completely before it is used, so a broken download never replaces a working
+     * catalog, and screens switch from the old catalog to the new one in a single step
+     * Call this on a background thread
+     * @param context Any context
+     * @param downloaded The catalog JSON
+     * @return The catalog now in use
+     * @throws IOException if the download can't be saved or isn't a valid catalog
+     */
+    public static WorkoutCatalog install(Context context, InputStream downloaded) throws IOException {
+        // Let the startup load finish first, it clears out files it doesn't recognise in the catalog folder
+        getCatalog(context);
+        File directory = new File(context.getFilesDir(), DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        File temp = File.createTempFile("download", ".tmp", directory);
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = downloaded.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            // Read every schedule, exercises included, before trusting the file
+            WorkoutCatalog candidate = readCatalog(fileSource(temp));
+            for (WorkoutSchedule schedule : candidate.getAll()) {
+                candidate.openSchedule(schedule.getId());
+            }
+
+            WorkoutCatalog inUse = getCatalog(context);
+            if (candidate.getVersion() <= inUse.getVersion()) {
+                Log.d(TAG, "Downloaded catalog v" + candidate.getVersion() + " is not newer than v" + inUse.getVersion());
+                return inUse;
+            }
+
+            // Renaming within one folder is atomic, so the versioned file is either complete or absent
+            File target = new File(directory, "workout_catalog_v" + candidate.getVersion() + ".json");
+            if (!temp.renameTo(target)) {
+                throw new IOException("Can't move downloaded catalog to " + target);
+            }
+            WorkoutCatalog installed = readCatalog(fileSource(target));
+            publish(installed);
+            Log.d(TAG, "Installed workout catalog v" + installed.getVersion() + " with " + installed.size() + " schedules");
+            return current;
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                Log.e(TAG, "Error deleting " + temp);
+            }
+        }
+    }
+
+    /**
+     * Load the newest catalog that can be read: a downloaded one if it is newer than the bundled one
+     * Older or broken downloads are deleted
+     */
+    private static WorkoutCatalog loadNewest(Context context) {
+        WorkoutCatalog bundled;
+        try {
+            bundled = readCatalog(() -> new InputStreamReader(context.getAssets().open(ASSET_NAME), StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error reading bundled workout catalog: " + e.getMessage(), e);
+            bundled = emptyCatalog();
+        }
+
+        WorkoutCatalog chosen = bundled;
+        File[] files = new File(context.getFilesDir(), DIRECTORY).listFiles();
+        if (files == null) {
+            return chosen;
+        }
+        List<File> downloads = new ArrayList<>();
+        for (File file : files) {
+            if (DOWNLOADED_NAME.matcher(file.getName()).matches()) {
+                downloads.add(file);
+            } else if (!file.delete()) {
+                // Leftover from an install that didn't finish
+                Log.e(TAG, "Error deleting " + file);
+            }
+        }
+        // Newest first
+        Collections.sort(downloads, (a, b) -> Integer.compare(versionOf(b), versionOf(a)));
+        for (File file : downloads) {
+            boolean keep = false;
+            if (chosen == bundled && versionOf(file) > bundled.getVersion()) {
+                try {
+                    chosen = readCatalog(fileSource(file));
+                    keep = true;
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "Error reading downloaded workout catalog " + file.getName() + ": " + e.getMessage(), e);
+                }
+            }
+            if (!keep && !file.delete()) {
+                Log.e(TAG, "Error deleting " + file);
+            }
+        }
+        Log.d(TAG, "Using workout catalog v" + chosen.getVersion() + " with " + chosen.size() + " schedules");
+        return chosen;
+    }
+
+    /**
+     * Make a catalog the current one, unless a newer one is already in use
+     */
+    private static synchronized void publish(WorkoutCatalog catalog) {
+        if (current == null || catalog.getVersion() >= current.getVersion()) {
+            current = catalog;
+        }
+    }
+
+    /**
+     * Read the schedule summaries of a catalog, its exercises are read later from the same source
+     */
+    private static WorkoutCatalog readCatalog(Source source) throws IOException {
+        int format = -1;
+        int version = -1;
+        List<WorkoutSchedule> schedules = new ArrayList<>();
+        WorkoutSearchIndex.Builder search = new WorkoutSearchIndex.Builder();
+        WorkoutFacets.Builder facets = new WorkoutFacets.Builder();
+        try (JsonReader reader = new JsonReader(source.open())) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                switch (name) {
+                    case "format":
+                        format = reader.nextInt();
+                        break;
+                    case "version":
+                        version = reader.nextInt();
+                        break;
+                    case "schedules":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            List<String> exerciseNames = new ArrayList<>();
+                            List<String> equipment = new ArrayList<>();
+                            WorkoutSchedule schedule = readSchedule(reader, null, exerciseNames, equipment);
+                            schedules.add(schedule);
+                            search.add(schedule, exerciseNames, equipment);
+                            facets.add(schedule, equipment);
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        }
+        if (format < 1 || format > SUPPORTED_FORMAT) {
+            throw new IOException("Unsupported workout catalog format " + format);
+        }
+        if (version < 0) {
+            throw new IOException("Workout catalog has no version");
+        }
+        try {
+            return new WorkoutCatalog(version, schedules, summary -> readDetails(source, summary.getId()),
+                    search.build(), facets.build());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Find one schedule in a catalog and read it with its exercises
+     * @return The schedule, or null if the catalog doesn't have it
+     */
+    private static WorkoutSchedule readDetails(Source source, String id) throws IOException {
+        try (JsonReader reader = new JsonReader(source.open())) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"schedules".equals(reader.nextName())) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    WorkoutSchedule schedule = readSchedule(reader, id, null, null);
+                    if (id.equals(schedule.getId())) {
+                        // Stop here, the rest of the file isn't needed
+                        return schedule;
+                    }
+                }
+                reader.endArray();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read one schedule object
+     * @param detailsFor Read exercises, equipment and instructions only if the schedule has this id
+     *                   (null to never read them). Exercises are skipped unread for other schedules
+     * @param exerciseNames Collects the names of the exercises that aren't read, for the search index (may be null)
+     * @param equipmentNames Collects the equipment that isn't read, for the search index and filters (may be null)
+     */
+    private static WorkoutSchedule readSchedule(JsonReader reader, String detailsFor, List<String> exerciseNames,
+                                                List<String> equipmentNames) throws IOException {
+        WorkoutSchedule schedule = new WorkoutSchedule();
+        // Details that come before the id can't be skipped yet, so they are kept until we know the id
+        List<WorkoutSchedule.WorkoutExercise> exercises = null;
+        List<String> equipment = null;
+        String instructions = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            boolean wanted = detailsFor != null && (schedule.getId() == null || detailsFor.equals(schedule.getId()));
+            switch (name) {
+                case "id":
+                    schedule.setId(reader.nextString());
+                    break;
+                case "name":
+                    schedule.setName(reader.nextString());
+                    break;
+                case "description":
+                    schedule.setDescription(reader.nextString());
+                    break;
+                case "category":
+                    schedule.setCategory(reader.nextString());
+                    break;
+                case "purpose":
+                    schedule.setPurpose(reader.nextString());
+                    break;
+                case "schedule":
+                    schedule.setSchedule(reader.nextString());
+                    break;
+                case "durationMinutes":
+                    schedule.setDurationMinutes(reader.nextInt());
+                    break;
+                case "difficulty":
+                    schedule.setDifficulty(reader.nextString());
+                    break;
+                case "targetArea":
+                    schedule.setTargetArea(reader.nextString());
+                    break;
+                case "thumbnail":
+                    schedule.setThumbnailUrl(reader.nextString());
+                    break;
+                case "exercises":
+                    if (wanted) {
+                        exercises = readExercises(reader);
+                    } else if (exerciseNames != null) {
+                        readExerciseNames(reader, exerciseNames);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                case "equipment":
+                    if (wanted) {
+                        equipment = readStrings(reader);
+                    } else if (equipmentNames != null) {
+                        equipmentNames.addAll(readStrings(reader));
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                case "instructions":
+                    if (wanted) {
+                        instructions = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (schedule.getId() == null) {
+            throw new IOException("Workout schedule without an id");
+        }
+        if (detailsFor != null && detailsFor.equals(schedule.getId())) {
+            if (exercises != null) {
+                schedule.setExercises(exercises);
+            }
+            if (equipment != null) {
+                schedule.setEquipment(equipment);
+            }
+            schedule.setInstructions(instructions);
+        }
+        return schedule;
+    }
+
+    private static List<WorkoutSchedule.WorkoutExercise> readExercises(JsonReader reader) throws IOException {
+        List<WorkoutSchedule.WorkoutExercise> exercises = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String name = null;
+            int durationMinutes = 0;
+            String description = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "name":
+                        name = reader.nextString();
+                        break;
+                    case "durationMinutes":
+                        durationMinutes = reader.nextInt();
+                        break;
+                    case "description":
+                        description = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            exercises.add(new WorkoutSchedule.WorkoutExercise(name, durationMinutes, description));
+        }
+        reader.endArray();
+        return exercises;
+    }
+
+    /**
+     * Read only the names of an exercise list, skipping everything else in it
+     */
+    private static void readExerciseNames(JsonReader reader, List<String> names) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("name".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                    names.add(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    private static List<String> readStrings(JsonReader reader) throws IOException {
+        List<String> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            values.add(reader.nextString());
+        }
+        reader.endArray();
+        return values;
+    }
+
+    private static Source fileSource(File file) {
+        return () -> new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+    }
+
+    private static int versionOf(File file) {
+        Matcher matcher = DOWNLOADED_NAME.matcher(file.getName());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    private static WorkoutCatalog emptyCatalog() {
+        return new WorkoutCatalog(0, Collections.<WorkoutSchedule>emptyList(), summary -> null);
+    }
+}
@@ -0,0 +1,391 @@
+package com.s23010285.desk.utils;
+
+/**
+ * Runs a workout session without knowing anything about the screen that shows it
+ * It owns the session state (which exercise, paused or not, how much time is left) and tells a
+ * Listener what changed, so the Activity only has to draw
+ * All timing comes from a SessionClock, so tests can drive whole sessions with a fake clock,
+ * and the state fits in a few longs that can be saved when the Activity is recreated
+ */
+public class WorkoutSessionEngine {
+
+    /**
+     * The states a session can be in
+     */
+    public enum State {
+        // READY means the session was created but hasn't started
+        READY,
+        // RUNNING means an exercise countdown is going
+        RUNNING,
+        // PAUSED means the user paused, nothing moves until they resume
+        PAUSED,
+        // TRANSITIONING is the short break between finishing one exercise and starting the next
+        TRANSITIONING,
+        // COMPLETED means the session is over
+        COMPLETED
+    }
+
+    /**
+     * Callbacks for whoever shows the session
+     * They are all called from whichever thread calls the engine (the main thread in the app)
+     */
+    public interface Listener {
+        /**
+         * Called when the session moves to a new state
+         * @param state The new state
+         */
+        void onStateChanged(State state);
+
+        /**
+         * Called when an exercise starts, including when the user skips to it
+         * @param index The position of the exercise in the session
+         */
+        void onExerciseStarted(int index);
+
+        /**
+         * Called when the countdown of the current exercise shows a new value
+         * @param index The position of the exercise in the session
+         * @param secondsLeft The whole seconds left
+         * @param progressPercent How far through the exercise we are, from 0 to 100
+         */
+        void onExerciseTick(int index, int secondsLeft, int progressPercent);
+
+        /**
+         * Called when the countdown of an exercise reaches zero
+         * @param index The position of the exercise in the session
+         */
+        void onExerciseFinished(int index);
+
+        /**
+         * Called when the progress through the whole session changes
+         * @param percent How far through the planned session length we are, from 0 to 100
+         */
+        void onSessionProgress(int percent);
+
+        /**
+         * Called once when the session finishes, either after the last exercise or when the user finishes early
+         */
+        void onSessionCompleted();
+    }
+
+    // Snapshots start with this number so an old or damaged snapshot is never restored
+    private static final long SNAPSHOT_VERSION = 1;
+    // How many values a snapshot holds
+    private static final int SNAPSHOT_SIZE = 7;
+
+    // clock measures session time and the exercise countdowns
+    private final SessionClock clock;
+    // exerciseDurationsMs holds the length of every exercise in order
+    private final long[] exerciseDurationsMs;
+    // sessionDurationMs is the planned length of the whole session, used for the progress percentage
+    private final long sessionDurationMs;
+    // transitionMs is how long the break between two exercises lasts
+    private final long transitionMs;
+
+    // listener gets told about every change (may be null)
+    private Listener listener;
+    // state is the current state of the session
+    private State state = State.READY;
+    // resumeState is the state we go back to when a pause ends
+    private State resumeState = State.RUNNING;
+    // exerciseIndex is the position of the current exercise
+    private int exerciseIndex = 0;
+    // lastSecondsLeft and lastProgressPercent are the last values we reported, so we only report changes
+    private int lastSecondsLeft = -1;
+    private int lastProgressPercent = -1;
+
+    /**
+     * Create a session engine
+     * @param exerciseDurationsSeconds The length of each exercise in seconds (may be empty)
+     * @param sessionDurationMs The planned length of the whole session, for the progress percentage
+     * @param transitionMs How long to wait between one exercise ending and the next starting
+     * @param clock The clock that measures session time
+     */
+    public WorkoutSessionEngine(int[] exerciseDurationsSeconds, long sessionDurationMs,
+                                long transitionMs, SessionClock clock) {
+        this.exerciseDurationsMs = new long[exerciseDurationsSeconds.length];
+        for (int i = 0; i < exerciseDurationsSeconds.length; i++) {
+            exerciseDurationsMs[i] = Math.max(1, exerciseDurationsSeconds[i]) * 1000L;
+        }
+        this.sessionDurationMs = sessionDurationMs;
+        this.transitionMs = transitionMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Set who gets told about changes
+     * @param listener The listener, or null to stop listening
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Start the session with the first exercise
+     */
+    public void start() {
+        if (state != State.READY) {
+            return;
+        }
+        clock.start();
+        setState(State.RUNNING);
+        if (hasExercises()) {
+            beginExercise(0, 0);
+        }
+    }
+
+    /**
+     * Pause the session, countdowns keep their exact remaining time
+     */
+    public void pause() {
+        if (state != State.RUNNING && state != State.TRANSITIONING) {
+            return;
+        }
+        resumeState = state;
+        clock.pause();
+        setState(State.PAUSED);
+    }
+
+    /**
+     * Carry on from where the session was paused
+     */
+    public void resume() {
+        if (state != State.PAUSED) {
+            return;
+        }
+        clock.resume();
+        setState(resumeState);
+    }
+
+    /**
+     * Skip to the next exercise, or finish the session if this was the last one
+     */
+    public void next() {
+        if (state == State.READY || state == State.COMPLETED || !hasExercises()) {
+            return;
+        }
+        if (exerciseIndex < exerciseDurationsMs.length - 1) {
+            moveTo(exerciseIndex + 1);
+        } else {
+            finish();
+        }
+    }
+
+    /**
+     * Go back to the previous exercise and start its countdown again
+     */
+    public void previous() {
+        if (state == State.READY || state == State.COMPLETED || exerciseIndex == 0) {
+            return;
+        }
+        moveTo(exerciseIndex - 1);
+    }
+
+    /**
+     * End the session now
+     */
+    public void finish() {
+        if (state == State.COMPLETED) {
+            return;
+        }
+        clock.pause();
+        setState(State.COMPLETED);
+        if (listener != null) {
+            listener.onSessionCompleted();
+        }
+    }
+
+    /**
+     * Bring the session up to date with the clock
+     * Call this from a timer, then call it again after the returned delay
+     * @return How long to wait before the next tick in milliseconds, or -1 if no ticks are needed
+     *         (the session is paused, finished or not started)
+     */
+    public long tick() {
+        if (state != State.RUNNING && state != State.TRANSITIONING) {
+            return -1;
+        }
+
+        if (sessionDurationMs > 0) {
+            int percent = (int) Math.min(100, clock.getElapsedMs() * 100 / sessionDurationMs);
+            if (percent != lastProgressPercent) {
+                lastProgressPercent = percent;
+                if (listener != null) {
+                    listener.onSessionProgress(percent);
+                }
+            }
+        }
+
+        // A late tick can cover several countdown ends, each following segment starts where the last ended
+        while (hasExercises() && clock.getSegmentRemainingMs() == 0) {
+            long segmentEndMs = clock.getSegmentStartMs() + clock.getSegmentDurationMs();
+            if (state == State.TRANSITIONING) {
+                setState(State.RUNNING);
+                beginExercise(exerciseIndex + 1, segmentEndMs);
+                continue;
+            }
+            reportCountdown();
+            if (listener != null) {
+                listener.onExerciseFinished(exerciseIndex);
+            }
+            if (exerciseIndex >= exerciseDurationsMs.length - 1) {
+                finish();
+                return -1;
+            }
+            clock.beginSegmentAt(segmentEndMs, transitionMs);
+            setState(State.TRANSITIONING);
+        }
+
+        if (state == State.RUNNING && hasExercises()) {
+            reportCountdown();
+        }
+        return clock.getDelayToNextTickMs();
+    }
+
+    /**
+     * Get the current state
+     * @return The state of the session
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Get the position of the current exercise
+     * @return The exercise index
+     */
+    public int getExerciseIndex() {
+        return exerciseIndex;
+    }
+
+    /**
+     * Get how many exercises the session has
+     * @return The number of exercises
+     */
+    public int getExerciseCount() {
+        return exerciseDurationsMs.length;
+    }
+
+    /**
+     * Get how many seconds the current countdown shows
+     * @return The seconds left in the current exercise (or break)
+     */
+    public int getSecondsLeft() {
+        return clock.getSegmentSecondsLeft();
+    }
+
+    /**
+     * Get how much session time has passed, not counting pauses
+     * @return The running time in milliseconds
+     */
+    public long getElapsedMs() {
+        return clock.getElapsedMs();
+    }
+
+    /**
+     * Save the whole session state as a few numbers
+     * @return The snapshot, to be passed to restoreState later
+     */
+    public long[] saveState() {
+        return new long[] {
+            SNAPSHOT_VERSION,
+            state.ordinal(),
+            resumeState.ordinal(),
+            exerciseIndex,
+            clock.getElapsedMs(),
+            clock.getSegmentStartMs(),
+            clock.getSegmentDurationMs()
+        };
+    }
+
+    /**
+     * Put the session back to a saved state
+     * A session that was running carries on straight away, time while nothing was running isn't counted
+     * No callbacks are made, the caller should redraw from the getters afterwards
+     * @param snapshot A snapshot made by saveState
+     * @return true if the snapshot was valid and restored, false if it was ignored
+     */
+    public boolean restoreState(long[] snapshot) {
+        State[] states = State.values();
+        if (snapshot == null || snapshot.length != SNAPSHOT_SIZE || snapshot[0] != SNAPSHOT_VERSION
+                || snapshot[1] < 0 || snapshot[1] >= states.length
+                || snapshot[2] < 0 || snapshot[2] >= states.length
+                || snapshot[3] < 0 || (hasExercises() && snapshot[3] >= exerciseDurationsMs.length)) {
+            return false;
+        }
+        state = states[(int) snapshot[1]];
+        resumeState = states[(int) snapshot[2]];
+        exerciseIndex = (int) snapshot[3];
+        clock.restore(snapshot[4], snapshot[5], snapshot[6]);
+        lastSecondsLeft = -1;
+        lastProgressPercent = -1;
+        if (state == State.RUNNING || state == State.TRANSITIONING) {
+            clock.resume();
+        }
+        return true;
+    }
+
+    /**
+     * Jump to another exercise because the user asked to
+     */
+    private void moveTo(int index) {
+        if (state == State.PAUSED) {
+            // Stay paused, but the new exercise should run (not the break) once the user resumes
+            resumeState = State.RUNNING;
+        } else {
+            setState(State.RUNNING);
+        }
+        beginExercise(index, clock.getElapsedMs());
+        if (state == State.RUNNING) {
+            reportCountdown();
+        }
+    }
+
+    /**
+     * Start the countdown for an exercise
+     */
+    private void beginExercise(int index, long startMs) {
+        exerciseIndex = index;
+        lastSecondsLeft = -1;
+        clock.beginSegmentAt(startMs, exerciseDurationsMs[index]);
+        if (listener != null) {
+            listener.onExerciseStarted(index);
+        }
+    }
+
+    /**
+     * Tell the listener about the countdown if the shown seconds changed
+     */
+    private void reportCountdown() {
+        int secondsLeft = clock.getSegmentSecondsLeft();
+        if (secondsLeft == lastSecondsLeft) {
+            return;
+        }
+        lastSecondsLeft = secondsLeft;
+        if (listener != null) {
+            long durationMs = exerciseDurationsMs[exerciseIndex];
+            int progress = (int) ((durationMs - clock.getSegmentRemainingMs()) * 100 / durationMs);
+            listener.onExerciseTick(exerciseIndex, secondsLeft, progress);
+        }
+    }
+
+    /**
+     * Move to a new state and tell the listener
+     */
+    private void setState(State newState) {
+        if (newState == state) {
+            return;
+        }
+        state = newState;
+        if (listener != null) {
+            listener.onStateChanged(newState);
+        }
+    }
+
+    /**
+     * Check whether this session has any exercises
+     */
+    private boolean hasExercises() {
+        return exerciseDurationsMs.length > 0;
+    }
+}
@@ -0,0 +1,174 @@
+package com.s23010285.desk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scheduled executor for tests that only runs tasks when the test moves its clock forward
+ * Tasks run on the test's thread in time order, so delayed work happens exactly when the test says
+ * Its clock is in milliseconds and can be handed to the code under test, e.g. executor::now
+ */
+public class ManualScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    // tasks holds everything queued or scheduled, soonest first
+    private final PriorityQueue<Task<?>> tasks = new PriorityQueue<>();
+    // nowMs is the executor's clock
+    private long nowMs = 0;
+    // sequence keeps tasks due at the same time in the order they were added
+    private long sequence = 0;
+    private boolean shutdown = false;
+
+    /**
+     * Get the executor's clock
+     * @return The time in milliseconds
+     */
+    public synchronized long now() {
+        return nowMs;
+    }
+
+    /**
+     * Move the clock forward, running every task that falls due on the way
+     * @param ms How far to move it
+     */
+    public void advance(long ms) {
+        long endMs;
+        synchronized (this) {
+            endMs = nowMs + ms;
+        }
+        while (true) {
+            Task<?> task;
+            synchronized (this) {
+                task = tasks.peek();
+                if (task == null || task.timeMs > endMs) {
+                    nowMs = endMs;
+                    return;
+                }
+                tasks.poll();
+                nowMs = Math.max(nowMs, task.timeMs);
+            }
+            // Outside the lock, so a task can schedule more work
+            task.run();
+        }
+    }
+
+    /**
+     * Run the tasks that are due now, including ones they add for now
+     */
+    public void runDue() {
+        advance(0);
+    }
+
+    /**
+     * Get how many tasks are waiting, not counting cancelled ones
+     * @return The number of tasks
+     */
+    public synchronized int getPendingCount() {
+        int count = 0;
+        for (Task<?> task : tasks) {
+            if (!task.isCancelled()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return add(Executors.callable(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return add(callable, delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> waiting = new ArrayList<>(tasks);
+        tasks.clear();
+        return waiting;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && tasks.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return isTerminated();
+    }
+
+    private synchronized <V> Task<V> add(Callable<V> callable, long delay, TimeUnit unit) {
+        if (shutdown) {
+            throw new IllegalStateException("executor is shut down");
+        }
+        Task<V> task = new Task<>(callable, nowMs + Math.max(0, unit.toMillis(delay)), sequence++);
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * A task and the time it is due
+     */
+    private final class Task<V> extends FutureTask<V> implements ScheduledFuture<V> {
+
+        private final long timeMs;
+        private final long order;
+
+        Task(Callable<V> callable, long timeMs, long order) {
+            super(callable);
+            this.timeMs = timeMs;
+            this.order = order;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(timeMs - now(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            Task<?> task = (Task<?>) other;
+            if (timeMs != task.timeMs) {
+                return Long.compare(timeMs, task.timeMs);
+            }
+            return Long.compare(order, task.order);
+        }
+    }
+}
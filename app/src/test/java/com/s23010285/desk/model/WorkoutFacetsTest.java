@@ -0,0 +1,150 @@
+package com.s23010285.desk.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how WorkoutFacets combines filters, and its bitsets for catalogs of every size
+ */
+public class WorkoutFacetsTest {
+
+    @Test
+    public void valuesOfOneFacetAreOred() {
+        WorkoutFacets facets = sample();
+        WorkoutFacets.Selection selection = new WorkoutFacets.Selection();
+        selection.set(WorkoutFacets.Facet.CATEGORY, "cardio", true);
+        assertEquals(Arrays.asList(0, 2), positions(facets, selection));
+        selection.set(WorkoutFacets.Facet.CATEGORY, "strength", true);
+        assertEquals(Arrays.asList(0, 1, 2, 3), positions(facets, selection));
+        selection.set(WorkoutFacets.Facet.CATEGORY, "cardio", false);
+        assertEquals(Arrays.asList(1, 3), positions(facets, selection));
+    }
+
+    @Test
+    public void facetsAreAnded() {
+        WorkoutFacets facets = sample();
+        WorkoutFacets.Selection selection = new WorkoutFacets.Selection();
+        selection.set(WorkoutFacets.Facet.CATEGORY, "cardio", true);
+        selection.set(WorkoutFacets.Facet.CATEGORY, "strength", true);
+        selection.set(WorkoutFacets.Facet.DIFFICULTY, "easy", true);
+        assertEquals(Arrays.asList(0, 3), positions(facets, selection));
+        // Equipment is a facet too, a schedule needing a chair and a mat has both values
+        selection.set(WorkoutFacets.Facet.EQUIPMENT, "mat", true);
+        assertEquals(Collections.singletonList(3), positions(facets, selection));
+        // A facet with nothing picked doesn't filter
+        selection.set(WorkoutFacets.Facet.EQUIPMENT, "mat", false);
+        assertEquals(Arrays.asList(0, 3), positions(facets, selection));
+    }
+
+    @Test
+    public void nothingSelectedIsEverySchedule() {
+        WorkoutFacets facets = sample();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), positions(facets, null));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), positions(facets, new WorkoutFacets.Selection()));
+    }
+
+    @Test
+    public void valuesKeepTheirFirstLabelAndCount() {
+        WorkoutFacets facets = sample();
+        List<WorkoutFacets.Value> categories = facets.getValues(WorkoutFacets.Facet.CATEGORY);
+        assertEquals(3, categories.size());
+        assertEquals("cardio", categories.get(0).getKey());
+        assertEquals("Cardio", categories.get(0).getLabel());
+        assertEquals(2, categories.get(0).getCount());
+        // Durations come in buckets, shortest first, only the ones a schedule falls in
+        List<String> buckets = new ArrayList<>();
+        for (WorkoutFacets.Value value : facets.getValues(WorkoutFacets.Facet.DURATION)) {
+            buckets.add(value.getKey());
+        }
+        assertEquals(Arrays.asList("0", "1", "3"), buckets);
+    }
+
+    @Test
+    public void keyNoScheduleHasMatchesNothing() {
+        WorkoutFacets facets = sample();
+        WorkoutFacets.Selection selection = new WorkoutFacets.Selection();
+        selection.set(WorkoutFacets.Facet.TARGET_AREA, "tail", true);
+        assertEquals(Collections.<Integer>emptyList(), positions(facets, selection));
+        // Next to a value that exists it adds nothing
+        selection.set(WorkoutFacets.Facet.TARGET_AREA, "legs", true);
+        assertEquals(Arrays.asList(1, 2), positions(facets, selection));
+    }
+
+    @Test
+    public void lastWordOnlyCoversRealSchedules() {
+        for (int size : new int[] {1, 63, 64, 65, 70, 128, 130}) {
+            WorkoutFacets.Builder builder = new WorkoutFacets.Builder();
+            for (int i = 0; i < size; i++) {
+                builder.add(schedule("w" + i, i % 2 == 0 ? "Cardio" : "Strength", "Easy", "Legs", 10),
+                        null);
+            }
+            WorkoutFacets facets = builder.build();
+            assertEquals(size, facets.size());
+            long[] everything = facets.filter(null);
+            assertEquals(size + " schedules", (size + 63) / 64, everything.length);
+            assertEquals(size + " schedules", size, WorkoutFacets.count(everything));
+            assertTrue(WorkoutFacets.contains(everything, size - 1));
+
+            WorkoutFacets.Selection selection = new WorkoutFacets.Selection();
+            selection.set(WorkoutFacets.Facet.CATEGORY, "cardio", true);
+            assertEquals(size + " schedules", (size + 1) / 2, WorkoutFacets.count(facets.filter(selection)));
+        }
+    }
+
+    @Test
+    public void emptyCatalogHasNoValues() {
+        WorkoutFacets facets = new WorkoutFacets.Builder().build();
+        assertEquals(0, facets.size());
+        assertEquals(0, WorkoutFacets.count(facets.filter(null)));
+        for (WorkoutFacets.Facet facet : WorkoutFacets.Facet.values()) {
+            assertTrue(facet.name(), facets.getValues(facet).isEmpty());
+        }
+        WorkoutFacets.Selection selection = new WorkoutFacets.Selection();
+        selection.set(WorkoutFacets.Facet.CATEGORY, "cardio", true);
+        assertEquals(0, WorkoutFacets.count(facets.filter(selection)));
+    }
+
+    @Test
+    public void durationBuckets() {
+        assertEquals(0, WorkoutFacets.getDurationBucket(5));
+        assertEquals(0, WorkoutFacets.getDurationBucket(10));
+        assertEquals(1, WorkoutFacets.getDurationBucket(11));
+        assertEquals(2, WorkoutFacets.getDurationBucket(30));
+        assertEquals(3, WorkoutFacets.getDurationBucket(31));
+    }
+
+    /**
+     * Five schedules: two cardio, two strength and one yoga, with a mix of difficulties, areas and equipment
+     */
+    private static WorkoutFacets sample() {
+        return new WorkoutFacets.Builder()
+                .add(schedule("run", "Cardio", "Easy", "Full body", 5), Collections.<String>emptyList())
+                .add(schedule("lift", "Strength", "Hard", "Legs", 15), Collections.singletonList("Chair"))
+                .add(schedule("hiit", "cardio", "Hard", "Legs", 15), null)
+                .add(schedule("core", "Strength", "easy", "Core", 45), Arrays.asList("Chair", "Mat"))
+                .add(schedule("flow", "Yoga", "Medium", "Back", 10), Collections.singletonList("Mat"))
+                .build();
+    }
+
+    private static List<Integer> positions(WorkoutFacets facets, WorkoutFacets.Selection selection) {
+        long[] bits = facets.filter(selection);
+        List<Integer> positions = new ArrayList<>();
+        for (int position = 0; position < facets.size(); position++) {
+            if (WorkoutFacets.contains(bits, position)) {
+                positions.add(position);
+            }
+        }
+        return positions;
+    }
+
+    private static WorkoutSchedule schedule(String id, String category, String difficulty, String targetArea,
+                                            int durationMinutes) {
+        return new WorkoutSchedule(id, id, "", category, "", "Daily", durationMinutes, difficulty, targetArea);
+    }
+}
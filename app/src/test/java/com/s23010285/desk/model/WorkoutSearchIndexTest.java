@@ -0,0 +1,148 @@
+package com.s23010285.desk.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks WorkoutSearchIndex matching and ranking, also on a large catalog
+ * How fast a keystroke is gets measured on a device by WorkoutSearchBenchmark
+ */
+public class WorkoutSearchIndexTest {
+
+    // As many workouts as the search is built for
+    private static final int LARGE_CATALOG = 10_000;
+
+    private WorkoutSearchIndex index;
+
+    @Before
+    public void setUp() {
+        WorkoutSchedule morning = schedule("morning", "Morning Stretch", "Loosen up your back and neck",
+                "Flexibility", "Wake up", "Full body");
+        morning.getExercises().add(new WorkoutSchedule.WorkoutExercise("Neck Rolls", 1, ""));
+        WorkoutSchedule legs = schedule("legs", "Desk Leg Day", "Squats and lunges beside your chair",
+                "Strength", "Build strength", "Legs");
+        legs.getExercises().add(new WorkoutSchedule.WorkoutExercise("Chair Squats", 2, ""));
+        legs.getEquipment().add("Chair");
+        WorkoutSchedule squat = schedule("squat", "Squat Challenge", "A quick burst of exercise",
+                "Cardio", "Get the heart rate up", "Lower body");
+        WorkoutSchedule posture = schedule("posture", "Posture Reset", "Open the chest after long sitting",
+                "Flexibility", "Fix posture", "Upper-body");
+
+        index = new WorkoutSearchIndex.Builder()
+                .add(morning)
+                .add(legs)
+                .add(squat)
+                .add(posture, Arrays.asList("Wall Angels", "Chin Tucks"), Arrays.asList("Wall"))
+                .build();
+    }
+
+    @Test
+    public void emptyQueryReturnsEverythingInOrder() {
+        assertEquals(Arrays.asList("morning", "legs", "squat", "posture"), ids(""));
+        assertEquals(Arrays.asList("morning", "legs", "squat", "posture"), ids("  - "));
+        assertEquals(4, index.search(null).size());
+    }
+
+    @Test
+    public void wordsMatchAsPrefixes() {
+        assertEquals(Arrays.asList("squat", "legs"), ids("squ"));
+        assertEquals(Arrays.asList("morning"), ids("MORN"));
+        assertTrue(ids("zumba").isEmpty());
+    }
+
+    @Test
+    public void everyWordMustMatch() {
+        assertEquals(Arrays.asList("legs"), ids("squat chair"));
+        assertEquals(Arrays.asList("morning"), ids("stretch neck"));
+        assertTrue(ids("squat neck").isEmpty());
+    }
+
+    @Test
+    public void nameMatchesRankAboveDescriptionMatches() {
+        // "Squat Challenge" has it in the name, "Desk Leg Day" only in its description and exercises
+        assertEquals(Arrays.asList("squat", "legs"), ids("squat"));
+        // Both only in the category, so catalog order decides
+        assertEquals(Arrays.asList("morning", "posture"), ids("flexibility"));
+    }
+
+    @Test
+    public void exercisesAndEquipmentAreSearched() {
+        assertEquals(Arrays.asList("morning"), ids("rolls"));
+        assertEquals(Arrays.asList("posture"), ids("wall angels"));
+        assertEquals(Arrays.asList("legs"), ids("chair"));
+    }
+
+    @Test
+    public void punctuationSeparatesWords() {
+        assertEquals(Arrays.asList("upper", "body"), WorkoutSearchIndex.tokenize("Upper-Body!"));
+        assertEquals(Arrays.asList("posture"), ids("upper body"));
+        assertEquals(Arrays.asList("posture"), ids("upper-bo"));
+    }
+
+    @Test
+    public void aScheduleIsListedOnce() {
+        // "s" prefixes several words of the same schedules
+        List<String> found = ids("s");
+        assertEquals(found.size(), found.stream().distinct().count());
+        assertTrue(found.containsAll(Arrays.asList("morning", "legs", "squat", "posture")));
+    }
+
+    @Test
+    public void typingNarrowsResultsOnLargeCatalog() {
+        String[] verbs = {"Power", "Gentle", "Quick", "Desk", "Morning", "Evening", "Office", "Core"};
+        String[] focus = {"Stretch", "Squats", "Yoga", "Cardio", "Mobility", "Balance", "Posture", "Strength"};
+        String[] areas = {"Legs", "Back", "Neck", "Shoulders", "Core", "Full body", "Arms", "Hips"};
+        WorkoutSearchIndex.Builder builder = new WorkoutSearchIndex.Builder();
+        for (int i = 0; i < LARGE_CATALOG; i++) {
+            WorkoutSchedule schedule = schedule("w" + i,
+                    verbs[i % verbs.length] + " " + focus[(i / 8) % focus.length] + " " + i,
+                    "Session " + i + " for your " + areas[(i / 3) % areas.length].toLowerCase(),
+                    focus[(i / 8) % focus.length], "Routine " + (i % 97), areas[(i / 5) % areas.length]);
+            builder.add(schedule, Arrays.asList(focus[i % focus.length] + " drill", "Breathing"),
+                    Arrays.asList(i % 2 == 0 ? "Chair" : "Mat"));
+        }
+        WorkoutSearchIndex large = builder.build();
+        assertEquals(LARGE_CATALOG, large.size());
+
+        String[] queries = {"morning stretch", "chair squats", "core balance", "desk yoga neck", "routine 42"};
+        for (String query : queries) {
+            // Each letter typed can only take results away, never bring new ones
+            Set<Integer> previous = null;
+            for (int length = 1; length <= query.length(); length++) {
+                String typed = query.substring(0, length);
+                Set<Integer> results = new HashSet<>();
+                for (int position : large.searchPositions(typed)) {
+                    assertTrue("\"" + typed + "\" lists a workout twice", results.add(position));
+                }
+                if (previous != null) {
+                    assertTrue("\"" + typed + "\" found workouts its prefix didn't", previous.containsAll(results));
+                }
+                previous = results;
+            }
+            assertFalse(query, previous.isEmpty());
+        }
+        // Workout 42 has 42 in its name as well as its routine, so it comes first
+        assertEquals("w42", large.search("routine 42").get(0).getId());
+    }
+
+    private List<String> ids(String query) {
+        List<String> ids = new ArrayList<>();
+        for (WorkoutSchedule schedule : index.search(query)) {
+            ids.add(schedule.getId());
+        }
+        return ids;
+    }
+
+    private static WorkoutSchedule schedule(String id, String name, String description, String category,
+                                            String purpose, String targetArea) {
+        return new WorkoutSchedule(id, name, description, category, purpose, "Daily", 10, "Easy", targetArea);
+    }
+}
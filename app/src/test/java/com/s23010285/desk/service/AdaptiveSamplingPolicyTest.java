@@ -0,0 +1,108 @@
+package com.s23010285.desk.service;
+
+import com.s23010285.desk.service.AdaptiveSamplingPolicy.SamplingRate;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays synthetic accelerometer traces through AdaptiveSamplingPolicy
+ */
+public class AdaptiveSamplingPolicyTest {
+
+    // Samples arrive every 200 ms, the slow rate, which is the coarsest the policy sees
+    private static final long SAMPLE_NS = 200_000_000L;
+    private static final long SECOND_NS = 1_000_000_000L;
+    // Below and above the motion threshold
+    private static final float STILL = 0.1f;
+    private static final float MOVING = 2.0f;
+
+    @Test
+    public void stillnessSlowsDownThenSleeps() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(true);
+        policy.start(0);
+
+        assertEquals(SamplingRate.FAST, replay(policy, STILL, 0, AdaptiveSamplingPolicy.STILL_TO_SLOW_NS - SAMPLE_NS));
+        assertEquals(SamplingRate.SLOW, policy.onAccelerometerSample(STILL, AdaptiveSamplingPolicy.STILL_TO_SLOW_NS));
+        assertEquals(SamplingRate.SLOW, replay(policy, STILL, AdaptiveSamplingPolicy.STILL_TO_SLOW_NS,
+                AdaptiveSamplingPolicy.STILL_TO_DORMANT_NS - SAMPLE_NS));
+        assertEquals(SamplingRate.DORMANT,
+                policy.onAccelerometerSample(STILL, AdaptiveSamplingPolicy.STILL_TO_DORMANT_NS));
+        assertEquals(2, policy.getTransitionCount());
+    }
+
+    @Test
+    public void withoutWakeSensorItNeverSleeps() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(false);
+        policy.start(0);
+        assertEquals(SamplingRate.SLOW, replay(policy, STILL, 0, 10 * AdaptiveSamplingPolicy.STILL_TO_DORMANT_NS));
+        assertEquals(1, policy.getTransitionCount());
+    }
+
+    @Test
+    public void motionGoesBackToFullRate() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(true);
+        policy.start(0);
+        long slowAt = AdaptiveSamplingPolicy.STILL_TO_SLOW_NS;
+        assertEquals(SamplingRate.SLOW, replay(policy, STILL, 0, slowAt));
+
+        assertEquals(SamplingRate.FAST, policy.onAccelerometerSample(MOVING, slowAt + SECOND_NS));
+        // The stillness timer starts again from the last motion
+        assertEquals(SamplingRate.FAST, replay(policy, STILL, slowAt + 2 * SECOND_NS,
+                slowAt + SECOND_NS + AdaptiveSamplingPolicy.STILL_TO_SLOW_NS - SAMPLE_NS));
+        assertEquals(SamplingRate.SLOW, policy.onAccelerometerSample(STILL,
+                slowAt + SECOND_NS + AdaptiveSamplingPolicy.STILL_TO_SLOW_NS));
+    }
+
+    @Test
+    public void motionAtThresholdIsStillness() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(false);
+        policy.start(0);
+        assertEquals(SamplingRate.SLOW, replay(policy, AdaptiveSamplingPolicy.MOTION_THRESHOLD, 0,
+                AdaptiveSamplingPolicy.STILL_TO_SLOW_NS));
+    }
+
+    @Test
+    public void wakeEventLeavesDormant() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(true);
+        policy.start(0);
+        long dormantAt = AdaptiveSamplingPolicy.STILL_TO_DORMANT_NS;
+        assertEquals(SamplingRate.DORMANT, replay(policy, STILL, 0, dormantAt));
+
+        long wakeAt = dormantAt + 60 * SECOND_NS;
+        assertEquals(SamplingRate.FAST, policy.onWakeEvent(wakeAt));
+        // A still sample right after waking doesn't put it back to sleep
+        assertEquals(SamplingRate.FAST, policy.onAccelerometerSample(STILL, wakeAt + SAMPLE_NS));
+        assertEquals(3, policy.getTransitionCount());
+    }
+
+    @Test
+    public void timeAtEachRateAddsUp() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(true);
+        policy.start(0);
+        long dormantAt = AdaptiveSamplingPolicy.STILL_TO_DORMANT_NS;
+        replay(policy, STILL, 0, dormantAt);
+        long end = dormantAt + 60 * SECOND_NS;
+        policy.stop(end);
+
+        assertEquals(AdaptiveSamplingPolicy.STILL_TO_SLOW_NS, policy.getTimeAtRateNs(SamplingRate.FAST, end));
+        assertEquals(dormantAt - AdaptiveSamplingPolicy.STILL_TO_SLOW_NS,
+                policy.getTimeAtRateNs(SamplingRate.SLOW, end));
+        assertEquals(60 * SECOND_NS, policy.getTimeAtRateNs(SamplingRate.DORMANT, end));
+        assertEquals("FAST 20.0s (11%), SLOW 100.0s (55%), DORMANT 60.0s (33%), 2 switches",
+                policy.formatReport(end));
+    }
+
+    /**
+     * Feed samples of one magnitude from one time to another, both included
+     * @return The rate after the last sample
+     */
+    private static SamplingRate replay(AdaptiveSamplingPolicy policy, float magnitude, long fromNs, long toNs) {
+        SamplingRate rate = policy.getCurrentRate();
+        for (long t = fromNs; t <= toNs; t += SAMPLE_NS) {
+            rate = policy.onAccelerometerSample(magnitude, t);
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,166 @@
+package com.s23010285.desk.service;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays synthetic accelerometer traces through RepCounter
+ * Each trace is a list of {x, y, z} samples at the 50 Hz game sensor rate, the same
+ * shape a recorded SensorEvent stream has, so real recordings can be replayed the same way
+ */
+public class RepCounterTest {
+
+    private static final float GRAVITY = 9.81f;
+    // 50 Hz, the rate SENSOR_DELAY_GAME delivers
+    private static final long SAMPLE_NS = 20_000_000L;
+    private static final int SAMPLES_PER_SECOND = 50;
+
+    @Test
+    public void countsSquatsWithPhoneUpright() {
+        float[][] trace = verticalReps(10, 2.0, 0.4, new float[] {0, 1, 0}, 0.3f, 1);
+        assertEquals(10, replay(new RepCounter(MotionTemplate.SQUAT), trace));
+    }
+
+    @Test
+    public void countsSquatsWhateverWayThePhoneIsHeld() {
+        // Phone tilted in a pocket: gravity is spread over all three axes
+        float[][] trace = verticalReps(10, 2.0, 0.4, new float[] {0.5f, 0.7f, 0.5f}, 0.3f, 2);
+        assertEquals(10, replay(new RepCounter(MotionTemplate.SQUAT), trace));
+    }
+
+    @Test
+    public void countsSlowShallowLunges() {
+        float[][] trace = verticalReps(8, 2.5, 0.35, new float[] {0, 0, 1}, 0.2f, 3);
+        assertEquals(8, replay(new RepCounter(MotionTemplate.LUNGE), trace));
+    }
+
+    @Test
+    public void standingStillCountsNothing() {
+        float[][] trace = verticalReps(0, 2.0, 0, new float[] {0, 1, 0}, 0.4f, 4);
+        assertEquals(0, replay(new RepCounter(MotionTemplate.SQUAT), trace));
+    }
+
+    @Test
+    public void bounceAtTheBottomIsNotASecondRep() {
+        // Each squat has a quick bounce at the bottom, half the size of the main movement
+        float[][] trace = new float[SAMPLES_PER_SECOND * 24][];
+        Random random = new Random(5);
+        for (int i = 0; i < trace.length; i++) {
+            double t = (double) i / SAMPLES_PER_SECOND;
+            float a = 0;
+            if (t < 20) {
+                a = (float) (2.0 * -Math.cos(2 * Math.PI * t / 2.0) + 1.0 * -Math.cos(2 * Math.PI * t / 0.5));
+            }
+            trace[i] = sample(new float[] {0, 1, 0}, a, 0.2f, random);
+        }
+        assertEquals(10, replay(new RepCounter(MotionTemplate.SQUAT), trace));
+    }
+
+    @Test
+    public void countsJumpingJacksFromTotalMovement() {
+        // Jumping jacks shake the phone in every direction, about one a second
+        Random random = new Random(6);
+        float[][] trace = new float[SAMPLES_PER_SECOND * 16][];
+        for (int i = 0; i < trace.length; i++) {
+            double t = (double) i / SAMPLES_PER_SECOND;
+            double swing = t < 12 ? 6 * -Math.cos(2 * Math.PI * t / 1.0) : 0;
+            trace[i] = new float[] {
+                (float) (swing * 0.3 + random.nextGaussian() * 0.3),
+                (float) (GRAVITY + swing * 0.9 + random.nextGaussian() * 0.3),
+                (float) (swing * 0.3 + random.nextGaussian() * 0.3)
+            };
+        }
+        assertEquals(12, replay(new RepCounter(MotionTemplate.JUMPING_JACK), trace));
+    }
+
+    @Test
+    public void sensorGapDoesNotInventARep() {
+        RepCounter counter = new RepCounter(MotionTemplate.SQUAT);
+        float[][] first = verticalReps(3, 2.0, 0.4, new float[] {0, 1, 0}, 0.2f, 7);
+        long timestampNs = replay(counter, first, 0);
+        assertEquals(3, counter.getReps());
+
+        // The sensor was off for a minute and the phone is now lying flat
+        float[][] second = verticalReps(3, 2.0, 0.4, new float[] {0, 0, 1}, 0.2f, 8);
+        replay(counter, second, timestampNs + 60_000_000_000L);
+        assertEquals(6, counter.getReps());
+    }
+
+    @Test
+    public void changingTemplateStartsFromZero() {
+        RepCounter counter = new RepCounter(MotionTemplate.SQUAT);
+        replay(counter, verticalReps(4, 2.0, 0.4, new float[] {0, 1, 0}, 0.2f, 9), 0);
+        assertEquals(4, counter.getReps());
+        counter.setTemplate(MotionTemplate.LUNGE);
+        assertEquals(0, counter.getReps());
+        assertSame(MotionTemplate.LUNGE, counter.getTemplate());
+    }
+
+    @Test
+    public void templatesAreFoundByExerciseName() {
+        assertSame(MotionTemplate.SQUAT, MotionTemplate.forExercise("Squats"));
+        assertSame(MotionTemplate.PUSH_UP, MotionTemplate.forExercise("Push-ups"));
+        assertSame(MotionTemplate.LUNGE, MotionTemplate.forExercise("Lunges"));
+        assertSame(MotionTemplate.JUMPING_JACK, MotionTemplate.forExercise("Jumping Jacks"));
+        assertNull(MotionTemplate.forExercise("Planks"));
+        assertNull(MotionTemplate.forExercise(null));
+    }
+
+    /**
+     * Build a trace of up-and-down reps, each going down and back up once, followed by a few seconds of rest
+     * @param reps How many reps
+     * @param periodS How long each rep takes
+     * @param depthM How far the phone moves down
+     * @param up The direction of "up" in phone coordinates
+     * @param noise The standard deviation of the sensor noise in m/s²
+     * @param seed The noise seed
+     */
+    private static float[][] verticalReps(int reps, double periodS, double depthM, float[] up, float noise, long seed) {
+        Random random = new Random(seed);
+        double restS = 4;
+        int count = (int) ((reps * periodS + restS) * SAMPLES_PER_SECOND);
+        double omega = 2 * Math.PI / periodS;
+        float[][] trace = new float[count][];
+        for (int i = 0; i < count; i++) {
+            double t = (double) i / SAMPLES_PER_SECOND;
+            // Height is -depth * (1 - cos(wt)) / 2, so acceleration is -depth * w² * cos(wt) / 2
+            float a = t < reps * periodS ? (float) (-depthM * omega * omega * Math.cos(omega * t) / 2) : 0f;
+            trace[i] = sample(up, a, noise, random);
+        }
+        return trace;
+    }
+
+    /**
+     * One accelerometer sample: gravity plus the vertical acceleration, both along "up", plus noise
+     */
+    private static float[] sample(float[] up, float verticalAcceleration, float noise, Random random) {
+        float length = (float) Math.sqrt(up[0] * up[0] + up[1] * up[1] + up[2] * up[2]);
+        float[] values = new float[3];
+        for (int axis = 0; axis < 3; axis++) {
+            values[axis] = (GRAVITY + verticalAcceleration) * up[axis] / length
+                    + (float) (random.nextGaussian() * noise);
+        }
+        return values;
+    }
+
+    private static int replay(RepCounter counter, float[][] trace) {
+        replay(counter, trace, 0);
+        return counter.getReps();
+    }
+
+    /**
+     * Feed a trace to the counter
+     * @return The timestamp after the last sample
+     */
+    private static long replay(RepCounter counter, float[][] trace, long startNs) {
+        long timestampNs = startNs;
+        for (float[] values : trace) {
+            counter.onSample(values[0], values[1], values[2], timestampNs);
+            timestampNs += SAMPLE_NS;
+        }
+        return timestampNs;
+    }
+}
@@ -0,0 +1,172 @@
+package com.s23010285.desk.service;
+
+import com.s23010285.desk.ManualScheduledExecutor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Publishes step totals through StepEventBus on a fake clock and checks what each subscriber hears
+ */
+public class StepEventBusTest {
+
+    // Subscribers are called right away on the thread that delivers
+    private static final Executor DIRECT = Runnable::run;
+
+    // timer is both the bus's clock and its delay timer
+    private ManualScheduledExecutor timer;
+    private StepEventBus bus;
+
+    @Before
+    public void setUp() {
+        timer = new ManualScheduledExecutor();
+        bus = new StepEventBus(timer::now, timer);
+    }
+
+    @Test
+    public void unlimitedSubscriberHearsEveryTotal() {
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener, 0, DIRECT);
+        for (int total = 1; total <= 5; total++) {
+            bus.publish(total);
+        }
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), listener.totals);
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void stepsFasterThanTheRateAreCoalesced() {
+        RecordingListener listener = new RecordingListener();
+        // Four a second is one delivery every 250 ms
+        bus.subscribe(listener, 4, DIRECT);
+        bus.publish(1);
+        assertEquals(Arrays.asList(1), listener.totals);
+
+        // Three more steps inside the interval wait as one delivery of the newest total
+        for (int total = 2; total <= 4; total++) {
+            timer.advance(50);
+            bus.publish(total);
+        }
+        assertEquals(Arrays.asList(1), listener.totals);
+        assertEquals(1, timer.getPendingCount());
+        timer.advance(99);
+        assertEquals(Arrays.asList(1), listener.totals);
+        timer.advance(1);
+        assertEquals(Arrays.asList(1, 4), listener.totals);
+
+        // A step after a quiet interval goes out at once
+        timer.advance(400);
+        bus.publish(5);
+        assertEquals(Arrays.asList(1, 4, 5), listener.totals);
+    }
+
+    @Test
+    public void eachSubscriberHasItsOwnRate() {
+        RecordingListener every = new RecordingListener();
+        RecordingListener twice = new RecordingListener();
+        bus.subscribe(every, 0, DIRECT);
+        bus.subscribe(twice, 2, DIRECT);
+        // A step every 100 ms for two seconds
+        for (int total = 1; total <= 20; total++) {
+            bus.publish(total);
+            timer.advance(100);
+        }
+        timer.advance(1_000);
+        assertEquals(20, every.totals.size());
+        // One delivery per 500 ms, each with the total there is when it runs, ending on the newest
+        assertEquals(Arrays.asList(1, 5, 10, 15, 20), twice.totals);
+    }
+
+    @Test
+    public void unsubscribeDropsAWaitingDelivery() {
+        RecordingListener listener = new RecordingListener();
+        StepEventBus.Subscription subscription = bus.subscribe(listener, 1, DIRECT);
+        bus.publish(1);
+        bus.publish(2);
+        assertEquals(1, timer.getPendingCount());
+        bus.unsubscribe(subscription);
+        timer.advance(2_000);
+        assertEquals(Arrays.asList(1), listener.totals);
+        assertEquals(0, bus.getSubscriberCount());
+    }
+
+    @Test
+    public void unsubscribeDuringDispatch() {
+        RecordingListener second = new RecordingListener();
+        RecordingListener third = new RecordingListener();
+        // The first subscriber leaves, and removes the second, while it is being told about a step
+        RecordingListener first = new RecordingListener() {
+            @Override
+            public void onStepDetected(int totalSteps) {
+                super.onStepDetected(totalSteps);
+                bus.unsubscribe(this);
+                bus.unsubscribe(second);
+            }
+        };
+        bus.subscribe(first, 0, DIRECT);
+        bus.subscribe(second, 0, DIRECT);
+        bus.subscribe(third, 0, DIRECT);
+
+        bus.publish(1);
+        // The publish already going through the list skips the removed subscriber, the rest still hear it
+        assertEquals(Arrays.asList(1), first.totals);
+        assertEquals(Arrays.<Integer>asList(), second.totals);
+        assertEquals(Arrays.asList(1), third.totals);
+        assertEquals(1, bus.getSubscriberCount());
+
+        bus.publish(2);
+        assertEquals(Arrays.asList(1), first.totals);
+        assertEquals(Arrays.asList(1, 2), third.totals);
+    }
+
+    @Test
+    public void resetIsNeverHeldBack() {
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener, 1, DIRECT);
+        bus.publish(7);
+        bus.publishReset();
+        assertEquals(1, listener.resets);
+        // Counting starts again, the first new total waits out the interval like any other
+        bus.publish(1);
+        assertEquals(Arrays.asList(7), listener.totals);
+        timer.advance(1_000);
+        assertEquals(Arrays.asList(7, 1), listener.totals);
+    }
+
+    @Test
+    public void shutdownStopsTheTimer() {
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener, 1, DIRECT);
+        bus.publish(1);
+        bus.publish(2);
+        bus.shutdown();
+        assertTrue(timer.isShutdown());
+        assertEquals(0, bus.getSubscriberCount());
+        assertEquals(Arrays.asList(1), listener.totals);
+    }
+
+    /**
+     * Remembers every total and reset it is told about
+     */
+    private static class RecordingListener implements StepDetectorService.StepDetectionListener {
+        final List<Integer> totals = new ArrayList<>();
+        int resets = 0;
+
+        @Override
+        public void onStepDetected(int totalSteps) {
+            totals.add(totalSteps);
+        }
+
+        @Override
+        public void onStepCountReset() {
+            resets++;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.s23010285.desk.service;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays synthetic step detector / step counter streams through StepFusion
+ */
+public class StepFusionTest {
+
+    // Steps are half a second apart, which is a normal walking cadence
+    private static final long STEP_NS = 500_000_000L;
+    // The step counter counts since boot, so it never starts at zero
+    private static final long COUNTER_AT_START = 48_213;
+
+    private StepFusion fusion;
+
+    @Before
+    public void setUp() {
+        fusion = new StepFusion();
+    }
+
+    @Test
+    public void detectorStepsAreCountedImmediately() {
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(i, fusion.onDetectorStep(i * STEP_NS));
+        }
+    }
+
+    @Test
+    public void counterReadingThatAgreesWithDetectorChangesNothing() {
+        replayDetector(1, 10);
+        assertEquals(10, fusion.onCounterReading(COUNTER_AT_START, 0));
+        assertEquals(10, fusion.onCounterReading(COUNTER_AT_START + 10, 10 * STEP_NS));
+        assertEquals(0, fusion.getCorrectedSteps());
+    }
+
+    @Test
+    public void counterCorrectsDroppedDetectorEvents() {
+        fusion.onCounterReading(COUNTER_AT_START, 0);
+        // 20 real steps, but the detector drops every fifth one
+        for (int step = 1; step <= 20; step++) {
+            if (step % 5 != 0) {
+                fusion.onDetectorStep(step * STEP_NS);
+            }
+        }
+        assertEquals(16, fusion.getTotal());
+
+        // The batched counter reading covers all 20 steps
+        assertEquals(20, fusion.onCounterReading(COUNTER_AT_START + 20, 20 * STEP_NS));
+        assertEquals(4, fusion.getCorrectedSteps());
+
+        // New detector steps continue on top of the corrected total
+        assertEquals(21, fusion.onDetectorStep(21 * STEP_NS));
+    }
+
+    @Test
+    public void detectorStepsNewerThanLaggingCounterReadingAreKept() {
+        fusion.onCounterReading(COUNTER_AT_START, 0);
+        replayDetector(1, 30);
+
+        // The counter is batched: this reading only covers the first 25 steps
+        assertEquals(30, fusion.onCounterReading(COUNTER_AT_START + 25, 25 * STEP_NS));
+
+        // If the detector dropped two of those first 25 steps the counter still fills them in
+        fusion.reset();
+        fusion.onCounterReading(COUNTER_AT_START, 0);
+        for (int step = 1; step <= 30; step++) {
+            if (step != 7 && step != 13) {
+                fusion.onDetectorStep(step * STEP_NS);
+            }
+        }
+        assertEquals(28, fusion.getTotal());
+        assertEquals(30, fusion.onCounterReading(COUNTER_AT_START + 25, 25 * STEP_NS));
+    }
+
+    @Test
+    public void totalNeverGoesBackwardsWhenDetectorOverCounts() {
+        fusion.onCounterReading(COUNTER_AT_START, 0);
+        // 10 detector events but the counter only agrees with 8 of them
+        replayDetector(1, 10);
+        assertEquals(10, fusion.onCounterReading(COUNTER_AT_START + 8, 10 * STEP_NS));
+
+        // Steps that only the counter sees are absorbed until it passes the shown total
+        assertEquals(10, fusion.onCounterReading(COUNTER_AT_START + 10, 12 * STEP_NS));
+        assertEquals(11, fusion.onCounterReading(COUNTER_AT_START + 11, 13 * STEP_NS));
+    }
+
+    @Test
+    public void firstCounterReadingAfterDetectorStepsSetsCorrectBaseline() {
+        // The counter's first batch arrives late, after 6 detector steps
+        replayDetector(1, 6);
+        // Its reading was taken at step 4, so 4 of those steps are already inside the value
+        assertEquals(6, fusion.onCounterReading(COUNTER_AT_START + 4, 4 * STEP_NS));
+        assertEquals(4, fusion.getCounterSteps());
+
+        // A later reading covering everything lines up exactly
+        assertEquals(6, fusion.onCounterReading(COUNTER_AT_START + 6, 6 * STEP_NS));
+        assertEquals(0, fusion.getCorrectedSteps());
+    }
+
+    @Test
+    public void detectorOutageIsFilledInByCounter() {
+        fusion.onCounterReading(COUNTER_AT_START, 0);
+        replayDetector(1, 10);
+        // The detector goes silent for 100 steps (e.g. the app was throttled) - only the counter saw them
+        assertEquals(110, fusion.onCounterReading(COUNTER_AT_START + 110, 110 * STEP_NS));
+        // Detector events resume afterwards
+        replayDetector(111, 115);
+        assertEquals(115, fusion.getTotal());
+    }
+
+    @Test
+    public void resetStartsFromZeroWithNewBaseline() {
+        fusion.onCounterReading(COUNTER_AT_START, 0);
+        replayDetector(1, 10);
+        fusion.reset();
+        assertEquals(0, fusion.getTotal());
+
+        assertEquals(0, fusion.onCounterReading(COUNTER_AT_START + 10, 10 * STEP_NS));
+        assertEquals(1, fusion.onDetectorStep(11 * STEP_NS));
+        assertEquals(3, fusion.onCounterReading(COUNTER_AT_START + 13, 13 * STEP_NS));
+    }
+
+    /**
+     * Feed detector events for steps first..last, each STEP_NS apart
+     */
+    private void replayDetector(int first, int last) {
+        for (int step = first; step <= last; step++) {
+            fusion.onDetectorStep(step * STEP_NS);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.s23010285.desk.utils;
+
+import com.s23010285.desk.ManualScheduledExecutor;
+import com.s23010285.desk.utils.AchievementManager.Achievement;
+import com.s23010285.desk.utils.AchievementManager.AchievementLevel;
+import com.s23010285.desk.utils.AchievementManager.AchievementType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives AchievementTracker with progress events and checks what it writes
+ * Writes run on a manual executor, so the debounce only passes when a test moves its clock
+ * How much an event costs gets measured on a device by AchievementTrackerBenchmark
+ */
+public class AchievementTrackerTest {
+
+    // Enough events to be sure a long session's worth of progress still costs a single write
+    private static final int MANY_EVENTS = 200_000;
+
+    private ManualScheduledExecutor executor;
+    private RecordingStore store;
+
+    @Before
+    public void setUp() {
+        executor = new ManualScheduledExecutor();
+        store = new RecordingStore();
+    }
+
+    @Test
+    public void counterProgressUnlocksEasiestFirstAndAddsPoints() {
+        List<Achievement> achievements = achievements();
+        AchievementTracker tracker = new AchievementTracker(achievements, 0, 1, store, executor, 10);
+
+        assertEquals(0, tracker.updateProgress(AchievementType.EXERCISE_COUNT, 8));
+        assertEquals(1, tracker.updateProgress(AchievementType.EXERCISE_COUNT, 2));
+        assertTrue(find(achievements, "exercises_10").isUnlocked);
+        assertFalse(find(achievements, "exercises_50").isUnlocked);
+        assertEquals(5, tracker.getTotalPoints());
+
+        // One event can unlock several achievements
+        assertEquals(2, tracker.updateProgress(AchievementType.EXERCISE_COUNT, 500));
+        assertEquals(175, tracker.getTotalPoints());
+        assertEquals(2, tracker.getUserLevel());
+        // Unlocked achievements stop counting
+        assertEquals(10, find(achievements, "exercises_10").currentProgress);
+
+        String[] order = new String[3];
+        for (int i = 0; i < 3; i++) {
+            order[i] = tracker.getByType(AchievementType.EXERCISE_COUNT)[i].id;
+        }
+        assertArrayEquals(new String[] {"exercises_10", "exercises_50", "exercises_500"}, order);
+    }
+
+    @Test
+    public void onlyChangedAchievementsAreWritten() {
+        AchievementTracker tracker = new AchievementTracker(achievements(), 0, 1, store, executor, 10);
+        tracker.updateProgress(AchievementType.MEDITATION_SESSIONS, 5);
+        executor.advance(9);
+        assertTrue(store.writes.isEmpty());
+        executor.advance(1);
+        assertEquals(1, store.writes.size());
+
+        Write write = store.writes.get(0);
+        assertEquals(Arrays.asList("meditation_10", "meditation_100"), write.ids);
+        assertEquals(Arrays.asList(5, 5), write.progress);
+        // Nothing was unlocked, so the points aren't written
+        assertFalse(write.totalsChanged);
+
+        tracker.updateProgress(AchievementType.MEDITATION_SESSIONS, 6);
+        executor.advance(10);
+        assertEquals(2, store.writes.size());
+        write = store.writes.get(1);
+        assertEquals(Arrays.asList("meditation_10", "meditation_100"), write.ids);
+        assertEquals(Arrays.asList(true, false), write.unlocked);
+        assertTrue(write.totalsChanged);
+        assertEquals(30, write.totalPoints);
+
+        // Only the locked one is left to change
+        tracker.updateProgress(AchievementType.MEDITATION_SESSIONS, 1);
+        executor.advance(10);
+        assertEquals(3, store.writes.size());
+        assertEquals(Arrays.asList("meditation_100"), store.writes.get(2).ids);
+    }
+
+    @Test
+    public void burstOfEventsIsOneWrite() {
+        AchievementTracker tracker = new AchievementTracker(achievements(), 0, 1, store, executor, 200);
+        // An event every 2 ms, the write waits for the debounce from the first one
+        for (int i = 0; i < 40; i++) {
+            tracker.updateProgress(AchievementType.MEDITATION_SESSIONS, 1);
+            executor.advance(2);
+        }
+        assertTrue(store.writes.isEmpty());
+        executor.advance(120);
+        assertEquals(1, store.writes.size());
+        assertEquals(Arrays.asList(10, 40), store.writes.get(0).progress);
+        executor.advance(1_000);
+        assertEquals(1, store.writes.size());
+    }
+
+    @Test
+    public void stepTotalReportedOnEveryStepIsCountedOnce() {
+        List<Achievement> achievements = achievements();
+        AchievementTracker tracker = new AchievementTracker(achievements, 0, 1, store, executor, 60_000);
+        // The session reports today's total after every step, as well as when the screen refreshes
+        int unlocked = 0;
+        for (int steps = 1; steps <= 1_500; steps++) {
+            unlocked += tracker.updateProgress(AchievementType.STEP_GOAL, steps);
+            unlocked += tracker.updateProgress(AchievementType.STEP_GOAL, steps);
+        }
+        assertEquals(1, unlocked);
+        assertEquals(1_000, find(achievements, "steps_1000").currentProgress);
+        assertFalse(find(achievements, "steps_10000").isUnlocked);
+        assertEquals(1_500, tracker.getProgress(find(achievements, "steps_10000")));
+        assertEquals(15, tracker.getTotalPoints());
+
+        tracker.flush();
+        executor.runDue();
+        // Only the crossing is saved, not the steps on the way to the next goal
+        assertEquals(Arrays.asList("steps_1000"), store.writes.get(0).ids);
+    }
+
+    @Test
+    public void gaugeBelowNextRequirementCostsNoWrite() {
+        AchievementTracker tracker = new AchievementTracker(achievements(), 0, 1, store, executor, 10);
+        for (int steps = 1; steps < 1_000; steps++) {
+            assertEquals(0, tracker.updateProgress(AchievementType.STEP_GOAL, steps));
+        }
+        tracker.flush();
+        executor.advance(60_000);
+        assertTrue(store.writes.isEmpty());
+    }
+
+    @Test
+    public void gaugeKeepsItsBestValue() {
+        List<Achievement> achievements = achievements();
+        AchievementTracker tracker = new AchievementTracker(achievements, 0, 1, store, executor, 60_000);
+
+        // A 45 minute workout, then a shorter one, then the same again
+        assertEquals(1, tracker.updateProgress(AchievementType.TIME_GOAL, 45));
+        assertEquals(0, tracker.updateProgress(AchievementType.TIME_GOAL, 20));
+        assertEquals(0, tracker.updateProgress(AchievementType.TIME_GOAL, 45));
+        assertTrue(find(achievements, "workout_time_30").isUnlocked);
+        assertEquals(45, tracker.getProgress(find(achievements, "workout_time_60")));
+
+        // A streak that breaks and builds up again only counts once it beats the old one
+        assertEquals(1, tracker.updateProgress(AchievementType.WORKOUT_STREAK, 3));
+        assertEquals(0, tracker.updateProgress(AchievementType.WORKOUT_STREAK, 1));
+        assertEquals(0, tracker.updateProgress(AchievementType.WORKOUT_STREAK, 3));
+        assertEquals(1, tracker.updateProgress(AchievementType.WORKOUT_STREAK, 7));
+
+        tracker.flush();
+        executor.runDue();
+        assertEquals(1, store.writes.size());
+        assertEquals(Arrays.asList("streak_3", "streak_7", "workout_time_30"), store.writes.get(0).ids);
+        assertEquals(60, tracker.getTotalPoints());
+    }
+
+    @Test
+    public void flushWritesWithoutWaiting() {
+        AchievementTracker tracker = new AchievementTracker(achievements(), 0, 1, store, executor, 60_000);
+        tracker.updateProgress(AchievementType.MEDITATION_SESSIONS, 1);
+        tracker.flush();
+        executor.runDue();
+        assertEquals(Arrays.asList("meditation_10", "meditation_100"), store.writes.get(0).ids);
+
+        // Nothing changed since, so there is nothing to write
+        tracker.flush();
+        executor.advance(60_000);
+        assertEquals(1, store.writes.size());
+    }
+
+    @Test
+    public void unlockedTypeIsLeftAlone() {
+        List<Achievement> achievements = achievements();
+        for (Achievement achievement : achievements) {
+            if (achievement.type == AchievementType.SOCIAL_SHARING) {
+                achievement.isUnlocked = true;
+                achievement.currentProgress = 5;
+            }
+        }
+        AchievementTracker tracker = new AchievementTracker(achievements, 20, 1, store, executor, 10);
+        assertEquals(0, tracker.updateProgress(AchievementType.SOCIAL_SHARING, 1));
+        tracker.flush();
+        executor.advance(60_000);
+        assertTrue(store.writes.isEmpty());
+        assertEquals(5, find(achievements, "share_5").currentProgress);
+    }
+
+    @Test
+    public void resetWritesEverything() {
+        List<Achievement> achievements = achievements();
+        AchievementTracker tracker = new AchievementTracker(achievements, 0, 1, store, executor, 60_000);
+        tracker.updateProgress(AchievementType.EXERCISE_COUNT, 50);
+        tracker.updateProgress(AchievementType.STEP_GOAL, 1_200);
+        tracker.reset();
+        // The gauge starts over too
+        assertEquals(0, tracker.getProgress(find(achievements, "steps_1000")));
+        tracker.flush();
+        executor.runDue();
+        Write write = store.writes.get(0);
+        assertEquals(achievements.size(), write.ids.size());
+        assertTrue(write.totalsChanged);
+        assertEquals(0, write.totalPoints);
+        assertEquals(1, write.userLevel);
+        assertEquals(0, tracker.getTotalPoints());
+    }
+
+    @Test
+    public void manyCounterEventsAreOneWrite() {
+        // Requirements out of reach, so every counter event does the full work of adding progress and marking it
+        List<Achievement> achievements = outOfReachAchievements();
+        AchievementTracker tracker = new AchievementTracker(achievements, 0, 1, store, executor, 60_000);
+        List<AchievementType> counters = new ArrayList<>();
+        for (AchievementType type : AchievementType.values()) {
+            if (type.kind == AchievementManager.ProgressKind.COUNTER) {
+                counters.add(type);
+            }
+        }
+        AchievementType[] types = counters.toArray(new AchievementType[0]);
+
+        for (int i = 0; i < MANY_EVENTS; i++) {
+            tracker.updateProgress(types[i % types.length], ((i / types.length) & 1) == 0 ? 1 : -1);
+        }
+
+        tracker.flush();
+        executor.runDue();
+        // Thousands of events, still one write, of every counter achievement
+        assertEquals(1, store.writes.size());
+        assertEquals(types.length * 5, store.writes.get(0).ids.size());
+    }
+
+    @Test
+    public void stepReportsBelowEveryGoalCostNoWrite() {
+        List<Achievement> achievements = outOfReachAchievements();
+        AchievementTracker tracker = new AchievementTracker(achievements, 0, 1, store, executor, 60_000);
+
+        // Today's total after every step, reported twice as the session does; no goal is ever reached
+        for (int steps = 1; steps <= MANY_EVENTS / 2; steps++) {
+            tracker.updateProgress(AchievementType.STEP_GOAL, steps);
+            tracker.updateProgress(AchievementType.STEP_GOAL, steps);
+        }
+
+        tracker.flush();
+        executor.advance(60_000);
+        // No requirement was crossed, so there was nothing to save
+        assertTrue(store.writes.isEmpty());
+    }
+
+    /**
+     * Five achievements of every type, each out of reach
+     */
+    private static List<Achievement> outOfReachAchievements() {
+        List<Achievement> achievements = new ArrayList<>();
+        for (AchievementType type : AchievementType.values()) {
+            for (int i = 1; i <= 5; i++) {
+                achievements.add(new Achievement(type.name() + "_" + i, "", "", type,
+                        AchievementLevel.values()[i - 1], Integer.MAX_VALUE - i, 0, 10));
+            }
+        }
+        return achievements;
+    }
+
+    /**
+     * A cut-down copy of the app's achievements, deliberately not in requirement order
+     */
+    private static List<Achievement> achievements() {
+        return new ArrayList<>(Arrays.asList(
+                achievement("streak_30", AchievementType.WORKOUT_STREAK, 30, 100),
+                achievement("streak_3", AchievementType.WORKOUT_STREAK, 3, 10),
+                achievement("streak_7", AchievementType.WORKOUT_STREAK, 7, 25),
+                achievement("steps_1000", AchievementType.STEP_GOAL, 1_000, 15),
+                achievement("steps_10000", AchievementType.STEP_GOAL, 10_000, 50),
+                achievement("exercises_50", AchievementType.EXERCISE_COUNT, 50, 20),
+                achievement("exercises_500", AchievementType.EXERCISE_COUNT, 500, 150),
+                achievement("exercises_10", AchievementType.EXERCISE_COUNT, 10, 5),
+                achievement("workout_time_60", AchievementType.TIME_GOAL, 60, 75),
+                achievement("workout_time_30", AchievementType.TIME_GOAL, 30, 25),
+                achievement("meditation_10", AchievementType.MEDITATION_SESSIONS, 10, 30),
+                achievement("meditation_100", AchievementType.MEDITATION_SESSIONS, 100, 300),
+                achievement("share_5", AchievementType.SOCIAL_SHARING, 5, 20)));
+    }
+
+    private static Achievement achievement(String id, AchievementType type, int requirement, int points) {
+        return new Achievement(id, id, id, type, AchievementLevel.BRONZE, requirement, 0, points);
+    }
+
+    private static Achievement find(List<Achievement> achievements, String id) {
+        for (Achievement achievement : achievements) {
+            if (achievement.id.equals(id)) {
+                return achievement;
+            }
+        }
+        throw new AssertionError("No achievement " + id);
+    }
+
+    /**
+     * One call to the store
+     */
+    private static final class Write {
+        final List<String> ids = new ArrayList<>();
+        final List<Boolean> unlocked = new ArrayList<>();
+        final List<Integer> progress = new ArrayList<>();
+        boolean totalsChanged;
+        int totalPoints;
+        int userLevel;
+    }
+
+    /**
+     * Keeps every write so tests can check them
+     */
+    private static final class RecordingStore implements AchievementTracker.Store {
+
+        final List<Write> writes = new ArrayList<>();
+
+        @Override
+        public void write(List<AchievementTracker.Change> changes, boolean totalsChanged,
+                                       int totalPoints, int userLevel) {
+            Write write = new Write();
+            for (AchievementTracker.Change change : changes) {
+                write.ids.add(change.id);
+                write.unlocked.add(change.unlocked);
+                write.progress.add(change.progress);
+            }
+            write.totalsChanged = totalsChanged;
+            write.totalPoints = totalPoints;
+            write.userLevel = userLevel;
+            writes.add(write);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.s23010285.desk.utils;
+
+import com.s23010285.desk.utils.BreathingPattern.Phase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs BreathingEngine frame by frame and checks phases, the circle scale and phase changes
+ */
+public class BreathingEngineTest {
+
+    private static final float MIN_SCALE = 0.6f;
+    private static final float MAX_SCALE = 1.4f;
+    private static final float DELTA = 1e-4f;
+    // About 60 frames per second
+    private static final long FRAME_MS = 16;
+
+    @Test
+    public void phaseBoundariesFollowThePattern() {
+        BreathingEngine engine = new BreathingEngine(BreathingPattern.FOUR_SEVEN_EIGHT, MIN_SCALE, MAX_SCALE);
+        engine.start(1_000);
+
+        assertPhaseAt(engine, 1_000, Phase.INHALE, 4_000);
+        assertPhaseAt(engine, 1_000 + 3_999, Phase.INHALE, 1);
+        assertPhaseAt(engine, 1_000 + 4_000, Phase.HOLD_IN, 7_000);
+        assertPhaseAt(engine, 1_000 + 11_000, Phase.EXHALE, 8_000);
+        // 4-7-8 has no hold after breathing out, so the next breath starts straight away
+        assertPhaseAt(engine, 1_000 + 18_999, Phase.EXHALE, 1);
+        assertPhaseAt(engine, 1_000 + 19_000, Phase.INHALE, 4_000);
+        // Many breaths later
+        assertPhaseAt(engine, 1_000 + 19_000 * 50 + 4_500, Phase.HOLD_IN, 6_500);
+    }
+
+    @Test
+    public void scaleEasesBetweenMinAndMax() {
+        BreathingEngine engine = new BreathingEngine(BreathingPattern.BOX, MIN_SCALE, MAX_SCALE);
+        engine.start(0);
+
+        engine.update(0);
+        assertEquals(MIN_SCALE, engine.getScale(), DELTA);
+        // Halfway through breathing in the curve is halfway
+        engine.update(2_000);
+        assertEquals((MIN_SCALE + MAX_SCALE) / 2, engine.getScale(), DELTA);
+        // A quarter of the way it is still slow, sin² of 45° / 2
+        engine.update(1_000);
+        assertEquals(MIN_SCALE + (MAX_SCALE - MIN_SCALE) * 0.1464466f, engine.getScale(), DELTA);
+        engine.update(4_000);
+        assertEquals(MAX_SCALE, engine.getScale(), DELTA);
+        engine.update(6_000);
+        assertEquals(MAX_SCALE, engine.getScale(), DELTA);
+        engine.update(10_000);
+        assertEquals((MIN_SCALE + MAX_SCALE) / 2, engine.getScale(), DELTA);
+        engine.update(14_000);
+        assertEquals(MIN_SCALE, engine.getScale(), DELTA);
+    }
+
+    @Test
+    public void easingTableMatchesTheCurve() {
+        assertEquals(0f, BreathingEngine.ease(0f), 0f);
+        assertEquals(1f, BreathingEngine.ease(1f), 0f);
+        // Out of range fractions are clamped
+        assertEquals(0f, BreathingEngine.ease(-0.5f), 0f);
+        assertEquals(1f, BreathingEngine.ease(1.5f), 0f);
+        // Between table steps the lookup stays close to the real curve
+        float previous = 0f;
+        for (int i = 0; i <= 1000; i++) {
+            float fraction = i / 1000f;
+            float eased = BreathingEngine.ease(fraction);
+            assertEquals((float) ((1 - Math.cos(Math.PI * fraction)) / 2), eased, 1e-4f);
+            assertTrue("the curve never goes back", eased >= previous);
+            previous = eased;
+        }
+    }
+
+    @Test
+    public void phaseChangeIsReportedOncePerPhase() {
+        BreathingEngine engine = new BreathingEngine(BreathingPattern.FOUR_SEVEN_EIGHT, MIN_SCALE, MAX_SCALE);
+        engine.start(0);
+        List<Phase> changes = new ArrayList<>();
+        long cycleMs = BreathingPattern.FOUR_SEVEN_EIGHT.getCycleMs();
+        for (long now = 0; now < 3 * cycleMs; now += FRAME_MS) {
+            if (engine.update(now)) {
+                changes.add(engine.getPhase());
+            }
+        }
+        assertEquals(Arrays.asList(
+                Phase.INHALE, Phase.HOLD_IN, Phase.EXHALE,
+                Phase.INHALE, Phase.HOLD_IN, Phase.EXHALE,
+                Phase.INHALE, Phase.HOLD_IN, Phase.EXHALE), changes);
+    }
+
+    @Test
+    public void pausedClockHoldsThePhase() {
+        BreathingEngine engine = new BreathingEngine(BreathingPattern.BOX, MIN_SCALE, MAX_SCALE);
+        engine.start(0);
+        assertTrue(engine.update(0));
+        assertTrue(engine.update(5_000));
+        float scale = engine.getScale();
+        // The session clock doesn't move while paused, so every frame sees the same time
+        for (int frame = 0; frame < 100; frame++) {
+            assertFalse(engine.update(5_000));
+        }
+        assertEquals(Phase.HOLD_IN, engine.getPhase());
+        assertEquals(scale, engine.getScale(), 0f);
+    }
+
+    @Test
+    public void switchingPatternStartsAFreshBreath() {
+        BreathingEngine engine = new BreathingEngine(BreathingPattern.BOX, MIN_SCALE, MAX_SCALE);
+        engine.start(0);
+        engine.update(6_000);
+        assertEquals(Phase.HOLD_IN, engine.getPhase());
+
+        // The same pattern again doesn't cut the breath short
+        engine.setPattern(BreathingPattern.BOX, 6_000);
+        assertFalse(engine.update(6_100));
+        assertEquals(Phase.HOLD_IN, engine.getPhase());
+
+        engine.setPattern(BreathingPattern.COHERENT, 6_100);
+        assertTrue(engine.update(6_100));
+        assertEquals(Phase.INHALE, engine.getPhase());
+        assertEquals(MIN_SCALE, engine.getScale(), DELTA);
+        assertEquals(5_455, engine.getPhaseRemainingMs());
+    }
+
+    private static void assertPhaseAt(BreathingEngine engine, long nowMs, Phase phase, long remainingMs) {
+        engine.update(nowMs);
+        assertEquals(phase, engine.getPhase());
+        assertEquals(remainingMs, engine.getPhaseRemainingMs());
+    }
+}
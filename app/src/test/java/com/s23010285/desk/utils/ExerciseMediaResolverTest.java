@@ -0,0 +1,180 @@
+package com.s23010285.desk.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks each step of ExerciseMediaResolver's match order, and compares its automaton with a plain
+ * search over the keys and keywords on random names
+ */
+public class ExerciseMediaResolverTest {
+
+    private static final String DEFAULT = "default";
+
+    @Test
+    public void exactKeyWins() {
+        ExerciseMediaResolver<String> resolver = new ExerciseMediaResolver.Builder<>(DEFAULT)
+                .key("wall pushups", "wall")
+                .key("push ups", "push")
+                .keywords("rule", "wall")
+                .build();
+        assertEquals("wall", resolver.resolve("Wall Pushups"));
+        assertEquals("push", resolver.resolve("  PUSH UPS "));
+    }
+
+    @Test
+    public void longestKeyInsideTheNameWins() {
+        ExerciseMediaResolver<String> resolver = new ExerciseMediaResolver.Builder<>(DEFAULT)
+                .key("squat", "short")
+                .key("chair squats", "long")
+                .key("lunge", "lunge")
+                .keywords("rule", "squat")
+                .build();
+        assertEquals("long", resolver.resolve("slow chair squats"));
+        assertEquals("short", resolver.resolve("jump squat"));
+        // Ties go to the key added first
+        assertEquals("short", resolver.resolve("lunge squat"));
+    }
+
+    @Test
+    public void shortestKeyContainingTheNameComesNext() {
+        ExerciseMediaResolver<String> resolver = new ExerciseMediaResolver.Builder<>(DEFAULT)
+                .key("side planks", "side")
+                .key("planks", "planks")
+                .keywords("rule", "plan")
+                .build();
+        assertEquals("planks", resolver.resolve("plank"));
+        assertEquals("planks", resolver.resolve("plan"));
+    }
+
+    @Test
+    public void firstKeywordRuleThenDefault() {
+        ExerciseMediaResolver<String> resolver = new ExerciseMediaResolver.Builder<>(DEFAULT)
+                .key("walking", "walking")
+                .keywords("push", "push", "press")
+                .keywords("squat", "squat", "sit")
+                .build();
+        // "sit" comes later in the name but "press" belongs to the earlier rule
+        assertEquals("push", resolver.resolve("seated overhead press"));
+        assertEquals("squat", resolver.resolve("sumo squat hold"));
+        assertEquals(DEFAULT, resolver.resolve("jumping jacks"));
+        assertEquals(DEFAULT, resolver.resolve(null));
+        assertEquals(DEFAULT, resolver.resolve("   "));
+    }
+
+    @Test
+    public void sharedRulesNeedTheirKeys() {
+        ExerciseMediaResolver.Builder<String> builder = new ExerciseMediaResolver.Builder<>(DEFAULT)
+                .key("push ups", "push ups");
+        try {
+            builder.exerciseKeywords();
+            fail("squats has no media");
+        } catch (IllegalStateException expected) {
+            // The rules give the media of their keys, so every key has to be there
+        }
+    }
+
+    @Test
+    public void managersUseTheSharedRules() {
+        assertSame(ExerciseVideoManager.getVideoData("push ups"), ExerciseVideoManager.getVideoData("incline bench press"));
+        assertSame(ExerciseVideoManager.getVideoData("squats"), ExerciseVideoManager.getVideoData("sit to stand"));
+        assertSame(ExerciseVideoManager.getVideoData("desk stretches"), ExerciseVideoManager.getVideoData("hip opener stretch"));
+        assertSame(ExerciseVideoManager.getVideoData("lite cardio"), ExerciseVideoManager.getVideoData("stepping in place"));
+        assertSame(ExerciseVideoManager.getVideoData("meditation"), ExerciseVideoManager.getVideoData("mindful eating"));
+    }
+
+    @Test
+    public void matchesAPlainSearchOnRandomNames() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            Map<String, String> keys = new LinkedHashMap<>();
+            List<String[]> rules = new ArrayList<>();
+            ExerciseMediaResolver.Builder<String> builder = new ExerciseMediaResolver.Builder<>(DEFAULT);
+            int keyCount = random.nextInt(12);
+            for (int i = 0; i < keyCount; i++) {
+                String key = ExerciseMediaResolver.normalize(randomText(random, 1, 5));
+                if (key.isEmpty()) {
+                    continue;
+                }
+                builder.key(key, "key " + key);
+                keys.put(key, "key " + key);
+            }
+            int ruleCount = random.nextInt(6);
+            for (int i = 0; i < ruleCount; i++) {
+                String[] words = new String[1 + random.nextInt(3)];
+                for (int w = 0; w < words.length; w++) {
+                    words[w] = randomText(random, 1, 3);
+                }
+                builder.keywords("rule " + i, words);
+                rules.add(words);
+            }
+            ExerciseMediaResolver<String> resolver = builder.build();
+
+            for (int n = 0; n < 200; n++) {
+                String name = randomText(random, 0, 9);
+                assertEquals("name \"" + name + "\" with keys " + keys.keySet(),
+                        plainSearch(keys, rules, name), resolver.resolve(name));
+            }
+        }
+    }
+
+    /**
+     * The match order from ExerciseMediaResolver's documentation, checking every key and keyword in turn
+     */
+    private static String plainSearch(Map<String, String> keys, List<String[]> rules, String exerciseName) {
+        String name = ExerciseMediaResolver.normalize(exerciseName);
+        if (name.isEmpty()) {
+            return DEFAULT;
+        }
+        if (keys.containsKey(name)) {
+            return keys.get(name);
+        }
+        String longest = null;
+        for (String key : keys.keySet()) {
+            if (name.contains(key) && (longest == null || key.length() > longest.length())) {
+                longest = key;
+            }
+        }
+        if (longest != null) {
+            return keys.get(longest);
+        }
+        String shortest = null;
+        for (String key : keys.keySet()) {
+            if (key.contains(name) && (shortest == null || key.length() < shortest.length())) {
+                shortest = key;
+            }
+        }
+        if (shortest != null) {
+            return keys.get(shortest);
+        }
+        for (int i = 0; i < rules.size(); i++) {
+            for (String word : rules.get(i)) {
+                String keyword = ExerciseMediaResolver.normalize(word);
+                if (!keyword.isEmpty() && name.contains(keyword)) {
+                    return "rule " + i;
+                }
+            }
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * Text from a few letters, so keys, keywords and names overlap often
+     */
+    private static String randomText(Random random, int minLength, int maxLength) {
+        String letters = "abcA ";
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append(letters.charAt(random.nextInt(letters.length())));
+        }
+        return text.toString();
+    }
+}
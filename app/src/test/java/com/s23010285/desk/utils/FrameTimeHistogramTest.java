@@ -0,0 +1,107 @@
+package com.s23010285.desk.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the bucketing, jank counting and percentiles of FrameTimeHistogram
+ */
+public class FrameTimeHistogramTest {
+
+    // A 60 Hz frame budget
+    private static final long BUDGET_NS = 16_666_667L;
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        FrameTimeHistogram histogram = new FrameTimeHistogram(BUDGET_NS);
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getPercentileMs(50), DELTA);
+        assertEquals(0.0, histogram.getMaxMs(), DELTA);
+    }
+
+    @Test
+    public void percentileIsTopOfItsHalfMillisecondBucket() {
+        FrameTimeHistogram histogram = new FrameTimeHistogram(BUDGET_NS);
+        histogram.record(8_200_000L);
+        // 8.2 ms falls in the 8.0-8.5 ms bucket
+        assertEquals(8.5, histogram.getPercentileMs(50), DELTA);
+        assertEquals(8.2, histogram.getMaxMs(), DELTA);
+
+        // Bucket edges belong to the bucket above
+        FrameTimeHistogram edge = new FrameTimeHistogram(BUDGET_NS);
+        edge.record(500_000L);
+        assertEquals(1.0, edge.getPercentileMs(50), DELTA);
+        FrameTimeHistogram zero = new FrameTimeHistogram(BUDGET_NS);
+        zero.record(0);
+        assertEquals(0.5, zero.getPercentileMs(50), DELTA);
+    }
+
+    @Test
+    public void percentilesUseNearestRank() {
+        FrameTimeHistogram histogram = new FrameTimeHistogram(BUDGET_NS);
+        // 100 frames: 1 ms, 2 ms, ... 100 ms
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1_000_000L - 1);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.0, histogram.getPercentileMs(50), DELTA);
+        assertEquals(95.0, histogram.getPercentileMs(95), DELTA);
+        assertEquals(99.0, histogram.getPercentileMs(99), DELTA);
+        assertEquals(100.0, histogram.getPercentileMs(100), DELTA);
+        // Rank 1 of 100
+        assertEquals(1.0, histogram.getPercentileMs(1), DELTA);
+    }
+
+    @Test
+    public void longFramesReportTheLongestFrame() {
+        FrameTimeHistogram histogram = new FrameTimeHistogram(BUDGET_NS);
+        for (int i = 0; i < 9; i++) {
+            histogram.record(10_000_000L);
+        }
+        // Past the 150 ms of the last real bucket
+        histogram.record(700_000_000L);
+        assertEquals(10.5, histogram.getPercentileMs(90), DELTA);
+        assertEquals(700.0, histogram.getPercentileMs(99), DELTA);
+        assertEquals(700.0, histogram.getMaxMs(), DELTA);
+    }
+
+    @Test
+    public void framesOverBudgetAreJanky() {
+        FrameTimeHistogram histogram = new FrameTimeHistogram(BUDGET_NS);
+        histogram.record(BUDGET_NS);
+        histogram.record(BUDGET_NS + 1);
+        histogram.record(40_000_000L);
+        histogram.record(-1);
+        assertEquals(3, histogram.getCount());
+        assertEquals(2, histogram.getJankyCount());
+    }
+
+    @Test
+    public void recordingFromSeveralThreadsLosesNothing() throws InterruptedException {
+        FrameTimeHistogram histogram = new FrameTimeHistogram(BUDGET_NS);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long durationNs = (t + 1) * 10_000_000L;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(durationNs);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, histogram.getCount());
+        // Only the 10 ms thread stays within budget
+        assertEquals(30_000, histogram.getJankyCount());
+        assertEquals(20.5, histogram.getPercentileMs(50), DELTA);
+        assertEquals(40.0, histogram.getMaxMs(), DELTA);
+    }
+}
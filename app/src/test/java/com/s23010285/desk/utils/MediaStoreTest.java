@@ -0,0 +1,237 @@
+package com.s23010285.desk.utils;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Syncs MediaStore against a local HTTP server standing in for the media pack host
+ */
+public class MediaStoreTest {
+
+    private static final String GIF_URL = "https://media.example/squat.gif";
+    private static final String MUSIC_URL = "https://media.example/cardio.mp3";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    // files maps each path on the server to its body
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    // objectRequests counts requests for media files, not manifests
+    private final AtomicInteger objectRequests = new AtomicInteger();
+    private URL manifestUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.startsWith("/pack/objects/")) {
+                objectRequests.incrementAndGet();
+            }
+            byte[] body = files.get(path);
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        manifestUrl = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/pack/manifest.txt");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void syncStoresVerifiedMediaByContent() throws IOException {
+        byte[] gif = bytes("gif", 3_000);
+        byte[] music = bytes("music", 5_000);
+        publish(1, entry(gif, GIF_URL), entry(music, MUSIC_URL));
+
+        MediaStore store = new MediaStore(folder.newFolder(), 1_000_000);
+        assertNull(store.get(GIF_URL));
+        assertEquals(2, store.sync(manifestUrl));
+        assertEquals(1, store.getVersion());
+
+        File local = store.get(GIF_URL);
+        assertNotNull(local);
+        assertEquals(MediaStore.hashOf(gif), local.getName());
+        assertArrayEquals(gif, Files.readAllBytes(local.toPath()));
+        assertArrayEquals(music, Files.readAllBytes(store.get(MUSIC_URL).toPath()));
+        assertNull(store.get("https://media.example/unknown.gif"));
+    }
+
+    @Test
+    public void mediaSharedByUrlsIsDownloadedOnce() throws IOException {
+        byte[] gif = bytes("shared", 2_000);
+        publish(1, entry(gif, GIF_URL), entry(gif, "https://media.example/lunge.gif"));
+
+        MediaStore store = new MediaStore(folder.newFolder(), 1_000_000);
+        assertEquals(1, store.sync(manifestUrl));
+        assertEquals(1, objectRequests.get());
+        assertEquals(store.get(GIF_URL), store.get("https://media.example/lunge.gif"));
+        assertEquals(2_000, store.getStoredBytes());
+    }
+
+    @Test
+    public void corruptDownloadIsRejectedAndRetried() throws IOException {
+        byte[] gif = bytes("gif", 3_000);
+        byte[] music = bytes("music", 5_000);
+        publish(1, entry(gif, GIF_URL), entry(music, MUSIC_URL));
+        // Same length, different content
+        byte[] corrupt = music.clone();
+        corrupt[100] ^= 1;
+        files.put("/pack/objects/" + MediaStore.hashOf(music), corrupt);
+
+        MediaStore store = new MediaStore(folder.newFolder(), 1_000_000);
+        assertEquals(1, store.sync(manifestUrl));
+        assertNotNull(store.get(GIF_URL));
+        assertNull(store.get(MUSIC_URL));
+        // The pack isn't complete, so its version isn't recorded
+        assertEquals(0, store.getVersion());
+
+        files.put("/pack/objects/" + MediaStore.hashOf(music), music);
+        objectRequests.set(0);
+        assertEquals(1, store.sync(manifestUrl));
+        assertEquals(1, objectRequests.get());
+        assertEquals(1, store.getVersion());
+        assertNotNull(store.get(MUSIC_URL));
+    }
+
+    @Test
+    public void truncatedOrOversizedDownloadIsRejected() throws IOException {
+        byte[] gif = bytes("gif", 3_000);
+        publish(1, MediaStore.hashOf(gif) + " 2999 " + GIF_URL);
+
+        MediaStore store = new MediaStore(folder.newFolder(), 1_000_000);
+        assertEquals(0, store.sync(manifestUrl));
+        assertNull(store.get(GIF_URL));
+        assertEquals(0, store.getStoredBytes());
+    }
+
+    @Test
+    public void sameVersionIsNotDownloadedAgain() throws IOException {
+        publish(1, entry(bytes("gif", 1_000), GIF_URL));
+        File directory = folder.newFolder();
+        MediaStore store = new MediaStore(directory, 1_000_000);
+        store.sync(manifestUrl);
+
+        objectRequests.set(0);
+        assertEquals(0, store.sync(manifestUrl));
+        // A restart finds the pack on disk
+        MediaStore reopened = new MediaStore(directory, 1_000_000);
+        assertEquals(1, reopened.getVersion());
+        assertNotNull(reopened.get(GIF_URL));
+        assertEquals(0, reopened.sync(manifestUrl));
+        assertEquals(0, objectRequests.get());
+    }
+
+    @Test
+    public void newVersionReplacesChangedMedia() throws IOException {
+        byte[] oldGif = bytes("old", 1_000);
+        byte[] music = bytes("music", 1_000);
+        publish(1, entry(oldGif, GIF_URL), entry(music, MUSIC_URL));
+        MediaStore store = new MediaStore(folder.newFolder(), 1_000_000);
+        store.sync(manifestUrl);
+        File oldFile = store.get(GIF_URL);
+
+        byte[] newGif = bytes("new", 1_500);
+        publish(2, entry(newGif, GIF_URL), entry(music, MUSIC_URL));
+        objectRequests.set(0);
+        assertEquals(1, store.sync(manifestUrl));
+        assertEquals(1, objectRequests.get());
+        assertArrayEquals(newGif, Files.readAllBytes(store.get(GIF_URL).toPath()));
+        // Nothing points to the old GIF any more
+        assertFalse(oldFile.exists());
+        assertEquals(2_500, store.getStoredBytes());
+    }
+
+    @Test
+    public void leastRecentlyUsedMediaIsEvictedUnderCap() throws IOException {
+        String first = "https://media.example/1.gif";
+        String second = "https://media.example/2.gif";
+        String third = "https://media.example/3.gif";
+        publish(1, entry(bytes("1", 1_000), first), entry(bytes("2", 1_000), second));
+        MediaStore store = new MediaStore(folder.newFolder(), 2_500);
+        store.sync(manifestUrl);
+        assertNotNull(store.get(first));
+        assertNotNull(store.get(second));
+        // Using the first one again makes the second the least recently used
+        assertNotNull(store.get(first));
+
+        publish(2, entry(bytes("1", 1_000), first), entry(bytes("2", 1_000), second),
+                entry(bytes("3", 1_000), third));
+        store.sync(manifestUrl);
+        assertNotNull(store.get(first));
+        assertNull(store.get(second));
+        assertNotNull(store.get(third));
+        assertEquals(2_000, store.getStoredBytes());
+
+        store.setMaxBytes(1_000);
+        assertEquals(1_000, store.getStoredBytes());
+        assertNull(store.get(first));
+        assertNotNull(store.get(third));
+    }
+
+    @Test(expected = IOException.class)
+    public void brokenManifestFailsSync() throws IOException {
+        files.put("/pack/manifest.txt", "<html>not found</html>".getBytes(StandardCharsets.UTF_8));
+        new MediaStore(folder.newFolder(), 1_000_000).sync(manifestUrl);
+    }
+
+    /**
+     * Serve a manifest with its media files
+     */
+    private void publish(int version, String... lines) {
+        StringBuilder manifest = new StringBuilder("media-pack 1\nversion " + version + "\n");
+        for (String line : lines) {
+            manifest.append(line).append('\n');
+        }
+        files.put("/pack/manifest.txt", manifest.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Serve a media file and get its manifest line
+     */
+    private String entry(byte[] content, String url) {
+        String hash = MediaStore.hashOf(content);
+        files.put("/pack/objects/" + hash, content);
+        return hash + " " + content.length + " " + url;
+    }
+
+    private static byte[] bytes(String seed, int length) {
+        byte[] content = new byte[length];
+        int state = seed.hashCode();
+        for (int i = 0; i < length; i++) {
+            state = state * 1_103_515_245 + 12_345;
+            content[i] = (byte) (state >>> 16);
+        }
+        return content;
+    }
+}
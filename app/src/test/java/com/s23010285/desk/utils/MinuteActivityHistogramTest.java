@@ -0,0 +1,115 @@
+package com.s23010285.desk.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the packed storage format of MinuteActivityHistogram and the numbers derived from it
+ */
+public class MinuteActivityHistogramTest {
+
+    @Test
+    public void emptyDayPacksToOneRun() {
+        MinuteActivityHistogram empty = new MinuteActivityHistogram();
+        byte[] bytes = empty.toBytes();
+        // A 0 marker and 1440 as a two-byte varint
+        assertArrayEquals(new byte[] {0, (byte) 0xA0, 0x0B}, bytes);
+        assertSameMinutes(empty, MinuteActivityHistogram.fromBytes(bytes));
+    }
+
+    @Test
+    public void runsAndCountsArePackedAsVarints() {
+        MinuteActivityHistogram histogram = new MinuteActivityHistogram();
+        histogram.addSteps(0, 5);
+        histogram.addSteps(3, 300);
+        byte[] bytes = histogram.toBytes();
+        // 5, two empty minutes, 300 (0xAC 0x02), then the rest of the day empty (1436 = 0x9C 0x0B)
+        assertArrayEquals(new byte[] {5, 0, 2, (byte) 0xAC, 0x02, 0, (byte) 0x9C, 0x0B}, bytes);
+        assertSameMinutes(histogram, MinuteActivityHistogram.fromBytes(bytes));
+    }
+
+    @Test
+    public void edgesOfTheDayRoundTrip() {
+        MinuteActivityHistogram histogram = new MinuteActivityHistogram();
+        histogram.addSteps(0, 1);
+        histogram.addSteps(MinuteActivityHistogram.MINUTES_PER_DAY - 1, 127);
+        histogram.addSteps(720, 128);
+        assertSameMinutes(histogram, MinuteActivityHistogram.fromBytes(histogram.toBytes()));
+    }
+
+    @Test
+    public void fullMinutesSaturateAndRoundTrip() {
+        MinuteActivityHistogram histogram = new MinuteActivityHistogram();
+        histogram.addSteps(10, 60_000);
+        histogram.addSteps(10, 60_000);
+        assertEquals(0xFFFF, histogram.getSteps(10));
+        assertEquals(0xFFFF, MinuteActivityHistogram.fromBytes(histogram.toBytes()).getSteps(10));
+    }
+
+    @Test
+    public void randomDaysRoundTrip() {
+        Random random = new Random(29);
+        for (int day = 0; day < 200; day++) {
+            MinuteActivityHistogram histogram = new MinuteActivityHistogram();
+            // From nearly empty desk days to days with a step count in most minutes
+            int busyMinutes = random.nextInt(MinuteActivityHistogram.MINUTES_PER_DAY);
+            for (int i = 0; i < busyMinutes; i++) {
+                histogram.addSteps(random.nextInt(MinuteActivityHistogram.MINUTES_PER_DAY),
+                        1 + random.nextInt(random.nextBoolean() ? 100 : 20_000));
+            }
+            assertSameMinutes(histogram, MinuteActivityHistogram.fromBytes(histogram.toBytes()));
+        }
+    }
+
+    @Test
+    public void damagedBytesNeverThrow() {
+        MinuteActivityHistogram histogram = new MinuteActivityHistogram();
+        histogram.addSteps(0, 50);
+        histogram.addSteps(600, 300);
+        byte[] bytes = histogram.toBytes();
+
+        // Cut off in the middle of the 300
+        byte[] truncated = Arrays.copyOf(bytes, 5);
+        MinuteActivityHistogram read = MinuteActivityHistogram.fromBytes(truncated);
+        assertEquals(50, read.getSteps(0));
+        assertEquals(0, read.getSteps(600));
+
+        // A run that goes past the end of the day
+        MinuteActivityHistogram overrun = MinuteActivityHistogram.fromBytes(new byte[] {7, 0, (byte) 0xFF, 0x7F, 9});
+        assertEquals(7, overrun.getSteps(0));
+        assertEquals(7, overrun.summarize(MinuteActivityHistogram.MINUTES_PER_DAY).totalSteps);
+
+        assertEquals(0, MinuteActivityHistogram.fromBytes(null).summarize(MinuteActivityHistogram.MINUTES_PER_DAY).totalSteps);
+    }
+
+    @Test
+    public void summaryCountsActiveAndSedentaryMinutes() {
+        MinuteActivityHistogram histogram = new MinuteActivityHistogram();
+        histogram.addSteps(60, MinuteActivityHistogram.ACTIVE_STEPS_PER_MINUTE);
+        histogram.addSteps(61, MinuteActivityHistogram.ACTIVE_STEPS_PER_MINUTE - 1);
+        histogram.addSteps(600, 100);
+
+        MinuteActivityHistogram.Summary summary = histogram.summarize(MinuteActivityHistogram.MINUTES_PER_DAY);
+        assertEquals(2 * MinuteActivityHistogram.ACTIVE_STEPS_PER_MINUTE - 1 + 100, summary.totalSteps);
+        assertEquals(2, summary.activeMinutes);
+        assertEquals(2 * MinuteActivityHistogram.ACTIVE_STEPS_PER_MINUTE - 1, summary.hourlySteps[1]);
+        // From 10:01 to the end of the day
+        assertEquals(MinuteActivityHistogram.MINUTES_PER_DAY - 601, summary.longestSedentaryMinutes);
+        assertEquals(601, summary.longestSedentaryStartMinute);
+
+        // By 02:00 the longest stretch is still the one before 01:00
+        MinuteActivityHistogram.Summary morning = histogram.summarize(120);
+        assertEquals(60, morning.longestSedentaryMinutes);
+        assertEquals(0, morning.longestSedentaryStartMinute);
+    }
+
+    private static void assertSameMinutes(MinuteActivityHistogram expected, MinuteActivityHistogram actual) {
+        for (int minute = 0; minute < MinuteActivityHistogram.MINUTES_PER_DAY; minute++) {
+            assertEquals("minute " + minute, expected.getSteps(minute), actual.getSteps(minute));
+        }
+    }
+}
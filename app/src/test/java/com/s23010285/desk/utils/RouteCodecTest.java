@@ -0,0 +1,69 @@
+package com.s23010285.desk.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round-trips synthetic routes through RouteCodec
+ */
+public class RouteCodecTest {
+
+    @Test
+    public void routeSurvivesRoundTrip() {
+        int n = 300;
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        long[] times = new long[n];
+        for (int i = 0; i < n; i++) {
+            // A wobbly walk heading north-east from Colombo, one fix every 3 seconds
+            lats[i] = 6.927079 + i * 0.00002 + Math.sin(i / 7.0) * 0.00001;
+            lons[i] = 79.861244 + i * 0.000015;
+            times[i] = 1_700_000_000_000L + i * 3_000L;
+        }
+
+        byte[] packed = RouteCodec.encode(lats, lons, times, n);
+        RouteCodec.Route route = RouteCodec.decode(packed);
+
+        assertEquals(n, route.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(lats[i], route.latitudes[i], 1e-6);
+            assertEquals(lons[i], route.longitudes[i], 1e-6);
+            assertEquals(times[i], route.timesMs[i]);
+        }
+        // Deltas between neighbouring fixes are tiny, so each point packs into a few bytes instead of 24
+        assertTrue("packed to " + packed.length + " bytes", packed.length < n * 8);
+    }
+
+    @Test
+    public void negativeCoordinatesAndEmptyRoutes() {
+        double[] lats = {-33.856784, -33.857001, -33.856500};
+        double[] lons = {151.215297, 151.214900, -0.000001};
+        long[] times = {0, 1_000, 2_000};
+        RouteCodec.Route route = RouteCodec.decode(RouteCodec.encode(lats, lons, times, 3));
+        assertEquals(-33.857001, route.latitudes[1], 1e-9);
+        assertEquals(-0.000001, route.longitudes[2], 1e-9);
+
+        assertEquals(0, RouteCodec.decode(RouteCodec.encode(new double[0], new double[0], new long[0], 0)).size());
+    }
+
+    @Test
+    public void zigzagKeepsSmallNumbersSmall() {
+        assertEquals(0, RouteCodec.zigzag(0));
+        assertEquals(1, RouteCodec.zigzag(-1));
+        assertEquals(2, RouteCodec.zigzag(1));
+        for (long v : new long[] {0, 1, -1, 63, -64, 1L << 40, Long.MIN_VALUE, Long.MAX_VALUE}) {
+            assertEquals(v, RouteCodec.unzigzag(RouteCodec.zigzag(v)));
+        }
+    }
+
+    @Test
+    public void damagedDataIsRejected() {
+        byte[] packed = RouteCodec.encode(new double[] {1, 2}, new double[] {3, 4}, new long[] {0, 1000}, 2);
+        byte[] truncated = new byte[packed.length - 2];
+        System.arraycopy(packed, 0, truncated, 0, truncated.length);
+        assertThrows(IllegalArgumentException.class, () -> RouteCodec.decode(truncated));
+        assertThrows(IllegalArgumentException.class, () -> RouteCodec.decode(new byte[] {9, 0}));
+        assertThrows(IllegalArgumentException.class, () -> RouteCodec.decode(null));
+    }
+}
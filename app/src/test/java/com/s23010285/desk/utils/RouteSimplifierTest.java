@@ -0,0 +1,121 @@
+package com.s23010285.desk.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds synthetic coordinate streams through RouteSimplifier
+ */
+public class RouteSimplifierTest {
+
+    // About one metre in degrees of latitude
+    private static final double METER = 1.0 / 111_195.0;
+
+    @Test
+    public void routeNeverGrowsPastItsLimit() {
+        RouteSimplifier simplifier = new RouteSimplifier(50);
+        for (int i = 0; i < 5_000; i++) {
+            simplifier.add(Math.sin(i / 50.0) * 200 * METER, i * METER, i * 1000L);
+            assertTrue(simplifier.size() <= 50);
+        }
+        assertEquals(50, simplifier.size());
+    }
+
+    @Test
+    public void endsAreAlwaysKept() {
+        RouteSimplifier simplifier = new RouteSimplifier(10);
+        for (int i = 0; i <= 1_000; i++) {
+            simplifier.add(i * METER, (i % 2) * METER, i);
+        }
+        double[] lats = new double[10];
+        double[] lons = new double[10];
+        long[] times = new long[10];
+        assertEquals(10, simplifier.copyTo(lats, lons, times));
+        assertEquals(0, times[0]);
+        assertEquals(1_000, times[9]);
+        // Points stay in route order
+        for (int i = 1; i < 10; i++) {
+            assertTrue(times[i] > times[i - 1]);
+        }
+    }
+
+    @Test
+    public void straightLineCollapsesAndCornersSurvive() {
+        // An L-shaped walk: 500 m east with GPS jitter, then 500 m north
+        RouteSimplifier simplifier = new RouteSimplifier(3);
+        int t = 0;
+        for (int i = 0; i <= 500; i++) {
+            simplifier.add(((i * 7919) % 3 - 1) * 0.3 * METER, i * METER, t++);
+        }
+        for (int i = 1; i <= 500; i++) {
+            simplifier.add(i * METER, 500 * METER + ((i * 7919) % 3 - 1) * 0.3 * METER, t++);
+        }
+        double[] lats = new double[3];
+        double[] lons = new double[3];
+        simplifier.copyTo(lats, lons, null);
+        // The only point left in the middle is the corner
+        assertEquals(0, lats[1] / METER, 2);
+        assertEquals(500, lons[1] / METER, 2);
+    }
+
+    @Test
+    public void simplifiedShapeStaysCloseToTheRawRoute() {
+        int n = 3_000;
+        RouteSimplifier simplifier = new RouteSimplifier(200);
+        double[] rawLats = new double[n];
+        double[] rawLons = new double[n];
+        for (int i = 0; i < n; i++) {
+            // A loop of about 300 m radius
+            double angle = i * 2 * Math.PI / n;
+            rawLats[i] = Math.sin(angle) * 300 * METER;
+            rawLons[i] = Math.cos(angle) * 300 * METER;
+            simplifier.add(rawLats[i], rawLons[i], i);
+        }
+        double[] lats = new double[200];
+        double[] lons = new double[200];
+        int kept = simplifier.copyTo(lats, lons, null);
+        // Every raw point is within a metre of the nearest kept point's segment
+        for (int i = 0; i < n; i++) {
+            double best = Double.MAX_VALUE;
+            for (int j = 1; j < kept; j++) {
+                best = Math.min(best, segmentDistance(rawLats[i], rawLons[i], lats[j - 1], lons[j - 1], lats[j], lons[j]));
+            }
+            assertTrue("point " + i + " is " + best + "m off", best < 1.0);
+        }
+    }
+
+    @Test
+    public void longSessionStaysAtTheTrackerLimit() {
+        // Adding a point scans the kept points once, so a route that never grows keeps every add as cheap
+        int maxPoints = RouteTracker.DEFAULT_MAX_POINTS;
+        RouteSimplifier simplifier = new RouteSimplifier(maxPoints);
+        int points = 20_000;
+        for (int i = 0; i < points; i++) {
+            simplifier.add(Math.sin(i / 30.0) * 100 * METER, i * METER, i);
+            assertEquals(Math.min(i + 1, maxPoints), simplifier.size());
+        }
+        double[] lats = new double[maxPoints];
+        double[] lons = new double[maxPoints];
+        long[] times = new long[maxPoints];
+        assertEquals(maxPoints, simplifier.copyTo(lats, lons, times));
+        assertEquals(0, times[0]);
+        assertEquals(points - 1, times[maxPoints - 1]);
+        for (int i = 1; i < maxPoints; i++) {
+            assertTrue(times[i] > times[i - 1]);
+        }
+    }
+
+    /**
+     * Distance in metres from a point to a segment, treating degrees as a flat grid near the equator
+     */
+    private static double segmentDistance(double py, double px, double ay, double ax, double by, double bx) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return Math.sqrt(cx * cx + cy * cy) / METER;
+    }
+}
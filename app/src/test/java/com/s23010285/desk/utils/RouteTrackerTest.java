@@ -0,0 +1,121 @@
+package com.s23010285.desk.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives RouteTracker with synthetic GPS fixes
+ */
+public class RouteTrackerTest {
+
+    // About one metre in degrees of latitude
+    private static final double METER = 1.0 / 111_195.0;
+
+    private RouteTracker tracker;
+    private long nowMs;
+
+    @Before
+    public void setUp() {
+        tracker = new RouteTracker();
+        nowMs = 1_000_000;
+    }
+
+    @Test
+    public void walkingNorthMeasuresDistanceAndPace() {
+        // 1.4 m/s (a brisk walk) for 5 minutes, a fix every 4 seconds
+        for (int i = 0; i <= 75; i++) {
+            fix(i * 5.6, 0, 5f);
+            nowMs += 4_000;
+        }
+        assertEquals(420, tracker.getDistanceMeters(), 2);
+        assertEquals(1.4, tracker.getSpeedMps(), 0.05);
+        // 1000 / 1.4 = 714 seconds per km
+        assertEquals(714, tracker.getPaceSecondsPerKm(), 10);
+        assertEquals(RouteTracker.WALKING_INTERVAL_MS, tracker.getRecommendedIntervalMs());
+    }
+
+    @Test
+    public void intervalAdaptsToSpeed() {
+        assertEquals(RouteTracker.STATIONARY_INTERVAL_MS, tracker.getRecommendedIntervalMs());
+        double north = 0;
+        for (int i = 0; i < 20; i++) {
+            north += 3.5 * 2; // running at 3.5 m/s, a fix every 2 seconds
+            fix(north, 0, 5f);
+            nowMs += 2_000;
+        }
+        assertEquals(RouteTracker.RUNNING_INTERVAL_MS, tracker.getRecommendedIntervalMs());
+
+        for (int i = 0; i < 20; i++) {
+            fix(north, 0, 5f);
+            nowMs += 10_000;
+        }
+        assertEquals(RouteTracker.STATIONARY_INTERVAL_MS, tracker.getRecommendedIntervalMs());
+        assertEquals(0, tracker.getPaceSecondsPerKm());
+    }
+
+    @Test
+    public void jitterWhileStandingAddsNoDistance() {
+        for (int i = 0; i < 200; i++) {
+            // Fixes scattered within a couple of metres of one spot
+            fix(Math.sin(i) * 2, Math.cos(i * 1.3) * 2, 8f);
+            nowMs += 5_000;
+        }
+        assertEquals(0, tracker.getDistanceMeters(), 0.001);
+    }
+
+    @Test
+    public void inaccurateFixesAndGlitchesAreIgnored() {
+        fix(0, 0, 5f);
+        nowMs += 4_000;
+        assertFalse(fix(5, 0, 80f));
+        // 500 m in 4 seconds is not a walk
+        assertFalse(fix(500, 0, 5f));
+        assertTrue(fix(6, 0, 5f));
+        assertEquals(6, tracker.getDistanceMeters(), 0.1);
+    }
+
+    @Test
+    public void movementDuringPauseIsNotCounted() {
+        fix(0, 0, 5f);
+        nowMs += 4_000;
+        fix(6, 0, 5f);
+        tracker.markGap();
+        nowMs += 60_000;
+        fix(300, 0, 5f);
+        nowMs += 4_000;
+        fix(306, 0, 5f);
+        assertEquals(12, tracker.getDistanceMeters(), 0.1);
+    }
+
+    @Test
+    public void longSessionKeepsBoundedRouteThatSurvivesRestore() {
+        RouteTracker small = new RouteTracker(100);
+        for (int i = 0; i < 3_600; i++) {
+            // An hour on a winding path, a fix every second
+            double north = i * 1.2;
+            double east = Math.sin(i / 60.0) * 40;
+            small.addFix(north * METER, east * METER, 5f, nowMs);
+            nowMs += 1_000;
+        }
+        assertEquals(100, small.getRoute().size());
+
+        byte[] packed = small.encodeRoute();
+        RouteTracker restored = new RouteTracker(100);
+        restored.restore(packed, small.getDistanceMeters());
+        assertEquals(small.getDistanceMeters(), restored.getDistanceMeters(), 0.001);
+        assertEquals(100, restored.getRoute().size());
+        assertEquals(small.getRoute().latitudes[57], restored.getRoute().latitudes[57], 1e-6);
+    }
+
+    @Test
+    public void distanceBetweenMatchesKnownValue() {
+        // One degree of latitude is about 111.2 km
+        assertEquals(111_195, RouteTracker.distanceBetween(0, 0, 1, 0), 1);
+    }
+
+    private boolean fix(double northMeters, double eastMeters, float accuracy) {
+        return tracker.addFix(northMeters * METER, eastMeters * METER, accuracy, nowMs);
+    }
+}
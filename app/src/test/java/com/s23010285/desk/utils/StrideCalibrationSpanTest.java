@@ -0,0 +1,117 @@
+package com.s23010285.desk.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Walks a session through RouteTracker, StrideEstimator and StrideCalibrationSpan the way the workout
+ * session feeds them, and checks the calibration only compares stretches both of them measured
+ */
+public class StrideCalibrationSpanTest {
+
+    private static final float HEIGHT_M = 1.70f;
+    // About one metre in degrees of latitude
+    private static final double METER = 1.0 / 111_195.0;
+    // Two steps a second is 120 steps per minute
+    private static final long STEP_NS = 500_000_000L;
+
+    private RouteTracker route;
+    private StrideEstimator steps;
+    private StrideCalibrationSpan span;
+    // The stride the user really has, so GPS and steps agree
+    private double strideM;
+    private double northM;
+    private long nowNs;
+
+    @Before
+    public void setUp() {
+        route = new RouteTracker();
+        steps = new StrideEstimator(HEIGHT_M, 1.0f);
+        span = new StrideCalibrationSpan();
+        strideM = steps.strideLengthAt(120);
+        northM = 0;
+        nowNs = 1_000_000_000_000L;
+    }
+
+    @Test
+    public void pauseResumeCompleteKeepsAnAccurateStride() {
+        walk(300, true);
+        // Pause: GPS stops and doesn't count what the user walks meanwhile, steps stop too
+        route.markGap();
+        span.breakSpan();
+        northM += 200;
+        nowNs += 120_000_000_000L;
+        // Resume: the estimator carries on from the distance it had
+        span.breakSpan();
+        walk(300, true);
+
+        // Complete: the steps of both halves are still there, and both sources agree over what they measured
+        assertEquals(1200, steps.getTotalSteps());
+        assertTrue(span.getGpsDistanceMeters() > StrideEstimator.MIN_CALIBRATION_DISTANCE_M);
+        assertEquals(span.getGpsDistanceMeters(), span.getStepDistanceMeters(), 5);
+        assertEquals(1.0f, StrideEstimator.calibrate(1.0f, span.getGpsDistanceMeters(),
+                span.getStepDistanceMeters()), 0.01f);
+    }
+
+    @Test
+    public void gpsWithoutStepsIsLeftOut() {
+        // GPS starts before the step service connects
+        walk(200, false);
+        span.breakSpan();
+        walk(300, true);
+        double gpsWhileCounting = span.getGpsDistanceMeters();
+        assertEquals(300 * 2 * strideM, gpsWhileCounting, 10);
+        assertEquals(gpsWhileCounting, span.getStepDistanceMeters(), 5);
+        // Comparing the whole GPS distance with the steps would have stretched the stride
+        assertTrue(route.getDistanceMeters() > steps.getDistanceMeters() * 1.5);
+    }
+
+    @Test
+    public void aStrideThatIsTooShortIsCorrected() {
+        // The user really takes longer steps than the model thinks
+        strideM *= 1.1;
+        walk(600, true);
+        float updated = StrideEstimator.calibrate(1.0f, span.getGpsDistanceMeters(), span.getStepDistanceMeters());
+        // Each walk moves the factor part of the way
+        assertEquals(1.03f, updated, 0.005f);
+    }
+
+    @Test
+    public void nothingToCompareBeforeTwoFixes() {
+        span.onFix(100, 80);
+        assertEquals(0, span.getGpsDistanceMeters(), 0);
+        assertEquals(0, span.getStepDistanceMeters(), 0);
+        span.breakSpan();
+        span.onFix(150, 120);
+        assertEquals(0, span.getGpsDistanceMeters(), 0);
+        span.onFix(160, 127);
+        assertEquals(10, span.getGpsDistanceMeters(), 1e-9);
+        assertEquals(7, span.getStepDistanceMeters(), 1e-9);
+    }
+
+    /**
+     * Walk north at two steps a second, with a GPS fix every second
+     * @param seconds How long to walk
+     * @param countingSteps Whether the step service is counting, as the session checks before each fix
+     */
+    private void walk(int seconds, boolean countingSteps) {
+        for (int second = 0; second < seconds; second++) {
+            for (int step = 0; step < 2; step++) {
+                nowNs += STEP_NS;
+                northM += strideM;
+                if (countingSteps) {
+                    steps.onSteps(1, nowNs);
+                }
+            }
+            if (route.addFix(northM * METER, 0, 5f, nowNs / 1_000_000)) {
+                if (countingSteps) {
+                    span.onFix(route.getDistanceMeters(), steps.getDistanceMeters());
+                } else {
+                    span.breakSpan();
+                }
+            }
+        }
+    }
+}
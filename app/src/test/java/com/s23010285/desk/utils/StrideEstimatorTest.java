@@ -0,0 +1,132 @@
+package com.s23010285.desk.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds synthetic step streams into StrideEstimator and checks stride, cadence, pace and calibration
+ */
+public class StrideEstimatorTest {
+
+    private static final float HEIGHT_M = 1.70f;
+    private static final float DELTA = 1e-4f;
+    // Half a second between steps is 120 steps per minute
+    private static final long STEP_NS = 500_000_000L;
+
+    @Test
+    public void strideGrowsWithCadence() {
+        StrideEstimator estimator = new StrideEstimator(HEIGHT_M, 1.0f);
+        // 0.41 x height at a relaxed 95 steps/min
+        assertEquals(HEIGHT_M * (0.25f + 0.0017f * 95), estimator.strideLengthAt(95), DELTA);
+        assertTrue(estimator.strideLengthAt(140) > estimator.strideLengthAt(110));
+    }
+
+    @Test
+    public void strideIsClampedAtExtremeCadence() {
+        StrideEstimator estimator = new StrideEstimator(HEIGHT_M, 1.0f);
+        assertEquals(HEIGHT_M * 0.30f, estimator.strideLengthAt(0), DELTA);
+        assertEquals(HEIGHT_M * 0.30f, estimator.strideLengthAt(20), DELTA);
+        assertEquals(HEIGHT_M * 0.65f, estimator.strideLengthAt(300), DELTA);
+    }
+
+    @Test
+    public void calibrationScalesStride() {
+        StrideEstimator plain = new StrideEstimator(HEIGHT_M, 1.0f);
+        StrideEstimator calibrated = new StrideEstimator(HEIGHT_M, 1.1f);
+        assertEquals(plain.strideLengthAt(120) * 1.1f, calibrated.strideLengthAt(120), DELTA);
+    }
+
+    @Test
+    public void steadyWalkGivesCadenceDistanceAndPace() {
+        StrideEstimator estimator = new StrideEstimator(HEIGHT_M, 1.0f);
+        for (int step = 1; step <= 20; step++) {
+            estimator.onSteps(1, step * STEP_NS);
+        }
+        long now = 20 * STEP_NS;
+        assertEquals(120f, estimator.getCadence(now), 0.01f);
+        assertEquals(20, estimator.getTotalSteps());
+        // The first step has no cadence yet, so it uses the default walking stride
+        double expected = estimator.strideLengthAt(100) + 19 * estimator.strideLengthAt(120);
+        assertEquals(expected, estimator.getDistanceMeters(), 1e-3);
+
+        float metersPerSecond = estimator.strideLengthAt(120) * 2;
+        assertEquals(Math.round(1000f / metersPerSecond), estimator.getPaceSecondsPerKm(now));
+    }
+
+    @Test
+    public void coalescedBatchesCountLikeSingleSteps() {
+        StrideEstimator single = new StrideEstimator(HEIGHT_M, 1.0f);
+        StrideEstimator batched = new StrideEstimator(HEIGHT_M, 1.0f);
+        for (int step = 1; step <= 40; step++) {
+            single.onSteps(1, step * STEP_NS);
+            if (step % 4 == 0) {
+                batched.onSteps(4, step * STEP_NS);
+            }
+        }
+        assertEquals(single.getCadence(40 * STEP_NS), batched.getCadence(40 * STEP_NS), 0.01f);
+        assertEquals(40, batched.getTotalSteps());
+        // Only the first batch, with no cadence yet, differs
+        assertEquals(single.getDistanceMeters(), batched.getDistanceMeters(),
+                4 * (single.strideLengthAt(120) - single.strideLengthAt(100)) + 1e-3);
+    }
+
+    @Test
+    public void pauseDropsCadenceAndPace() {
+        StrideEstimator estimator = new StrideEstimator(HEIGHT_M, 1.0f);
+        for (int step = 1; step <= 10; step++) {
+            estimator.onSteps(1, step * STEP_NS);
+        }
+        long afterPause = 10 * STEP_NS + StrideEstimator.CADENCE_WINDOW_NS + 1;
+        assertEquals(0f, estimator.getCadence(afterPause), 0f);
+        assertEquals(0, estimator.getPaceSecondsPerKm(afterPause));
+
+        // The first step after the pause starts a new window instead of averaging over the pause
+        double before = estimator.getDistanceMeters();
+        estimator.onSteps(1, afterPause);
+        assertEquals(0f, estimator.getCadence(afterPause), 0f);
+        assertEquals(before + estimator.strideLengthAt(100), estimator.getDistanceMeters(), 1e-3);
+    }
+
+    @Test
+    public void resetStartsFromZero() {
+        StrideEstimator estimator = new StrideEstimator(HEIGHT_M, 1.0f);
+        estimator.onSteps(10, STEP_NS);
+        estimator.reset();
+        assertEquals(0, estimator.getTotalSteps());
+        assertEquals(0.0, estimator.getDistanceMeters(), 0.0);
+        assertEquals(0f, estimator.getCadence(STEP_NS), 0f);
+    }
+
+    @Test
+    public void calibrationMovesPartOfTheWay() {
+        // GPS says the walk was 10% longer than the steps did
+        assertEquals(1.03f, StrideEstimator.calibrate(1.0f, 1100, 1000), DELTA);
+        // Walks that agree leave the factor alone
+        assertEquals(1.1f, StrideEstimator.calibrate(1.1f, 1000, 1000), DELTA);
+    }
+
+    @Test
+    public void calibrationConvergesOverSeveralWalks() {
+        // The user's real stride is 10% longer than the model; each walk's estimate uses the current factor
+        float factor = 1.0f;
+        for (int walk = 0; walk < 30; walk++) {
+            factor = StrideEstimator.calibrate(factor, 1100, 1000 * factor);
+        }
+        assertEquals(1.1f, factor, 1e-3f);
+    }
+
+    @Test
+    public void calibrationIsClamped() {
+        assertEquals(StrideEstimator.MAX_CALIBRATION_FACTOR, StrideEstimator.calibrate(1.0f, 10_000, 1000), 0f);
+        assertEquals(StrideEstimator.MIN_CALIBRATION_FACTOR, StrideEstimator.calibrate(1.0f, 400, 4000), 0f);
+        assertEquals(StrideEstimator.MAX_CALIBRATION_FACTOR,
+                StrideEstimator.calibrate(StrideEstimator.MAX_CALIBRATION_FACTOR, 2000, 1000), 0f);
+    }
+
+    @Test
+    public void shortOrEmptyWalksAreIgnored() {
+        assertTrue(Float.isNaN(StrideEstimator.calibrate(1.0f, StrideEstimator.MIN_CALIBRATION_DISTANCE_M - 1, 300)));
+        assertTrue(Float.isNaN(StrideEstimator.calibrate(1.0f, 1000, 0)));
+    }
+}
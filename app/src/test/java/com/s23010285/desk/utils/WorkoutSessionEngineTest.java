@@ -0,0 +1,307 @@
+package com.s23010285.desk.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives whole workout sessions through WorkoutSessionEngine with a fake clock
+ */
+public class WorkoutSessionEngineTest {
+
+    // Three exercises of 30, 45 and 20 seconds with a 2 second break between them
+    private static final int[] DURATIONS = {30, 45, 20};
+    private static final long TRANSITION_MS = 2000;
+    private static final long SESSION_MS = 5 * 60_000;
+
+    // nowMs is the fake time source every clock in these tests reads
+    private long nowMs;
+    private RecordingListener events;
+    private WorkoutSessionEngine engine;
+
+    @Before
+    public void setUp() {
+        nowMs = 1_000_000;
+        events = new RecordingListener();
+        engine = newEngine();
+    }
+
+    @Test
+    public void fullSessionRunsEveryExerciseAndCompletes() {
+        engine.start();
+        assertEquals(WorkoutSessionEngine.State.RUNNING, engine.getState());
+
+        runFor(30_000 + TRANSITION_MS + 45_000 + TRANSITION_MS + 20_000);
+
+        assertEquals(WorkoutSessionEngine.State.COMPLETED, engine.getState());
+        assertEquals("[0, 1, 2]", events.started.toString());
+        assertEquals("[0, 1, 2]", events.finished.toString());
+        assertEquals(1, events.completed);
+        // Once completed there is nothing left to tick
+        assertEquals(-1, engine.tick());
+    }
+
+    @Test
+    public void countdownTicksOncePerSecondOnWholeSeconds() {
+        engine.start();
+        runFor(30_000);
+        // 30 down to 0, each value exactly once
+        assertEquals(31, events.ticksFor(0).size());
+        assertEquals(Integer.valueOf(30), events.ticksFor(0).get(0));
+        assertEquals(Integer.valueOf(0), events.ticksFor(0).get(30));
+        assertEquals(WorkoutSessionEngine.State.TRANSITIONING, engine.getState());
+    }
+
+    @Test
+    public void pauseKeepsExactRemainingTime() {
+        engine.start();
+        advance(12_300);
+        assertEquals(18, engine.getSecondsLeft());
+
+        engine.pause();
+        assertEquals(-1, engine.tick());
+        advance(600_000); // ten minutes on pause
+        assertEquals(18, engine.getSecondsLeft());
+        assertEquals(12_300, engine.getElapsedMs());
+
+        engine.resume();
+        assertEquals(WorkoutSessionEngine.State.RUNNING, engine.getState());
+        // The next tick lines up with the next whole second of the countdown
+        assertEquals(700, engine.tick());
+        runFor(17_700);
+        assertEquals(WorkoutSessionEngine.State.TRANSITIONING, engine.getState());
+        assertEquals(30_000, engine.getElapsedMs());
+    }
+
+    @Test
+    public void pauseDuringTransitionResumesTheTransition() {
+        engine.start();
+        runFor(30_000 + 500);
+        assertEquals(WorkoutSessionEngine.State.TRANSITIONING, engine.getState());
+
+        engine.pause();
+        advance(60_000);
+        engine.resume();
+        assertEquals(WorkoutSessionEngine.State.TRANSITIONING, engine.getState());
+
+        runFor(TRANSITION_MS - 500);
+        assertEquals(WorkoutSessionEngine.State.RUNNING, engine.getState());
+        assertEquals(1, engine.getExerciseIndex());
+        assertEquals(45, engine.getSecondsLeft());
+    }
+
+    @Test
+    public void lateTickCatchesUpWithoutLosingTime() {
+        engine.start();
+        // The app was frozen for 40 seconds and the first tick only runs now
+        advance(40_000);
+        engine.tick();
+        // Exercise 0 ended at 30s, the break at 32s, so exercise 1 has been running for 8s
+        assertEquals(1, engine.getExerciseIndex());
+        assertEquals(37, engine.getSecondsLeft());
+    }
+
+    @Test
+    public void skipAndGoBackRestartCountdowns() {
+        engine.start();
+        advance(5_000);
+        engine.next();
+        assertEquals(1, engine.getExerciseIndex());
+        assertEquals(45, engine.getSecondsLeft());
+
+        engine.previous();
+        assertEquals(0, engine.getExerciseIndex());
+        assertEquals(30, engine.getSecondsLeft());
+
+        // next() on the last exercise finishes the session
+        engine.next();
+        engine.next();
+        engine.next();
+        assertEquals(WorkoutSessionEngine.State.COMPLETED, engine.getState());
+        assertEquals(1, events.completed);
+        // Finished exercises are only reported when their countdown really ran out
+        assertTrue(events.finished.isEmpty());
+    }
+
+    @Test
+    public void skippingWhilePausedStaysPaused() {
+        engine.start();
+        runFor(30_500);
+        engine.pause();
+        engine.next();
+        assertEquals(WorkoutSessionEngine.State.PAUSED, engine.getState());
+        assertEquals(1, engine.getExerciseIndex());
+
+        advance(10_000);
+        engine.resume();
+        // It resumes into the new exercise, not the break that was running before
+        assertEquals(WorkoutSessionEngine.State.RUNNING, engine.getState());
+        assertEquals(45, engine.getSecondsLeft());
+    }
+
+    @Test
+    public void sessionProgressFollowsRunningTime() {
+        engine.start();
+        runFor(SESSION_MS / 4);
+        assertEquals(Integer.valueOf(25), events.lastProgress());
+        engine.pause();
+        advance(SESSION_MS);
+        engine.resume();
+        engine.tick();
+        assertEquals(Integer.valueOf(25), events.lastProgress());
+    }
+
+    @Test
+    public void snapshotRestoresSessionMidExercise() {
+        engine.start();
+        runFor(30_000 + TRANSITION_MS + 10_400);
+        long[] snapshot = engine.saveState();
+
+        // The activity is recreated with a new engine and clock
+        advance(3_000);
+        WorkoutSessionEngine restored = newEngine();
+        assertTrue(restored.restoreState(snapshot));
+        assertEquals(WorkoutSessionEngine.State.RUNNING, restored.getState());
+        assertEquals(1, restored.getExerciseIndex());
+        assertEquals(35, restored.getSecondsLeft());
+
+        engine = restored;
+        runFor(35_000 - 400 + TRANSITION_MS + 20_000);
+        assertEquals(WorkoutSessionEngine.State.COMPLETED, engine.getState());
+    }
+
+    @Test
+    public void snapshotRestoresPausedSession() {
+        engine.start();
+        runFor(7_250);
+        engine.pause();
+        long[] snapshot = engine.saveState();
+
+        WorkoutSessionEngine restored = newEngine();
+        assertTrue(restored.restoreState(snapshot));
+        advance(60_000);
+        assertEquals(WorkoutSessionEngine.State.PAUSED, restored.getState());
+        assertEquals(7_250, restored.getElapsedMs());
+        restored.resume();
+        assertEquals(WorkoutSessionEngine.State.RUNNING, restored.getState());
+        assertEquals(23, restored.getSecondsLeft());
+    }
+
+    @Test
+    public void invalidSnapshotsAreIgnored() {
+        assertFalse(engine.restoreState(null));
+        assertFalse(engine.restoreState(new long[] {1, 1}));
+        assertFalse(engine.restoreState(new long[] {99, 1, 1, 0, 0, 0, 0}));
+        assertFalse(engine.restoreState(new long[] {1, 1, 1, 7, 0, 0, 0}));
+        assertEquals(WorkoutSessionEngine.State.READY, engine.getState());
+    }
+
+    @Test
+    public void snapshotRoundTripsWhileRunning() {
+        engine.start();
+        runFor(12_000);
+        long[] snapshot = engine.saveState();
+        WorkoutSessionEngine target = newEngine();
+        assertTrue(target.restoreState(snapshot));
+
+        // Saving the restored engine gives the same snapshot, however often it goes back and forth
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(snapshot, target.saveState());
+            assertTrue(target.restoreState(target.saveState()));
+        }
+        assertEquals(engine.getState(), target.getState());
+        assertEquals(engine.getExerciseIndex(), target.getExerciseIndex());
+        assertEquals(engine.getElapsedMs(), target.getElapsedMs());
+        assertEquals(18, target.getSecondsLeft());
+
+        // Both carry on the same way from there
+        advance(20_000);
+        engine.tick();
+        target.tick();
+        assertEquals(WorkoutSessionEngine.State.RUNNING, target.getState());
+        assertEquals(engine.getExerciseIndex(), target.getExerciseIndex());
+        assertEquals(engine.getSecondsLeft(), target.getSecondsLeft());
+    }
+
+    private WorkoutSessionEngine newEngine() {
+        WorkoutSessionEngine newEngine = new WorkoutSessionEngine(DURATIONS, SESSION_MS, TRANSITION_MS,
+                new SessionClock(() -> nowMs));
+        newEngine.setListener(events);
+        return newEngine;
+    }
+
+    private void advance(long ms) {
+        nowMs += ms;
+    }
+
+    /**
+     * Run the engine like the Activity does: tick, wait the returned delay, tick again
+     */
+    private void runFor(long ms) {
+        long endMs = nowMs + ms;
+        long delay = engine.tick();
+        while (delay >= 0 && nowMs + delay <= endMs) {
+            advance(delay);
+            delay = engine.tick();
+        }
+        nowMs = endMs;
+    }
+
+    /**
+     * Listener that writes down every callback
+     */
+    private static class RecordingListener implements WorkoutSessionEngine.Listener {
+        final List<Integer> started = new ArrayList<>();
+        final List<Integer> finished = new ArrayList<>();
+        final List<int[]> ticks = new ArrayList<>();
+        final List<Integer> progress = new ArrayList<>();
+        int completed = 0;
+
+        @Override
+        public void onStateChanged(WorkoutSessionEngine.State state) {
+        }
+
+        @Override
+        public void onExerciseStarted(int index) {
+            started.add(index);
+        }
+
+        @Override
+        public void onExerciseTick(int index, int secondsLeft, int progressPercent) {
+            ticks.add(new int[] {index, secondsLeft, progressPercent});
+        }
+
+        @Override
+        public void onExerciseFinished(int index) {
+            finished.add(index);
+        }
+
+        @Override
+        public void onSessionProgress(int percent) {
+            progress.add(percent);
+        }
+
+        @Override
+        public void onSessionCompleted() {
+            completed++;
+        }
+
+        List<Integer> ticksFor(int index) {
+            List<Integer> seconds = new ArrayList<>();
+            for (int[] tick : ticks) {
+                if (tick[0] == index) {
+                    seconds.add(tick[1]);
+                }
+            }
+            return seconds;
+        }
+
+        Integer lastProgress() {
+            return progress.isEmpty() ? null : progress.get(progress.size() - 1);
+        }
+    }
+}